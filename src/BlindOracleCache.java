@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * BlindOracle cache that keeps its state between requests
+ * <p>
+ * The pages in the cache are kept in a binary max-heap ordered by H prediction value. When 2 pages have the same
+ * H prediction value, the page that got it first is evicted first, same as blindOracle in Paging. Every page knows
+ * its position in the heap (an array indexed by the page), so a request is a single lookup plus O(log k) heap work,
+ * without boxing or allocation.
+ */
+final class BlindOracleCache implements CachePolicy {
+
+    private static final int NIL = -1;
+
+    private final int k;
+
+    // heap[0] is the page to evict next, positionInHeap[page] is -1 when the page is not in the cache
+    private final int[] heap;
+    private int size;
+    private int[] positionInHeap;
+    private int[] hPredictionOf;
+    // when a page got its current H prediction value, to break ties the same way as blindOracle in Paging
+    private long[] updatedAt;
+    private long clock;
+
+    private long pageFaults;
+    private int lastEvicted = NIL;
+
+    /**
+     * @param k cache capacity
+     */
+    BlindOracleCache(int k) {
+        this(k, 16);
+    }
+
+    /**
+     * @param k cache capacity
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    BlindOracleCache(int k, int expectedMaxPage) {
+        this.k = k;
+        heap = new int[k];
+        positionInHeap = new int[expectedMaxPage + 1];
+        Arrays.fill(positionInHeap, NIL);
+        hPredictionOf = new int[expectedMaxPage + 1];
+        updatedAt = new long[expectedMaxPage + 1];
+    }
+
+    @Override
+    public boolean access(int page, int hPrediction) {
+
+        if (page >= positionInHeap.length) {
+            grow(page);
+        }
+
+        lastEvicted = NIL;
+        int position = positionInHeap[page];
+        hPredictionOf[page] = hPrediction;
+        updatedAt[page] = ++ clock;
+
+        if (position != NIL) {
+            // the new H prediction value can be lower or higher than the old one
+            siftDown(siftUp(position));
+            return true;
+        }
+
+        pageFaults ++;
+        if (size == k) {
+            lastEvicted = heap[0];
+            positionInHeap[lastEvicted] = NIL;
+            size --;
+            if (size > 0) {
+                moveTo(heap[size], 0);
+                siftDown(0);
+            }
+        }
+        moveTo(page, size ++);
+        siftUp(size - 1);
+        return false;
+    }
+
+    @Override
+    public int accessBatch(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap) {
+
+        int pageFaultsInBatch = 0;
+        for (int j = 0; j < len; j ++) {
+            boolean hit = access(pages[offset + j], hPredictions[offset + j]);
+            if (!hit) {
+                pageFaultsInBatch ++;
+            }
+            if (hitBitmap != null) {
+                CachePolicy.setHitBit(hitBitmap, j, hit);
+            }
+        }
+        return pageFaultsInBatch;
+    }
+
+    @Override
+    public int lastEvicted() {
+        return lastEvicted;
+    }
+
+    @Override
+    public long pageFaults() {
+        return pageFaults;
+    }
+
+    @Override
+    public void reset() {
+
+        for (int i = 0; i < size; i ++) {
+            positionInHeap[heap[i]] = NIL;
+        }
+        size = 0;
+        clock = 0;
+        pageFaults = 0;
+        lastEvicted = NIL;
+    }
+
+    @Override
+    public boolean contains(int page) {
+        return page < positionInHeap.length && positionInHeap[page] != NIL;
+    }
+
+    @Override
+    public boolean countRequest(int page) {
+        boolean hit = contains(page);
+        if (!hit) {
+            pageFaults ++;
+        }
+        return hit;
+    }
+
+    @Override
+    public boolean insert(int page, int hPrediction) {
+        // placed like a request to the page, which is then not counted
+        boolean wasInCache = access(page, hPrediction);
+        if (!wasInCache) {
+            pageFaults --;
+        }
+        return wasInCache;
+    }
+
+    @Override
+    public boolean remove(int page) {
+
+        if (!contains(page)) {
+            return false;
+        }
+        int position = positionInHeap[page];
+        positionInHeap[page] = NIL;
+        size --;
+        if (position != size) {
+            // the last page of the heap takes its place and moves up or down
+            moveTo(heap[size], position);
+            siftDown(siftUp(position));
+        }
+        return true;
+    }
+
+    /**
+     * @return number of pages in the cache
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gives every page in the cache, in heap order
+     * @param action what to do with every page, it should not change the cache
+     */
+    void forEachPage(IntConsumer action) {
+        for (int i = 0; i < size; i ++) {
+            action.accept(heap[i]);
+        }
+    }
+
+    /**
+     * @return number of bytes writeSnapshot writes
+     */
+    int snapshotBytes() {
+        return 4 * 2 + 8 * 2 + 16 * size;
+    }
+
+    /**
+     * Writes the capacity, the page faults, the clock and every page in the cache with its H prediction value and the
+     * time it got it, which decides the ties
+     * @param out buffer to write to
+     */
+    void writeSnapshot(ByteBuffer out) {
+        out.putInt(k);
+        out.putLong(pageFaults);
+        out.putLong(clock);
+        out.putInt(size);
+        for (int i = 0; i < size; i ++) {
+            int page = heap[i];
+            out.putInt(page);
+            out.putInt(hPredictionOf[page]);
+            out.putLong(updatedAt[page]);
+        }
+    }
+
+    /**
+     * Reads a cache written by writeSnapshot, which makes the same decisions as the cache that was written
+     * @param in buffer to read from
+     * @return the cache
+     * @throws IOException if the buffer has a cache that writeSnapshot could not have written
+     */
+    static BlindOracleCache readSnapshot(ByteBuffer in) throws IOException {
+
+        int k = in.getInt();
+        long pageFaults = in.getLong();
+        long clock = in.getLong();
+        int size = in.getInt();
+        if (k <= 0 || pageFaults < 0 || size < 0 || size > k || size > in.remaining() / 16) {
+            throw new IOException("BlindOracle snapshot has capacity " + k + ", " + pageFaults + " page faults and " + size + " pages");
+        }
+        int[] pages = new int[size];
+        int[] hPredictions = new int[size];
+        long[] updatedAts = new long[size];
+        for (int i = 0; i < size; i ++) {
+            pages[i] = in.getInt();
+            hPredictions[i] = in.getInt();
+            updatedAts[i] = in.getLong();
+            if (pages[i] < 0 || updatedAts[i] > clock) {
+                throw new IOException("BlindOracle snapshot has page " + pages[i] + " updated at " + updatedAts[i] + " after the clock " + clock);
+            }
+        }
+
+        BlindOracleCache cache = new BlindOracleCache(k, Math.max(16, Arrays.stream(pages).max().orElse(0)));
+        // the pages were written in heap order, so they form a valid heap as they are
+        for (int i = 0; i < size; i ++) {
+            if (cache.positionInHeap[pages[i]] != NIL) {
+                throw new IOException("BlindOracle snapshot has page " + pages[i] + " more than once");
+            }
+            cache.hPredictionOf[pages[i]] = hPredictions[i];
+            cache.updatedAt[pages[i]] = updatedAts[i];
+            cache.moveTo(pages[i], i);
+        }
+        cache.size = size;
+        cache.clock = clock;
+        cache.pageFaults = pageFaults;
+        return cache;
+    }
+
+    /**
+     * @param a a page in the cache
+     * @param b another page in the cache
+     * @return whether a should be evicted before b
+     */
+    private boolean evictsBefore(int a, int b) {
+        return hPredictionOf[a] > hPredictionOf[b] || (hPredictionOf[a] == hPredictionOf[b] && updatedAt[a] < updatedAt[b]);
+    }
+
+    private int siftUp(int position) {
+
+        int page = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!evictsBefore(page, heap[parent])) {
+                break;
+            }
+            moveTo(heap[parent], position);
+            position = parent;
+        }
+        moveTo(page, position);
+        return position;
+    }
+
+    private void siftDown(int position) {
+
+        int page = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && evictsBefore(heap[child + 1], heap[child])) {
+                child ++;
+            }
+            if (!evictsBefore(heap[child], page)) {
+                break;
+            }
+            moveTo(heap[child], position);
+            position = child;
+        }
+        moveTo(page, position);
+    }
+
+    private void moveTo(int page, int position) {
+        heap[position] = page;
+        positionInHeap[page] = position;
+    }
+
+    private void grow(int page) {
+
+        int oldLength = positionInHeap.length;
+        int newLength = Math.max(page + 1, oldLength * 2);
+        positionInHeap = Arrays.copyOf(positionInHeap, newLength);
+        Arrays.fill(positionInHeap, oldLength, newLength, NIL);
+        hPredictionOf = Arrays.copyOf(hPredictionOf, newLength);
+        updatedAt = Arrays.copyOf(updatedAt, newLength);
+    }
+}
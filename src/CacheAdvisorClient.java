@@ -0,0 +1,151 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A blocking client of CacheAdvisorServer
+ * <p>
+ * send and receive can be called separately to keep several batches in flight, and advise sends a batch and waits for
+ * its answer. The server stops reading while its output is full, so a client that sends without receiving must keep
+ * the answers it has not read small enough to fit in the socket buffers, or both sides wait for each other.
+ */
+final class CacheAdvisorClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(4 + 8 * CacheAdvisorServer.MAX_BATCH);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(CacheAdvisorServer.responseBytes(CacheAdvisorServer.MAX_BATCH));
+
+    /**
+     * @param address address of the server, an InetSocketAddress or a UnixDomainSocketAddress
+     * @throws IOException if the server can not be reached
+     */
+    CacheAdvisorClient(SocketAddress address) throws IOException {
+        channel = address instanceof UnixDomainSocketAddress ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a batch of requests without waiting for the answer
+     * @param pages page requests
+     * @param hPredictions predicted H values for the page requests, can be null for caches that do not use predictions
+     * @param offset index of the first request of the batch
+     * @param len number of requests in the batch, from 1 to CacheAdvisorServer.MAX_BATCH
+     * @throws IOException if the batch can not be written
+     */
+    void send(int[] pages, int[] hPredictions, int offset, int len) throws IOException {
+
+        if (len <= 0 || len > CacheAdvisorServer.MAX_BATCH) {
+            throw new IllegalArgumentException("Number of requests in a batch should be in [1, " + CacheAdvisorServer.MAX_BATCH + "]: " + len);
+        }
+        out.clear();
+        out.putInt(len);
+        for (int i = offset; i < offset + len; i ++) {
+            out.putInt(pages[i]);
+            out.putInt(hPredictions == null ? 0 : hPredictions[i]);
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+     * Waits for the answer to the oldest batch that was sent and not received yet
+     * @param hitBitmap if not null, bit offset + j is set to 1 if request j of the batch was a hit and to 0 if it was a page fault
+     * @param evictedPages if not null, evictedPages[offset + j] is the page evicted by request j of the batch, or -1
+     * @param offset index of the first request of the batch in hitBitmap and evictedPages
+     * @return number of page faults in the batch
+     * @throws IOException if the answer can not be read
+     */
+    int receive(long[] hitBitmap, int[] evictedPages, int offset) throws IOException {
+
+        in.clear();
+        readFully(4);
+        int count = in.getInt(0);
+        readFully(CacheAdvisorServer.responseBytes(count));
+        in.position(4);
+
+        int pageFaults = 0;
+        for (int w = 0; w < (count + 63) >>> 6; w ++) {
+            long hits = in.getLong();
+            for (int j = w << 6; j < Math.min(count, (w + 1) << 6); j ++) {
+                boolean hit = (hits & (1L << j)) != 0;
+                if (!hit) {
+                    pageFaults ++;
+                }
+                if (hitBitmap != null) {
+                    CachePolicy.setHitBit(hitBitmap, offset + j, hit);
+                }
+            }
+        }
+        for (int j = 0; j < count; j ++) {
+            int evictedPage = in.getInt();
+            if (evictedPages != null) {
+                evictedPages[offset + j] = evictedPage;
+            }
+        }
+        return pageFaults;
+    }
+
+    /**
+     * Sends a batch of requests and waits for its answer
+     * @see #send(int[], int[], int, int)
+     * @see #receive(long[], int[], int)
+     */
+    int advise(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap, int[] evictedPages) throws IOException {
+        send(pages, hPredictions, offset, len);
+        return receive(hitBitmap, evictedPages, offset);
+    }
+
+    /**
+     * Runs a whole request sequence on the cache of this connection, keeping batchesInFlight batches sent ahead of the answers
+     * @param pages sequence of page requests
+     * @param hPredictions predicted H values for the page requests, can be null for caches that do not use predictions
+     * @param batchSize number of requests in a batch
+     * @param batchesInFlight number of batches sent before waiting for an answer, 1 waits for every batch
+     * @param hitBitmap if not null, bit i is set to 1 if request i was a hit and to 0 if it was a page fault
+     * @param evictedPages if not null, evictedPages[i] is the page evicted by request i, or -1
+     * @return number of page faults
+     * @throws IOException if a batch can not be sent or an answer can not be read
+     */
+    long run(int[] pages, int[] hPredictions, int batchSize, int batchesInFlight, long[] hitBitmap, int[] evictedPages) throws IOException {
+
+        long pageFaults = 0;
+        int sent = 0;
+        int received = 0;
+        while (received < pages.length) {
+            while (sent < pages.length && sent - received < batchesInFlight * batchSize) {
+                int len = Math.min(batchSize, pages.length - sent);
+                send(pages, hPredictions, sent, len);
+                sent += len;
+            }
+            int before = received;
+            pageFaults += receive(hitBitmap, evictedPages, received);
+            received = before + Math.min(batchSize, pages.length - before);
+        }
+        return pageFaults;
+    }
+
+    private void readFully(int bytes) throws IOException {
+        in.limit(bytes);
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * A server that gives the eviction decisions of a CachePolicy to processes that are not written in Java
+ * <p>
+ * Every connection gets its own cache. A client sends batches of (page, H prediction) records and for every batch
+ * gets back whether each request was a hit and which page it evicted, in the order the batches were sent. A client
+ * can send the next batches before the answers to the earlier ones arrive (pipelining), so a request costs a few
+ * microseconds instead of a round trip.
+ * <p>
+ * All the connections are served by one thread with a Selector on non-blocking channels, over TCP or a Unix domain
+ * socket. Frames are big-endian (as ByteBuffer writes them):
+ * <ul>
+ *     <li>request: int count (1 to MAX_BATCH), then count times (int page, int hPrediction)</li>
+ *     <li>response: int count, then (count + 63) / 64 longs of hit bitmap (bit j % 64 of long j / 64 is 1 if request j
+ *     was a hit), then count ints with the page evicted by every request, or -1 if it did not evict a page</li>
+ * </ul>
+ * A connection that sends a frame with a wrong count, a negative page or a page larger than the largest page the
+ * server takes, is closed. The caches grow their tables up to the largest page they see, so the limit keeps a client
+ * from making the server allocate gigabytes for one large page id.
+ * CacheAdvisorClient is a client in Java, used by the tests.
+ */
+final class CacheAdvisorServer implements AutoCloseable {
+
+    /**
+     * Largest number of records in a batch
+     */
+    static final int MAX_BATCH = 1 << 16;
+
+    private static final int MAX_REQUEST_BYTES = 4 + 8 * MAX_BATCH;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Supplier<CachePolicy> cacheOfConnection;
+    private final int maxPage;
+    private final SocketAddress localAddress;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // written only by the server thread
+    private volatile long batches;
+    private volatile long requests;
+
+    /**
+     * State of a client connection
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        private final CachePolicy cache;
+
+        // the bytes of the requests not processed yet, and the bytes of the responses not written yet
+        private final ByteBuffer in = ByteBuffer.allocateDirect(MAX_REQUEST_BYTES);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(responseBytes(MAX_BATCH));
+
+        private final long[] hitBitmap = new long[(MAX_BATCH + 63) >>> 6];
+        private final int[] evictedPages = new int[MAX_BATCH];
+
+        private Connection(SocketChannel channel, CachePolicy cache) {
+            this.channel = channel;
+            this.cache = cache;
+        }
+    }
+
+    /**
+     * Opens the server, it does not serve connections before start is called
+     * @param address address to listen on, an InetSocketAddress (port 0 picks a free port) or a UnixDomainSocketAddress
+     * @param cacheOfConnection creates the (empty) cache of every new connection
+     * @param maxPage largest page a client can request, a connection that sends a larger page is closed
+     * @throws IOException if the address can not be bound
+     */
+    CacheAdvisorServer(SocketAddress address, Supplier<CachePolicy> cacheOfConnection, int maxPage) throws IOException {
+
+        if (maxPage < 0) {
+            throw new IllegalArgumentException("Largest page should not be negative: " + maxPage);
+        }
+        this.cacheOfConnection = cacheOfConnection;
+        this.maxPage = maxPage;
+        this.selector = Selector.open();
+        this.serverChannel = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.localAddress = serverChannel.getLocalAddress();
+        this.thread = new Thread(this::serve, "cache-advisor");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * @return the address the server listens on, with the port picked if port 0 was given
+     */
+    SocketAddress localAddress() {
+        return localAddress;
+    }
+
+    /**
+     * Starts serving connections on a new thread
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * @return number of batches answered since the server started
+     */
+    long batches() {
+        return batches;
+    }
+
+    /**
+     * @return number of requests answered since the server started
+     */
+    long requests() {
+        return requests;
+    }
+
+    /**
+     * Stops the server thread and closes all the connections
+     */
+    @Override
+    public void close() throws IOException {
+
+        closed = true;
+        selector.wakeup();
+        if (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        if (localAddress instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) localAddress).getPath());
+        }
+    }
+
+    /**
+     * @param count number of records in a batch
+     * @return number of bytes of the response to the batch
+     */
+    static int responseBytes(int count) {
+        return 4 + 8 * ((count + 63) >>> 6) + 4 * count;
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            serve(key, connection);
+                        } catch (IOException | RuntimeException e) {
+                            // a client that goes away or sends a wrong frame only loses its own connection
+                            key.cancel();
+                            connection.channel.close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                throw new IllegalStateException("Cache advisor server failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel, cacheOfConnection.get()));
+    }
+
+    /**
+     * Reads what the client sent, answers every complete batch that fits in the output buffer and writes as much as
+     * the channel takes. Reading stops while the input buffer is full, which happens when the client sends faster than
+     * it reads the responses, so a client can not make the server buffer without bound.
+     */
+    private void serve(SelectionKey key, Connection connection) throws IOException {
+
+        if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+            key.cancel();
+            connection.channel.close();
+            return;
+        }
+
+        connection.in.flip();
+        while (connection.in.remaining() >= 4) {
+            int count = connection.in.getInt(connection.in.position());
+            if (count <= 0 || count > MAX_BATCH) {
+                throw new IllegalArgumentException("Wrong number of records in a batch: " + count);
+            }
+            if (connection.in.remaining() < 4 + 8 * count || connection.out.remaining() < responseBytes(count)) {
+                break;
+            }
+            connection.in.getInt();
+            answer(connection, count);
+        }
+        connection.in.compact();
+
+        connection.out.flip();
+        connection.channel.write(connection.out);
+        boolean pendingOutput = connection.out.hasRemaining();
+        connection.out.compact();
+
+        key.interestOps((connection.in.hasRemaining() ? SelectionKey.OP_READ : 0) | (pendingOutput ? SelectionKey.OP_WRITE : 0));
+    }
+
+    private void answer(Connection connection, int count) {
+
+        ByteBuffer in = connection.in;
+        CachePolicy cache = connection.cache;
+        long[] hitBitmap = connection.hitBitmap;
+        int[] evictedPages = connection.evictedPages;
+        for (int j = 0; j < count; j ++) {
+            int page = in.getInt();
+            int hPrediction = in.getInt();
+            if (page < 0) {
+                throw new IllegalArgumentException("Negative page: " + page);
+            }
+            if (page > maxPage) {
+                throw new IllegalArgumentException("Page larger than " + maxPage + ": " + page);
+            }
+            boolean hit = cache.access(page, hPrediction);
+            CachePolicy.setHitBit(hitBitmap, j, hit);
+            evictedPages[j] = hit ? -1 : cache.lastEvicted();
+        }
+
+        ByteBuffer out = connection.out;
+        out.putInt(count);
+        for (int w = 0; w < (count + 63) >>> 6; w ++) {
+            out.putLong(hitBitmap[w]);
+        }
+        for (int j = 0; j < count; j ++) {
+            out.putInt(evictedPages[j]);
+        }
+        batches ++;
+        requests += count;
+    }
+
+    /**
+     * Runs the server until the process is stopped
+     * @param args port (or path of a Unix domain socket), policy (lru, blindOracle or combined), cache size k, largest page and threshold of combined (default 0.1)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length < 4) {
+            System.out.println("Usage: java CacheAdvisorServer <port | socket path> <lru | blindOracle | combined> <k> <maxPage> [threshold]");
+            return;
+        }
+
+        SocketAddress address = args[0].chars().allMatch(Character::isDigit)
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))
+                : UnixDomainSocketAddress.of(Path.of(args[0]));
+        String policy = args[1];
+        int k = Integer.parseInt(args[2]);
+        int maxPage = Integer.parseInt(args[3]);
+        double threshold = args.length > 4 ? Double.parseDouble(args[4]) : 0.1;
+        Supplier<CachePolicy> cacheOfConnection;
+        if (policy.equals("lru")) {
+            cacheOfConnection = () -> new LRUCache(k);
+        } else if (policy.equals("blindOracle")) {
+            cacheOfConnection = () -> new BlindOracleCache(k);
+        } else if (policy.equals("combined")) {
+            cacheOfConnection = () -> new CombinedCache(k, threshold);
+        } else {
+            throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+
+        CacheAdvisorServer server = new CacheAdvisorServer(address, cacheOfConnection, maxPage);
+        server.start();
+        System.out.println("Listening on " + server.localAddress());
+        server.thread.join();
+    }
+}
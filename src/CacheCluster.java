@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntFunction;
+
+/**
+ * A cluster of cache nodes, each running its own cache on the requests routed to it
+ * <p>
+ * Pages are assigned to nodes by consistent hashing: every node has many points (virtual nodes) on a ring of 64-bit
+ * hash values, and a page goes to the node of the first point at or after the hash of the page. Adding a node only
+ * moves the pages that fall just before its points, all of them to the new node.
+ * <p>
+ * When a request sequence is run, every node is a thread with its own CachePolicy. The calling thread routes the
+ * requests in blocks through a bounded queue to every node, and a node hands every block back through a second
+ * bounded queue when it is done, so the router waits when a node falls behind and no block is allocated after the start.
+ * A node gets the H predictions of the whole request sequence, which keep their order on the requests routed to it.
+ */
+final class CacheCluster {
+
+    private final int numOfNodes;
+    private final long seed;
+    // sorted hash values of the points on the ring, and the node of every point
+    private final long[] ringPoints;
+    private final int[] nodeOfRingPoint;
+
+    /**
+     * Page faults and load of every node after a run
+     */
+    static final class Result {
+
+        final long[] requestsOfNode;
+        final long[] pageFaultsOfNode;
+
+        private Result(long[] requestsOfNode, long[] pageFaultsOfNode) {
+            this.requestsOfNode = requestsOfNode;
+            this.pageFaultsOfNode = pageFaultsOfNode;
+        }
+
+        long totalRequests() {
+            return Arrays.stream(requestsOfNode).sum();
+        }
+
+        long totalPageFaults() {
+            return Arrays.stream(pageFaultsOfNode).sum();
+        }
+
+        /**
+         * @return requests of the busiest node over the average requests of a node, 1 when the load is even
+         */
+        double loadSkew() {
+            return skew(requestsOfNode);
+        }
+
+        /**
+         * @return page faults of the node with the most page faults over the average page faults of a node
+         */
+        double pageFaultSkew() {
+            return skew(pageFaultsOfNode);
+        }
+
+        private static double skew(long[] values) {
+            double average = (double) Arrays.stream(values).sum() / values.length;
+            return average == 0 ? 1 : Arrays.stream(values).max().getAsLong() / average;
+        }
+
+        @Override
+        public String toString() {
+            return "requests " + Arrays.toString(requestsOfNode) + ", page faults " + Arrays.toString(pageFaultsOfNode)
+                    + ", total page faults " + totalPageFaults() + String.format(", load skew %.2f, page fault skew %.2f", loadSkew(), pageFaultSkew());
+        }
+    }
+
+    /**
+     * A block of requests routed to a node
+     */
+    private static final class Block {
+
+        private final int[] pages;
+        private final int[] hPredictions;
+        // -1 marks the end of the requests
+        private int size;
+
+        private Block(int capacity) {
+            pages = new int[capacity];
+            hPredictions = new int[capacity];
+        }
+    }
+
+    /**
+     * @param numOfNodes number of nodes
+     * @param virtualNodesPerNode points of every node on the ring, more points spread the pages more evenly
+     * @param seed seed of the hash function, the same seed puts the pages on the same nodes
+     */
+    CacheCluster(int numOfNodes, int virtualNodesPerNode, long seed) {
+
+        this.numOfNodes = numOfNodes;
+        int numOfPoints = numOfNodes * virtualNodesPerNode;
+
+        // the points of a node do not depend on the number of nodes, so adding a node keeps the points of the others
+        long[][] points = new long[numOfPoints][];
+        for (int node = 0; node < numOfNodes; node ++) {
+            for (int v = 0; v < virtualNodesPerNode; v ++) {
+                points[node * virtualNodesPerNode + v] = new long[] {SplitMix.mix(seed ^ SplitMix.mix(((long) node << 32) | v)), node};
+            }
+        }
+        Arrays.sort(points, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+
+        ringPoints = new long[numOfPoints];
+        nodeOfRingPoint = new int[numOfPoints];
+        for (int i = 0; i < numOfPoints; i ++) {
+            ringPoints[i] = points[i][0];
+            nodeOfRingPoint[i] = (int) points[i][1];
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * @param page a page
+     * @return the node the page is assigned to
+     */
+    int nodeOf(int page) {
+
+        long hash = SplitMix.mix(seed + page);
+        // binary search for the first point at or after the hash, going back to the first point after the last one
+        int low = 0;
+        int high = ringPoints.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(ringPoints[middle], hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return nodeOfRingPoint[low == ringPoints.length ? 0 : low];
+    }
+
+    int numOfNodes() {
+        return numOfNodes;
+    }
+
+    /**
+     * Runs a request sequence on the cluster, every node on its own thread
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values for the page requests, can be null for caches that do not use predictions
+     * @param cacheOfNode creates the (empty) cache of every node
+     * @param blockSize number of requests in a block sent to a node
+     * @param queueCapacity number of blocks of every node, the router waits when all of them are queued at the node
+     * @return page faults and requests of every node
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a node
+     */
+    Result run(int[] requestSequence, int[] hPredictions, IntFunction<CachePolicy> cacheOfNode, int blockSize, int queueCapacity)
+            throws InterruptedException {
+
+        long[] requestsOfNode = new long[numOfNodes];
+        long[] pageFaultsOfNode = new long[numOfNodes];
+        RuntimeException[] failureOfNode = new RuntimeException[numOfNodes];
+
+        // blocks go to a node through its work queue and come back through its free queue
+        List<BlockingQueue<Block>> workQueues = new ArrayList<>(numOfNodes);
+        List<BlockingQueue<Block>> freeQueues = new ArrayList<>(numOfNodes);
+        Thread[] nodeThreads = new Thread[numOfNodes];
+
+        for (int node = 0; node < numOfNodes; node ++) {
+            workQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+            freeQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+            for (int b = 0; b < queueCapacity; b ++) {
+                freeQueues.get(node).add(new Block(blockSize));
+            }
+
+            int thisNode = node;
+            CachePolicy cache = cacheOfNode.apply(node);
+            nodeThreads[node] = new Thread(() -> {
+                try {
+                    while (true) {
+                        Block block = workQueues.get(thisNode).take();
+                        if (block.size < 0) {
+                            break;
+                        }
+                        // after a failure the node keeps taking blocks, so that the router does not wait for it forever
+                        if (failureOfNode[thisNode] == null) {
+                            try {
+                                pageFaultsOfNode[thisNode] += cache.accessBatch(block.pages, block.hPredictions, 0, block.size, null);
+                                requestsOfNode[thisNode] += block.size;
+                            } catch (RuntimeException e) {
+                                failureOfNode[thisNode] = e;
+                            }
+                        }
+                        freeQueues.get(thisNode).put(block);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "cache-node-" + node);
+            nodeThreads[node].start();
+        }
+
+        try {
+            // the block being filled for every node
+            Block[] openBlock = new Block[numOfNodes];
+            for (int node = 0; node < numOfNodes; node ++) {
+                openBlock[node] = freeQueues.get(node).take();
+                openBlock[node].size = 0;
+            }
+
+            for (int i = 0; i < requestSequence.length; i ++) {
+                int node = nodeOf(requestSequence[i]);
+                Block block = openBlock[node];
+                block.pages[block.size] = requestSequence[i];
+                block.hPredictions[block.size ++] = hPredictions == null ? 0 : hPredictions[i];
+                if (block.size == blockSize) {
+                    workQueues.get(node).put(block);
+                    openBlock[node] = freeQueues.get(node).take();
+                    openBlock[node].size = 0;
+                }
+            }
+
+            // the last blocks, then a block of size -1 to stop every node
+            for (int node = 0; node < numOfNodes; node ++) {
+                if (openBlock[node].size > 0) {
+                    workQueues.get(node).put(openBlock[node]);
+                    openBlock[node] = freeQueues.get(node).take();
+                }
+                openBlock[node].size = -1;
+                workQueues.get(node).put(openBlock[node]);
+            }
+            for (Thread nodeThread : nodeThreads) {
+                nodeThread.join();
+            }
+        } finally {
+            for (Thread nodeThread : nodeThreads) {
+                nodeThread.interrupt();
+            }
+        }
+
+        for (int node = 0; node < numOfNodes; node ++) {
+            if (failureOfNode[node] != null) {
+                throw new IllegalStateException("Node " + node + " failed", failureOfNode[node]);
+            }
+        }
+        return new Result(requestsOfNode, pageFaultsOfNode);
+    }
+}
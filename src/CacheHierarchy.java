@@ -0,0 +1,231 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Two tiers of caches: a small L1 in front of a larger L2, each with its own policy (any CachePolicy)
+ * <p>
+ * Every request goes to L1 first. A request that misses in L1 goes to L2, and a request that misses in both is a page
+ * fault of the hierarchy (the page comes from the backing store). The tiers are either:
+ * <ul>
+ *     <li>inclusive: a page in L1 is also in L2. The page is put into both tiers on a miss in L1, and when L2 evicts
+ *     a page, the page is also removed from L1 (back-invalidation)</li>
+ *     <li>exclusive: a page is in at most one tier. A page found in L2 moves up to L1, and the page that L1 evicts
+ *     moves down to L2 (with its latest H prediction value), so the 2 tiers together hold up to size(L1) + size(L2) pages.
+ *     A request that misses in L1 is counted by L2 with countRequest, and the pages moving down are put into L2 with
+ *     insert, so the page faults of L2 (and the switches of a CombinedCache L2) come from the requests only</li>
+ * </ul>
+ * The tier faults are counted from the hits and misses of the requests, so the k page faults that CombinedCache adds
+ * for every switch are not part of them (they are still in pageFaults() of the CombinedCache). A switch of a
+ * CombinedCache changes the pages of its tier without going through the other tier, so after a switch the tiers are
+ * made to agree again: in inclusive mode the pages of L1 that are no longer in L2 (or that a switch of L1 brought in
+ * without them being in L2) are removed from L1, and in exclusive mode the pages that are in both tiers are removed
+ * from L2. Only the pages the switch brought in or took out are looked at.
+ */
+final class CacheHierarchy {
+
+    private final CachePolicy l1;
+    private final CachePolicy l2;
+    private final boolean inclusive;
+
+    // latest H prediction value of every page, given to L2 when a page evicted from L1 moves down in exclusive mode
+    private int[] latestHPrediction = new int[16];
+
+    private long requests;
+    private long l1Misses;
+    private long l2Misses;
+
+    /**
+     * @param l1 the first tier, every request goes to it
+     * @param l2 the second tier, only the requests that miss in L1 go to it
+     * @param inclusive true for inclusive tiers, false for exclusive tiers
+     */
+    CacheHierarchy(CachePolicy l1, CachePolicy l2, boolean inclusive) {
+        this.l1 = l1;
+        this.l2 = l2;
+        this.inclusive = inclusive;
+    }
+
+    /**
+     * Processes one page request
+     * @param page the page requested
+     * @param hPrediction predicted H value of this request
+     * @return 1 if the page was found in L1, 2 if it was found in L2, 0 if it was a page fault of the hierarchy
+     */
+    int access(int page, int hPrediction) {
+
+        requests ++;
+        if (!inclusive) {
+            if (page >= latestHPrediction.length) {
+                latestHPrediction = Arrays.copyOf(latestHPrediction, Math.max(page + 1, latestHPrediction.length * 2));
+            }
+            latestHPrediction[page] = hPrediction;
+        }
+
+        int l1SwitchesBefore = switchesOf(l1);
+        boolean l1Hit = l1.access(page, hPrediction);
+        int evictedFromL1 = l1.lastEvicted();
+        boolean l1Switched = switchesOf(l1) != l1SwitchesBefore;
+
+        int found = 1;
+        if (!l1Hit) {
+            l1Misses ++;
+            int l2SwitchesBefore = switchesOf(l2);
+            boolean l2Hit;
+            if (inclusive) {
+                l2Hit = l2.access(page, hPrediction);
+                // the page evicted from L2 cannot stay in L1
+                int evictedFromL2 = l2.lastEvicted();
+                if (evictedFromL2 != -1 && evictedFromL2 != page) {
+                    l1.remove(evictedFromL2);
+                }
+            } else {
+                // the request is counted by L2, then the page moves up from L2 to L1 and the page evicted from L1
+                // moves down to L2 (unless a switch of L1 brought it back)
+                l2Hit = l2.countRequest(page);
+                l2.remove(page);
+                if (evictedFromL1 != -1 && !l1.contains(evictedFromL1)) {
+                    l2.insert(evictedFromL1, latestHPrediction[evictedFromL1]);
+                }
+            }
+            if (!l2Hit) {
+                l2Misses ++;
+            }
+            if (switchesOf(l2) != l2SwitchesBefore) {
+                afterSwitchOfL2();
+            }
+            found = l2Hit ? 2 : 0;
+        }
+
+        if (l1Switched) {
+            afterSwitchOfL1();
+        }
+        return found;
+    }
+
+    /**
+     * @return number of switches of a CombinedCache, 0 for the other policies
+     */
+    private static int switchesOf(CachePolicy policy) {
+        return policy instanceof CombinedCache ? ((CombinedCache) policy).switches() : 0;
+    }
+
+    /**
+     * Makes the tiers agree again after a switch of a CombinedCache L1
+     */
+    private void afterSwitchOfL1() {
+        for (int page : ((CombinedCache) l1).pagesSwitchedIn()) {
+            if (!inclusive) {
+                l2.remove(page);
+            } else if (!l2.contains(page)) {
+                l1.remove(page);
+            }
+        }
+    }
+
+    /**
+     * Makes the tiers agree again after a switch of a CombinedCache L2
+     */
+    private void afterSwitchOfL2() {
+        CombinedCache combined = (CombinedCache) l2;
+        if (inclusive) {
+            for (int page : combined.pagesSwitchedOut()) {
+                l1.remove(page);
+            }
+        } else {
+            for (int page : combined.pagesSwitchedIn()) {
+                if (l1.contains(page)) {
+                    l2.remove(page);
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes a part of a request sequence
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values for the page requests
+     * @param offset index of the first request to process
+     * @param len number of requests to process
+     */
+    void accessBatch(int[] requestSequence, int[] hPredictions, int offset, int len) {
+        for (int i = offset; i < offset + len; i ++) {
+            access(requestSequence[i], hPredictions[i]);
+        }
+    }
+
+    /**
+     * Runs many hierarchies (for example different tier sizes and policies) on the same request sequence in a single
+     * pass, so the request sequence and the H predictions are read only once for all of them
+     * @param hierarchies the hierarchies to run
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values for the page requests
+     */
+    static void runAll(List<CacheHierarchy> hierarchies, int[] requestSequence, int[] hPredictions) {
+
+        CacheHierarchy[] hierarchiesArray = hierarchies.toArray(new CacheHierarchy[0]);
+        for (int i = 0; i < requestSequence.length; i ++) {
+            int page = requestSequence[i];
+            int hPrediction = hPredictions[i];
+            for (CacheHierarchy hierarchy : hierarchiesArray) {
+                hierarchy.access(page, hPrediction);
+            }
+        }
+    }
+
+    /**
+     * Empties both tiers and sets the counts to 0
+     */
+    void reset() {
+        l1.reset();
+        l2.reset();
+        requests = 0;
+        l1Misses = 0;
+        l2Misses = 0;
+    }
+
+    /**
+     * @return number of requests processed
+     */
+    long requests() {
+        return requests;
+    }
+
+    /**
+     * @return number of requests that were not found in L1 (and went to L2)
+     */
+    long l1Misses() {
+        return l1Misses;
+    }
+
+    /**
+     * @return number of requests that were found neither in L1 nor in L2 (page faults of the hierarchy)
+     */
+    long l2Misses() {
+        return l2Misses;
+    }
+
+    /**
+     * @return number of requests that were found in L2
+     */
+    long l2Hits() {
+        return l1Misses - l2Misses;
+    }
+
+    CachePolicy getL1() {
+        return l1;
+    }
+
+    CachePolicy getL2() {
+        return l2;
+    }
+
+    boolean isInclusive() {
+        return inclusive;
+    }
+
+    @Override
+    public String toString() {
+        return (inclusive ? "inclusive" : "exclusive") + " L1 " + l1.getClass().getSimpleName() + ", L2 " + l2.getClass().getSimpleName()
+                + ": L1 misses " + l1Misses + ", L2 misses " + l2Misses + " (of " + requests + " requests)";
+    }
+}
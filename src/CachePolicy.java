@@ -0,0 +1,91 @@
+/**
+ * A cache that keeps its state between page requests, so that requests can be given one by one or in blocks
+ * <p>
+ * The methods in Paging run a whole request sequence at once. A CachePolicy runs the same algorithms, but a driver
+ * can feed it a block of requests per call and keep going with the next block. Pages should be non-negative numbers,
+ * ideally dense ids in [1, N] (see TraceIngester), because the caches keep arrays indexed by the page.
+ */
+interface CachePolicy {
+
+    /**
+     * Processes one page request
+     * @param page the page requested
+     * @param hPrediction predicted H value of this request (ignored by algorithms that do not use predictions)
+     * @return true if the page was in the cache (hit), false if it was a page fault
+     */
+    boolean access(int page, int hPrediction);
+
+    /**
+     * Processes a block of page requests
+     * @param pages page requests
+     * @param hPredictions predicted H values for the page requests, can be null for algorithms that do not use predictions
+     * @param offset index of the first request of the block
+     * @param len number of requests in the block
+     * @param hitBitmap if not null, bit j (bit j % 64 of hitBitmap[j / 64]) is set to 1 if request offset + j was a hit and to 0 if it was a page fault
+     * @return number of page faults in the block
+     */
+    int accessBatch(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap);
+
+    /**
+     * @param page a page
+     * @return whether the page is in the cache
+     */
+    boolean contains(int page);
+
+    /**
+     * Puts a page into the cache without counting a page fault, for example a page that another cache evicted and
+     * that moves down into this one (see CacheHierarchy). The page goes where a request to it would put it and evicts
+     * the same page (given by lastEvicted), but it is not a request: the page faults do not change, and a
+     * CombinedCache does not count it when deciding whether to switch.
+     * @param page the page to put into the cache
+     * @param hPrediction predicted H value of the page (ignored by algorithms that do not use predictions)
+     * @return true if the page was already in the cache
+     */
+    boolean insert(int page, int hPrediction);
+
+    /**
+     * Counts a request to a page as a hit or a page fault without changing the pages in the cache, for a cache that
+     * gets its pages from elsewhere, such as an exclusive L2 that only gets the pages L1 evicts (see CacheHierarchy).
+     * A CombinedCache counts it in both of its caches and switches if the page faults say so.
+     * @param page the page requested
+     * @return true if the page was in the cache (hit), false if it was a page fault
+     */
+    boolean countRequest(int page);
+
+    /**
+     * Takes a page out of the cache without counting a page fault, for example when another cache decides that the
+     * page should go (see CacheHierarchy)
+     * @param page the page to remove
+     * @return true if the page was in the cache
+     */
+    boolean remove(int page);
+
+    /**
+     * @return the page that was evicted by the last request, or -1 if it did not evict any page
+     */
+    int lastEvicted();
+
+    /**
+     * @return number of page faults since the cache was created or reset
+     */
+    long pageFaults();
+
+    /**
+     * Empties the cache and sets the page faults to 0, so the same instance can run another request sequence
+     */
+    void reset();
+
+    /**
+     * Sets or clears the bit of a request in a hit bitmap
+     * @param hitBitmap the bitmap, bit j is bit j % 64 of hitBitmap[j / 64]
+     * @param j index of the request in its block
+     * @param hit whether the request was a hit
+     */
+    static void setHitBit(long[] hitBitmap, int j, boolean hit) {
+        if (hit) {
+            hitBitmap[j >>> 6] |= 1L << j;
+        } else {
+            hitBitmap[j >>> 6] &= ~(1L << j);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A request sequence with every run of back-to-back requests to the same page collapsed into one request
+ * <p>
+ * A request to the page that was just requested is a hit in every cache, and it does not change which page LRU,
+ * BlindOracle or combinedAlg evict next: the page is already the most recently used, its H prediction is replaced by
+ * the new one, and no page faults are counted, so Combined does not switch either. So a run of r requests to the same
+ * page can be run as one request with the H prediction of the last request of the run, and the r - 1 requests left out
+ * are all hits. The page faults on the collapsed sequence are the page faults on the whole sequence, and the hits are
+ * the original length minus the page faults.
+ * <p>
+ * This holds for every CachePolicy here (LRUCache, BlindOracleCache, CombinedCache, LazyCombinedCache, MarkerCache),
+ * but not for ARC and LIRS, where the second request to a page moves it to the list of frequently used pages.
+ */
+final class CollapsedTrace {
+
+    /**
+     * One request per run, the page of the run
+     */
+    final int[] pages;
+    /**
+     * The H prediction of the last request of every run, or null if the sequence had no predictions
+     */
+    final int[] hPredictions;
+    /**
+     * Number of requests in every run, at least 1
+     */
+    final int[] repeats;
+
+    private final long originalLength;
+
+    private CollapsedTrace(int[] pages, int[] hPredictions, int[] repeats, long originalLength) {
+        this.pages = pages;
+        this.hPredictions = hPredictions;
+        this.repeats = repeats;
+        this.originalLength = originalLength;
+    }
+
+    /**
+     * Collapses the runs of a request sequence
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values of the requests, or null
+     * @return the collapsed sequence
+     */
+    static CollapsedTrace collapse(int[] requestSequence, int[] hPredictions) {
+
+        int n = requestSequence.length;
+        int[] pages = new int[n];
+        int[] lastHPredictions = hPredictions == null ? null : new int[n];
+        int[] repeats = new int[n];
+        int runs = 0;
+        for (int i = 0; i < n; i ++) {
+            if (runs == 0 || requestSequence[i] != pages[runs - 1]) {
+                pages[runs ++] = requestSequence[i];
+            }
+            repeats[runs - 1] ++;
+            if (lastHPredictions != null) {
+                lastHPredictions[runs - 1] = hPredictions[i];
+            }
+        }
+        return new CollapsedTrace(Arrays.copyOf(pages, runs),
+                lastHPredictions == null ? null : Arrays.copyOf(lastHPredictions, runs), Arrays.copyOf(repeats, runs), n);
+    }
+
+    /**
+     * Collapses the runs of a request sequence as it is streamed, without keeping the whole sequence in memory
+     * @param source source of the page requests
+     * @return the collapsed sequence, without predictions
+     * @throws IOException if the requests can not be read
+     */
+    static CollapsedTrace collapse(PipelinedSimulation.RequestSource source) throws IOException {
+
+        int[][] pagesAndRepeats = {new int[1024], new int[1024]};
+        int[] runs = {0};
+        long[] originalLength = {0};
+        source.forEach(page -> {
+            originalLength[0] ++;
+            int run = runs[0];
+            if (run > 0 && pagesAndRepeats[0][run - 1] == page && pagesAndRepeats[1][run - 1] < Integer.MAX_VALUE) {
+                pagesAndRepeats[1][run - 1] ++;
+                return;
+            }
+            if (run == pagesAndRepeats[0].length) {
+                pagesAndRepeats[0] = Arrays.copyOf(pagesAndRepeats[0], run * 2);
+                pagesAndRepeats[1] = Arrays.copyOf(pagesAndRepeats[1], run * 2);
+            }
+            pagesAndRepeats[0][run] = page;
+            pagesAndRepeats[1][run] = 1;
+            runs[0] ++;
+        });
+        return new CollapsedTrace(Arrays.copyOf(pagesAndRepeats[0], runs[0]), null,
+                Arrays.copyOf(pagesAndRepeats[1], runs[0]), originalLength[0]);
+    }
+
+    /**
+     * @return number of requests in the collapsed sequence (the number of runs)
+     */
+    int length() {
+        return pages.length;
+    }
+
+    /**
+     * @return number of requests in the sequence before it was collapsed
+     */
+    long originalLength() {
+        return originalLength;
+    }
+
+    /**
+     * Runs the collapsed sequence on a cache
+     * @param policy the cache, which keeps its state so the next trace can follow
+     * @return number of page faults, the same as on the sequence before it was collapsed
+     */
+    long pageFaults(CachePolicy policy) {
+        return policy.accessBatch(pages, hPredictions, 0, pages.length, null);
+    }
+
+    /**
+     * @param pageFaults number of page faults on the sequence
+     * @return number of hits on the sequence before it was collapsed
+     */
+    long hits(long pageFaults) {
+        return originalLength - pageFaults;
+    }
+
+    /**
+     * @return the sequence before it was collapsed
+     */
+    int[] expand() {
+
+        if (originalLength > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Sequence of " + originalLength + " requests does not fit in an array");
+        }
+        int[] requestSequence = new int[(int) originalLength];
+        int next = 0;
+        for (int run = 0; run < pages.length; run ++) {
+            Arrays.fill(requestSequence, next, next + repeats[run], pages[run]);
+            next += repeats[run];
+        }
+        return requestSequence;
+    }
+}
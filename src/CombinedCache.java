@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Combined cache that keeps its state between requests
+ * <p>
+ * Runs an LRUCache and a BlindOracleCache side by side and serves every request from the one in use, switching
+ * between them in the same way as combinedAlg in Paging (including the k page faults added for every switch).
+ */
+final class CombinedCache implements CachePolicy {
+
+    private final int k;
+    private final double threshold;
+
+    private final LRUCache lruCache;
+    private final BlindOracleCache blindOracleCache;
+
+    // starting with LRU initially
+    private boolean usingLRU = true;
+
+    private long pageFaults;
+    private int lastEvicted = -1;
+    private int switchesFromLRUToBlindOracle;
+    private int switchesFromBlindOracleToLRU;
+
+    /**
+     * @param k cache capacity
+     * @param threshold helps in deciding when to switch between LRU and BlindOracle algorithms
+     */
+    CombinedCache(int k, double threshold) {
+        this(k, threshold, 16);
+    }
+
+    /**
+     * @param k cache capacity
+     * @param threshold helps in deciding when to switch between LRU and BlindOracle algorithms
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    CombinedCache(int k, double threshold, int expectedMaxPage) {
+        this(k, threshold, new LRUCache(k, expectedMaxPage), new BlindOracleCache(k, expectedMaxPage));
+    }
+
+    private CombinedCache(int k, double threshold, LRUCache lruCache, BlindOracleCache blindOracleCache) {
+        this.k = k;
+        this.threshold = threshold;
+        this.lruCache = lruCache;
+        this.blindOracleCache = blindOracleCache;
+    }
+
+    @Override
+    public boolean access(int page, int hPrediction) {
+
+        boolean lruHit = lruCache.access(page, hPrediction);
+        boolean blindOracleHit = blindOracleCache.access(page, hPrediction);
+
+        boolean hit = usingLRU ? lruHit : blindOracleHit;
+        lastEvicted = usingLRU ? lruCache.lastEvicted() : blindOracleCache.lastEvicted();
+        if (!hit) {
+            pageFaults ++;
+        }
+        switchIfNeeded();
+        return hit;
+    }
+
+    /**
+     * Counts the request in both LRU and BlindOracle without changing their pages, and switches if needed
+     */
+    @Override
+    public boolean countRequest(int page) {
+
+        boolean lruHit = lruCache.countRequest(page);
+        boolean blindOracleHit = blindOracleCache.countRequest(page);
+
+        boolean hit = usingLRU ? lruHit : blindOracleHit;
+        lastEvicted = -1;
+        if (!hit) {
+            pageFaults ++;
+        }
+        switchIfNeeded();
+        return hit;
+    }
+
+    private void switchIfNeeded() {
+
+        // checking if it has to switch and then switch if necessary
+        // add k to the page faults when there is a switch
+        long lruPageFaults = lruCache.pageFaults();
+        long blindOraclePageFaults = blindOracleCache.pageFaults();
+        if (usingLRU && ((double) lruPageFaults) > (1 + threshold) * ((double) blindOraclePageFaults)) {
+            pageFaults += k;
+            usingLRU = false;
+            switchesFromLRUToBlindOracle ++;
+        } else if (!usingLRU && ((double) blindOraclePageFaults) > (1 + threshold) * ((double) lruPageFaults)) {
+            pageFaults += k;
+            usingLRU = true;
+            switchesFromBlindOracleToLRU ++;
+        }
+    }
+
+    @Override
+    public int accessBatch(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap) {
+
+        long pageFaultsBeforeBatch = pageFaults;
+        for (int j = 0; j < len; j ++) {
+            boolean hit = access(pages[offset + j], hPredictions[offset + j]);
+            if (hitBitmap != null) {
+                CachePolicy.setHitBit(hitBitmap, j, hit);
+            }
+        }
+        // includes the k page faults of the switches made during the block
+        return (int) (pageFaults - pageFaultsBeforeBatch);
+    }
+
+    /**
+     * @param page a page
+     * @return whether the page is in the cache in use
+     */
+    @Override
+    public boolean contains(int page) {
+        return usingLRU ? lruCache.contains(page) : blindOracleCache.contains(page);
+    }
+
+    /**
+     * Puts the page into both LRU and BlindOracle without counting a page fault in either of them, so the page faults
+     * that decide the switches do not change and there is no switch
+     * @param page the page to put into the cache
+     * @param hPrediction predicted H value of the page
+     * @return true if the page was already in the cache in use
+     */
+    @Override
+    public boolean insert(int page, int hPrediction) {
+        boolean inLRU = lruCache.insert(page, hPrediction);
+        boolean inBlindOracle = blindOracleCache.insert(page, hPrediction);
+        lastEvicted = usingLRU ? lruCache.lastEvicted() : blindOracleCache.lastEvicted();
+        return usingLRU ? inLRU : inBlindOracle;
+    }
+
+    /**
+     * Removes the page from both LRU and BlindOracle, so that it is not in the cache after a switch either
+     * @param page the page to remove
+     * @return true if the page was in the cache in use
+     */
+    @Override
+    public boolean remove(int page) {
+        boolean inLRU = lruCache.remove(page);
+        boolean inBlindOracle = blindOracleCache.remove(page);
+        return usingLRU ? inLRU : inBlindOracle;
+    }
+
+    @Override
+    public int lastEvicted() {
+        return lastEvicted;
+    }
+
+    @Override
+    public long pageFaults() {
+        return pageFaults;
+    }
+
+    @Override
+    public void reset() {
+        lruCache.reset();
+        blindOracleCache.reset();
+        usingLRU = true;
+        pageFaults = 0;
+        lastEvicted = -1;
+        switchesFromLRUToBlindOracle = 0;
+        switchesFromBlindOracleToLRU = 0;
+    }
+
+    /**
+     * @return number of switches between LRU and BlindOracle in both directions
+     */
+    int switches() {
+        return switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU;
+    }
+
+    /**
+     * @return the pages of the cache in use that the other cache does not have, right after a switch the pages that
+     * the switch brought into the cache
+     */
+    int[] pagesSwitchedIn() {
+        return usingLRU ? pagesNotIn(lruCache, blindOracleCache) : pagesNotIn(blindOracleCache, lruCache);
+    }
+
+    /**
+     * @return the pages of the cache not in use that the cache in use does not have, right after a switch the pages
+     * that the switch took out of the cache
+     */
+    int[] pagesSwitchedOut() {
+        return usingLRU ? pagesNotIn(blindOracleCache, lruCache) : pagesNotIn(lruCache, blindOracleCache);
+    }
+
+    private int[] pagesNotIn(CachePolicy from, CachePolicy other) {
+        int[] pages = new int[k];
+        int[] numOfPages = new int[1];
+        IntConsumer add = page -> {
+            if (!other.contains(page)) {
+                pages[numOfPages[0] ++] = page;
+            }
+        };
+        if (from == lruCache) {
+            lruCache.forEachPage(add);
+        } else {
+            blindOracleCache.forEachPage(add);
+        }
+        return Arrays.copyOf(pages, numOfPages[0]);
+    }
+
+    /**
+     * @return whether the requests are currently served by LRU
+     */
+    boolean isUsingLRU() {
+        return usingLRU;
+    }
+
+    int getSwitchesFromLRUToBlindOracle() {
+        return switchesFromLRUToBlindOracle;
+    }
+
+    int getSwitchesFromBlindOracleToLRU() {
+        return switchesFromBlindOracleToLRU;
+    }
+
+    /**
+     * @return number of bytes writeSnapshot writes
+     */
+    int snapshotBytes() {
+        return 4 * 4 + 8 * 2 + lruCache.snapshotBytes() + blindOracleCache.snapshotBytes();
+    }
+
+    /**
+     * Writes the capacity, the threshold, the algorithm in use, the page faults and switches, and both caches
+     * @param out buffer to write to
+     */
+    void writeSnapshot(ByteBuffer out) {
+        out.putInt(k);
+        out.putDouble(threshold);
+        out.putInt(usingLRU ? 1 : 0);
+        out.putLong(pageFaults);
+        out.putInt(switchesFromLRUToBlindOracle);
+        out.putInt(switchesFromBlindOracleToLRU);
+        lruCache.writeSnapshot(out);
+        blindOracleCache.writeSnapshot(out);
+    }
+
+    /**
+     * Reads a cache written by writeSnapshot, which makes the same decisions as the cache that was written
+     * @param in buffer to read from
+     * @return the cache
+     * @throws IOException if the buffer has a cache that writeSnapshot could not have written
+     */
+    static CombinedCache readSnapshot(ByteBuffer in) throws IOException {
+
+        int k = in.getInt();
+        double threshold = in.getDouble();
+        int usingLRU = in.getInt();
+        long pageFaults = in.getLong();
+        int switchesFromLRUToBlindOracle = in.getInt();
+        int switchesFromBlindOracleToLRU = in.getInt();
+        if (!(threshold >= 0) || (usingLRU != 0 && usingLRU != 1) || pageFaults < 0 || switchesFromLRUToBlindOracle < 0 || switchesFromBlindOracleToLRU < 0) {
+            throw new IOException("Combined snapshot has threshold " + threshold + ", algorithm " + usingLRU + ", " + pageFaults
+                    + " page faults and " + switchesFromLRUToBlindOracle + " and " + switchesFromBlindOracleToLRU + " switches");
+        }
+        CombinedCache cache = new CombinedCache(k, threshold, LRUCache.readSnapshot(in), BlindOracleCache.readSnapshot(in));
+        cache.usingLRU = usingLRU == 1;
+        cache.pageFaults = pageFaults;
+        cache.switchesFromLRUToBlindOracle = switchesFromLRUToBlindOracle;
+        cache.switchesFromBlindOracleToLRU = switchesFromBlindOracleToLRU;
+        return cache;
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CLOCK cache that many threads can use at once without locks
+ * <p>
+ * CLOCK keeps the pages in k frames with a reference bit each, set when the page is requested. On a page fault the hand
+ * goes round the frames, clearing the bits that are set, and the page goes into the first frame whose bit is clear. It
+ * evicts about like LRU, but a hit only sets a bit instead of moving the page to the front of a list, so hits do not
+ * need a lock. The frames, the bits and the frame of every page are atomic arrays:
+ * <ul>
+ *     <li>a hit reads the frame of the page, checks that the frame still has the page and sets its bit</li>
+ *     <li>a page fault first takes the page (sets its frame to LOADING with a compare-and-set), so only one thread loads
+ *     a page, and then takes a frame by a compare-and-set of the page in it, so only one thread replaces a page</li>
+ * </ul>
+ * The frame of a page may point to a frame that now has another page (the page was evicted while it was being
+ * loaded), which is read as a page fault, so the frame of a page is only a hint and the frames are what is in the cache.
+ * A thread that requests a page while another thread loads it counts a page fault and does not wait.
+ * <p>
+ * With one thread it is exactly CLOCK. LRU and BlindOracle have no such form, as every hit changes their order.
+ */
+final class ConcurrentClockCache {
+
+    private static final int EMPTY = -1;
+    // frame of a page that is not in the cache, and of a page that a thread is loading
+    private static final int NOT_IN_CACHE = -1;
+    private static final int LOADING = -2;
+
+    private final int k;
+    private final AtomicIntegerArray pageInFrame;
+    private final AtomicIntegerArray referenced;
+    private final AtomicIntegerArray frameOfPage;
+    private final AtomicLong hand = new AtomicLong();
+    private final LongAdder pageFaults = new LongAdder();
+
+    /**
+     * @param k cache capacity
+     * @param maxPage largest page that will be requested (the frame of every page is kept in an array)
+     */
+    ConcurrentClockCache(int k, int maxPage) {
+
+        this.k = k;
+        pageInFrame = new AtomicIntegerArray(k);
+        referenced = new AtomicIntegerArray(k);
+        frameOfPage = new AtomicIntegerArray(maxPage + 1);
+        for (int frame = 0; frame < k; frame ++) {
+            pageInFrame.set(frame, EMPTY);
+        }
+        for (int page = 0; page <= maxPage; page ++) {
+            frameOfPage.set(page, NOT_IN_CACHE);
+        }
+    }
+
+    /**
+     * Processes one page request, from any thread
+     * @param page the page requested
+     * @return true if the page was in the cache (hit), false if it was a page fault
+     */
+    boolean access(int page) {
+
+        int frame = frameOfPage.get(page);
+        if (frame >= 0 && pageInFrame.get(frame) == page) {
+            if (referenced.get(frame) == 0) {
+                referenced.set(frame, 1);
+            }
+            return true;
+        }
+
+        pageFaults.increment();
+        // another thread is loading the page, or got it first
+        if (frame == LOADING || !frameOfPage.compareAndSet(page, frame, LOADING)) {
+            return false;
+        }
+
+        while (true) {
+            int candidate = (int) (hand.getAndIncrement() % k);
+            if (referenced.get(candidate) == 1) {
+                // a second chance, the page goes at the next round if it is not requested before
+                referenced.compareAndSet(candidate, 1, 0);
+                continue;
+            }
+            int victim = pageInFrame.get(candidate);
+            if (!pageInFrame.compareAndSet(candidate, victim, page)) {
+                continue;
+            }
+            if (victim != EMPTY) {
+                // only if the frame of the victim still points here, it may be loading again elsewhere
+                frameOfPage.compareAndSet(victim, candidate, NOT_IN_CACHE);
+            }
+            referenced.set(candidate, 1);
+            frameOfPage.set(page, candidate);
+            return false;
+        }
+    }
+
+    /**
+     * @param page a page
+     * @return whether the page is in the cache
+     */
+    boolean contains(int page) {
+        int frame = frameOfPage.get(page);
+        return frame >= 0 && pageInFrame.get(frame) == page;
+    }
+
+    /**
+     * @return number of page faults of all the threads
+     */
+    long pageFaults() {
+        return pageFaults.sum();
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * Replays a request sequence from many threads at once against one shared cache, to see how the cache scales
+ * <p>
+ * The experiments run many simulations, each on its own thread with its own cache. Here T threads share one cache: the
+ * sequence is cut into blocks of BLOCK_SIZE requests and thread t replays the blocks t, t + T, t + 2T, ..., so the
+ * requests reach the cache in about the order of the sequence whatever T is. The shared cache is one of:
+ * <ul>
+ *     <li>SYNCHRONIZED: one CachePolicy of capacity k behind a single lock, so LRU and BlindOracle evict as they would on one thread</li>
+ *     <li>STRIPED: a CachePolicy with its own lock for every stripe, the pages spread over the stripes by a hash and
+ *     the capacity split between them, so threads only wait for requests to the same stripe</li>
+ *     <li>LOCK_FREE_CLOCK: a ConcurrentClockCache of capacity k, CLOCK instead of the policy, without locks</li>
+ * </ul>
+ * Every request is timed, and the latencies go into a histogram of every thread with 16 buckets per power of 2, so a
+ * percentile is within 1/16 of the latency whatever the number of requests. The Result has the throughput, the
+ * latency percentiles and the hit ratio, and scale runs the same cache with more and more threads.
+ */
+final class ConcurrentLoadDriver {
+
+    /**
+     * Number of requests a thread replays one after another
+     */
+    static final int BLOCK_SIZE = 64;
+
+    /**
+     * How the threads share the cache
+     */
+    enum Variant {
+        SYNCHRONIZED,
+        STRIPED,
+        LOCK_FREE_CLOCK
+    }
+
+    private final int[] requestSequence;
+    private final int[] hPredictions;
+    private final int maxPage;
+
+    /**
+     * Throughput, latency and hit ratio of a run
+     */
+    static final class Result {
+
+        final Variant variant;
+        final int numOfThreads;
+        final long requests;
+        final long hits;
+        final long elapsedNanos;
+        final long p50Nanos;
+        final long p99Nanos;
+        final long p999Nanos;
+        final long maxNanos;
+
+        private Result(Variant variant, int numOfThreads, long requests, long hits, long elapsedNanos, LatencyHistogram latencies) {
+            this.variant = variant;
+            this.numOfThreads = numOfThreads;
+            this.requests = requests;
+            this.hits = hits;
+            this.elapsedNanos = elapsedNanos;
+            this.p50Nanos = latencies.percentile(0.5);
+            this.p99Nanos = latencies.percentile(0.99);
+            this.p999Nanos = latencies.percentile(0.999);
+            this.maxNanos = latencies.max;
+        }
+
+        /**
+         * @return requests of all the threads per second
+         */
+        double requestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return fraction of the requests that were hits
+         */
+        double hitRatio() {
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s, %d threads: %.2f M requests/s, latency p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns, hit ratio %.4f",
+                    variant, numOfThreads, requestsPerSecond() / 1e6, p50Nanos, p99Nanos, p999Nanos, maxNanos, hitRatio());
+        }
+    }
+
+    /**
+     * Counts of latencies in buckets: below 16 ns one bucket per nanosecond, above that 16 buckets for every power of 2
+     */
+    private static final class LatencyHistogram {
+
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long total;
+        private long max;
+
+        private void record(long nanos) {
+            counts[bucket(nanos)] ++;
+            total ++;
+            max = Math.max(max, nanos);
+        }
+
+        private void add(LatencyHistogram other) {
+            for (int b = 0; b < counts.length; b ++) {
+                counts[b] += other.counts[b];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * @param quantile in (0, 1]
+         * @return the largest latency of the bucket that has the quantile, so the percentile is at most 1/16 too high
+         */
+        private long percentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int b = 0; b < counts.length; b ++) {
+                seen += counts[b];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(max, largestOf(b));
+                }
+            }
+            return 0;
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0, nanos);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long largestOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+
+    /**
+     * A cache that the threads share
+     */
+    @FunctionalInterface
+    private interface SharedCache {
+        boolean access(int page, int hPrediction);
+    }
+
+    /**
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values, can be null for policies that do not use predictions
+     */
+    ConcurrentLoadDriver(int[] requestSequence, int[] hPredictions) {
+
+        this.requestSequence = requestSequence;
+        this.hPredictions = hPredictions;
+        int max = 0;
+        for (int page : requestSequence) {
+            max = Math.max(max, page);
+        }
+        this.maxPage = max;
+    }
+
+    /**
+     * Replays the sequence once from the given number of threads against a new shared cache
+     * @param variant how the threads share the cache
+     * @param policyOfCapacity makes an empty CachePolicy of a given capacity (not used by LOCK_FREE_CLOCK)
+     * @param k total capacity of the shared cache
+     * @param numOfStripes number of stripes for STRIPED, at most k
+     * @param numOfThreads number of threads
+     * @return throughput, latencies and hit ratio
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the threads
+     */
+    Result run(Variant variant, IntFunction<CachePolicy> policyOfCapacity, int k, int numOfStripes, int numOfThreads) throws InterruptedException {
+
+        SharedCache cache = sharedCache(variant, policyOfCapacity, k, numOfStripes);
+        long[] hitsOfThread = new long[numOfThreads];
+        LatencyHistogram[] latenciesOfThread = new LatencyHistogram[numOfThreads];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] start = new long[1];
+        // the last thread to arrive starts the clock, so thread creation is not timed
+        CyclicBarrier startTogether = new CyclicBarrier(numOfThreads, () -> start[0] = System.nanoTime());
+
+        Thread[] threads = new Thread[numOfThreads];
+        for (int t = 0; t < numOfThreads; t ++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    LatencyHistogram latencies = new LatencyHistogram();
+                    long hits = 0;
+                    startTogether.await();
+                    for (int blockStart = thread * BLOCK_SIZE; blockStart < requestSequence.length; blockStart += numOfThreads * BLOCK_SIZE) {
+                        int blockEnd = Math.min(requestSequence.length, blockStart + BLOCK_SIZE);
+                        for (int i = blockStart; i < blockEnd; i ++) {
+                            long before = System.nanoTime();
+                            boolean hit = cache.access(requestSequence[i], hPredictions == null ? 0 : hPredictions[i]);
+                            latencies.record(System.nanoTime() - before);
+                            if (hit) {
+                                hits ++;
+                            }
+                        }
+                    }
+                    hitsOfThread[thread] = hits;
+                    latenciesOfThread[thread] = latencies;
+                } catch (Exception | Error e) {
+                    failure.compareAndSet(null, e);
+                    startTogether.reset();
+                }
+            }, "load-driver-" + t);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start[0];
+        if (failure.get() != null) {
+            throw new IllegalStateException("A thread of the load driver failed", failure.get());
+        }
+
+        long hits = 0;
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (int t = 0; t < numOfThreads; t ++) {
+            hits += hitsOfThread[t];
+            latencies.add(latenciesOfThread[t]);
+        }
+        return new Result(variant, numOfThreads, requestSequence.length, hits, elapsedNanos, latencies);
+    }
+
+    /**
+     * Replays the sequence with every number of threads, each time against a new shared cache
+     * @param variant how the threads share the cache
+     * @param policyOfCapacity makes an empty CachePolicy of a given capacity (not used by LOCK_FREE_CLOCK)
+     * @param k total capacity of the shared cache
+     * @param numOfStripes number of stripes for STRIPED, at most k
+     * @param numsOfThreads the numbers of threads to run with, usually 1, 2, 4, ...
+     * @return a result for every number of threads, in the same order
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the threads
+     */
+    List<Result> scale(Variant variant, IntFunction<CachePolicy> policyOfCapacity, int k, int numOfStripes, int[] numsOfThreads) throws InterruptedException {
+
+        List<Result> results = new ArrayList<>();
+        for (int numOfThreads : numsOfThreads) {
+            results.add(run(variant, policyOfCapacity, k, numOfStripes, numOfThreads));
+        }
+        return results;
+    }
+
+    private SharedCache sharedCache(Variant variant, IntFunction<CachePolicy> policyOfCapacity, int k, int numOfStripes) {
+
+        if (variant == Variant.SYNCHRONIZED) {
+            CachePolicy policy = policyOfCapacity.apply(k);
+            return (page, hPrediction) -> {
+                synchronized (policy) {
+                    return policy.access(page, hPrediction);
+                }
+            };
+        }
+
+        if (variant == Variant.STRIPED) {
+            if (numOfStripes <= 0 || numOfStripes > k) {
+                throw new IllegalArgumentException("Number of stripes should be in [1, k]");
+            }
+            // the first k % numOfStripes stripes get one more page
+            CachePolicy[] stripes = new CachePolicy[numOfStripes];
+            for (int s = 0; s < numOfStripes; s ++) {
+                stripes[s] = policyOfCapacity.apply(k / numOfStripes + (s < k % numOfStripes ? 1 : 0));
+            }
+            return (page, hPrediction) -> {
+                CachePolicy stripe = stripes[(int) Long.remainderUnsigned(SplitMix.mix(page), numOfStripes)];
+                synchronized (stripe) {
+                    return stripe.access(page, hPrediction);
+                }
+            };
+        }
+
+        ConcurrentClockCache clock = new ConcurrentClockCache(k, maxPage);
+        return (page, hPrediction) -> clock.access(page);
+    }
+}
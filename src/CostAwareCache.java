@@ -0,0 +1,319 @@
+import java.util.Arrays;
+
+/**
+ * Cache of at most k pages used by greedyDual and costAwareBlindOracle
+ * <p>
+ * Page ids are at most maxPage, so the state of a page is kept in arrays indexed by the page. The pages in the cache
+ * are in a binary heap like in BlindOracleCache, pages[0] is the page to evict next and every page knows its position:
+ * <ul>
+ *     <li>GreedyDual orders the pages by credit. A credit is L + cost when it is set and L only grows, so L is kept
+ *     apart instead of lowering the credits of all the pages when it grows, and the order only changes on a request</li>
+ *     <li>cost-aware BlindOracle orders the pages by distance to the predicted next request divided by cost, and the
+ *     order of two pages of different costs changes as the requests go on. It is a kinetic heap: every page but the
+ *     first knows the first request at which it should be above its parent, these times are in a second heap, and
+ *     the pages that are due swap with their parents before a request</li>
+ * </ul>
+ * So a request is O(log k) heap work for GreedyDual, and O(log^2 k) for every change of order for BlindOracle.
+ */
+final class CostAwareCache {
+
+    private static final int NIL = -1;
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final int k;
+    private final boolean usingHPredictions;
+
+    // pages in the heap and the position of every page in "pages", or NIL if it is not in the cache
+    private final int[] pages;
+    private int size;
+    private final int[] positionOf;
+
+    // for GreedyDual the credit, for BlindOracle the H prediction
+    private final long[] priorityOf;
+    private final int[] costOf;
+    private final int[] updatedAt;
+
+    // L of GreedyDual, the credit of the last page evicted
+    private long inflation;
+
+    // for BlindOracle: the request the order of the heap is for, the first request at which the page at every
+    // position should be above its parent (NEVER for position 0), and the positions in a min-heap by that request
+    private long now;
+    private final long[] swapAt;
+    private final int[] swaps;
+    private final int[] positionInSwaps;
+
+    // total cost of the pages in the cache
+    long costOfPages;
+
+    CostAwareCache(int k, int maxPage, boolean usingHPredictions) {
+        this.k = k;
+        this.usingHPredictions = usingHPredictions;
+        this.pages = new int[k];
+        this.positionOf = new int[maxPage + 1];
+        Arrays.fill(positionOf, NIL);
+        this.priorityOf = new long[maxPage + 1];
+        this.costOf = new int[maxPage + 1];
+        this.updatedAt = new int[maxPage + 1];
+        this.swapAt = new long[usingHPredictions ? k : 0];
+        this.swaps = new int[usingHPredictions ? k : 0];
+        this.positionInSwaps = new int[usingHPredictions ? k : 0];
+    }
+
+    boolean contains(int page) {
+        return positionOf[page] != NIL;
+    }
+
+    /**
+     * Updates the cache after the request at index i, evicting a page first if the page is not in the cache and it is full
+     */
+    void update(int i, int page, int cost, int hPrediction) {
+
+        if (usingHPredictions) {
+            advanceTo(i);
+        }
+
+        if (positionOf[page] == NIL) {
+            if (size == k) {
+                int victim = pages[0];
+                if (!usingHPredictions) {
+                    inflation = priorityOf[victim];
+                }
+                costOfPages -= costOf[victim];
+                positionOf[victim] = NIL;
+                removeLast();
+                if (size > 0) {
+                    // the last page takes the place of the victim and moves down
+                    moveTo(pages[size], 0);
+                    updateSwaps(0, siftDown(0));
+                }
+            }
+            costOf[page] = cost;
+            costOfPages += cost;
+            updatedAt[page] = i;
+            priorityOf[page] = usingHPredictions ? hPrediction : inflation + cost;
+            addLast(page);
+            updateSwaps(siftUp(size - 1), size - 1);
+            return;
+        }
+
+        updatedAt[page] = i;
+        priorityOf[page] = usingHPredictions ? hPrediction : inflation + cost;
+        int position = positionOf[page];
+        int top = siftUp(position);
+        int bottom = siftDown(top);
+        updateSwaps(top, top == position ? bottom : position);
+    }
+
+    /**
+     * @param a a page in the cache
+     * @param b another page in the cache
+     * @return whether a should be evicted before b at the current request
+     */
+    private boolean evictsBefore(int a, int b) {
+        if (usingHPredictions) {
+            return evictsBefore(a, b, now);
+        }
+        // lowest credit, and the least recently used of the pages with the lowest credit
+        return priorityOf[a] < priorityOf[b] || (priorityOf[a] == priorityOf[b] && updatedAt[a] < updatedAt[b]);
+    }
+
+    // highest distance to the predicted next request divided by the cost, then highest H prediction,
+    // then the page requested least recently, which is the order blindOracle evicts in
+    private boolean evictsBefore(int a, int b, long request) {
+        long distance = Math.max(1, priorityOf[a] - request);
+        long otherDistance = Math.max(1, priorityOf[b] - request);
+        long difference = distance * costOf[b] - otherDistance * costOf[a];
+        if (difference != 0) {
+            return difference > 0;
+        }
+        return priorityOf[a] > priorityOf[b] || (priorityOf[a] == priorityOf[b] && updatedAt[a] < updatedAt[b]);
+    }
+
+    /**
+     * Finds the first request from a given one at which a page should be evicted before another page
+     * <p>
+     * A distance goes down by 1 at every request until the predicted next request and then stays 1, so between the
+     * predicted next requests of the two pages the difference of their distances divided by cost is linear, and
+     * the request at which it changes sign is found by a division.
+     */
+    private long firstRequestEvictingBefore(int a, int b, long from) {
+        // in case of the same distance divided by cost, whether a is evicted first
+        boolean aFirstOnTies = priorityOf[a] > priorityOf[b] || (priorityOf[a] == priorityOf[b] && updatedAt[a] < updatedAt[b]);
+        long start = from;
+        while (true) {
+            // distance of a times cost of b minus distance of b times cost of a, and how it changes at every request
+            long difference = Math.max(1, priorityOf[a] - start) * costOf[b] - Math.max(1, priorityOf[b] - start) * costOf[a];
+            if (difference > 0 || (difference == 0 && aFirstOnTies)) {
+                return start;
+            }
+            long slope = 0;
+            long end = NEVER;
+            if (priorityOf[a] - 1 > start) {
+                slope -= costOf[b];
+                end = priorityOf[a] - 1;
+            }
+            if (priorityOf[b] - 1 > start) {
+                slope += costOf[a];
+                end = Math.min(end, priorityOf[b] - 1);
+            }
+            if (end == NEVER) {
+                // both distances are 1 from now on
+                return NEVER;
+            }
+            if (slope > 0) {
+                long requests = aFirstOnTies ? Math.floorDiv(-difference + slope - 1, slope) : -difference / slope + 1;
+                if (start + requests <= end) {
+                    return start + requests;
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Swaps the pages that are due with their parents, in the order of the requests they are due at, until the
+     * heap is in order for request i
+     */
+    private void advanceTo(long i) {
+        while (size > 0 && swapAt[swaps[0]] <= i) {
+            int position = swaps[0];
+            now = swapAt[position];
+            int parent = (position - 1) >>> 1;
+            int page = pages[position];
+            moveTo(pages[parent], position);
+            moveTo(page, parent);
+            updateSwaps(parent, position);
+        }
+        now = i;
+    }
+
+    private void addLast(int page) {
+        if (usingHPredictions) {
+            swapAt[size] = NEVER;
+            positionInSwaps[size] = size;
+            swaps[size] = size;
+        }
+        size ++;
+        moveTo(page, size - 1);
+    }
+
+    private void removeLast() {
+        size --;
+        if (usingHPredictions) {
+            // the last entry of the swaps heap takes the place of the entry of the last position
+            int entry = positionInSwaps[size];
+            int last = swaps[size];
+            if (entry != size) {
+                swaps[entry] = last;
+                positionInSwaps[last] = entry;
+                siftDownSwap(siftUpSwap(entry));
+            }
+        }
+    }
+
+    private int siftUp(int position) {
+        int page = pages[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!evictsBefore(page, pages[parent])) {
+                break;
+            }
+            moveTo(pages[parent], position);
+            position = parent;
+        }
+        moveTo(page, position);
+        return position;
+    }
+
+    private int siftDown(int position) {
+        int page = pages[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && evictsBefore(pages[child + 1], pages[child])) {
+                child ++;
+            }
+            if (!evictsBefore(pages[child], page)) {
+                break;
+            }
+            moveTo(pages[child], position);
+            position = child;
+        }
+        moveTo(page, position);
+        return position;
+    }
+
+    private void moveTo(int page, int position) {
+        pages[position] = page;
+        positionOf[page] = position;
+    }
+
+    /**
+     * The pages from position top down to position bottom have moved, so they and the pages below them have new
+     * parents and the requests at which they should be above them change
+     */
+    private void updateSwaps(int top, int bottom) {
+        if (!usingHPredictions) {
+            return;
+        }
+        for (int position = bottom; ; position = (position - 1) >>> 1) {
+            updateSwap(2 * position + 1);
+            updateSwap(2 * position + 2);
+            if (position == top) {
+                break;
+            }
+        }
+        updateSwap(top);
+    }
+
+    private void updateSwap(int position) {
+        if (position >= size) {
+            return;
+        }
+        long oldSwapAt = swapAt[position];
+        swapAt[position] = position == 0 ? NEVER : firstRequestEvictingBefore(pages[position], pages[(position - 1) >>> 1], now);
+        if (swapAt[position] != oldSwapAt) {
+            siftDownSwap(siftUpSwap(positionInSwaps[position]));
+        }
+    }
+
+    private int siftUpSwap(int entry) {
+        int position = swaps[entry];
+        while (entry > 0) {
+            int parent = (entry - 1) >>> 1;
+            if (swapAt[swaps[parent]] <= swapAt[position]) {
+                break;
+            }
+            swaps[entry] = swaps[parent];
+            positionInSwaps[swaps[entry]] = entry;
+            entry = parent;
+        }
+        swaps[entry] = position;
+        positionInSwaps[position] = entry;
+        return entry;
+    }
+
+    private void siftDownSwap(int entry) {
+        int position = swaps[entry];
+        while (true) {
+            int child = 2 * entry + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && swapAt[swaps[child + 1]] < swapAt[swaps[child]]) {
+                child ++;
+            }
+            if (swapAt[swaps[child]] >= swapAt[position]) {
+                break;
+            }
+            swaps[entry] = swaps[child];
+            positionInSwaps[swaps[entry]] = entry;
+            entry = child;
+        }
+        swaps[entry] = position;
+        positionInSwaps[position] = entry;
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.Arrays;
+
+/**
+ * Predicts the next gap of a page as the exponentially weighted moving average of its gaps
+ * <p>
+ * Smooths out a single long or short gap, with alpha deciding how much weight the latest gap gets.
+ */
+final class EwmaGapPredictor extends GapPredictor {
+
+    private final double alpha;
+    // average gap of every page, NaN if the page has been requested at most once
+    private double[] averageGap;
+
+    /**
+     * @param alpha weight of the latest gap, in (0, 1]
+     */
+    EwmaGapPredictor(double alpha) {
+        this(alpha, 16);
+    }
+
+    /**
+     * @param alpha weight of the latest gap, in (0, 1]
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    EwmaGapPredictor(double alpha, int expectedMaxPage) {
+        super(expectedMaxPage);
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Alpha should be in (0, 1]");
+        }
+        this.alpha = alpha;
+        averageGap = new double[expectedMaxPage + 1];
+        Arrays.fill(averageGap, Double.NaN);
+    }
+
+    @Override
+    double firstRequest(int page, int position) {
+        // the page may have been seen before a reset
+        averageGap[page] = Double.NaN;
+        return Double.NaN;
+    }
+
+    @Override
+    double nextRequest(int page, int position, int gap) {
+        // the first gap is taken as it is
+        averageGap[page] = Double.isNaN(averageGap[page]) ? gap : alpha * gap + (1 - alpha) * averageGap[page];
+        return averageGap[page];
+    }
+
+    @Override
+    void grow(int newLength) {
+        int oldLength = averageGap.length;
+        averageGap = Arrays.copyOf(averageGap, newLength);
+        Arrays.fill(averageGap, oldLength, newLength, Double.NaN);
+    }
+}
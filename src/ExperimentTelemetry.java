@@ -0,0 +1,236 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live progress and throughput of an experiment run
+ * <p>
+ * The experiment tells the telemetry when a point of a trend starts and ends, how long every trail took and how long
+ * every algorithm took on how many requests. These can be recorded from many threads at once. Every interval, a line
+ * is printed on the console and a JSON object is appended to the metrics file (one object per line) with:
+ * <ul>
+ *     <li>the current point, the points done out of the expected number of points and the estimated time left</li>
+ *     <li>the trails per second and the worker utilisation (time spent running trails over the time of all the worker threads) in the last interval</li>
+ *     <li>for every algorithm, the requests simulated, the time spent and the requests per second</li>
+ * </ul>
+ * A JSON object is also appended when a point ends, with the wall time of the point.
+ */
+final class ExperimentTelemetry implements AutoCloseable {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Requests and time spent by an algorithm
+     */
+    private static final class AlgorithmStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+
+    private final BufferedWriter metricsWriter;
+    private final int expectedPoints;
+    // threads of a parallel stream: the threads of the common pool and the thread that started the stream
+    private final int workers = ForkJoinPool.getCommonPoolParallelism() + 1;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService reporter;
+
+    // sorted by name, so that the algorithms are always reported in the same order
+    private final Map<String, AlgorithmStats> algorithms = new ConcurrentSkipListMap<>();
+    private final LongAdder trails = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    // the current point, only changed by the thread running the experiment
+    private volatile String stage = "";
+    private volatile String point = "";
+    private volatile int trailsOfPoint;
+    private volatile long trailsAtPointStart;
+    private volatile long pointStartNanos;
+    private volatile int pointsDone;
+
+    // values at the last report, to compute the rates in the last interval
+    private long trailsAtLastReport;
+    private long busyNanosAtLastReport;
+    private long lastReportNanos = startNanos;
+
+    /**
+     * @param metricsFile file to append the JSON lines to
+     * @param intervalMillis time between 2 reports, no periodic reports if it is not positive
+     * @param expectedPoints number of points the experiment will run, used for the estimated time left
+     */
+    ExperimentTelemetry(Path metricsFile, long intervalMillis, int expectedPoints) {
+
+        this.expectedPoints = expectedPoints;
+        try {
+            metricsWriter = Files.newBufferedWriter(metricsFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error when creating the metrics file", e);
+        }
+
+        if (intervalMillis > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "experiment-telemetry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            reporter = null;
+        }
+    }
+
+    /**
+     * Marks the start of a point
+     * @param stage the trend and regime, for example trend2-regime1
+     * @param point the value of the varying parameter, for example omega=50
+     * @param trailsOfPoint number of trails the point will run
+     */
+    void startPoint(String stage, String point, int trailsOfPoint) {
+        this.stage = stage;
+        this.point = point;
+        this.trailsOfPoint = trailsOfPoint;
+        this.trailsAtPointStart = trails.sum();
+        this.pointStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the current point and writes its wall time to the metrics file
+     */
+    void endPoint() {
+
+        double seconds = (double) (System.nanoTime() - pointStartNanos) / NANOS_PER_SECOND;
+        pointsDone ++;
+        writeLine(String.format(Locale.ROOT,
+                "{\"type\":\"point\",\"elapsedSeconds\":%.3f,\"stage\":%s,\"point\":%s,\"seconds\":%.3f,\"trails\":%d}",
+                elapsedSeconds(), quote(stage), quote(point), seconds, trails.sum() - trailsAtPointStart));
+    }
+
+    /**
+     * Records a finished trail
+     * @param nanos wall time of the trail
+     */
+    void recordTrail(long nanos) {
+        trails.increment();
+        busyNanos.add(nanos);
+    }
+
+    /**
+     * Records a run of an algorithm
+     * @param algorithm name of the algorithm
+     * @param requests number of requests simulated
+     * @param nanos time it took
+     */
+    void recordAlgorithm(String algorithm, long requests, long nanos) {
+        AlgorithmStats stats = algorithms.computeIfAbsent(algorithm, name -> new AlgorithmStats());
+        stats.requests.add(requests);
+        stats.nanos.add(nanos);
+    }
+
+    /**
+     * Prints the current metrics on the console and appends them to the metrics file
+     */
+    synchronized void report() {
+
+        long now = System.nanoTime();
+        long trailsNow = trails.sum();
+        long busyNanosNow = busyNanos.sum();
+        double intervalSeconds = Math.max(1e-9, (double) (now - lastReportNanos) / NANOS_PER_SECOND);
+        double trailsPerSecond = (trailsNow - trailsAtLastReport) / intervalSeconds;
+        double utilisation = (busyNanosNow - busyNanosAtLastReport) / (intervalSeconds * NANOS_PER_SECOND * workers);
+        trailsAtLastReport = trailsNow;
+        busyNanosAtLastReport = busyNanosNow;
+        lastReportNanos = now;
+
+        // the part of the current point that is done counts too
+        double progress = pointsDone;
+        if (trailsOfPoint > 0 && pointsDone < expectedPoints) {
+            progress += Math.min(1.0, (double) (trailsNow - trailsAtPointStart) / trailsOfPoint);
+        }
+        double elapsedSeconds = elapsedSeconds();
+        double etaSeconds = progress > 0 ? elapsedSeconds * Math.max(0, expectedPoints - progress) / progress : -1;
+
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                "{\"type\":\"progress\",\"elapsedSeconds\":%.3f,\"stage\":%s,\"point\":%s,\"pointsDone\":%d,\"expectedPoints\":%d,"
+                        + "\"etaSeconds\":%.1f,\"trails\":%d,\"trailsPerSecond\":%.1f,\"utilisation\":%.3f,\"algorithms\":{",
+                elapsedSeconds, quote(stage), quote(point), pointsDone, expectedPoints, etaSeconds, trailsNow, trailsPerSecond, utilisation));
+        StringBuilder console = new StringBuilder();
+        console.append(String.format(Locale.ROOT, "[telemetry] %s %s | points %d/%d | ETA %s | %.1f trails/s | utilisation %.0f%% |",
+                stage, point, pointsDone, expectedPoints, etaSeconds < 0 ? "?" : formatSeconds(etaSeconds), trailsPerSecond, 100 * utilisation));
+
+        boolean first = true;
+        for (Map.Entry<String, AlgorithmStats> entry : algorithms.entrySet()) {
+            long requests = entry.getValue().requests.sum();
+            double seconds = (double) entry.getValue().nanos.sum() / NANOS_PER_SECOND;
+            double requestsPerSecond = seconds > 0 ? requests / seconds : 0;
+            json.append(first ? "" : ",").append(String.format(Locale.ROOT,
+                    "%s:{\"requests\":%d,\"seconds\":%.3f,\"requestsPerSecond\":%.0f}", quote(entry.getKey()), requests, seconds, requestsPerSecond));
+            console.append(String.format(Locale.ROOT, " %s %.1fM req/s", entry.getKey(), requestsPerSecond / 1e6));
+            first = false;
+        }
+        json.append("}}");
+
+        writeLine(json.toString());
+        System.out.println(console);
+    }
+
+    /**
+     * Stops the periodic reports, writes a last report and closes the metrics file
+     */
+    @Override
+    public void close() {
+
+        if (reporter != null) {
+            reporter.shutdown();
+            try {
+                reporter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        report();
+        synchronized (this) {
+            try {
+                metricsWriter.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error when closing the metrics file", e);
+            }
+        }
+    }
+
+    private double elapsedSeconds() {
+        return (double) (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    }
+
+    private synchronized void writeLine(String line) {
+        try {
+            metricsWriter.write(line);
+            metricsWriter.newLine();
+            // flushed at once, so that the file can be followed while the experiment runs
+            metricsWriter.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error when writing to the metrics file", e);
+        }
+    }
+
+    private static String formatSeconds(double seconds) {
+        long total = Math.round(seconds);
+        return total >= 60 ? (total / 60) + "m" + (total % 60) + "s" : total + "s";
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.Arrays;
+
+/**
+ * Predicts the next gap of a page from how often it has been requested since it was first seen
+ * <p>
+ * A page that was requested again c times in the t requests since its first request is expected to come back every
+ * t / c requests (its average gap), so a single unusual gap changes the prediction of a frequent page only a little.
+ */
+final class FrequencyPredictor extends GapPredictor {
+
+    // position of the first request and number of requests of every page (valid only once the page has been seen)
+    private int[] firstPosition;
+    private int[] count;
+
+    FrequencyPredictor() {
+        this(16);
+    }
+
+    /**
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    FrequencyPredictor(int expectedMaxPage) {
+        super(expectedMaxPage);
+        firstPosition = new int[expectedMaxPage + 1];
+        count = new int[expectedMaxPage + 1];
+    }
+
+    @Override
+    double firstRequest(int page, int position) {
+        firstPosition[page] = position;
+        count[page] = 1;
+        return Double.NaN;
+    }
+
+    @Override
+    double nextRequest(int page, int position, int gap) {
+        count[page] ++;
+        // count - 1 gaps fit in position - firstPosition requests
+        return (double) (position - firstPosition[page]) / (count[page] - 1);
+    }
+
+    @Override
+    void grow(int newLength) {
+        firstPosition = Arrays.copyOf(firstPosition, newLength);
+        count = Arrays.copyOf(count, newLength);
+    }
+}
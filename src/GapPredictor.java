@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * Base of the predictors that guess the gap (number of requests) until the next request to a page from the gaps
+ * seen so far, the prediction is then the position of the current request plus that gap
+ */
+abstract class GapPredictor implements NextAccessPredictor {
+
+    // the position of the last request to every page, 0 if the page has not been requested yet
+    private int[] lastPosition;
+    // position of the current request (1-based, same as in the H sequence)
+    private int position;
+
+    /**
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    GapPredictor(int expectedMaxPage) {
+        lastPosition = new int[expectedMaxPage + 1];
+    }
+
+    @Override
+    public final int predict(int page) {
+
+        if (page >= lastPosition.length) {
+            int newLength = Math.max(page + 1, lastPosition.length * 2);
+            lastPosition = Arrays.copyOf(lastPosition, newLength);
+            grow(newLength);
+        }
+
+        position ++;
+        int previousPosition = lastPosition[page];
+        lastPosition[page] = position;
+
+        double gap = previousPosition == 0 ? firstRequest(page, position) : nextRequest(page, position, position - previousPosition);
+        if (Double.isNaN(gap) || gap >= NEVER - position) {
+            return NEVER;
+        }
+        // the next request is at least 1 request away
+        return position + Math.max(1, (int) Math.round(gap));
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(lastPosition, 0);
+        position = 0;
+    }
+
+    /**
+     * Called on the first request to a page
+     * @param page the page requested
+     * @param position position of the request
+     * @return predicted gap until the next request to the page, NaN if there is no guess
+     */
+    abstract double firstRequest(int page, int position);
+
+    /**
+     * Called on every later request to a page
+     * @param page the page requested
+     * @param position position of the request
+     * @param gap number of requests since the last request to the page
+     * @return predicted gap until the next request to the page, NaN if there is no guess
+     */
+    abstract double nextRequest(int page, int position, int gap);
+
+    /**
+     * Grows the per-page arrays of the predictor
+     * @param newLength new length of the arrays indexed by the page
+     */
+    abstract void grow(int newLength);
+}
@@ -0,0 +1,363 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Whether every request of a sequence was a hit or a page fault for a policy, run-length encoded in a file
+ * <p>
+ * The engines only count the page faults, which does not show where in a sequence one policy does better than
+ * another. A log keeps the hit bit of every request, as the lengths of the runs of hits and of page faults one after
+ * another (the first run is of hits, and is empty if the first request is a page fault). Every run length is written
+ * as a varint (7 bits per byte), so a run of up to 127 requests takes one byte, and long runs of hits take a small
+ * fraction of a bit per request. The runs are written through a buffer as the requests are run, so a log can stay on
+ * for a whole trace without keeping it in memory.
+ * <p>
+ * The file is a header (magic number, version) followed by the run lengths, little-endian like the binary traces of
+ * TraceIngester. The queries read the runs one after another: the hit rate of every window of requests, and the
+ * requests where one of two policies takes the lead in the number of hits.
+ */
+final class HitMissLog {
+
+    // "PGHM" in ascii, identifies a hit/miss log
+    static final int LOG_MAGIC = 0x5047484D;
+    static final int VERSION = 1;
+    // magic (4 bytes) + version (4 bytes)
+    static final int LOG_HEADER_SIZE = 8;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // the longest varint, for a run length of 64 bits
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private HitMissLog() {
+    }
+
+    /**
+     * Writes the hit bits of the requests as they are run
+     */
+    static final class Writer implements Closeable {
+
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private boolean inRunOfHits = true;
+        private long runLength;
+        private long requests;
+        private long bytesWritten;
+
+        /**
+         * @param file the log file, replaced if it exists
+         * @throws IOException if the file cannot be written
+         */
+        Writer(Path file) throws IOException {
+            out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buffer.putInt(LOG_MAGIC);
+            buffer.putInt(VERSION);
+        }
+
+        /**
+         * Adds the hit bit of the next request
+         * @param hit whether the request was a hit
+         * @throws IOException if the log cannot be written
+         */
+        void append(boolean hit) throws IOException {
+            if (hit != inRunOfHits) {
+                endRun();
+            }
+            runLength ++;
+            requests ++;
+        }
+
+        /**
+         * Adds the hit bits of the next requests, 64 at a time where the bits are the same
+         * @param hitBitmap bit j (bit j % 64 of hitBitmap[j / 64]) is 1 if request j was a hit, as given by accessBatch
+         * @param len number of requests
+         * @throws IOException if the log cannot be written
+         */
+        void append(long[] hitBitmap, int len) throws IOException {
+
+            for (int j = 0; j < len; ) {
+                long word = hitBitmap[j >>> 6] >>> (j & 63);
+                int bitsInWord = Math.min(64 - (j & 63), len - j);
+                // the bits of the word that go on with the current run
+                int same = Long.numberOfTrailingZeros(inRunOfHits ? ~word : word);
+                if (same >= bitsInWord) {
+                    runLength += bitsInWord;
+                    j += bitsInWord;
+                } else {
+                    runLength += same;
+                    j += same;
+                    endRun();
+                }
+            }
+            requests += len;
+        }
+
+        /**
+         * Runs a request sequence on a cache in blocks and adds the hit bit of every request
+         * @param policy the cache, which keeps its state so the next sequence can follow
+         * @param requestSequence sequence of page requests
+         * @param hPredictions predicted H values, can be null for algorithms that do not use predictions
+         * @return number of page faults
+         * @throws IOException if the log cannot be written
+         */
+        int run(CachePolicy policy, int[] requestSequence, int[] hPredictions) throws IOException {
+
+            int blockSize = 1 << 12;
+            long[] hitBitmap = new long[blockSize >>> 6];
+            int pageFaults = 0;
+            for (int offset = 0; offset < requestSequence.length; offset += blockSize) {
+                int len = Math.min(blockSize, requestSequence.length - offset);
+                pageFaults += policy.accessBatch(requestSequence, hPredictions, offset, len, hitBitmap);
+                append(hitBitmap, len);
+            }
+            return pageFaults;
+        }
+
+        /**
+         * @return number of requests added
+         */
+        long requests() {
+            return requests;
+        }
+
+        /**
+         * @return bits of the log per request added so far, not counting the header
+         */
+        double bitsPerRequest() {
+            return requests == 0 ? 0 : (bytesWritten + buffer.position() - LOG_HEADER_SIZE) * 8.0 / requests;
+        }
+
+        /**
+         * Writes the last run and closes the file
+         * @throws IOException if the log cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (runLength > 0) {
+                    endRun();
+                }
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void endRun() throws IOException {
+
+            if (buffer.remaining() < MAX_VARINT_BYTES) {
+                flush();
+            }
+            long value = runLength;
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+            inRunOfHits = !inRunOfHits;
+            runLength = 0;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            bytesWritten += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the runs of a log one after another
+     */
+    static final class Reader implements Closeable {
+
+        private final FileChannel in;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private boolean nextRunOfHits = true;
+        private boolean inRunOfHits;
+
+        /**
+         * @param file the log file
+         * @throws IOException if the file cannot be read or is not a hit/miss log
+         */
+        Reader(Path file) throws IOException {
+
+            in = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip();
+            if (!fill(LOG_HEADER_SIZE) || buffer.getInt() != LOG_MAGIC) {
+                in.close();
+                throw new IOException("Not a hit/miss log: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Hit/miss log version " + version + " is not supported: " + file);
+            }
+        }
+
+        /**
+         * @return length of the next run (0 only for the first run, when the first request is a page fault), or -1 at the end of the log
+         * @throws IOException if the log cannot be read or ends in the middle of a run
+         */
+        long nextRun() throws IOException {
+
+            if (!fill(MAX_VARINT_BYTES) && !buffer.hasRemaining()) {
+                return -1;
+            }
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (!buffer.hasRemaining() || shift >= 64) {
+                    throw new IOException("Hit/miss log ends in the middle of a run");
+                }
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            inRunOfHits = nextRunOfHits;
+            nextRunOfHits = !nextRunOfHits;
+            return value;
+        }
+
+        /**
+         * @return whether the run given by the last nextRun is a run of hits
+         */
+        boolean isRunOfHits() {
+            return inRunOfHits;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * Reads until the buffer has at least the given number of bytes or the file ends
+         * @return whether the buffer has that many bytes
+         */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                buffer.compact();
+                while (buffer.position() < bytes && in.read(buffer) >= 0) {
+                    // keeps reading until there are enough bytes
+                }
+                buffer.flip();
+            }
+            return buffer.remaining() >= bytes;
+        }
+    }
+
+    /**
+     * A request after which one of two policies has more hits than the other, and did not after the request before
+     */
+    static final class LeadChange {
+
+        final long position;
+        final boolean firstAhead;
+
+        private LeadChange(long position, boolean firstAhead) {
+            this.position = position;
+            this.firstAhead = firstAhead;
+        }
+
+        @Override
+        public String toString() {
+            return (firstAhead ? "first" : "second") + " ahead from request " + position;
+        }
+    }
+
+    /**
+     * Finds the hit rate of every window of requests
+     * @param log the hit/miss log
+     * @param window number of requests of a window
+     * @return the hit rate of the requests [w * window, (w + 1) * window) at index w, the last window may have fewer requests
+     * @throws IOException if the log cannot be read
+     */
+    static double[] windowedHitRates(Path log, long window) throws IOException {
+
+        double[] hitRates = new double[16];
+        int numOfWindows = 0;
+        long hitsInWindow = 0;
+        long requestsInWindow = 0;
+        try (Reader reader = new Reader(log)) {
+            for (long length = reader.nextRun(); length >= 0; length = reader.nextRun()) {
+                while (length > 0) {
+                    long requests = Math.min(length, window - requestsInWindow);
+                    requestsInWindow += requests;
+                    hitsInWindow += reader.isRunOfHits() ? requests : 0;
+                    length -= requests;
+                    if (requestsInWindow == window) {
+                        if (numOfWindows == hitRates.length) {
+                            hitRates = Arrays.copyOf(hitRates, numOfWindows * 2);
+                        }
+                        hitRates[numOfWindows ++] = (double) hitsInWindow / window;
+                        hitsInWindow = 0;
+                        requestsInWindow = 0;
+                    }
+                }
+            }
+        }
+        if (requestsInWindow > 0) {
+            hitRates = Arrays.copyOf(hitRates, numOfWindows + 1);
+            hitRates[numOfWindows ++] = (double) hitsInWindow / requestsInWindow;
+        }
+        return Arrays.copyOf(hitRates, numOfWindows);
+    }
+
+    /**
+     * Finds the requests where one of two policies takes the lead: after the request it has had more hits than the
+     * other since the start of the sequence, and after the request before the other one had more or they had the same
+     * <p>
+     * The logs are read together one stretch at a time, where both have a run, and in a stretch the difference of the
+     * hits changes by the same amount at every request, so a lead change is found without going through the requests.
+     * @param first log of the first policy
+     * @param second log of the second policy, on the same requests
+     * @return the lead changes in order
+     * @throws IOException if a log cannot be read or the logs are not of the same number of requests
+     */
+    static List<LeadChange> leadChanges(Path first, Path second) throws IOException {
+
+        List<LeadChange> leadChanges = new ArrayList<>();
+        try (Reader firstReader = new Reader(first); Reader secondReader = new Reader(second)) {
+            long firstLeft = 0;
+            long secondLeft = 0;
+            // hits of the first policy minus hits of the second, and the position of the next request
+            long difference = 0;
+            long position = 0;
+            while (true) {
+                while (firstLeft == 0 && (firstLeft = firstReader.nextRun()) == 0) {
+                    // skips the empty first run
+                }
+                while (secondLeft == 0 && (secondLeft = secondReader.nextRun()) == 0) {
+                    // skips the empty first run
+                }
+                if (firstLeft < 0 || secondLeft < 0) {
+                    if (firstLeft != secondLeft) {
+                        throw new IOException("Hit/miss logs are not of the same number of requests");
+                    }
+                    return leadChanges;
+                }
+
+                long stretch = Math.min(firstLeft, secondLeft);
+                int step = (firstReader.isRunOfHits() ? 1 : 0) - (secondReader.isRunOfHits() ? 1 : 0);
+                // the leader changes to the policy the stretch favours after |difference| + 1 requests, if the stretch is that long
+                if (step != 0 && Long.signum(difference) != step && Math.abs(difference) < stretch) {
+                    leadChanges.add(new LeadChange(position + Math.abs(difference), step > 0));
+                }
+                difference += step * stretch;
+                position += stretch;
+                firstLeft -= stretch;
+                secondLeft -= stretch;
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * LRU cache that keeps its state between requests
+ * <p>
+ * The doubly linked list is backed by arrays indexed by the page (prev, next and whether the page is in the cache),
+ * so a request is a single array lookup and does not box the page or allocate a node.
+ */
+final class LRUCache implements CachePolicy {
+
+    // marks the end of the linked list
+    private static final int NIL = -1;
+
+    private final int k;
+
+    private int[] prev;
+    private int[] next;
+    private boolean[] inCache;
+
+    // head is the least recently used page and tail is the most recently used page
+    private int head = NIL;
+    private int tail = NIL;
+    private int size;
+
+    private long pageFaults;
+    private int lastEvicted = NIL;
+
+    /**
+     * @param k cache capacity
+     */
+    LRUCache(int k) {
+        this(k, 16);
+    }
+
+    /**
+     * @param k cache capacity
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    LRUCache(int k, int expectedMaxPage) {
+        this.k = k;
+        prev = new int[expectedMaxPage + 1];
+        next = new int[expectedMaxPage + 1];
+        inCache = new boolean[expectedMaxPage + 1];
+    }
+
+    @Override
+    public boolean access(int page, int hPrediction) {
+
+        if (page >= inCache.length) {
+            grow(page);
+        }
+
+        lastEvicted = NIL;
+        if (inCache[page]) {
+            if (page != tail) {
+                unlink(page);
+                append(page);
+            }
+            return true;
+        }
+
+        pageFaults ++;
+        if (size == k) {
+            lastEvicted = head;
+            unlink(head);
+            inCache[lastEvicted] = false;
+            size --;
+        }
+        append(page);
+        inCache[page] = true;
+        size ++;
+        return false;
+    }
+
+    @Override
+    public int accessBatch(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap) {
+
+        int pageFaultsInBatch = 0;
+        for (int j = 0; j < len; j ++) {
+            boolean hit = access(pages[offset + j], 0);
+            if (!hit) {
+                pageFaultsInBatch ++;
+            }
+            if (hitBitmap != null) {
+                CachePolicy.setHitBit(hitBitmap, j, hit);
+            }
+        }
+        return pageFaultsInBatch;
+    }
+
+    @Override
+    public int lastEvicted() {
+        return lastEvicted;
+    }
+
+    @Override
+    public long pageFaults() {
+        return pageFaults;
+    }
+
+    @Override
+    public void reset() {
+
+        // only the pages in the cache have to be cleared
+        for (int page = head; page != NIL; page = next[page]) {
+            inCache[page] = false;
+        }
+        head = NIL;
+        tail = NIL;
+        size = 0;
+        pageFaults = 0;
+        lastEvicted = NIL;
+    }
+
+    @Override
+    public boolean contains(int page) {
+        return page < inCache.length && inCache[page];
+    }
+
+    @Override
+    public boolean countRequest(int page) {
+        boolean hit = contains(page);
+        if (!hit) {
+            pageFaults ++;
+        }
+        return hit;
+    }
+
+    @Override
+    public boolean insert(int page, int hPrediction) {
+        // placed like a request to the page, which is then not counted
+        boolean wasInCache = access(page, hPrediction);
+        if (!wasInCache) {
+            pageFaults --;
+        }
+        return wasInCache;
+    }
+
+    @Override
+    public boolean remove(int page) {
+
+        if (!contains(page)) {
+            return false;
+        }
+        unlink(page);
+        inCache[page] = false;
+        size --;
+        return true;
+    }
+
+    /**
+     * @return number of pages in the cache
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gives every page in the cache, from the least to the most recently used
+     * @param action what to do with every page, it should not change the cache
+     */
+    void forEachPage(IntConsumer action) {
+        for (int page = head; page != NIL; page = next[page]) {
+            action.accept(page);
+        }
+    }
+
+    /**
+     * @return number of bytes writeSnapshot writes
+     */
+    int snapshotBytes() {
+        return 4 * (2 + size) + 8;
+    }
+
+    /**
+     * Writes the capacity, the page faults and the pages in the cache from the least to the most recently used
+     * @param out buffer to write to
+     */
+    void writeSnapshot(ByteBuffer out) {
+        out.putInt(k);
+        out.putLong(pageFaults);
+        out.putInt(size);
+        for (int page = head; page != NIL; page = next[page]) {
+            out.putInt(page);
+        }
+    }
+
+    /**
+     * Reads a cache written by writeSnapshot, which makes the same decisions as the cache that was written
+     * @param in buffer to read from
+     * @return the cache
+     * @throws IOException if the buffer has a cache that writeSnapshot could not have written
+     */
+    static LRUCache readSnapshot(ByteBuffer in) throws IOException {
+
+        int k = in.getInt();
+        long pageFaults = in.getLong();
+        int size = in.getInt();
+        if (k <= 0 || pageFaults < 0 || size < 0 || size > k || size > in.remaining() / 4) {
+            throw new IOException("LRU snapshot has capacity " + k + ", " + pageFaults + " page faults and " + size + " pages");
+        }
+        int[] pages = new int[size];
+        in.asIntBuffer().get(pages);
+        in.position(in.position() + 4 * size);
+
+        LRUCache cache = new LRUCache(k, Math.max(16, Arrays.stream(pages).max().orElse(0)));
+        // appending from the least recently used page gives the same order
+        for (int page : pages) {
+            if (page < 0 || cache.inCache[page]) {
+                throw new IOException("LRU snapshot has page " + page + " more than once or negative");
+            }
+            cache.append(page);
+            cache.inCache[page] = true;
+        }
+        cache.size = size;
+        cache.pageFaults = pageFaults;
+        return cache;
+    }
+
+    private void unlink(int page) {
+
+        if (prev[page] != NIL) {
+            next[prev[page]] = next[page];
+        } else {
+            head = next[page];
+        }
+        if (next[page] != NIL) {
+            prev[next[page]] = prev[page];
+        } else {
+            tail = prev[page];
+        }
+    }
+
+    private void append(int page) {
+
+        prev[page] = tail;
+        next[page] = NIL;
+        if (tail != NIL) {
+            next[tail] = page;
+        } else {
+            head = page;
+        }
+        tail = page;
+    }
+
+    private void grow(int page) {
+
+        int newLength = Math.max(page + 1, inCache.length * 2);
+        prev = Arrays.copyOf(prev, newLength);
+        next = Arrays.copyOf(next, newLength);
+        inCache = Arrays.copyOf(inCache, newLength);
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Predicts that the next gap of a page is the same as its last gap (last inter-arrival time)
+ * <p>
+ * Gives exact predictions for pages requested at a fixed interval, and reacts at once when the interval changes.
+ */
+final class LastGapPredictor extends GapPredictor {
+
+    LastGapPredictor() {
+        this(16);
+    }
+
+    /**
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    LastGapPredictor(int expectedMaxPage) {
+        super(expectedMaxPage);
+    }
+
+    @Override
+    double firstRequest(int page, int position) {
+        return Double.NaN;
+    }
+
+    @Override
+    double nextRequest(int page, int position, int gap) {
+        return gap;
+    }
+
+    @Override
+    void grow(int newLength) {
+        // no state other than the last position
+    }
+}
@@ -0,0 +1,341 @@
+import java.util.Arrays;
+
+/**
+ * Combined cache that switches between LRU and BlindOracle lazily, loading only the pages it needs
+ * <p>
+ * combinedAlg adds k page faults for every switch, as if the whole cache of the algorithm it switches to were loaded.
+ * Here LRU and BlindOracle only run as shadow caches that decide what should be in the cache, and the real cache
+ * follows the one in use. A page is loaded only when it is requested and not in the real cache (a page fault). When
+ * the real cache is full, it evicts a page that is not in the shadow cache in use, which always exists because the
+ * shadow cache has the requested page and at most k - 1 others. After a switch the real cache still has the pages of
+ * the old shadow cache, and the pages of the new one are loaded one by one when they are requested, so a switch costs
+ * at most the number of pages in the new shadow cache that are not in the real cache, never more than k.
+ * <p>
+ * The pages of the real cache that are not in each shadow cache are kept in an array with the position of every page,
+ * and every request changes at most 4 pages (the page requested and the pages evicted by the 3 caches), so a request
+ * and a switch take O(1) time besides the shadow caches. The size of the symmetric difference of the 2 shadow caches
+ * is kept the same way.
+ */
+final class LazyCombinedCache implements CachePolicy {
+
+    private static final int NIL = -1;
+
+    private final int k;
+    private final double threshold;
+
+    private final LRUCache lruCache;
+    private final BlindOracleCache blindOracleCache;
+
+    // starting with LRU initially
+    private boolean usingLRU = true;
+
+    // the real cache
+    private boolean[] inCache;
+    private int size;
+
+    // pages of the real cache that are not in the LRU cache, and those that are not in the BlindOracle cache
+    private final PageSet notInLRU;
+    private final PageSet notInBlindOracle;
+
+    // pages that are in both shadow caches
+    private boolean[] inBothShadowCaches;
+    private int numInBothShadowCaches;
+
+    private long pageFaults;
+    private int lastEvicted = NIL;
+    private int switches;
+
+    /**
+     * Set of pages in an array, with the position of every page so that a page is added or removed in O(1)
+     */
+    private static final class PageSet {
+
+        private final int[] pages;
+        private int size;
+        private int[] positionOf;
+
+        private PageSet(int capacity, int expectedMaxPage) {
+            pages = new int[capacity];
+            positionOf = new int[expectedMaxPage + 1];
+            Arrays.fill(positionOf, NIL);
+        }
+
+        private void set(int page, boolean inSet) {
+            if (inSet && positionOf[page] == NIL) {
+                pages[size] = page;
+                positionOf[page] = size ++;
+            } else if (!inSet && positionOf[page] != NIL) {
+                int position = positionOf[page];
+                int last = pages[-- size];
+                pages[position] = last;
+                positionOf[last] = position;
+                positionOf[page] = NIL;
+            }
+        }
+
+        private int any() {
+            return pages[size - 1];
+        }
+
+        private void clear() {
+            for (int i = 0; i < size; i ++) {
+                positionOf[pages[i]] = NIL;
+            }
+            size = 0;
+        }
+
+        private void grow(int newLength) {
+            int oldLength = positionOf.length;
+            positionOf = Arrays.copyOf(positionOf, newLength);
+            Arrays.fill(positionOf, oldLength, newLength, NIL);
+        }
+    }
+
+    /**
+     * @param k cache capacity
+     * @param threshold helps in deciding when to switch between LRU and BlindOracle algorithms
+     */
+    LazyCombinedCache(int k, double threshold) {
+        this(k, threshold, 16);
+    }
+
+    /**
+     * @param k cache capacity
+     * @param threshold helps in deciding when to switch between LRU and BlindOracle algorithms
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    LazyCombinedCache(int k, double threshold, int expectedMaxPage) {
+        this.k = k;
+        this.threshold = threshold;
+        lruCache = new LRUCache(k, expectedMaxPage);
+        blindOracleCache = new BlindOracleCache(k, expectedMaxPage);
+        inCache = new boolean[expectedMaxPage + 1];
+        inBothShadowCaches = new boolean[expectedMaxPage + 1];
+        // the real cache has at most k pages, and the requested page is in both shadow caches
+        notInLRU = new PageSet(k, expectedMaxPage);
+        notInBlindOracle = new PageSet(k, expectedMaxPage);
+    }
+
+    @Override
+    public boolean access(int page, int hPrediction) {
+        return access(page, hPrediction, true);
+    }
+
+    /**
+     * Puts the page into both shadow caches and the real cache without counting a page fault in any of them, so there
+     * is no switch
+     */
+    @Override
+    public boolean insert(int page, int hPrediction) {
+        return access(page, hPrediction, false);
+    }
+
+    /**
+     * @param isRequest whether it is a request, else a page put into the cache that is not counted
+     */
+    private boolean access(int page, int hPrediction, boolean isRequest) {
+
+        if (page >= inCache.length) {
+            grow(page);
+        }
+
+        if (isRequest) {
+            lruCache.access(page, hPrediction);
+            blindOracleCache.access(page, hPrediction);
+        } else {
+            lruCache.insert(page, hPrediction);
+            blindOracleCache.insert(page, hPrediction);
+        }
+        int evictedByLRU = lruCache.lastEvicted();
+        int evictedByBlindOracle = blindOracleCache.lastEvicted();
+
+        update(page);
+        if (evictedByLRU != NIL) {
+            update(evictedByLRU);
+        }
+        if (evictedByBlindOracle != NIL) {
+            update(evictedByBlindOracle);
+        }
+
+        lastEvicted = NIL;
+        boolean hit = inCache[page];
+        if (!hit) {
+            if (isRequest) {
+                pageFaults ++;
+            }
+            if (size == k) {
+                // a page of the real cache that the shadow cache in use does not have
+                lastEvicted = usingLRU ? notInLRU.any() : notInBlindOracle.any();
+                inCache[lastEvicted] = false;
+                size --;
+                update(lastEvicted);
+            }
+            inCache[page] = true;
+            size ++;
+            update(page);
+        }
+        if (isRequest) {
+            switchIfNeeded();
+        }
+        return hit;
+    }
+
+    /**
+     * Counts the request in both shadow caches and the real cache without changing their pages, and switches if needed
+     */
+    @Override
+    public boolean countRequest(int page) {
+
+        lruCache.countRequest(page);
+        blindOracleCache.countRequest(page);
+        lastEvicted = NIL;
+        boolean hit = contains(page);
+        if (!hit) {
+            pageFaults ++;
+        }
+        switchIfNeeded();
+        return hit;
+    }
+
+    private void switchIfNeeded() {
+
+        // checking if it has to switch and then switch if necessary, the pages are loaded later when they are requested
+        long lruPageFaults = lruCache.pageFaults();
+        long blindOraclePageFaults = blindOracleCache.pageFaults();
+        if (usingLRU && ((double) lruPageFaults) > (1 + threshold) * ((double) blindOraclePageFaults)) {
+            usingLRU = false;
+            switches ++;
+        } else if (!usingLRU && ((double) blindOraclePageFaults) > (1 + threshold) * ((double) lruPageFaults)) {
+            usingLRU = true;
+            switches ++;
+        }
+    }
+
+    /**
+     * Brings the sets of a page up to date after it entered or left one of the caches
+     */
+    private void update(int page) {
+
+        boolean inLRU = lruCache.contains(page);
+        boolean inBlindOracle = blindOracleCache.contains(page);
+        notInLRU.set(page, inCache[page] && !inLRU);
+        notInBlindOracle.set(page, inCache[page] && !inBlindOracle);
+
+        boolean inBoth = inLRU && inBlindOracle;
+        if (inBoth != inBothShadowCaches[page]) {
+            inBothShadowCaches[page] = inBoth;
+            numInBothShadowCaches += inBoth ? 1 : -1;
+        }
+    }
+
+    @Override
+    public int accessBatch(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap) {
+
+        int pageFaultsInBatch = 0;
+        for (int j = 0; j < len; j ++) {
+            boolean hit = access(pages[offset + j], hPredictions[offset + j]);
+            if (!hit) {
+                pageFaultsInBatch ++;
+            }
+            if (hitBitmap != null) {
+                CachePolicy.setHitBit(hitBitmap, j, hit);
+            }
+        }
+        return pageFaultsInBatch;
+    }
+
+    /**
+     * @param page a page
+     * @return whether the page is in the real cache
+     */
+    @Override
+    public boolean contains(int page) {
+        return page < inCache.length && inCache[page];
+    }
+
+    /**
+     * Removes the page from the real cache and from both shadow caches
+     * @param page the page to remove
+     * @return true if the page was in the real cache
+     */
+    @Override
+    public boolean remove(int page) {
+
+        if (page >= inCache.length) {
+            return false;
+        }
+        boolean wasInCache = inCache[page];
+        lruCache.remove(page);
+        blindOracleCache.remove(page);
+        if (wasInCache) {
+            inCache[page] = false;
+            size --;
+        }
+        update(page);
+        return wasInCache;
+    }
+
+    @Override
+    public int lastEvicted() {
+        return lastEvicted;
+    }
+
+    @Override
+    public long pageFaults() {
+        return pageFaults;
+    }
+
+    @Override
+    public void reset() {
+
+        for (int page = 0; page < inCache.length; page ++) {
+            inCache[page] = false;
+            inBothShadowCaches[page] = false;
+        }
+        notInLRU.clear();
+        notInBlindOracle.clear();
+        lruCache.reset();
+        blindOracleCache.reset();
+        usingLRU = true;
+        size = 0;
+        numInBothShadowCaches = 0;
+        pageFaults = 0;
+        lastEvicted = NIL;
+        switches = 0;
+    }
+
+    /**
+     * @return number of pages that are in one shadow cache but not in the other
+     */
+    int symmetricDifference() {
+        return lruCache.size() + blindOracleCache.size() - 2 * numInBothShadowCaches;
+    }
+
+    /**
+     * @return number of pages of the shadow cache in use that are not in the real cache, the most a switch made now could cost
+     */
+    int pagesToLoad() {
+        // |shadow \ real| = |shadow| - |real| + |real \ shadow|
+        return usingLRU ? notInLRU.size + lruCache.size() - size : notInBlindOracle.size + blindOracleCache.size() - size;
+    }
+
+    /**
+     * @return whether the shadow cache in use is LRU
+     */
+    boolean isUsingLRU() {
+        return usingLRU;
+    }
+
+    int getSwitches() {
+        return switches;
+    }
+
+    private void grow(int page) {
+
+        int newLength = Math.max(page + 1, inCache.length * 2);
+        inCache = Arrays.copyOf(inCache, newLength);
+        inBothShadowCaches = Arrays.copyOf(inBothShadowCaches, newLength);
+        notInLRU.grow(newLength);
+        notInBlindOracle.grow(newLength);
+    }
+}
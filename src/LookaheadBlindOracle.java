@@ -0,0 +1,279 @@
+import java.util.Arrays;
+
+/**
+ * BlindOracle that sees only the next W requests, the way a prefetch queue exposes the future
+ * <p>
+ * Requests are offered one at a time into a ring buffer of the next W requests, and a request is run once W more
+ * requests have been offered after it (or when finish is called). A page in the cache with a request in the window is
+ * evicted by its next request in the window, the furthest first, as OPT does. A page without a request in the window
+ * is always evicted before those, and among them the least recently used page goes first, or the page with the
+ * highest H prediction when predictions are used (then the least recently used page of those with the same prediction).
+ * <p>
+ * With W at least the length of the sequence and no predictions it evicts exactly like blindOracle with the actual
+ * H sequence (OPT), and with W = 0 it evicts like LRU, or like blindOracle on the predictions when they are used.
+ * <p>
+ * The next request of every page in the window is found by linking every request in the window to the next request
+ * to the same page, so a request takes O(log k) time for the heap of the cache. The future kept is the W requests
+ * of the window, and the state of a page is kept in arrays indexed by the page.
+ */
+final class LookaheadBlindOracle {
+
+    private static final int NIL = -1;
+
+    // keys of pages without a request in the window are this plus their H prediction (when predictions are used),
+    // the keys of the others are positions below it
+    private static final long BEYOND_WINDOW = 1L << 62;
+
+    private final int k;
+    private final int window;
+    private final boolean usingHPredictions;
+
+    // the requests offered and not run yet, at slot position % (window + 1)
+    private final int[] windowPages;
+    private final int[] windowHPredictions;
+    // position of the next request to the same page in the window, or NIL
+    private final long[] nextInWindow;
+    private long offered;
+    private long processed;
+
+    // first and last request of every page in the window, or NIL
+    private long[] firstInWindow;
+    private long[] lastInWindow;
+
+    // heap[0] is the page to evict next, positionInHeap[page] is NIL when the page is not in the cache
+    private final int[] heap;
+    private int size;
+    private int[] positionInHeap;
+    private long[] keyOf;
+    // position of the last request run for every page, breaks the ties between pages without a request in the window
+    private long[] lastUse;
+    private int[] hPredictionOf;
+
+    private long pageFaults;
+
+    /**
+     * @param k cache capacity
+     * @param window number of requests seen after the request being run
+     * @param usingHPredictions whether pages without a request in the window are evicted by H prediction instead of by recency
+     */
+    LookaheadBlindOracle(int k, int window, boolean usingHPredictions) {
+        this(k, window, usingHPredictions, 16);
+    }
+
+    /**
+     * @param k cache capacity
+     * @param window number of requests seen after the request being run
+     * @param usingHPredictions whether pages without a request in the window are evicted by H prediction instead of by recency
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     */
+    LookaheadBlindOracle(int k, int window, boolean usingHPredictions, int expectedMaxPage) {
+
+        this.k = k;
+        this.window = window;
+        this.usingHPredictions = usingHPredictions;
+        windowPages = new int[window + 1];
+        windowHPredictions = new int[window + 1];
+        nextInWindow = new long[window + 1];
+
+        heap = new int[k];
+        firstInWindow = new long[expectedMaxPage + 1];
+        lastInWindow = new long[expectedMaxPage + 1];
+        positionInHeap = new int[expectedMaxPage + 1];
+        Arrays.fill(firstInWindow, NIL);
+        Arrays.fill(lastInWindow, NIL);
+        Arrays.fill(positionInHeap, NIL);
+        keyOf = new long[expectedMaxPage + 1];
+        lastUse = new long[expectedMaxPage + 1];
+        hPredictionOf = new int[expectedMaxPage + 1];
+    }
+
+    /**
+     * Adds a request to the end of the window, and runs the oldest request once the window is full
+     * @param page the page requested
+     * @param hPrediction predicted H value of this request (ignored if predictions are not used)
+     * @return 1 if the request that was run was a page fault, 0 if it was a hit or no request was run yet
+     */
+    long offer(int page, int hPrediction) {
+
+        if (page >= positionInHeap.length) {
+            grow(page);
+        }
+
+        long position = offered ++;
+        int slot = slotOf(position);
+        windowPages[slot] = page;
+        windowHPredictions[slot] = hPrediction;
+        nextInWindow[slot] = NIL;
+        if (firstInWindow[page] == NIL) {
+            firstInWindow[page] = position;
+            // the page now has a request in the window, so it goes behind every page that has none
+            if (positionInHeap[page] != NIL) {
+                updateKey(page);
+            }
+        } else {
+            nextInWindow[slotOf(lastInWindow[page])] = position;
+        }
+        lastInWindow[page] = position;
+
+        return offered - processed > window ? runOldest() : 0;
+    }
+
+    /**
+     * Runs all the requests left in the window, at the end of the request sequence
+     * @return number of page faults among them
+     */
+    long finish() {
+        long pageFaultsInWindow = 0;
+        while (processed < offered) {
+            pageFaultsInWindow += runOldest();
+        }
+        return pageFaultsInWindow;
+    }
+
+    /**
+     * @return number of page faults of the requests run since the cache was created or reset
+     */
+    long pageFaults() {
+        return pageFaults;
+    }
+
+    /**
+     * Empties the cache and the window, so the same instance can run another request sequence
+     */
+    void reset() {
+
+        for (long position = processed; position < offered; position ++) {
+            int page = windowPages[slotOf(position)];
+            firstInWindow[page] = NIL;
+            lastInWindow[page] = NIL;
+        }
+        for (int i = 0; i < size; i ++) {
+            positionInHeap[heap[i]] = NIL;
+        }
+        size = 0;
+        offered = 0;
+        processed = 0;
+        pageFaults = 0;
+    }
+
+    private int runOldest() {
+
+        long position = processed ++;
+        int slot = slotOf(position);
+        int page = windowPages[slot];
+
+        // the request leaves the window, the next request to the page in the window (if any) becomes its first
+        firstInWindow[page] = nextInWindow[slot];
+        if (firstInWindow[page] == NIL) {
+            lastInWindow[page] = NIL;
+        }
+        lastUse[page] = position;
+        hPredictionOf[page] = windowHPredictions[slot];
+
+        if (positionInHeap[page] != NIL) {
+            updateKey(page);
+            return 0;
+        }
+
+        pageFaults ++;
+        if (size == k) {
+            positionInHeap[heap[0]] = NIL;
+            size --;
+            if (size > 0) {
+                moveTo(heap[size], 0);
+                siftDown(0);
+            }
+        }
+        keyOf[page] = key(page);
+        moveTo(page, size ++);
+        siftUp(size - 1);
+        return 1;
+    }
+
+    /**
+     * @return slot of the request at a position in the ring buffer of the window
+     */
+    private int slotOf(long position) {
+        return (int) (position % (window + 1));
+    }
+
+    /**
+     * @return the key of a page, the page with the highest key is evicted first, and of the pages with the same key
+     * (only pages without a request in the window) the least recently used
+     */
+    private long key(int page) {
+        if (firstInWindow[page] != NIL) {
+            return firstInWindow[page];
+        }
+        return usingHPredictions ? BEYOND_WINDOW + hPredictionOf[page] : BEYOND_WINDOW;
+    }
+
+    /**
+     * @param a a page in the cache
+     * @param b another page in the cache
+     * @return whether a should be evicted before b
+     */
+    private boolean evictsBefore(int a, int b) {
+        return keyOf[a] > keyOf[b] || (keyOf[a] == keyOf[b] && lastUse[a] < lastUse[b]);
+    }
+
+    private void updateKey(int page) {
+        keyOf[page] = key(page);
+        siftDown(siftUp(positionInHeap[page]));
+    }
+
+    private int siftUp(int position) {
+
+        int page = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!evictsBefore(page, heap[parent])) {
+                break;
+            }
+            moveTo(heap[parent], position);
+            position = parent;
+        }
+        moveTo(page, position);
+        return position;
+    }
+
+    private void siftDown(int position) {
+
+        int page = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && evictsBefore(heap[child + 1], heap[child])) {
+                child ++;
+            }
+            if (!evictsBefore(heap[child], page)) {
+                break;
+            }
+            moveTo(heap[child], position);
+            position = child;
+        }
+        moveTo(page, position);
+    }
+
+    private void moveTo(int page, int position) {
+        heap[position] = page;
+        positionInHeap[page] = position;
+    }
+
+    private void grow(int page) {
+
+        int oldLength = positionInHeap.length;
+        int newLength = Math.max(page + 1, oldLength * 2);
+        firstInWindow = Arrays.copyOf(firstInWindow, newLength);
+        lastInWindow = Arrays.copyOf(lastInWindow, newLength);
+        positionInHeap = Arrays.copyOf(positionInHeap, newLength);
+        Arrays.fill(firstInWindow, oldLength, newLength, NIL);
+        Arrays.fill(lastInWindow, oldLength, newLength, NIL);
+        Arrays.fill(positionInHeap, oldLength, newLength, NIL);
+        keyOf = Arrays.copyOf(keyOf, newLength);
+        lastUse = Arrays.copyOf(lastUse, newLength);
+        hPredictionOf = Arrays.copyOf(hPredictionOf, newLength);
+    }
+}
@@ -0,0 +1,343 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Predictive Marker or LMarker cache that keeps its state between requests
+ * <p>
+ * A phase ends when all k pages in the cache are marked and a page fault happens, then all pages are unmarked.
+ * A page is clean if it was not in the cache at the start of the phase, else it is stale.
+ * On a page fault caused by a clean page, the unmarked page with the highest H prediction value is evicted.
+ * On a page fault caused by a stale page, LMarker evicts a random unmarked page. Predictive Marker follows
+ * the chain of evictions that led to this stale page and evicts a random unmarked page only if the chain is
+ * longer than the harmonic number H_k, else it evicts the unmarked page with the highest H prediction value.
+ * <p>
+ * The unmarked pages are kept in an array (to pick a random one) and in a binary max-heap by H prediction value
+ * (to pick the one with the highest), and every page knows its position in both, so a request does not allocate.
+ */
+final class MarkerCache implements CachePolicy {
+
+    private static final int NIL = -1;
+
+    private final int k;
+    private final boolean followChains;
+    private final double harmonicNumberOfK;
+    private final Random random;
+
+    // a page is marked if markedInPhase[page] == phase, so unmarking every page at the start of a phase only needs phase ++
+    // the pages that were marked in the previous phase are exactly the pages in the cache at the start of this phase,
+    // so a page not in the cache is stale if markedInPhase[page] == phase - 1, else it is clean
+    private int phase = 1;
+    private int[] markedInPhase;
+    private boolean[] inCache;
+    private int[] latestHPrediction;
+
+    // pages in the cache, so that the unmarked pages can be rebuilt at the start of a phase
+    private final int[] pagesInCache;
+    private int[] indexInPagesInCache;
+    private int numOfPagesInCache;
+
+    // unmarked pages in the cache, the H prediction value of an unmarked page does not change during the phase, as any request to it marks it
+    private final int[] unmarkedPages;
+    private int[] indexInUnmarkedPages;
+    private int numOfUnmarkedPages;
+    // heap[0] is the unmarked page with the highest H prediction value (the highest page when they are the same)
+    private final int[] heap;
+    private int numOfHeapPages;
+    private int[] positionInHeap;
+
+    // chainOf[page] is the chain a stale page belongs to and chainLength[chain] is its length, chains start again in every phase
+    private int[] chainOf;
+    private final int[] chainLength;
+    private int numOfChains;
+
+    private long pageFaults;
+    private int lastEvicted = NIL;
+
+    /**
+     * @param k cache capacity
+     * @param followChains true for Predictive Marker, false for LMarker
+     */
+    MarkerCache(int k, boolean followChains) {
+        this(k, followChains, 16, new Random());
+    }
+
+    /**
+     * @param k cache capacity
+     * @param followChains true for Predictive Marker, false for LMarker
+     * @param expectedMaxPage largest page expected in the requests, the arrays grow if a larger page comes
+     * @param random chooses the random unmarked pages to evict
+     */
+    MarkerCache(int k, boolean followChains, int expectedMaxPage, Random random) {
+        this.k = k;
+        this.followChains = followChains;
+        this.random = random;
+
+        double harmonicNumber = 0;
+        for (int i = 1; i <= k; i ++) {
+            harmonicNumber += 1.0 / i;
+        }
+        harmonicNumberOfK = harmonicNumber;
+
+        markedInPhase = new int[expectedMaxPage + 1];
+        Arrays.fill(markedInPhase, -1);
+        inCache = new boolean[expectedMaxPage + 1];
+        latestHPrediction = new int[expectedMaxPage + 1];
+        pagesInCache = new int[k];
+        indexInPagesInCache = new int[expectedMaxPage + 1];
+        unmarkedPages = new int[k];
+        indexInUnmarkedPages = new int[expectedMaxPage + 1];
+        heap = new int[k];
+        positionInHeap = new int[expectedMaxPage + 1];
+        chainOf = new int[expectedMaxPage + 1];
+        chainLength = new int[k + 1];
+    }
+
+    @Override
+    public boolean access(int page, int hPrediction) {
+
+        if (page >= inCache.length) {
+            grow(page);
+        }
+
+        lastEvicted = NIL;
+        if (inCache[page]) {
+            if (markedInPhase[page] != phase) {
+                // an unmarked page is requested, so it is removed from the unmarked pages and gets marked
+                removeFromUnmarkedPages(page);
+                removeFromHeap(page);
+                markedInPhase[page] = phase;
+            }
+            latestHPrediction[page] = hPrediction;
+            return true;
+        }
+
+        pageFaults ++;
+
+        if (numOfPagesInCache == k) {
+
+            // every page in the cache is marked, so a new phase starts and all of them become unmarked
+            if (numOfUnmarkedPages == 0) {
+                phase ++;
+                numOfChains = 0;
+                for (int j = 0; j < k; j ++) {
+                    int pageInCache = pagesInCache[j];
+                    unmarkedPages[j] = pageInCache;
+                    indexInUnmarkedPages[pageInCache] = j;
+                    addToHeap(pageInCache);
+                }
+                numOfUnmarkedPages = k;
+            }
+
+            // choosing the unmarked page to evict
+            boolean isStale = markedInPhase[page] == phase - 1;
+            int chain;
+            boolean evictRandomPage;
+            if (!isStale) {
+                chain = numOfChains ++;
+                chainLength[chain] = 1;
+                evictRandomPage = false;
+            } else {
+                chain = chainOf[page];
+                chainLength[chain] ++;
+                evictRandomPage = !followChains || chainLength[chain] > harmonicNumberOfK;
+            }
+
+            int pageToEvict = evictRandomPage ? unmarkedPages[random.nextInt(numOfUnmarkedPages)] : heap[0];
+            removeFromUnmarkedPages(pageToEvict);
+            removeFromHeap(pageToEvict);
+
+            // the evicted page takes the place of the requested page in pagesInCache and joins its chain
+            int slotOfEvictedPage = indexInPagesInCache[pageToEvict];
+            pagesInCache[slotOfEvictedPage] = page;
+            indexInPagesInCache[page] = slotOfEvictedPage;
+            inCache[pageToEvict] = false;
+            chainOf[pageToEvict] = chain;
+            lastEvicted = pageToEvict;
+        } else {
+            indexInPagesInCache[page] = numOfPagesInCache;
+            pagesInCache[numOfPagesInCache ++] = page;
+        }
+
+        inCache[page] = true;
+        markedInPhase[page] = phase;
+        latestHPrediction[page] = hPrediction;
+        return false;
+    }
+
+    @Override
+    public int accessBatch(int[] pages, int[] hPredictions, int offset, int len, long[] hitBitmap) {
+
+        int pageFaultsInBatch = 0;
+        for (int j = 0; j < len; j ++) {
+            boolean hit = access(pages[offset + j], hPredictions[offset + j]);
+            if (!hit) {
+                pageFaultsInBatch ++;
+            }
+            if (hitBitmap != null) {
+                CachePolicy.setHitBit(hitBitmap, j, hit);
+            }
+        }
+        return pageFaultsInBatch;
+    }
+
+    @Override
+    public boolean contains(int page) {
+        return page < inCache.length && inCache[page];
+    }
+
+    @Override
+    public boolean countRequest(int page) {
+        boolean hit = contains(page);
+        if (!hit) {
+            pageFaults ++;
+        }
+        return hit;
+    }
+
+    /**
+     * Puts a page into the cache like a request to it, so it is marked and can start a new phase, without counting a
+     * page fault
+     * @param page the page to put into the cache
+     * @param hPrediction predicted H value of the page
+     * @return true if the page was already in the cache
+     */
+    @Override
+    public boolean insert(int page, int hPrediction) {
+        boolean wasInCache = access(page, hPrediction);
+        if (!wasInCache) {
+            pageFaults --;
+        }
+        return wasInCache;
+    }
+
+    /**
+     * Removes a page from the cache, the page is clean if it is requested again as it was not kept in the cache
+     * @param page the page to remove
+     * @return true if the page was in the cache
+     */
+    @Override
+    public boolean remove(int page) {
+
+        if (!contains(page)) {
+            return false;
+        }
+        if (markedInPhase[page] != phase) {
+            removeFromUnmarkedPages(page);
+            removeFromHeap(page);
+        }
+        int lastPageInCache = pagesInCache[-- numOfPagesInCache];
+        pagesInCache[indexInPagesInCache[page]] = lastPageInCache;
+        indexInPagesInCache[lastPageInCache] = indexInPagesInCache[page];
+        inCache[page] = false;
+        markedInPhase[page] = -1;
+        return true;
+    }
+
+    @Override
+    public int lastEvicted() {
+        return lastEvicted;
+    }
+
+    @Override
+    public long pageFaults() {
+        return pageFaults;
+    }
+
+    @Override
+    public void reset() {
+
+        for (int j = 0; j < numOfPagesInCache; j ++) {
+            inCache[pagesInCache[j]] = false;
+        }
+        numOfPagesInCache = 0;
+        numOfUnmarkedPages = 0;
+        numOfHeapPages = 0;
+        numOfChains = 0;
+        // no page is marked in the new phase or the one before, so every page is clean again
+        phase += 2;
+        pageFaults = 0;
+        lastEvicted = NIL;
+    }
+
+    private void removeFromUnmarkedPages(int page) {
+        int lastUnmarkedPage = unmarkedPages[numOfUnmarkedPages - 1];
+        unmarkedPages[indexInUnmarkedPages[page]] = lastUnmarkedPage;
+        indexInUnmarkedPages[lastUnmarkedPage] = indexInUnmarkedPages[page];
+        numOfUnmarkedPages --;
+    }
+
+    /**
+     * @return whether page a should be evicted before page b, the higher page goes first when the H prediction values are the same
+     */
+    private boolean evictsBefore(int a, int b) {
+        return latestHPrediction[a] > latestHPrediction[b] || (latestHPrediction[a] == latestHPrediction[b] && a > b);
+    }
+
+    private void addToHeap(int page) {
+        heap[numOfHeapPages] = page;
+        siftUp(numOfHeapPages ++);
+    }
+
+    private void removeFromHeap(int page) {
+        int position = positionInHeap[page];
+        int lastPage = heap[-- numOfHeapPages];
+        if (lastPage != page) {
+            moveTo(lastPage, position);
+            siftDown(siftUp(position));
+        }
+    }
+
+    private int siftUp(int position) {
+
+        int page = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!evictsBefore(page, heap[parent])) {
+                break;
+            }
+            moveTo(heap[parent], position);
+            position = parent;
+        }
+        moveTo(page, position);
+        return position;
+    }
+
+    private void siftDown(int position) {
+
+        int page = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= numOfHeapPages) {
+                break;
+            }
+            if (child + 1 < numOfHeapPages && evictsBefore(heap[child + 1], heap[child])) {
+                child ++;
+            }
+            if (!evictsBefore(heap[child], page)) {
+                break;
+            }
+            moveTo(heap[child], position);
+            position = child;
+        }
+        moveTo(page, position);
+    }
+
+    private void moveTo(int page, int position) {
+        heap[position] = page;
+        positionInHeap[page] = position;
+    }
+
+    private void grow(int page) {
+
+        int oldLength = inCache.length;
+        int newLength = Math.max(page + 1, oldLength * 2);
+        markedInPhase = Arrays.copyOf(markedInPhase, newLength);
+        Arrays.fill(markedInPhase, oldLength, newLength, -1);
+        inCache = Arrays.copyOf(inCache, newLength);
+        latestHPrediction = Arrays.copyOf(latestHPrediction, newLength);
+        indexInPagesInCache = Arrays.copyOf(indexInPagesInCache, newLength);
+        indexInUnmarkedPages = Arrays.copyOf(indexInUnmarkedPages, newLength);
+        positionInHeap = Arrays.copyOf(positionInHeap, newLength);
+        chainOf = Arrays.copyOf(chainOf, newLength);
+    }
+}
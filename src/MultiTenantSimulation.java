@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Many tenants sharing a cache: their request streams are interleaved into one request sequence
+ * <p>
+ * Every tenant has its own request stream (from generateRandomSequence with its own locality, or a trace read with
+ * TraceIngester.readTrace) and its own rate. The pages of different tenants are different pages, so the pages of a
+ * tenant are moved by an offset in the interleaved sequence. The interleaved sequence can be run on a shared cache
+ * (any CachePolicy) or on a cache split into a fixed LRU partition for every tenant, and the page faults are counted
+ * for every tenant.
+ * <p>
+ * The partition with the fewest page faults in total comes from the LRU page faults of every tenant for every
+ * partition size (its miss ratio curve, from ShardsEstimator), by dynamic programming over the tenants.
+ */
+final class MultiTenantSimulation {
+
+    private final int numOfTenants;
+    private final int[][] tenantStreams;
+    // the page p of tenant t is the page pageOffset[t] + p in the interleaved sequence
+    private final int[] pageOffset;
+    private final int[] requestSequence;
+    private final int[] tenantOf;
+
+    /**
+     * Interleaves the request streams: the next request comes from a tenant chosen with probability proportional to
+     * its rate (among the tenants that have requests left), until all streams are used up
+     * @param tenantStreams the request stream of every tenant (every page should be a non-negative number)
+     * @param rates rate of every tenant, in the same order as tenantStreams
+     * @param random chooses the tenant of every request
+     */
+    MultiTenantSimulation(List<int[]> tenantStreams, double[] rates, Random random) {
+
+        numOfTenants = tenantStreams.size();
+        if (rates.length != numOfTenants) {
+            throw new IllegalArgumentException("Expected a rate for each of the " + numOfTenants + " tenants");
+        }
+        this.tenantStreams = tenantStreams.toArray(new int[0][]);
+
+        pageOffset = new int[numOfTenants];
+        int n = 0;
+        for (int t = 0; t < numOfTenants; t ++) {
+            int maxPage = 0;
+            for (int page : this.tenantStreams[t]) {
+                maxPage = Math.max(maxPage, page);
+            }
+            if (t + 1 < numOfTenants) {
+                pageOffset[t + 1] = pageOffset[t] + maxPage + 1;
+            }
+            n += this.tenantStreams[t].length;
+        }
+
+        requestSequence = new int[n];
+        tenantOf = new int[n];
+        int[] nextRequestOfTenant = new int[numOfTenants];
+        double totalRate = 0;
+        for (int t = 0; t < numOfTenants; t ++) {
+            totalRate += this.tenantStreams[t].length > 0 ? rates[t] : 0;
+        }
+        for (int i = 0; i < n; i ++) {
+
+            // the tenants that run out of requests stop taking part
+            int tenant = -1;
+            double r = random.nextDouble() * totalRate;
+            for (int t = 0; t < numOfTenants; t ++) {
+                if (nextRequestOfTenant[t] < this.tenantStreams[t].length) {
+                    tenant = t;
+                    r -= rates[t];
+                    if (r < 0) {
+                        break;
+                    }
+                }
+            }
+
+            requestSequence[i] = pageOffset[tenant] + this.tenantStreams[tenant][nextRequestOfTenant[tenant] ++];
+            tenantOf[i] = tenant;
+            if (nextRequestOfTenant[tenant] == this.tenantStreams[tenant].length) {
+                totalRate -= rates[tenant];
+            }
+        }
+    }
+
+    /**
+     * @return the interleaved request sequence
+     */
+    int[] requestSequence() {
+        return requestSequence;
+    }
+
+    /**
+     * @return the tenant of every request of the interleaved request sequence
+     */
+    int[] tenantOf() {
+        return tenantOf;
+    }
+
+    int numOfTenants() {
+        return numOfTenants;
+    }
+
+    /**
+     * Runs the interleaved request sequence on a cache shared by all the tenants
+     * @param cache the shared cache, empty
+     * @param hPredictions predicted H values for the interleaved request sequence, can be null for caches that do not use predictions
+     * @return page faults of every tenant
+     */
+    long[] sharedPageFaults(CachePolicy cache, int[] hPredictions) {
+
+        long[] pageFaults = new long[numOfTenants];
+        for (int i = 0; i < requestSequence.length; i ++) {
+            if (!cache.access(requestSequence[i], hPredictions == null ? 0 : hPredictions[i])) {
+                pageFaults[tenantOf[i]] ++;
+            }
+        }
+        return pageFaults;
+    }
+
+    /**
+     * Runs the interleaved request sequence on a cache split into an LRU partition for every tenant
+     * @param partitionSizes size of the partition of every tenant (a tenant with size 0 has a page fault on every request)
+     * @return page faults of every tenant
+     */
+    long[] partitionedPageFaults(int[] partitionSizes) {
+
+        LRUCache[] partitions = new LRUCache[numOfTenants];
+        for (int t = 0; t < numOfTenants; t ++) {
+            partitions[t] = partitionSizes[t] > 0 ? new LRUCache(partitionSizes[t]) : null;
+        }
+
+        long[] pageFaults = new long[numOfTenants];
+        for (int i = 0; i < requestSequence.length; i ++) {
+            int tenant = tenantOf[i];
+            if (partitions[tenant] == null || !partitions[tenant].access(requestSequence[i], 0)) {
+                pageFaults[tenant] ++;
+            }
+        }
+        return pageFaults;
+    }
+
+    /**
+     * Estimates the LRU page faults of every tenant for every partition size, from the miss ratio curve of its stream
+     * @param maxPartitionSize largest partition size
+     * @param samplingRate sampling rate of ShardsEstimator, 1 gives the exact page faults
+     * @return pageFaultCurves[t][c] is the number of page faults of tenant t with a partition of size c
+     */
+    long[][] pageFaultCurves(int maxPartitionSize, double samplingRate) {
+
+        long[][] pageFaultCurves = new long[numOfTenants][maxPartitionSize + 1];
+        for (int t = 0; t < numOfTenants; t ++) {
+            int[] stream = tenantStreams[t];
+            ShardsEstimator estimator = new ShardsEstimator(samplingRate, maxPartitionSize, Math.max(1024, stream.length), 1, t);
+            estimator.offer(stream, 0, stream.length);
+            double[] missRatioCurve = estimator.missRatioCurve();
+            for (int c = 0; c <= maxPartitionSize; c ++) {
+                pageFaultCurves[t][c] = Math.round(missRatioCurve[c] * stream.length);
+            }
+        }
+        return pageFaultCurves;
+    }
+
+    /**
+     * Finds the partition sizes with the fewest page faults in total
+     * <p>
+     * fewestPageFaults[t][c] is the fewest page faults of the first t tenants with c pages between them, so
+     * fewestPageFaults[t + 1][c] is the minimum over s of fewestPageFaults[t][c - s] + pageFaultCurves[t][s].
+     * This takes O(tenants * cacheSize^2) time.
+     * @param pageFaultCurves pageFaultCurves[t][c] is the number of page faults of tenant t with a partition of size c
+     * @param cacheSize total size of the cache, at most the length of the curves minus 1
+     * @return the size of the partition of every tenant, they add up to cacheSize
+     */
+    static int[] optimalPartition(long[][] pageFaultCurves, int cacheSize) {
+
+        int numOfTenants = pageFaultCurves.length;
+        long[][] fewestPageFaults = new long[numOfTenants + 1][cacheSize + 1];
+        int[][] sizeOfLastTenant = new int[numOfTenants + 1][cacheSize + 1];
+
+        for (int t = 0; t < numOfTenants; t ++) {
+            Arrays.fill(fewestPageFaults[t + 1], Long.MAX_VALUE);
+            for (int c = 0; c <= cacheSize; c ++) {
+                for (int s = 0; s <= c; s ++) {
+                    long pageFaults = fewestPageFaults[t][c - s] + pageFaultCurves[t][s];
+                    // the smaller partition wins a tie, so that the pages left over go to the later tenants
+                    if (pageFaults < fewestPageFaults[t + 1][c]) {
+                        fewestPageFaults[t + 1][c] = pageFaults;
+                        sizeOfLastTenant[t + 1][c] = s;
+                    }
+                }
+            }
+        }
+
+        // going back from the last tenant to find the size of every partition
+        int[] partitionSizes = new int[numOfTenants];
+        int c = cacheSize;
+        for (int t = numOfTenants; t > 0; t --) {
+            partitionSizes[t - 1] = sizeOfLastTenant[t][c];
+            c -= partitionSizes[t - 1];
+        }
+        // pages that do not lower the page faults of anyone still go to the last tenant, so the whole cache is used
+        partitionSizes[numOfTenants - 1] += c;
+        return partitionSizes;
+    }
+}
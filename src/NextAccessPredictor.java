@@ -0,0 +1,44 @@
+/**
+ * Predicts, for every request as it arrives, when the same page will be requested next
+ * <p>
+ * generateH and addNoise in Paging need the whole request sequence, so they can only be used when the future is known.
+ * A NextAccessPredictor only looks at the requests seen so far, so its predictions can be given to BlindOracle,
+ * Combined or the marking algorithms (or to a CachePolicy) one request at a time on live traffic.
+ * <p>
+ * A prediction has the same meaning as a value of the H sequence: the (1-based) position of the next request to the
+ * same page. Every predictor keeps O(1) state per page in arrays indexed by the page, so pages should be non-negative
+ * numbers, ideally dense ids in [1, N].
+ */
+interface NextAccessPredictor {
+
+    /**
+     * Predicted H value for a page whose next request cannot be guessed yet (a page that has not been seen enough)
+     */
+    int NEVER = Integer.MAX_VALUE;
+
+    /**
+     * Processes the next request and predicts the position of the next request to the same page
+     * @param page the page requested
+     * @return predicted H value of this request, greater than the position of this request
+     */
+    int predict(int page);
+
+    /**
+     * Forgets all the requests seen, so the same instance can be used for another request sequence
+     */
+    void reset();
+
+    /**
+     * Predicts the H value of every request of a sequence, in order (the same as calling predict for each request)
+     * @param requestSequence sequence of page requests
+     * @return the H predictions
+     */
+    default int[] predictAll(int[] requestSequence) {
+
+        int[] hPredictions = new int[requestSequence.length];
+        for (int i = 0; i < requestSequence.length; i ++) {
+            hPredictions[i] = predict(requestSequence[i]);
+        }
+        return hPredictions;
+    }
+}
@@ -1,5 +1,12 @@
 import static java.util.Collections.singletonList;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -11,6 +18,11 @@ import java.util.Random;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 public class Paging {
 
@@ -29,9 +41,21 @@ public class Paging {
      * @return the request sequence in the form of an array
      */
     int[] generateRandomSequence(int k, int N, int n, double epsilon) {
+        return generateRandomSequence(k, N, n, epsilon, new Random());
+    }
+
+    /**
+     * Generates a random input sequence using the given random number generator, so that the same seed gives the same sequence
+     * @param k capacity of the cache
+     * @param N each request element belongs to [N]
+     * @param n length of the request sequence
+     * @param epsilon controls the amount of locality (large epsilon => more amount of locality)
+     * @param random random number generator to use
+     * @return the request sequence in the form of an array
+     */
+    int[] generateRandomSequence(int k, int N, int n, double epsilon, Random random) {
 
         int[] pageRequests = new int[n];
-        Random random = new Random();
 
         // the first k requests are to pages 1, 2, . . . , k
         for (int i = 0; i < k; i ++) {
@@ -62,7 +86,7 @@ public class Paging {
 
             // with probability epsilon, set pageRequests[i] = x
             // and with probability 1 - epsilon, set pageRequests[i] = y, and update l <- (l \ {x}) ∪ {y} and notL <- (notL \ {y}) ∪ {x}
-            if (Math.random() < epsilon) {
+            if (random.nextDouble() < epsilon) {
                 pageRequests[i] = x;
             } else {
                 pageRequests[i] = y;
@@ -84,26 +108,33 @@ public class Paging {
      */
     int[] generateH(int[] pageRequests) {
 
-        int n = pageRequests.length;
+        int[] h = new int[pageRequests.length];
+        generateH(pageRequests, h, new int[maxPage(pageRequests) + 1]);
 
-        int[] h = new int[n];
+//        System.out.println("H Sequence (without noise): " + Arrays.toString(h));
+
+        return h;
+    }
+
+    /**
+     * Generates the actual H sequence into the given arrays, so that the arrays can be reused for many sequences
+     * @param pageRequests array of page requests (every page should be a non-negative number)
+     * @param h array to put the H sequence in, at least as long as pageRequests
+     * @param nextRequestOf array used while generating, longer than the largest page
+     */
+    void generateH(int[] pageRequests, int[] h, int[] nextRequestOf) {
+
+        int n = pageRequests.length;
 
         // traverses page requests starting from the end
-        // uses a map to store the elements traversed and the left most index of each element till that point
-        // using this map finds out the H sequence
-        Map<Integer, Integer> elementIndexMap = new HashMap<>();
+        // nextRequestOf[page] is the left most index (1-based) of the page till that point, or n + 1 if it was not seen yet
+        for (int page : pageRequests) {
+            nextRequestOf[page] = n + 1;
+        }
         for (int i = n - 1; i >= 0; i --) {
-            if (!elementIndexMap.containsKey(pageRequests[i])) {
-                h[i] = n + 1;
-            } else {
-                h[i] = elementIndexMap.get(pageRequests[i]);
-            }
-            elementIndexMap.put(pageRequests[i], i + 1);
+            h[i] = nextRequestOf[pageRequests[i]];
+            nextRequestOf[pageRequests[i]] = i + 1;
         }
-
-//        System.out.println("H Sequence (without noise): " + Arrays.toString(h));
-
-        return h;
     }
 
     /**
@@ -117,11 +148,13 @@ public class Paging {
         // traverse the actual h sequence
         // with probability tow update h[i]
         // and choose a number uniformly between l = max(i + 1, h[i] − floor(omega/2)) and l + omega (inclusive)
+        // the random number generator of the thread, so that threads running trails at the same time do not wait for each other
+        Random random = ThreadLocalRandom.current();
         for (int i = 1; i <= h.length; i ++) {
-            if (Math.random() < tow) {
+            if (random.nextDouble() < tow) {
                 int minPossibleValue =  Math.max(i + 1, h[i - 1] - (int) (omega / 2.0));
                 int maxPossibleValue = minPossibleValue + omega;
-                h[i - 1] = minPossibleValue + new Random().nextInt(maxPossibleValue + 1 - minPossibleValue);
+                h[i - 1] = minPossibleValue + random.nextInt(maxPossibleValue + 1 - minPossibleValue);
             }
         }
 //        System.out.println("H Predictions (after adding noise): " + Arrays.toString(h));
@@ -157,6 +190,29 @@ public class Paging {
     }
 
 
+    /**
+     * runs the BlindOracle algorithm seeing only the next window requests and finds out the number of page faults
+     * <p>
+     * Pages with a request in the window are evicted by their next request, the furthest first. Pages without one are
+     * evicted first, the least recently used first, or the highest H prediction value first when predictions are given.
+     * See LookaheadBlindOracle.
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests
+     * @param window number of requests seen after the request being run
+     * @param hPredictions predicted H values, or null to evict the pages without a request in the window by recency
+     * @return number of page faults
+     */
+    int lookaheadBlindOracle(int k, int[] requestSequence, int window, int[] hPredictions) {
+
+        LookaheadBlindOracle cache = new LookaheadBlindOracle(k, window, hPredictions != null, maxPage(requestSequence));
+        for (int i = 0; i < requestSequence.length; i ++) {
+            cache.offer(requestSequence[i], hPredictions == null ? 0 : hPredictions[i]);
+        }
+        cache.finish();
+        // at most one page fault per request, so it fits in an int
+        return (int) cache.pageFaults();
+    }
+
     /**
      * Class that represents the node in the Doubly LinkedList of LRU Cache
      */
@@ -271,6 +327,70 @@ public class Paging {
         return combinedAlgPageFaults;
     }
 
+    /**
+     * runs the Combined algorithm with lazy switching and finds out the number of page faults
+     * <p>
+     * LRU and BlindOracle run as shadow caches and switch in the same way as combinedAlg, but a switch does not cost k
+     * page faults: the real cache loads the pages of the shadow cache in use only when they are requested, and evicts
+     * pages that are not in the shadow cache in use. See LazyCombinedCache.
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values
+     * @param threshold helps in deciding when to switch between LRU and BlindOracle algorithms
+     * @return number of page faults
+     */
+    int lazyCombinedAlg(int k, int[] requestSequence, int[] hPredictions, double threshold) {
+        return new LazyCombinedCache(k, threshold, maxPage(requestSequence)).accessBatch(requestSequence, hPredictions, 0, requestSequence.length, null);
+    }
+
+    /**
+     * runs the Combined algorithm for many thresholds at once and finds out the number of page faults for each of them
+     * <p>
+     * The page faults of LRU and BlindOracle do not depend on the threshold, only the switches do. So LRU and BlindOracle
+     * are run once, and for every request only the switching decisions are repeated for each threshold.
+     * The result for each threshold is the same as combinedAlg with that threshold.
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values
+     * @param thresholds the thresholds to evaluate
+     * @return number of page faults for each threshold, in the same order as thresholds
+     */
+    int[] combinedAlg(int k, int[] requestSequence, int[] hPredictions, double[] thresholds) {
+
+        int maxPage = maxPage(requestSequence);
+        LRUCache lruCache = new LRUCache(k, maxPage);
+        BlindOracleCache blindOracleCache = new BlindOracleCache(k, maxPage);
+
+        // page faults of combined algorithm and whether it is using LRU, for each threshold
+        int[] combinedAlgPageFaults = new int[thresholds.length];
+        boolean[] usingLRU = new boolean[thresholds.length];
+        Arrays.fill(usingLRU, true);
+
+        for (int i = 0; i < requestSequence.length; i ++) {
+
+            boolean lruHit = lruCache.access(requestSequence[i], hPredictions[i]);
+            boolean blindOracleHit = blindOracleCache.access(requestSequence[i], hPredictions[i]);
+            double lruPageFaults = lruCache.pageFaults();
+            double blindOraclePageFaults = blindOracleCache.pageFaults();
+
+            // same switching as in combinedAlg, for every threshold
+            for (int t = 0; t < thresholds.length; t ++) {
+                if (usingLRU[t] ? !lruHit : !blindOracleHit) {
+                    combinedAlgPageFaults[t] ++;
+                }
+                if (usingLRU[t] && lruPageFaults > (1 + thresholds[t]) * blindOraclePageFaults) {
+                    combinedAlgPageFaults[t] += k;
+                    usingLRU[t] = false;
+                } else if (!usingLRU[t] && blindOraclePageFaults > (1 + thresholds[t]) * lruPageFaults) {
+                    combinedAlgPageFaults[t] += k;
+                    usingLRU[t] = true;
+                }
+            }
+        }
+
+        return combinedAlgPageFaults;
+    }
+
     /**
      * Updates the LRU cache after getting a new page request
      * @param cacheBeginAndEnd contains the beginning and end nodes of the the doubly linked list implementation of the cache
@@ -341,7 +461,7 @@ public class Paging {
         if (cache.containsKey(requestSequence[i])) {
             updateOrdering(orderingInCache, requestSequence[i], cache.get(requestSequence[i]), hPredictions[i]);
         } else {
-            if (i >= k) {
+            if (cache.size() == k) {
                 int furthestHPrediction = orderingInCache.lastKey();
                 int elementToEvict = orderingInCache.get(furthestHPrediction).get(0);
                 removeFromOrdering(orderingInCache, elementToEvict, furthestHPrediction);
@@ -387,650 +507,3343 @@ public class Paging {
         }
     }
 
+    // list identifiers used by ARC, LIST_NONE means the page is in none of the lists
+    private static final int LIST_NONE = 0;
+    private static final int LIST_T1 = 1;
+    private static final int LIST_T2 = 2;
+    private static final int LIST_B1 = 3;
+    private static final int LIST_B2 = 4;
+
+    // marks the end of an array-backed linked list
+    private static final int NIL = -1;
+
     /**
-     * Runs all the tests and prints the result of the tests
-     * @param args we do not pass any arguments when running this class, so args will be empty
+     * runs the Adaptive Replacement Cache (ARC) algorithm and finds out the number of page faults
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @return number of page faults
      */
-    public static void main(String[] args) {
+    int ARC(int k, int[] requestSequence) {
 
-        System.out.println("Starting tests");
+        int pageFaults = 0;
 
-        List<String> results = new ArrayList<>();
+        // every page is in at most one of the 4 lists (T1, T2, B1, B2) at a time, so all of them share the prev and next arrays
+        // T1 and T2 are in the cache, B1 and B2 are the ghost lists that only remember the recently evicted pages
+        // in each list, head is the least recently used page and tail is the most recently used page
+        int maxPage = maxPage(requestSequence);
+        int[] prev = new int[maxPage + 1];
+        int[] next = new int[maxPage + 1];
+        int[] listOf = new int[maxPage + 1];
+        int[] head = new int[5];
+        int[] tail = new int[5];
+        int[] size = new int[5];
+        Arrays.fill(head, NIL);
+        Arrays.fill(tail, NIL);
+
+        // target size of T1, adapted on every hit in a ghost list
+        int p = 0;
 
-        results.add(test1());
-        results.add(test2());
-        results.add(test3());
-        results.add(test4());
-        results.add(test5());
-        results.add(test6());
-        results.add(test7());
-        results.add(test8());
-        results.add(test9());
-        results.add(test10());
-        results.add(test11());
-        results.add(test12());
-        results.add(test13());
-        results.add(test14());
-        results.add(test15());
-        results.add(test16());
-        results.add(test17());
-        results.add(test18());
-        results.add(test19());
+        for (int i = 0; i < requestSequence.length; i ++) {
+            int page = requestSequence[i];
+            int list = listOf[page];
 
-        System.out.println("\nResult: ");
+            if (list == LIST_T1 || list == LIST_T2) {
+                // cache hit, the page becomes frequently used
+                moveToList(prev, next, listOf, head, tail, size, page, LIST_T2);
+                continue;
+            }
 
-        boolean allTestsPassed = true;
-        for (int i = 1; i <= 19; i ++) {
-            String result = results.get(i - 1);
-            if (!result.equals(SUCCESS)) {
-                allTestsPassed = false;
-                System.out.println("Test " + i + " failed. Failure: " + result);
+            pageFaults ++;
+
+            if (list == LIST_B1) {
+                // recently evicted from T1, so T1 should have been larger
+                p = Math.min(k, p + Math.max(size[LIST_B2] / size[LIST_B1], 1));
+                replaceInARC(prev, next, listOf, head, tail, size, false, p);
+                moveToList(prev, next, listOf, head, tail, size, page, LIST_T2);
+            } else if (list == LIST_B2) {
+                // recently evicted from T2, so T2 should have been larger
+                p = Math.max(0, p - Math.max(size[LIST_B1] / size[LIST_B2], 1));
+                replaceInARC(prev, next, listOf, head, tail, size, true, p);
+                moveToList(prev, next, listOf, head, tail, size, page, LIST_T2);
+            } else {
+                int sizeOfL1 = size[LIST_T1] + size[LIST_B1];
+                int totalSize = sizeOfL1 + size[LIST_T2] + size[LIST_B2];
+                if (sizeOfL1 == k) {
+                    if (size[LIST_T1] < k) {
+                        moveToList(prev, next, listOf, head, tail, size, head[LIST_B1], LIST_NONE);
+                        replaceInARC(prev, next, listOf, head, tail, size, false, p);
+                    } else {
+                        moveToList(prev, next, listOf, head, tail, size, head[LIST_T1], LIST_NONE);
+                    }
+                } else if (totalSize >= k) {
+                    if (totalSize == 2 * k) {
+                        moveToList(prev, next, listOf, head, tail, size, head[LIST_B2], LIST_NONE);
+                    }
+                    replaceInARC(prev, next, listOf, head, tail, size, false, p);
+                }
+                moveToList(prev, next, listOf, head, tail, size, page, LIST_T1);
             }
         }
 
-        if (allTestsPassed) {
-            System.out.println("All tests passed");
-        }
+        return pageFaults;
     }
 
-    /* Below are the tests
-       -> If a test is successful, then it returns "Success"
-       -> Else, it returns the reason for the failure */
-
-    // tests whether a valid request sequence is generated
-    private static String test1() {
-        System.out.println("\n---------Running test1---------");
-        Paging paging = new Paging();
-
-        int N = 10;
-        int n = 20;
-        int k = 3;
-        double epsilon = 0.7;
-
-        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+    /**
+     * Evicts a page from the ARC cache, either the least recently used page of T1 or of T2, into the matching ghost list
+     * @param prev previous pointers of the lists
+     * @param next next pointers of the lists
+     * @param listOf the list each page currently belongs to
+     * @param head least recently used page of each list
+     * @param tail most recently used page of each list
+     * @param size size of each list
+     * @param requestInB2 whether the page that caused this eviction was found in B2
+     * @param p target size of T1
+     */
+    private void replaceInARC(int[] prev, int[] next, int[] listOf, int[] head, int[] tail, int[] size, boolean requestInB2, int p) {
 
-        // size of the request sequence should be n
-        if (requestSequence.length != n) {
-            return "Request sequence size is not n";
+        if (size[LIST_T1] >= 1 && ((requestInB2 && size[LIST_T1] == p) || size[LIST_T1] > p)) {
+            moveToList(prev, next, listOf, head, tail, size, head[LIST_T1], LIST_B1);
+        } else {
+            moveToList(prev, next, listOf, head, tail, size, head[LIST_T2], LIST_B2);
         }
+    }
 
-        // all elements should be in [1, N]
-        for (int i = 0; i < n; i ++) {
-            if (requestSequence[i] < 1 || requestSequence[i] > N) {
-                return "All elements in request sequence should be in [1, N]";
-            }
-        }
+    /**
+     * Removes a page from the list it is in (if any) and appends it to the most recently used end of the target list
+     * @param prev previous pointers of the lists
+     * @param next next pointers of the lists
+     * @param listOf the list each page currently belongs to
+     * @param head least recently used page of each list
+     * @param tail most recently used page of each list
+     * @param size size of each list
+     * @param page the page to move
+     * @param targetList list to move the page into, LIST_NONE just removes the page
+     */
+    private void moveToList(int[] prev, int[] next, int[] listOf, int[] head, int[] tail, int[] size, int page, int targetList) {
 
-        // first k elements should be 1,2,....,k
-        for (int i = 0; i < k; i ++) {
-            if (requestSequence[i] != i + 1) {
-                return "First k elements should be 1,2,....,k";
-            }
+        int currentList = listOf[page];
+        if (currentList != LIST_NONE) {
+            unlink(prev, next, head, tail, currentList, page);
+            size[currentList] --;
         }
 
-        System.out.println("---------Finished test1---------");
-        return SUCCESS;
+        listOf[page] = targetList;
+        if (targetList != LIST_NONE) {
+            append(prev, next, head, tail, targetList, page);
+            size[targetList] ++;
+        }
     }
 
-    // tests if the request sequence generated is a random one
-    private static String test2() {
-        System.out.println("\n---------Running test2---------");
-        Paging paging = new Paging();
+    /**
+     * runs the LIRS (Low Inter-reference Recency Set) algorithm and finds out the number of page faults
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @return number of page faults
+     */
+    int LIRS(int k, int[] requestSequence) {
 
-        int N = 1000;
-        int n = 2000;
-        int k = 5;
-        double epsilon = 0.7;
+        int pageFaults = 0;
 
-        int[][] requestSequences = new int[5][n];
+        // about 1% of the cache is given to resident HIR pages, at least 1 page
+        int maxHIRPages = Math.max(1, k / 100);
+        int maxLIRPages = k - maxHIRPages;
+
+        // stack S holds the LIR pages and the HIR pages that were requested recently (resident or not)
+        // queue Q holds the resident HIR pages, the page at the head of Q is evicted first
+        // a page can be in both S and Q, so each of them has its own prev and next arrays
+        // index 0 of head and tail belongs to S and index 1 belongs to Q, head of S is its bottom
+        int maxPage = maxPage(requestSequence);
+        int[] stackPrev = new int[maxPage + 1];
+        int[] stackNext = new int[maxPage + 1];
+        int[] queuePrev = new int[maxPage + 1];
+        int[] queueNext = new int[maxPage + 1];
+        boolean[] inStack = new boolean[maxPage + 1];
+        boolean[] inQueue = new boolean[maxPage + 1];
+        boolean[] isLIR = new boolean[maxPage + 1];
+        boolean[] isResident = new boolean[maxPage + 1];
+        int[] head = new int[] {NIL, NIL};
+        int[] tail = new int[] {NIL, NIL};
+
+        int numOfLIRPages = 0;
+        int numOfResidentPages = 0;
 
-        // generates 5 request sequences by calling generateRandomSequence with the same arguments and stores them in requestSequences
-        int iteration = 0;
-        while (iteration < 5) {
-            int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
-            for (int i = 0; i < n; i ++) {
-                requestSequences[iteration][i] = requestSequence[i];
+        for (int i = 0; i < requestSequence.length; i ++) {
+            int page = requestSequence[i];
+
+            if (isLIR[page]) {
+                // cache hit on a LIR page, move it to the top of S and prune S in case it was at the bottom
+                unlink(stackPrev, stackNext, head, tail, 0, page);
+                append(stackPrev, stackNext, head, tail, 0, page);
+                pruneLIRSStack(stackPrev, stackNext, inStack, isLIR, isResident, head, tail);
+                continue;
             }
 
-            iteration ++;
-        }
+            if (!isResident[page]) {
+                pageFaults ++;
 
-        // checks if any 2 request sequences out of the 5 are the same
-        // (because n and N are considerably large, there is really a very minute chance to get 2 same sequences in 5 when Java uses randomness)
-        for (int i = 0; i < 5; i ++) {
-            for (int j = i + 1; j < 5; j ++) {
-                if (Arrays.equals(requestSequences[i], requestSequences[j])) {
-                    return "Request sequences " + (i + 1) + ", " + (j + 1) + " are identical";
+                // the cache is full, so the resident HIR page at the head of Q is evicted
+                // it stays in S (as a non-resident HIR page) if it is there
+                if (numOfResidentPages == k) {
+                    int pageToEvict = head[1];
+                    unlink(queuePrev, queueNext, head, tail, 1, pageToEvict);
+                    inQueue[pageToEvict] = false;
+                    isResident[pageToEvict] = false;
+                    numOfResidentPages --;
+                }
+
+                isResident[page] = true;
+                numOfResidentPages ++;
+
+                // while there is room in the LIR set, every new page becomes a LIR page
+                if (numOfLIRPages < maxLIRPages) {
+                    if (inStack[page]) {
+                        unlink(stackPrev, stackNext, head, tail, 0, page);
+                    }
+                    append(stackPrev, stackNext, head, tail, 0, page);
+                    inStack[page] = true;
+                    isLIR[page] = true;
+                    numOfLIRPages ++;
+                    continue;
+                }
+            }
+
+            // from here on the page is a resident HIR page
+            if (inStack[page]) {
+                // its new reuse distance is smaller than the recency of the bottom LIR page, so they swap their status
+                unlink(stackPrev, stackNext, head, tail, 0, page);
+                append(stackPrev, stackNext, head, tail, 0, page);
+                if (inQueue[page]) {
+                    unlink(queuePrev, queueNext, head, tail, 1, page);
+                    inQueue[page] = false;
+                }
+                isLIR[page] = true;
+
+                int bottomLIRPage = head[0];
+                unlink(stackPrev, stackNext, head, tail, 0, bottomLIRPage);
+                inStack[bottomLIRPage] = false;
+                isLIR[bottomLIRPage] = false;
+                append(queuePrev, queueNext, head, tail, 1, bottomLIRPage);
+                inQueue[bottomLIRPage] = true;
+                pruneLIRSStack(stackPrev, stackNext, inStack, isLIR, isResident, head, tail);
+            } else {
+                // stays a HIR page, it goes to the top of S and to the end of Q
+                append(stackPrev, stackNext, head, tail, 0, page);
+                inStack[page] = true;
+                if (inQueue[page]) {
+                    unlink(queuePrev, queueNext, head, tail, 1, page);
                 }
+                append(queuePrev, queueNext, head, tail, 1, page);
+                inQueue[page] = true;
             }
         }
 
-        System.out.println("---------Finished test2---------");
-        return SUCCESS;
+        return pageFaults;
     }
 
-    // tests if the request sequence has the amount of locality depending on epsilon
-    private static String test3() {
-        System.out.println("\n---------Running test3---------");
-        Paging paging = new Paging();
+    /**
+     * Removes the HIR pages from the bottom of the LIRS stack until there is a LIR page at the bottom
+     * @param stackPrev previous pointers of the stack
+     * @param stackNext next pointers of the stack
+     * @param inStack whether each page is in the stack
+     * @param isLIR whether each page is a LIR page
+     * @param isResident whether each page is in the cache
+     * @param head bottom of the stack is at index 0
+     * @param tail top of the stack is at index 0
+     */
+    private void pruneLIRSStack(int[] stackPrev, int[] stackNext, boolean[] inStack, boolean[] isLIR, boolean[] isResident, int[] head, int[] tail) {
 
-        int N = 1000;
-        int n = 2000;
-        int k = 5;
+        while (head[0] != NIL && !isLIR[head[0]]) {
+            int bottomPage = head[0];
+            unlink(stackPrev, stackNext, head, tail, 0, bottomPage);
+            inStack[bottomPage] = false;
+        }
+    }
 
-        // testing the same 10 times to gain confidence, because we use randomness in methods
-        int iterations = 10;
-        while (iterations > 0) {
-            int[] requestSequenceWithHighEpsilon = paging.generateRandomSequence(k, N, n, 0.7);
-            int[] requestSequenceWithLowEpsilon = paging.generateRandomSequence(k, N, n, 0.2);
+    /**
+     * runs the Predictive Marker algorithm and finds out the number of page faults
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @param hPredictions predicted H values
+     * @return number of page faults
+     */
+    int predictiveMarker(int k, int[] requestSequence, int[] hPredictions) {
+        return markingAlgorithm(k, requestSequence, hPredictions, true);
+    }
 
-            Set<Integer> distinctElementsInSequenceWithHighEpsilon = new HashSet<>();
-            Set<Integer> distinctElementsInSequenceWithLowEpsilon = new HashSet<>();
+    /**
+     * runs the LMarker algorithm and finds out the number of page faults
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @param hPredictions predicted H values
+     * @return number of page faults
+     */
+    int lMarker(int k, int[] requestSequence, int[] hPredictions) {
+        return markingAlgorithm(k, requestSequence, hPredictions, false);
+    }
 
-            for (int i = 0; i < n; i++) {
-                distinctElementsInSequenceWithHighEpsilon.add(requestSequenceWithHighEpsilon[i]);
-                distinctElementsInSequenceWithLowEpsilon.add(requestSequenceWithLowEpsilon[i]);
-            }
+    /**
+     * runs a marking algorithm that uses H predictions to choose which unmarked page to evict (see MarkerCache)
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @param hPredictions predicted H values
+     * @param followChains true for Predictive Marker, false for LMarker
+     * @return number of page faults
+     */
+    private int markingAlgorithm(int k, int[] requestSequence, int[] hPredictions, boolean followChains) {
 
-            // when we use high epsilon, this should increase the amount of locality
-            // increasing amount of locality means choosing the element that is already in the last k distinct elements
-            // so, in general, the distinct elements in case of high amount of locality should be lesser than distinct elements when less amount of locality
-            if (distinctElementsInSequenceWithHighEpsilon.size() > distinctElementsInSequenceWithLowEpsilon.size()) {
-                return "Amount of locality is not as expected";
-            }
+        MarkerCache markerCache = new MarkerCache(k, followChains, maxPage(requestSequence), new Random());
+        return markerCache.accessBatch(requestSequence, hPredictions, 0, requestSequence.length, null);
+    }
 
-            iterations --;
-        }
+    /**
+     * Removes a page from an array-backed doubly linked list
+     * @param prev previous pointers of the list
+     * @param next next pointers of the list
+     * @param head first element of each list
+     * @param tail last element of each list
+     * @param list the list to remove the page from
+     * @param page the page to remove
+     */
+    private void unlink(int[] prev, int[] next, int[] head, int[] tail, int list, int page) {
 
-        System.out.println("---------Finished test3---------");
-        return SUCCESS;
+        if (prev[page] != NIL) {
+            next[prev[page]] = next[page];
+        } else {
+            head[list] = next[page];
+        }
+        if (next[page] != NIL) {
+            prev[next[page]] = prev[page];
+        } else {
+            tail[list] = prev[page];
+        }
+        prev[page] = NIL;
+        next[page] = NIL;
     }
 
-    // tests if Hseq is as expected for a request sequence
-    private static String test4() {
-        System.out.println("\n---------Running test4---------");
-        Paging paging = new Paging();
+    /**
+     * Adds a page at the end of an array-backed doubly linked list
+     * @param prev previous pointers of the list
+     * @param next next pointers of the list
+     * @param head first element of each list
+     * @param tail last element of each list
+     * @param list the list to add the page to
+     * @param page the page to add
+     */
+    private void append(int[] prev, int[] next, int[] head, int[] tail, int list, int page) {
 
-        int[] requestSequence = new int[] {1, 2, 3, 2, 1, 5, 4, 1, 5, 2};
-        // this is the H sequence that I find out using paper for the above request sequence
-        int[] expectedHSeq = new int[] {5, 4, 11, 10, 8, 9, 11, 11, 11, 11};
+        prev[page] = tail[list];
+        next[page] = NIL;
+        if (tail[list] != NIL) {
+            next[tail[list]] = page;
+        } else {
+            head[list] = page;
+        }
+        tail[list] = page;
+    }
 
-        int[] generatedHSeq = paging.generateH(requestSequence);
+    /**
+     * Finds the largest page in a request sequence, used to size the arrays of the array-backed algorithms
+     * @param requestSequence sequence of page requests
+     * @return the largest page, 0 for an empty sequence
+     */
+    private int maxPage(int[] requestSequence) {
+
+        int maxPage = 0;
+        for (int page : requestSequence) {
+            maxPage = Math.max(maxPage, page);
+        }
+        return maxPage;
+    }
+
+    /**
+     * Result of running an algorithm in the byte-capacity mode, where pages have different sizes
+     */
+    public static class WeightedResult {
+        int pageFaults;
+        long requestedBytes;
+        long hitBytes;
+
+        /**
+         * @return fraction of the requested bytes that were served from the cache
+         */
+        double byteHitRatio() {
+            return requestedBytes == 0 ? 0 : (double) hitBytes / requestedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "pageFaults: " + pageFaults + ", byteHitRatio: " + byteHitRatio();
+        }
+    }
+
+    /**
+     * Generates a size for every request, all requests to a page get the same size
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @param minSize smallest size of a page in bytes
+     * @param maxSize largest size of a page in bytes
+     * @return the sizes, sizes[i] is the size of the page at requestSequence[i]
+     */
+    int[] generateSizes(int[] requestSequence, int minSize, int maxSize) {
+
+        Random random = new Random();
+
+        // sizes are chosen uniformly on a log scale, so small pages are as common as large ones
+        int[] sizeOfPage = new int[maxPage(requestSequence) + 1];
+        for (int page = 0; page < sizeOfPage.length; page ++) {
+            double logSize = Math.log(minSize) + random.nextDouble() * (Math.log(maxSize) - Math.log(minSize));
+            sizeOfPage[page] = (int) Math.min(maxSize, Math.max(minSize, Math.round(Math.exp(logSize))));
+        }
+
+        int[] sizes = new int[requestSequence.length];
+        for (int i = 0; i < requestSequence.length; i ++) {
+            sizes[i] = sizeOfPage[requestSequence[i]];
+        }
+        return sizes;
+    }
+
+    /**
+     * runs the LRU algorithm with a cache that holds at most capacity bytes and finds out the page faults and the byte hit ratio
+     * @param capacity cache capacity in bytes
+     * @param requestSequence sequence of page requests
+     * @param sizes sizes[i] is the size in bytes of the page at requestSequence[i], the same for all requests to a page
+     * @return page faults, requested bytes and bytes served from the cache
+     */
+    WeightedResult weightedLRU(long capacity, int[] requestSequence, int[] sizes) {
+
+        WeightedResult result = new WeightedResult();
+
+        // LRU cache, usedBytes[0] is the total size of the pages in the cache
+        Node[] cacheBeginAndEnd = new Node[2];
+        Map<Integer, Node> elementsInCache = new HashMap<>();
+        Map<Integer, Integer> sizesInCache = new HashMap<>();
+        long[] usedBytes = new long[1];
+
+        for (int i = 0; i < requestSequence.length; i ++) {
+            result.requestedBytes += sizes[i];
+            if (elementsInCache.containsKey(requestSequence[i])) {
+                result.hitBytes += sizes[i];
+            } else {
+                result.pageFaults ++;
+            }
+            updateWeightedLRUCache(cacheBeginAndEnd, elementsInCache, sizesInCache, usedBytes, capacity, requestSequence[i], sizes[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * runs the BlindOracle algorithm with a cache that holds at most capacity bytes and finds out the page faults and the byte hit ratio
+     * @param capacity cache capacity in bytes
+     * @param requestSequence sequence of page requests
+     * @param sizes sizes[i] is the size in bytes of the page at requestSequence[i], the same for all requests to a page
+     * @param hPredictions predicted H values
+     * @return page faults, requested bytes and bytes served from the cache
+     */
+    WeightedResult weightedBlindOracle(long capacity, int[] requestSequence, int[] sizes, int[] hPredictions) {
+
+        WeightedResult result = new WeightedResult();
+
+        Map<Integer, Integer> cache = new HashMap<>();
+        SortedMap<Integer, List<Integer>> orderingInCache = new TreeMap<>();
+        Map<Integer, Integer> sizesInCache = new HashMap<>();
+        long[] usedBytes = new long[1];
+
+        for (int i = 0; i < requestSequence.length; i ++) {
+            result.requestedBytes += sizes[i];
+            if (cache.containsKey(requestSequence[i])) {
+                result.hitBytes += sizes[i];
+            } else {
+                result.pageFaults ++;
+            }
+            updateWeightedBlindOracleCache(cache, orderingInCache, sizesInCache, usedBytes, capacity, i, requestSequence, sizes, hPredictions);
+        }
+
+        return result;
+    }
+
+    /**
+     * runs the Combined algorithm with caches that hold at most capacity bytes and finds out the page faults and the byte hit ratio
+     * <p>
+     * Switching works as in combinedAlg, but instead of a flat k the switch costs one page fault for every page
+     * in the cache of the algorithm we switch to, as that is how many pages have to be loaded.
+     * @param capacity cache capacity in bytes
+     * @param requestSequence sequence of page requests
+     * @param sizes sizes[i] is the size in bytes of the page at requestSequence[i], the same for all requests to a page
+     * @param hPredictions predicted H values
+     * @param threshold helps in deciding when to switch between LRU and BlindOracle algorithms
+     * @return page faults, requested bytes and bytes served from the cache
+     */
+    WeightedResult weightedCombinedAlg(long capacity, int[] requestSequence, int[] sizes, int[] hPredictions, double threshold) {
+
+        WeightedResult result = new WeightedResult();
+
+        // LRU page faults and cache to run LRU algorithm
+        int lruPageFaults = 0;
+        Node[] cacheBeginAndEnd = new Node[2];
+        Map<Integer, Node> elementsInCache = new HashMap<>();
+        Map<Integer, Integer> sizesInLRUCache = new HashMap<>();
+        long[] usedBytesInLRUCache = new long[1];
+
+        // BlindOracle page faults and cache to run BlindOracle algorithm
+        int blindOraclePageFaults = 0;
+        Map<Integer, Integer> blindOracleCache = new HashMap<>();
+        SortedMap<Integer, List<Integer>> orderingInBlindOracleCache = new TreeMap<>();
+        Map<Integer, Integer> sizesInBlindOracleCache = new HashMap<>();
+        long[] usedBytesInBlindOracleCache = new long[1];
+
+        // starting with LRU initially
+        boolean usingLRU = true;
+
+        for (int i = 0; i < requestSequence.length; i ++) {
+            result.requestedBytes += sizes[i];
+
+            // running LRU algorithm
+            if (!elementsInCache.containsKey(requestSequence[i])) {
+                lruPageFaults ++;
+                if (usingLRU) {
+                    result.pageFaults ++;
+                }
+            } else if (usingLRU) {
+                result.hitBytes += sizes[i];
+            }
+            updateWeightedLRUCache(cacheBeginAndEnd, elementsInCache, sizesInLRUCache, usedBytesInLRUCache, capacity, requestSequence[i], sizes[i]);
+
+            // running BlindOracle algorithm
+            if (!blindOracleCache.containsKey(requestSequence[i])) {
+                blindOraclePageFaults ++;
+                if (!usingLRU) {
+                    result.pageFaults ++;
+                }
+            } else if (!usingLRU) {
+                result.hitBytes += sizes[i];
+            }
+            updateWeightedBlindOracleCache(blindOracleCache, orderingInBlindOracleCache, sizesInBlindOracleCache, usedBytesInBlindOracleCache,
+                    capacity, i, requestSequence, sizes, hPredictions);
+
+            // checking if it has to switch and then switch if necessary
+            // add the number of pages in the cache we switch to, to the page faults of Combined Algorithm
+            if (usingLRU && ((double) lruPageFaults) > (1 + threshold) * ((double) blindOraclePageFaults)) {
+                result.pageFaults += blindOracleCache.size();
+                usingLRU = false;
+            } else if (!usingLRU && ((double) blindOraclePageFaults) > (1 + threshold) * ((double) lruPageFaults)) {
+                result.pageFaults += elementsInCache.size();
+                usingLRU = true;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates the LRU cache that holds at most capacity bytes after getting a new page request
+     * <p>
+     * Evicts the least recently used pages until the requested page fits. A page larger than the whole cache is not cached.
+     * @param cacheBeginAndEnd contains the beginning and end nodes of the the doubly linked list implementation of the cache
+     * @param elementsInCache maps the keys to the nodes of the linked list
+     * @param sizesInCache maps the keys to their sizes
+     * @param usedBytes usedBytes[0] is the total size of the pages in the cache
+     * @param capacity cache capacity in bytes
+     * @param pageRequest page requested
+     * @param size size of the page requested
+     */
+    private void updateWeightedLRUCache(Node[] cacheBeginAndEnd, Map<Integer, Node> elementsInCache, Map<Integer, Integer> sizesInCache,
+                                        long[] usedBytes, long capacity, int pageRequest, int size) {
+
+        if (!elementsInCache.containsKey(pageRequest)) {
+            if (size > capacity) {
+                return;
+            }
+            while (usedBytes[0] + size > capacity) {
+                Node leastRecentlyUsed = cacheBeginAndEnd[0];
+                elementsInCache.remove(leastRecentlyUsed.key);
+                usedBytes[0] -= sizesInCache.remove(leastRecentlyUsed.key);
+                cacheBeginAndEnd[0] = leastRecentlyUsed.next;
+                if (cacheBeginAndEnd[0] != null) {
+                    cacheBeginAndEnd[0].prev = null;
+                } else {
+                    cacheBeginAndEnd[1] = null;
+                }
+            }
+            sizesInCache.put(pageRequest, size);
+            usedBytes[0] += size;
+        }
+
+        // the page is in the cache or there is room for it, so the unweighted update moves it to the end of the list
+        updateLRUCache(cacheBeginAndEnd, elementsInCache, Integer.MAX_VALUE, pageRequest);
+    }
+
+    /**
+     * Updates the BlindOracle cache that holds at most capacity bytes after getting a new page request
+     * <p>
+     * Evicts the pages with the highest H prediction values until the requested page fits. A page larger than the whole cache is not cached.
+     * @param cache BlindOracle cache
+     * @param orderingInCache ordering according to H prediction value in the BlindOracle cache
+     * @param sizesInCache maps the keys to their sizes
+     * @param usedBytes usedBytes[0] is the total size of the pages in the cache
+     * @param capacity cache capacity in bytes
+     * @param i index of new page request in the request sequence
+     * @param requestSequence request sequence
+     * @param sizes sizes of the pages in the request sequence
+     * @param hPredictions H prediction values that will be used by BlindOracle algorithm
+     */
+    private void updateWeightedBlindOracleCache(Map<Integer, Integer> cache, SortedMap<Integer, List<Integer>> orderingInCache,
+                                                Map<Integer, Integer> sizesInCache, long[] usedBytes, long capacity,
+                                                int i, int[] requestSequence, int[] sizes, int[] hPredictions) {
+
+        if (cache.containsKey(requestSequence[i])) {
+            updateOrdering(orderingInCache, requestSequence[i], cache.get(requestSequence[i]), hPredictions[i]);
+        } else {
+            if (sizes[i] > capacity) {
+                return;
+            }
+            while (usedBytes[0] + sizes[i] > capacity) {
+                int furthestHPrediction = orderingInCache.lastKey();
+                int elementToEvict = orderingInCache.get(furthestHPrediction).get(0);
+                removeFromOrdering(orderingInCache, elementToEvict, furthestHPrediction);
+                cache.remove(elementToEvict);
+                usedBytes[0] -= sizesInCache.remove(elementToEvict);
+            }
+            updateOrdering(orderingInCache, requestSequence[i], null, hPredictions[i]);
+            sizesInCache.put(requestSequence[i], sizes[i]);
+            usedBytes[0] += sizes[i];
+        }
+        cache.put(requestSequence[i], hPredictions[i]);
+    }
+
+    /**
+     * Result of running an algorithm where every page has a miss cost, such as the latency of loading it
+     */
+    public static class CostResult {
+        int pageFaults;
+        long missCost;
+        long switchCost;
+
+        /**
+         * @return cost of all the page faults and of the switches between caches
+         */
+        long totalCost() {
+            return missCost + switchCost;
+        }
+
+        @Override
+        public String toString() {
+            return "pageFaults: " + pageFaults + ", missCost: " + missCost + ", switchCost: " + switchCost + ", totalCost: " + totalCost();
+        }
+    }
+
+    /**
+     * Generates a miss cost for every request, all requests to a page get the same cost
+     * <p>
+     * Costs are chosen like sizes in generateSizes, uniformly on a log scale, so for latencies a local read is as common
+     * as a fetch from far away.
+     * @param requestSequence sequence of page requests (every page should be a non-negative number)
+     * @param minCost smallest cost of a page fault, at least 1
+     * @param maxCost largest cost of a page fault
+     * @return the costs, costs[i] is the cost of a page fault on the page at requestSequence[i]
+     */
+    int[] generateCosts(int[] requestSequence, int minCost, int maxCost) {
+        return generateSizes(requestSequence, minCost, maxCost);
+    }
+
+    /**
+     * runs the GreedyDual algorithm and finds out the page faults and their total cost
+     * <p>
+     * Every page in the cache has a credit, set to L + cost of the page when it is requested. The page with the lowest
+     * credit is evicted and L becomes its credit, so pages that are cheap to load again leave first and expensive
+     * pages stay until they have not been used for a long time. With all costs the same it evicts exactly like LRU.
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests
+     * @param costs costs[i] is the cost of a page fault on the page at requestSequence[i], the same for all requests to a page
+     * @return page faults and their total cost
+     */
+    CostResult greedyDual(int k, int[] requestSequence, int[] costs) {
+
+        CostResult result = new CostResult();
+        CostAwareCache cache = new CostAwareCache(k, maxPage(requestSequence), false);
+        for (int i = 0; i < requestSequence.length; i ++) {
+            if (!cache.contains(requestSequence[i])) {
+                result.pageFaults ++;
+                result.missCost += costs[i];
+            }
+            cache.update(i, requestSequence[i], costs[i], 0);
+        }
+        return result;
+    }
+
+    /**
+     * runs the cost-aware BlindOracle algorithm and finds out the page faults and their total cost
+     * <p>
+     * On a page fault it evicts the page with the highest predicted distance to its next request divided by its cost,
+     * that is the page that saves the least cost for every request it stays in the cache. A predicted next request that
+     * has already passed counts as a distance of 1. With all costs the same it evicts exactly like blindOracle.
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests
+     * @param costs costs[i] is the cost of a page fault on the page at requestSequence[i], the same for all requests to a page
+     * @param hPredictions predicted H values
+     * @return page faults and their total cost
+     */
+    CostResult costAwareBlindOracle(int k, int[] requestSequence, int[] costs, int[] hPredictions) {
+
+        CostResult result = new CostResult();
+        CostAwareCache cache = new CostAwareCache(k, maxPage(requestSequence), true);
+        for (int i = 0; i < requestSequence.length; i ++) {
+            if (!cache.contains(requestSequence[i])) {
+                result.pageFaults ++;
+                result.missCost += costs[i];
+            }
+            cache.update(i, requestSequence[i], costs[i], hPredictions[i]);
+        }
+        return result;
+    }
+
+    /**
+     * runs the cost-aware Combined algorithm and finds out the page faults and their total cost
+     * <p>
+     * It runs greedyDual and costAwareBlindOracle side by side and switches like combinedAlg, but compares the cost of
+     * their page faults instead of the number of page faults. A switch costs the total cost of the pages in the cache
+     * we switch to instead of a flat k, as all of them have to be loaded. With all costs 1 it gives the same page faults
+     * and total cost as combinedAlg.
+     * @param k cache capacity
+     * @param requestSequence sequence of page requests
+     * @param costs costs[i] is the cost of a page fault on the page at requestSequence[i], the same for all requests to a page
+     * @param hPredictions predicted H values
+     * @param threshold helps in deciding when to switch between GreedyDual and cost-aware BlindOracle algorithms
+     * @return page faults, their total cost and the total cost of the switches
+     */
+    CostResult costAwareCombinedAlg(int k, int[] requestSequence, int[] costs, int[] hPredictions, double threshold) {
+
+        CostResult result = new CostResult();
+        int maxPage = maxPage(requestSequence);
+
+        // GreedyDual cost and cache
+        long greedyDualCost = 0;
+        CostAwareCache greedyDualCache = new CostAwareCache(k, maxPage, false);
+
+        // cost-aware BlindOracle cost and cache
+        long blindOracleCost = 0;
+        CostAwareCache blindOracleCache = new CostAwareCache(k, maxPage, true);
+
+        // starting with GreedyDual initially
+        boolean usingGreedyDual = true;
+
+        for (int i = 0; i < requestSequence.length; i ++) {
+
+            // running GreedyDual algorithm
+            if (!greedyDualCache.contains(requestSequence[i])) {
+                greedyDualCost += costs[i];
+                if (usingGreedyDual) {
+                    result.pageFaults ++;
+                    result.missCost += costs[i];
+                }
+            }
+            greedyDualCache.update(i, requestSequence[i], costs[i], 0);
+
+            // running cost-aware BlindOracle algorithm
+            if (!blindOracleCache.contains(requestSequence[i])) {
+                blindOracleCost += costs[i];
+                if (!usingGreedyDual) {
+                    result.pageFaults ++;
+                    result.missCost += costs[i];
+                }
+            }
+            blindOracleCache.update(i, requestSequence[i], costs[i], hPredictions[i]);
+
+            // checking if it has to switch and then switch if necessary
+            // add the cost of loading the cache we switch to, to the switch cost of Combined Algorithm
+            if (usingGreedyDual && ((double) greedyDualCost) > (1 + threshold) * ((double) blindOracleCost)) {
+                result.switchCost += blindOracleCache.costOfPages;
+                usingGreedyDual = false;
+            } else if (!usingGreedyDual && ((double) blindOracleCost) > (1 + threshold) * ((double) greedyDualCost)) {
+                result.switchCost += greedyDualCache.costOfPages;
+                usingGreedyDual = true;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * runs a cache policy on the request sequence and finds out the page faults and their total cost
+     * <p>
+     * Useful to see what the policies that do not know about costs, such as LRU, cost when pages have different costs.
+     * @param policy cache policy to run, it is reset first
+     * @param requestSequence sequence of page requests
+     * @param hPredictions predicted H values, can be null if the policy does not use them
+     * @param costs costs[i] is the cost of a page fault on the page at requestSequence[i]
+     * @return page faults and their total cost
+     */
+    CostResult costOf(CachePolicy policy, int[] requestSequence, int[] hPredictions, int[] costs) {
+
+        CostResult result = new CostResult();
+        policy.reset();
+        long[] hitBitmap = new long[(requestSequence.length + 63) >>> 6];
+        result.pageFaults = policy.accessBatch(requestSequence, hPredictions, 0, requestSequence.length, hitBitmap);
+        for (int i = 0; i < requestSequence.length; i ++) {
+            if ((hitBitmap[i >>> 6] & (1L << i)) == 0) {
+                result.missCost += costs[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs all the tests and prints the result of the tests
+     * @param args we do not pass any arguments when running this class, so args will be empty
+     */
+    public static void main(String[] args) {
+
+        System.out.println("Starting tests");
+
+        List<String> results = new ArrayList<>();
+
+        results.add(test1());
+        results.add(test2());
+        results.add(test3());
+        results.add(test4());
+        results.add(test5());
+        results.add(test6());
+        results.add(test7());
+        results.add(test8());
+        results.add(test9());
+        results.add(test10());
+        results.add(test11());
+        results.add(test12());
+        results.add(test13());
+        results.add(test14());
+        results.add(test15());
+        results.add(test16());
+        results.add(test17());
+        results.add(test18());
+        results.add(test19());
+        results.add(test20());
+        results.add(test21());
+        results.add(test22());
+        results.add(test23());
+        results.add(test24());
+        results.add(test25());
+        results.add(test26());
+        results.add(test27());
+        results.add(test28());
+        results.add(test29());
+        results.add(test30());
+        results.add(test31());
+        results.add(test32());
+        results.add(test33());
+        results.add(test34());
+        results.add(test35());
+        results.add(test36());
+        results.add(test37());
+        results.add(test38());
+        results.add(test39());
+        results.add(test40());
+        results.add(test41());
+        results.add(test42());
+        results.add(test43());
+        results.add(test44());
+        results.add(test45());
+        results.add(test46());
+        results.add(test47());
+        results.add(test48());
+        results.add(test49());
+        results.add(test50());
+        results.add(test51());
+
+        System.out.println("\nResult: ");
+
+        boolean allTestsPassed = true;
+        for (int i = 1; i <= results.size(); i ++) {
+            String result = results.get(i - 1);
+            if (!result.equals(SUCCESS)) {
+                allTestsPassed = false;
+                System.out.println("Test " + i + " failed. Failure: " + result);
+            }
+        }
+
+        if (allTestsPassed) {
+            System.out.println("All tests passed");
+        }
+    }
+
+    /* Below are the tests
+       -> If a test is successful, then it returns "Success"
+       -> Else, it returns the reason for the failure */
+
+    // tests whether a valid request sequence is generated
+    private static String test1() {
+        System.out.println("\n---------Running test1---------");
+        Paging paging = new Paging();
+
+        int N = 10;
+        int n = 20;
+        int k = 3;
+        double epsilon = 0.7;
+
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+
+        // size of the request sequence should be n
+        if (requestSequence.length != n) {
+            return "Request sequence size is not n";
+        }
+
+        // all elements should be in [1, N]
+        for (int i = 0; i < n; i ++) {
+            if (requestSequence[i] < 1 || requestSequence[i] > N) {
+                return "All elements in request sequence should be in [1, N]";
+            }
+        }
+
+        // first k elements should be 1,2,....,k
+        for (int i = 0; i < k; i ++) {
+            if (requestSequence[i] != i + 1) {
+                return "First k elements should be 1,2,....,k";
+            }
+        }
+
+        System.out.println("---------Finished test1---------");
+        return SUCCESS;
+    }
+
+    // tests if the request sequence generated is a random one
+    private static String test2() {
+        System.out.println("\n---------Running test2---------");
+        Paging paging = new Paging();
+
+        int N = 1000;
+        int n = 2000;
+        int k = 5;
+        double epsilon = 0.7;
+
+        int[][] requestSequences = new int[5][n];
+
+        // generates 5 request sequences by calling generateRandomSequence with the same arguments and stores them in requestSequences
+        int iteration = 0;
+        while (iteration < 5) {
+            int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+            for (int i = 0; i < n; i ++) {
+                requestSequences[iteration][i] = requestSequence[i];
+            }
+
+            iteration ++;
+        }
+
+        // checks if any 2 request sequences out of the 5 are the same
+        // (because n and N are considerably large, there is really a very minute chance to get 2 same sequences in 5 when Java uses randomness)
+        for (int i = 0; i < 5; i ++) {
+            for (int j = i + 1; j < 5; j ++) {
+                if (Arrays.equals(requestSequences[i], requestSequences[j])) {
+                    return "Request sequences " + (i + 1) + ", " + (j + 1) + " are identical";
+                }
+            }
+        }
+
+        System.out.println("---------Finished test2---------");
+        return SUCCESS;
+    }
+
+    // tests if the request sequence has the amount of locality depending on epsilon
+    private static String test3() {
+        System.out.println("\n---------Running test3---------");
+        Paging paging = new Paging();
+
+        int N = 1000;
+        int n = 2000;
+        int k = 5;
+
+        // testing the same 10 times to gain confidence, because we use randomness in methods
+        int iterations = 10;
+        while (iterations > 0) {
+            int[] requestSequenceWithHighEpsilon = paging.generateRandomSequence(k, N, n, 0.7);
+            int[] requestSequenceWithLowEpsilon = paging.generateRandomSequence(k, N, n, 0.2);
+
+            Set<Integer> distinctElementsInSequenceWithHighEpsilon = new HashSet<>();
+            Set<Integer> distinctElementsInSequenceWithLowEpsilon = new HashSet<>();
+
+            for (int i = 0; i < n; i++) {
+                distinctElementsInSequenceWithHighEpsilon.add(requestSequenceWithHighEpsilon[i]);
+                distinctElementsInSequenceWithLowEpsilon.add(requestSequenceWithLowEpsilon[i]);
+            }
+
+            // when we use high epsilon, this should increase the amount of locality
+            // increasing amount of locality means choosing the element that is already in the last k distinct elements
+            // so, in general, the distinct elements in case of high amount of locality should be lesser than distinct elements when less amount of locality
+            if (distinctElementsInSequenceWithHighEpsilon.size() > distinctElementsInSequenceWithLowEpsilon.size()) {
+                return "Amount of locality is not as expected";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test3---------");
+        return SUCCESS;
+    }
+
+    // tests if Hseq is as expected for a request sequence
+    private static String test4() {
+        System.out.println("\n---------Running test4---------");
+        Paging paging = new Paging();
+
+        int[] requestSequence = new int[] {1, 2, 3, 2, 1, 5, 4, 1, 5, 2};
+        // this is the H sequence that I find out using paper for the above request sequence
+        int[] expectedHSeq = new int[] {5, 4, 11, 10, 8, 9, 11, 11, 11, 11};
+
+        int[] generatedHSeq = paging.generateH(requestSequence);
+
+        if (!Arrays.equals(generatedHSeq, expectedHSeq)) {
+            return "Generated Hseq is not as expected";
+        }
+
+        System.out.println("---------Finished test4---------");
+        return SUCCESS;
+    }
+
+    // tests if each element at index i in Hseq is in [i + 1, n + 1]
+    private static String test5() {
+        System.out.println("\n---------Running test5---------");
+        Paging paging = new Paging();
+
+        int N = 1000;
+        int n = 2000;
+        int k = 5;
+        double epsilon = 0.7;
+
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+
+        int[] generatedHSeq = paging.generateH(requestSequence);
+
+        // checks if the length of the H sequence is the same as the request sequence
+        if (generatedHSeq.length != n) {
+            return "Hsequence length is not equal to n which is wrong";
+        }
+
+        // checks if every element in the H sequence is in [i + 1, n + 1]
+        for (int i = 1; i <= generatedHSeq.length; i ++) {
+            if (generatedHSeq[i - 1] < i + 1 || generatedHSeq[i - 1] > n + 1) {
+                return "Element at index i in Hseq is not in [i + 1, n + 1]";
+            }
+        }
+
+        System.out.println("---------Finished test5---------");
+        return SUCCESS;
+    }
+
+    // tests if each predicted h[i] is in [l = max(i + 1, actual h[i] − floor(omega/2)), l + omega]
+    private static String test6() {
+        System.out.println("\n---------Running test6---------");
+        Paging paging = new Paging();
+
+        int N = 1000;
+        int n = 2000;
+        int k = 5;
+        double epsilon = 0.7;
+        double tow = 0.6;
+        int omega = 50;
+
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSeq = paging.generateH(requestSequence);
+
+        int[] hPredictions = Arrays.copyOf(hSeq, n);
+        paging.addNoise(hPredictions, tow, omega);
+
+        // checks if the length of the H sequence after adding noise remains the same (i.e. n)
+        if (hSeq.length != n) {
+            return "Predictions length is not equal to n which is wrong";
+        }
+
+        // checks if each predicted h[i] is in [l = max(i + 1, actual h[i] − floor(omega/2)), l + omega]
+        for (int i = 1; i <= n; i ++) {
+            int l = Math.max(i + 1, hSeq[i - 1] - (omega / 2));
+            if ((hPredictions[i - 1] < l) || (hPredictions[i - 1] > l + omega)) {
+                return "Element at index i in predicted h values is not in [l = max(i + 1, h[i] − floor(omega/2)), l + omega]";
+            }
+        }
+
+        System.out.println("---------Finished test6---------");
+        return SUCCESS;
+    }
+
+    // tests if high value of tow adds more noise to Hseq
+    private static String test7() {
+        System.out.println("\n---------Running test7---------");
+        Paging paging = new Paging();
+
+        int N = 1000;
+        int n = 2000;
+        int k = 5;
+        double epsilon = 0.7;
+        int omega = 50;
+
+        // testing the same 10 times to gain more confidence as we are using randomness in the methods
+        int iterations = 10;
+        while (iterations > 0) {
+            int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+            int[] hSeq = paging.generateH(requestSequence);
+
+            int[] hPredictionsForHighTow = Arrays.copyOf(hSeq, n);
+            int[] hPredictionsForLowTow = Arrays.copyOf(hSeq, n);
+
+            paging.addNoise(hPredictionsForHighTow, 0.7, omega);
+            paging.addNoise(hPredictionsForLowTow, 0.2, omega);
+
+            int numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithHighTow = 0;
+            int numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithLowTow = 0;
+            for (int i = 0; i < n; i ++) {
+                if (hSeq[i] == hPredictionsForHighTow[i]) {
+                    numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithHighTow ++;
+                }
+                if (hSeq[i] == hPredictionsForLowTow[i]) {
+                    numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithLowTow ++;
+                }
+            }
+
+            // if we use high value of tow (keeping omega constant), that should change more elements in the actual H sequence
+            // which means high tow is increasing the noise
+            // Note: We can create cases to fail this by using lower values of N and n and choosing randomness to behave in some way
+            // I am taking high values for N and n. Also assuming Java uses randomness which is close to true randomness
+            if (numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithHighTow > numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithLowTow) {
+                return "High tow did not add more noise";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test7---------");
+        return SUCCESS;
+    }
+
+    // tests if high value of omega adds more noise to Hseq -- omega suggests how much the predicted value is deviated from the actual
+    private static String test8() {
+        System.out.println("\n---------Running test8---------");
+        Paging paging = new Paging();
+
+        int N = 1000;
+        int n = 2000;
+        int k = 5;
+        double epsilon = 0.7;
+        double tow = 0.6;
+
+        int iterations = 10;
+        while (iterations > 0) {
+            int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+            int[] hSeq = paging.generateH(requestSequence);
+
+            int[] hPredictionsForHighOmega = Arrays.copyOf(hSeq, n);
+            int[] hPredictionsForLowOmega = Arrays.copyOf(hSeq, n);
+
+            paging.addNoise(hPredictionsForHighOmega, tow, 100);
+            paging.addNoise(hPredictionsForLowOmega, tow, 20);
+
+            int deviationForHighOmega = 0;
+            int deviationForLowOmega = 0;
+            for (int i = 0; i < n; i ++) {
+                deviationForHighOmega += Math.abs(hSeq[i] - hPredictionsForHighOmega[i]);
+                deviationForLowOmega += Math.abs(hSeq[i] - hPredictionsForLowOmega[i]);
+            }
+
+            // increasing omega means increasing the range to choose a value from, to replace the actual H value
+            // so when using high omega (keeping tow constant), the average deviation of the sequence should be more than when using low omega
+            // Note: We can create cases to fail this by using lower values of N and n and choosing randomness to behave in some way
+            // I am taking high values for N and n. Also assuming Java uses randomness which is close to true randomness
+            if (deviationForLowOmega > deviationForHighOmega) {
+                return "High omega did not add more deviation (a parameter to measure noise)";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test8---------");
+        return SUCCESS;
+    }
+
+    // tests if BlindOracle works as expected on a given input
+    private static String test9() {
+        System.out.println("\n---------Running test9---------");
+        Paging paging = new Paging();
+
+        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 4, 8, 9, 7, 5, 5, 9, 5, 9, 4, 3, 4, 5, 8, 3};
+        int[] hPredictions = new int[] {23, 21, 14, 22, 20, 17, 18, 11, 21, 11, 13, 14, 18, 21, 19, 24, 20, 21, 21, 18};
+        int k = 3;
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 13;
+
+        int pageFaults = paging.blindOracle(k, pageRequests, hPredictions);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test9---------");
+        return SUCCESS;
+    }
+
+    // tests BlindOracle when N = k + 1
+    private static String test10() {
+        System.out.println("\n---------Running test10---------");
+        Paging paging = new Paging();
+
+        int k = 4;
+
+        // N is 5 and n is 20
+        int[] pageRequests = new int[] {1, 2, 3, 4, 2, 1, 5, 3, 4, 3, 4, 5, 5, 1, 2, 2, 2, 3, 2, 1};
+        int[] hPredictions = new int[] {6, 5, 9, 9, 14, 13, 12, 10, 11, 17, 21, 15, 19, 19, 17, 20, 22, 22, 21, 24};
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 6;
+
+        int pageFaults = paging.blindOracle(k, pageRequests, hPredictions);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test10---------");
+        return SUCCESS;
+    }
+
+    // tests BlindOracle when N >> k
+    private static String test11() {
+        System.out.println("\n---------Running test11---------");
+        Paging paging = new Paging();
+
+        int k = 4;
+
+        // N is 1000 and n is 20
+        int[] pageRequests = new int[] {1, 2, 3, 1, 255, 2, 2, 1, 255, 255, 1, 298, 95, 2, 2, 2, 2, 851, 95, 95};
+        int[] hPredictions = new int[] {4, 6, 21, 8, 9, 7, 14, 11, 10, 21, 21, 21, 22, 19, 16, 26, 21, 21, 20, 21};
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 8;
+
+        int pageFaults = paging.blindOracle(k, pageRequests, hPredictions);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test11---------");
+        return SUCCESS;
+    }
+
+    // generate request sequence, predictions and run BlindOracle on them to test if the page faults are a valid number
+    private static String test12() {
+        System.out.println("\n---------Running test12---------");
+        Paging paging = new Paging();
+
+        int N = 10;
+        int n = 20;
+        int k = 3;
+        double epsilon = 0.7;
+        double tow = 0.4;
+        int omega = 5;
+
+        int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSequence = paging.generateH(pageRequests);
+        paging.addNoise(hSequence, tow, omega);
+
+        int pageFaults = paging.blindOracle(k, pageRequests, hSequence);
+
+        // tests if page faults are in [k, n]
+        if (pageFaults < 3 || pageFaults > 20) {
+            return "Page faults should be in between k and n (both inclusive)";
+        }
+
+        System.out.println("---------Finished test12---------");
+        return SUCCESS;
+    }
+
+    // tests if LRU works as expected on a given input
+    private static String test13() {
+        System.out.println("\n---------Running test13---------");
+        Paging paging = new Paging();
+
+        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 4, 8, 9, 7, 5, 5, 9, 5, 9, 4, 3, 4, 5, 8, 3};
+        int k = 3;
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 15;
+
+        int pageFaults = paging.LRU(k, pageRequests);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test13---------");
+        return SUCCESS;
+    }
+
+    // tests LRU when N = k + 1
+    private static String test14() {
+        System.out.println("\n---------Running test14---------");
+        Paging paging = new Paging();
+
+        int k = 4;
+
+        // N is 5 and n is 20
+        int[] pageRequests = new int[] {1, 2, 3, 4, 2, 1, 5, 3, 4, 3, 4, 5, 5, 1, 2, 2, 2, 3, 2, 1};
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 9;
+
+        int pageFaults = paging.LRU(k, pageRequests);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test14---------");
+        return SUCCESS;
+    }
+
+    // tests LRU when N >> k
+    private static String test15() {
+        System.out.println("\n---------Running test15---------");
+        Paging paging = new Paging();
+
+        int k = 4;
+
+        // N is 1000 and n is 20
+        int[] pageRequests = new int[] {1, 2, 3, 1, 255, 2, 2, 1, 255, 255, 1, 298, 95, 2, 2, 2, 2, 851, 95, 95};
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 8;
+
+        int pageFaults = paging.LRU(k, pageRequests);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test15---------");
+        return SUCCESS;
+    }
+
+    // generate request sequence, predictions and run CombinedAlg on them to test if the number of page faults is a valid number
+    private static String test16() {
+        System.out.println("\n---------Running test16---------");
+        Paging paging = new Paging();
+        resetSwitchesCount();
+
+        int N = 100;
+        int n = 2000;
+        int k = 4;
+        double epsilon = 0.7;
+        double tow = 0.3;
+        int omega = 5;
+        double threshold = 0.3;
+
+        int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSequence = paging.generateH(pageRequests);
+        paging.addNoise(hSequence, tow, omega);
+
+        int pageFaults = paging.combinedAlg(k, pageRequests, hSequence, threshold);
+
+        // tests if page faults are >= k
+        if (pageFaults < k) {
+            return "Page faults should be greater than or equal to k";
+        }
+
+        System.out.println("---------Finished test16---------");
+        return SUCCESS;
+    }
+
+    // tests if CombinedAlg works as expected on a given request sequence and H predictions
+    private static String test17() {
+        System.out.println("\n---------Running test17---------");
+        Paging paging = new Paging();
+        resetSwitchesCount();
+
+        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 6, 4, 8, 10, 3, 4, 4, 5, 1, 5, 2, 3, 2, 1, 1};
+        int[] hPredictions = new int[] {14, 16, 10, 6, 9, 21, 11, 9, 15, 21, 21, 13, 21, 21, 17, 18, 21, 20, 20, 21};
+
+        int k = 4;
+        double threshold = 0.09;
+
+        // I have calculated expected page faults manually on paper
+        int expectedPageFaults = 23;
+
+        int pageFaults = paging.combinedAlg(k, pageRequests, hPredictions, threshold);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        // As I calculated on paper, there should be 1 swap from LRU to BlindOracle and 1 from BlindOracle to LRU
+        if (switchesFromLRUToBlindOracle != 1 && switchesFromBlindOracleToLRU != 1) {
+            return "There should be one switch from LRU to BlindOracle and one from BlindOracle to LRU";
+        }
+
+        System.out.println("---------Finished test17---------");
+        return SUCCESS;
+    }
+
+    // more threshold for CombinedAlg should imply fewer switches
+    private static String test18() {
+        System.out.println("\n---------Running test18---------");
+        Paging paging = new Paging();
+
+        int N = 100;
+        int n = 10000;
+        int k = 4;
+        double epsilon = 0.5;
+        double tow = 0.7;
+        int omega = 50;
+
+        // testing the same 10 times to gain more confidence as we are using randomness in the methods
+        int iterations = 10;
+        while (iterations > 0) {
+            double highThreshold = 0.4;
+            double lowThreshold = 0.2;
+
+            int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
+            int[] hSequence = paging.generateH(pageRequests);
+            paging.addNoise(hSequence, tow, omega);
+
+            resetSwitchesCount();
+            int pageFaultsForHighThreshold = paging.combinedAlg(k, pageRequests, hSequence, highThreshold);
+            int switchesForHighThreshold = switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU;
+
+            resetSwitchesCount();
+            int pageFaultsForLowThreshold = paging.combinedAlg(k, pageRequests, hSequence, lowThreshold);
+            int switchesForLowThreshold = switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU;
+
+            if (switchesForHighThreshold > switchesForLowThreshold) {
+                return "Number of switches with higher threshold should not be more than number of switches with lower threshold";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test18---------");
+        return SUCCESS;
+    }
+
+    // more noise in predictions implies fewer switches from LRU to BlindOracle and higher switches from BlindOracle to LRU
+    private static String test19() {
+        System.out.println("\n---------Running test19---------");
+        Paging paging = new Paging();
+
+        int N = 100;
+        int n = 10000;
+        int k = 4;
+        double epsilon = 0.6;
+        double threshold = 0.1;
 
-        if (!Arrays.equals(generatedHSeq, expectedHSeq)) {
-            return "Generated Hseq is not as expected";
+        // testing the same 10 times to gain more confidence as we are using randomness in the methods
+        int iterations = 10;
+        while (iterations > 0) {
+
+            double highTow = 0.8;
+            int highOmega = 250;
+
+            double lowTow = 0.3;
+            int lowOmega = 50;
+
+            int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
+            int[] hSequence = paging.generateH(pageRequests);
+            paging.addNoise(hSequence, highTow, highOmega);
+
+            resetSwitchesCount();
+            int pageFaultsForHighNoise = paging.combinedAlg(k, pageRequests, hSequence, threshold);
+            int netSwitchesFromLRUToBlindOracleForHighNoise = switchesFromLRUToBlindOracle - switchesFromBlindOracleToLRU;
+
+            hSequence = paging.generateH(pageRequests);
+            paging.addNoise(hSequence, lowTow, lowOmega);
+
+            resetSwitchesCount();
+            int pageFaultsForLowNoise = paging.combinedAlg(k, pageRequests, hSequence, threshold);
+            int netSwitchesFromLRUToBlindOracleForLowNoise = switchesFromLRUToBlindOracle - switchesFromBlindOracleToLRU;
+
+            if (netSwitchesFromLRUToBlindOracleForHighNoise > netSwitchesFromLRUToBlindOracleForLowNoise) {
+                return "Net number of switches from LRU to BlindOracle with higher noise should not be more than the net number of switches with lower noise";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test19---------");
+        return SUCCESS;
+    }
+
+    // tests if ARC keeps the frequently used pages when a long scan of new pages comes in
+    private static String test20() {
+        System.out.println("\n---------Running test20---------");
+        Paging paging = new Paging();
+
+        int k = 4;
+
+        // pages 1 and 2 are requested twice, then comes a scan of 8 pages that are requested only once, then 1 and 2 again
+        int[] pageRequests = new int[] {1, 2, 1, 2, 10, 11, 12, 13, 14, 15, 16, 17, 1, 2};
+
+        // I have calculated expected page faults manually on paper
+        // 1 and 2 move to T2 after their second request and the scan only replaces pages in T1, so the last 2 requests are hits
+        int expectedPageFaults = 10;
+
+        int pageFaults = paging.ARC(k, pageRequests);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        // LRU evicts 1 and 2 during the scan, so it should have 2 more page faults
+        if (paging.LRU(k, pageRequests) != expectedPageFaults + 2) {
+            return "ARC should have fewer page faults than LRU for a scan";
+        }
+
+        System.out.println("---------Finished test20---------");
+        return SUCCESS;
+    }
+
+    // tests if LIRS keeps the LIR pages when a long scan of new pages comes in
+    private static String test21() {
+        System.out.println("\n---------Running test21---------");
+        Paging paging = new Paging();
+
+        int k = 4;
+
+        // same request sequence as test20
+        int[] pageRequests = new int[] {1, 2, 1, 2, 10, 11, 12, 13, 14, 15, 16, 17, 1, 2};
+
+        // I have calculated expected page faults manually on paper
+        // 1, 2 and 10 are LIR pages (3 LIR pages and 1 resident HIR page for k = 4), every other page of the scan
+        // only replaces the single resident HIR page, so the last 2 requests are hits
+        int expectedPageFaults = 10;
+
+        int pageFaults = paging.LIRS(k, pageRequests);
+
+        if (pageFaults != expectedPageFaults) {
+            return "Page faults not the same as expected";
+        }
+
+        System.out.println("---------Finished test21---------");
+        return SUCCESS;
+    }
+
+    // generate request sequences and run ARC and LIRS on them to test if the page faults are a valid number
+    private static String test22() {
+        System.out.println("\n---------Running test22---------");
+        Paging paging = new Paging();
+
+        int N = 100;
+        int n = 5000;
+        int k = 10;
+
+        // when there are at most k distinct pages, only the first request to each page is a page fault
+        int[] pageRequestsThatFitInCache = paging.generateRandomSequence(k, k + 1, n, 1);
+        if (paging.ARC(k, pageRequestsThatFitInCache) != k || paging.LIRS(k, pageRequestsThatFitInCache) != k) {
+            return "Only the first request to each page should be a page fault when all pages fit in the cache";
+        }
+
+        // testing the same 10 times to gain more confidence as we are using randomness in the methods
+        int iterations = 10;
+        while (iterations > 0) {
+            int[] pageRequests = paging.generateRandomSequence(k, N, n, 0.5);
+
+            Set<Integer> distinctPages = new HashSet<>();
+            for (int pageRequest : pageRequests) {
+                distinctPages.add(pageRequest);
+            }
+
+            // page faults should be in [number of distinct pages, n]
+            int pageFaultsOfARC = paging.ARC(k, pageRequests);
+            int pageFaultsOfLIRS = paging.LIRS(k, pageRequests);
+            if (pageFaultsOfARC < distinctPages.size() || pageFaultsOfARC > n) {
+                return "Page faults of ARC should be in between the number of distinct pages and n (both inclusive)";
+            }
+            if (pageFaultsOfLIRS < distinctPages.size() || pageFaultsOfLIRS > n) {
+                return "Page faults of LIRS should be in between the number of distinct pages and n (both inclusive)";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test22---------");
+        return SUCCESS;
+    }
+
+    // tests if Predictive Marker and LMarker work as expected on a given input
+    private static String test23() {
+        System.out.println("\n---------Running test23---------");
+        Paging paging = new Paging();
+
+        int k = 2;
+        int[] pageRequests = new int[] {1, 2, 3, 1, 3, 1};
+
+        // with the actual H sequence, 3 is a clean page and 2 (the unmarked page with the highest H value) is evicted for it
+        // every other request is a hit, so there are 3 page faults, same as OPT
+        // I have calculated expected page faults manually on paper
+        int[] trueHSeq = paging.generateH(pageRequests);
+        if (paging.predictiveMarker(k, pageRequests, trueHSeq) != 3 || paging.lMarker(k, pageRequests, trueHSeq) != 3) {
+            return "Page faults not the same as expected with the actual H sequence";
+        }
+
+        // with these predictions 1 is evicted for 3, then 1 is a stale page and 2 is the only unmarked page left to evict
+        // so there are 4 page faults and there is no randomness involved
+        int[] hPredictions = new int[] {9, 3, 5, 6, 7, 7};
+        if (paging.predictiveMarker(k, pageRequests, hPredictions) != 4 || paging.lMarker(k, pageRequests, hPredictions) != 4) {
+            return "Page faults not the same as expected with the noisy H predictions";
+        }
+
+        System.out.println("---------Finished test23---------");
+        return SUCCESS;
+    }
+
+    // tests if Predictive Marker and LMarker stay robust when the predictions are as bad as possible
+    private static String test24() {
+        System.out.println("\n---------Running test24---------");
+        Paging paging = new Paging();
+
+        int k = 10;
+        int n = 2000;
+
+        // a loop over k + 1 pages, where every prediction says the page that was requested first will be requested last
+        // BlindOracle then evicts exactly the page that is requested next, so it (and LRU) has a page fault on every request
+        int[] pageRequests = new int[n];
+        int[] hPredictions = new int[n];
+        for (int i = 0; i < n; i ++) {
+            pageRequests[i] = i % (k + 1) + 1;
+            hPredictions[i] = n + 1 - i;
+        }
+
+        int pageFaultsOfCombined = paging.combinedAlg(k, pageRequests, hPredictions, 0.1);
+        int pageFaultsOfPredictiveMarker = paging.predictiveMarker(k, pageRequests, hPredictions);
+        int pageFaultsOfLMarker = paging.lMarker(k, pageRequests, hPredictions);
+
+        // the stale pages are evicted at random, which avoids a page fault on every request
+        // (expected page faults are about n / 2, checking against 3n / 4 so that randomness does not fail the test)
+        if (pageFaultsOfPredictiveMarker > 3 * n / 4 || pageFaultsOfLMarker > 3 * n / 4) {
+            return "Marking algorithms should not have a page fault on most requests when the predictions are bad";
+        }
+        if (pageFaultsOfPredictiveMarker >= pageFaultsOfCombined || pageFaultsOfLMarker >= pageFaultsOfCombined) {
+            return "Marking algorithms should have fewer page faults than Combined when the predictions are bad";
+        }
+
+        // page faults should be in [k, n] for random request sequences
+        int[] randomPageRequests = paging.generateRandomSequence(k, 100, n, 0.5);
+        int[] noisyHSeq = paging.generateH(randomPageRequests);
+        paging.addNoise(noisyHSeq, 0.5, 100);
+        pageFaultsOfPredictiveMarker = paging.predictiveMarker(k, randomPageRequests, noisyHSeq);
+        pageFaultsOfLMarker = paging.lMarker(k, randomPageRequests, noisyHSeq);
+        if (pageFaultsOfPredictiveMarker < k || pageFaultsOfPredictiveMarker > n || pageFaultsOfLMarker < k || pageFaultsOfLMarker > n) {
+            return "Page faults should be in between k and n (both inclusive)";
+        }
+
+        System.out.println("---------Finished test24---------");
+        return SUCCESS;
+    }
+
+    // tests if a text access log is converted into a binary trace of dense page ids
+    private static String test25() {
+        System.out.println("\n---------Running test25---------");
+
+        try {
+            // a log of addresses (one per line) where 4096-byte pages are requested
+            // 0x1000 and 4097 are on the same page, the last line has no newline at the end
+            Path addressLog = Files.createTempFile("addresses", ".log");
+            Path addressTrace = Files.createTempFile("addresses", ".trace");
+            Files.writeString(addressLog, "0x1000\n8192\r\n4097\n\n0x3fff\n0x1FFF");
+
+            int numOfDistinctPages = TraceIngester.ingest(addressLog, addressTrace, -1, (byte) ',', 12, 0);
+            int[] requestSequence = TraceIngester.readTrace(addressTrace);
+            if (numOfDistinctPages != 3 || !Arrays.equals(requestSequence, new int[] {1, 2, 1, 3, 1})) {
+                return "Addresses are not mapped to the expected dense page ids";
+            }
+
+            // a csv log with a header, where the key is an object name in the second column
+            Path csvLog = Files.createTempFile("objects", ".csv");
+            Path csvTrace = Files.createTempFile("objects", ".trace");
+            Files.writeString(csvLog, "time,object,size\n1,photos/a.jpg,10\n2,photos/b.jpg,20\n3,photos/a.jpg,10\n4,7,5\n");
+
+            numOfDistinctPages = TraceIngester.ingest(csvLog, csvTrace, 1, (byte) ',', 0, 1);
+            requestSequence = TraceIngester.readTrace(csvTrace);
+            if (numOfDistinctPages != 3 || !Arrays.equals(requestSequence, new int[] {1, 2, 1, 3})
+                    || TraceIngester.readNumOfDistinctPages(csvTrace) != 3) {
+                return "Csv keys are not mapped to the expected dense page ids";
+            }
+
+            // the algorithms give the same page faults on the ingested trace as on the original sequence
+            Paging paging = new Paging();
+            int[] pageRequests = paging.generateRandomSequence(5, 50, 2000, 0.5);
+            StringBuilder log = new StringBuilder();
+            for (int pageRequest : pageRequests) {
+                log.append(pageRequest * 31).append('\n');
+            }
+            Files.writeString(csvLog, log);
+            TraceIngester.ingest(csvLog, csvTrace, -1, (byte) ',', 0, 0);
+            if (paging.LRU(5, TraceIngester.readTrace(csvTrace)) != paging.LRU(5, pageRequests)) {
+                return "Page faults on the ingested trace are not the same as on the original sequence";
+            }
+
+            // the lines after line 2^31 - 1 of a long log are still read
+            Files.writeString(csvLog, "5\n6\n7\n8\n9\n");
+            TraceIngester.ingestFromLine(csvLog, csvTrace, -1, (byte) ',', 0, Integer.MAX_VALUE, Integer.MAX_VALUE - 1L);
+            if (!Arrays.equals(TraceIngester.readTrace(csvTrace), new int[] {1, 2, 3, 4})) {
+                return "Lines after line 2^31 - 1 are not ingested";
+            }
+
+            Files.delete(addressLog);
+            Files.delete(addressTrace);
+            Files.delete(csvLog);
+            Files.delete(csvTrace);
+        } catch (IOException e) {
+            return "Could not ingest the log: " + e.getMessage();
+        }
+
+        System.out.println("---------Finished test25---------");
+        return SUCCESS;
+    }
+
+    // tests if the byte-capacity mode of LRU and BlindOracle works as expected on a given input
+    private static String test26() {
+        System.out.println("\n---------Running test26---------");
+        Paging paging = new Paging();
+
+        long capacity = 10;
+        int[] pageRequests = new int[] {1, 2, 3, 1, 3, 4, 5, 4};
+        int[] sizes = new int[] {4, 4, 4, 4, 4, 9, 20, 9};
+        int[] hPredictions = new int[] {4, 9, 5, 9, 9, 8, 9, 9};
+
+        // I have calculated the expected values manually on paper
+        // LRU: 3 evicts 1, 1 evicts 2, 4 needs 9 bytes so it evicts both 1 and 3, and 5 is larger than the cache so it is not cached
+        // the hits are the second request to 3 (4 bytes) and the second request to 4 (9 bytes)
+        WeightedResult lruResult = paging.weightedLRU(capacity, pageRequests, sizes);
+        if (lruResult.pageFaults != 6 || lruResult.requestedBytes != 58 || lruResult.hitBytes != 13) {
+            return "Page faults or byte hit ratio of LRU not the same as expected";
+        }
+
+        // BlindOracle: 3 evicts 2 (highest H prediction value), 1 and 3 are hits, 4 evicts both 1 and 3, 5 is not cached
+        WeightedResult blindOracleResult = paging.weightedBlindOracle(capacity, pageRequests, sizes, hPredictions);
+        if (blindOracleResult.pageFaults != 5 || blindOracleResult.hitBytes != 17) {
+            return "Page faults or byte hit ratio of BlindOracle not the same as expected";
+        }
+
+        System.out.println("---------Finished test26---------");
+        return SUCCESS;
+    }
+
+    // tests if the byte-capacity mode gives the same page faults as the usual algorithms when every page has size 1
+    private static String test27() {
+        System.out.println("\n---------Running test27---------");
+        Paging paging = new Paging();
+
+        int N = 100;
+        int n = 5000;
+        int k = 10;
+        double threshold = 0.1;
+
+        // testing the same 10 times to gain more confidence as we are using randomness in the methods
+        int iterations = 10;
+        while (iterations > 0) {
+            int[] pageRequests = paging.generateRandomSequence(k, N, n, 0.5);
+            int[] hSequence = paging.generateH(pageRequests);
+            paging.addNoise(hSequence, 0.5, 100);
+            int[] sizes = paging.generateSizes(pageRequests, 1, 1);
+
+            if (paging.weightedLRU(k, pageRequests, sizes).pageFaults != paging.LRU(k, pageRequests)) {
+                return "Page faults of LRU with pages of size 1 are not the same as the usual LRU";
+            }
+            if (paging.weightedBlindOracle(k, pageRequests, sizes, hSequence).pageFaults != paging.blindOracle(k, pageRequests, hSequence)) {
+                return "Page faults of BlindOracle with pages of size 1 are not the same as the usual BlindOracle";
+            }
+            if (paging.weightedCombinedAlg(k, pageRequests, sizes, hSequence, threshold).pageFaults != paging.combinedAlg(k, pageRequests, hSequence, threshold)) {
+                return "Page faults of Combined with pages of size 1 are not the same as the usual Combined";
+            }
+
+            // with pages of different sizes, the byte hit ratio should be in [0, 1]
+            sizes = paging.generateSizes(pageRequests, 1, 1000);
+            double byteHitRatio = paging.weightedCombinedAlg(5000, pageRequests, sizes, hSequence, threshold).byteHitRatio();
+            if (byteHitRatio < 0 || byteHitRatio > 1) {
+                return "Byte hit ratio should be in between 0 and 1";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test27---------");
+        return SUCCESS;
+    }
+
+    // tests if the caches that take blocks of requests give the same page faults as LRU, BlindOracle and Combined
+    private static String test28() {
+        System.out.println("\n---------Running test28---------");
+        Paging paging = new Paging();
+
+        int N = 100;
+        int n = 10000;
+        int k = 10;
+        double threshold = 0.1;
+
+        LRUCache lruCache = new LRUCache(k);
+        BlindOracleCache blindOracleCache = new BlindOracleCache(k);
+        CombinedCache combinedCache = new CombinedCache(k, threshold);
+        Random random = new Random();
+
+        // testing the same 10 times to gain more confidence as we are using randomness in the methods
+        int iterations = 10;
+        while (iterations > 0) {
+            int[] pageRequests = paging.generateRandomSequence(k, N, n, 0.5);
+            int[] hSequence = paging.generateH(pageRequests);
+            paging.addNoise(hSequence, 0.7, 200);
+
+            // the same instances are reused in every iteration
+            lruCache.reset();
+            blindOracleCache.reset();
+            combinedCache.reset();
+
+            // the requests are given in blocks of random length
+            int lruPageFaults = 0;
+            int blindOraclePageFaults = 0;
+            int combinedPageFaults = 0;
+            for (int offset = 0; offset < n; ) {
+                int len = Math.min(n - offset, 1 + random.nextInt(500));
+                lruPageFaults += lruCache.accessBatch(pageRequests, null, offset, len, null);
+                blindOraclePageFaults += blindOracleCache.accessBatch(pageRequests, hSequence, offset, len, null);
+                combinedPageFaults += combinedCache.accessBatch(pageRequests, hSequence, offset, len, null);
+                offset += len;
+            }
+
+            if (lruPageFaults != paging.LRU(k, pageRequests) || lruCache.pageFaults() != lruPageFaults) {
+                return "Page faults of LRUCache are not the same as LRU";
+            }
+            if (blindOraclePageFaults != paging.blindOracle(k, pageRequests, hSequence) || blindOracleCache.pageFaults() != blindOraclePageFaults) {
+                return "Page faults of BlindOracleCache are not the same as BlindOracle";
+            }
+            resetSwitchesCount();
+            if (combinedPageFaults != paging.combinedAlg(k, pageRequests, hSequence, threshold)
+                    || combinedCache.getSwitchesFromLRUToBlindOracle() != switchesFromLRUToBlindOracle
+                    || combinedCache.getSwitchesFromBlindOracleToLRU() != switchesFromBlindOracleToLRU) {
+                return "Page faults or switches of CombinedCache are not the same as Combined";
+            }
+
+            iterations --;
+        }
+
+        System.out.println("---------Finished test28---------");
+        return SUCCESS;
+    }
+
+    // tests the hit bitmap and the evicted pages of the caches that take blocks of requests on a given input
+    private static String test29() {
+        System.out.println("\n---------Running test29---------");
+
+        // same input as test9 and test13
+        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 4, 8, 9, 7, 5, 5, 9, 5, 9, 4, 3, 4, 5, 8, 3};
+        int[] hPredictions = new int[] {23, 21, 14, 22, 20, 17, 18, 11, 21, 11, 13, 14, 18, 21, 19, 24, 20, 21, 21, 18};
+        int k = 3;
+
+        // I have calculated the hits manually on paper, hits are at indices 10, 11, 12, 13 and 16 for LRU
+        long[] hitBitmap = new long[1];
+        int pageFaults = new LRUCache(k).accessBatch(pageRequests, null, 0, pageRequests.length, hitBitmap);
+        long expectedHitBitmap = (1L << 10) | (1L << 11) | (1L << 12) | (1L << 13) | (1L << 16);
+        if (pageFaults != 15 || hitBitmap[0] != expectedHitBitmap) {
+            return "Hit bitmap of LRUCache not the same as expected";
+        }
+
+        // BlindOracle: when 6 comes, 1 (H prediction value 23) is evicted, and when 10 comes, 6 (22) is evicted
+        BlindOracleCache blindOracleCache = new BlindOracleCache(k);
+        int[] evictedPages = new int[pageRequests.length];
+        for (int i = 0; i < pageRequests.length; i ++) {
+            blindOracleCache.access(pageRequests[i], hPredictions[i]);
+            evictedPages[i] = blindOracleCache.lastEvicted();
+        }
+        if (evictedPages[2] != -1 || evictedPages[3] != 1 || evictedPages[4] != 6 || blindOracleCache.pageFaults() != 13) {
+            return "Evicted pages of BlindOracleCache not the same as expected";
+        }
+
+        System.out.println("---------Finished test29---------");
+        return SUCCESS;
+    }
+
+    // tests that the SHARDS estimator gives the exact LRU miss ratios when every page is sampled
+    private static String test30() {
+        System.out.println("\n---------Running test30---------");
+
+        Paging paging = new Paging();
+        int n = 20000;
+        int[] requestSequence = paging.generateRandomSequence(20, 2000, n, 0.5);
+
+        ShardsEstimator estimator = new ShardsEstimator(1, 100, 1 << 16, 1, 0);
+        estimator.offer(requestSequence, 0, n);
+        double[] curve = estimator.missRatioCurve();
+
+        if (estimator.requests() != n || curve[0] != 1) {
+            return "Miss ratio curve does not cover all the requests";
+        }
+        for (int c = 1; c <= 100; c ++) {
+            if (Math.abs(curve[c] * n - paging.LRU(c, requestSequence)) > 1e-6) {
+                return "Miss ratio of the SHARDS estimator with sampling rate 1 not the same as LRU for k = " + c;
+            }
+            if (curve[c] > curve[c - 1]) {
+                return "Miss ratio curve is not non-increasing";
+            }
+        }
+
+        System.out.println("---------Finished test30---------");
+        return SUCCESS;
+    }
+
+    // tests the SHARDS estimator with sampling and a bounded number of tracked pages
+    private static String test31() {
+        System.out.println("\n---------Running test31---------");
+
+        Paging paging = new Paging();
+        int n = 200000;
+        int[] requestSequence = paging.generateRandomSequence(200, 20000, n, 0.6);
+
+        ShardsEstimator estimator = new ShardsEstimator(0.1, 400, 4096, 8, 7);
+        estimator.offer(requestSequence, 0, n);
+        double[] curve = estimator.missRatioCurve();
+        double[] errors = estimator.standardErrors();
+
+        // at cache sizes that hold many sampled pages, the estimate is close to the exact miss ratio
+        for (int c : new int[] {100, 200, 400}) {
+            double exactMissRatio = paging.LRU(c, requestSequence) / (double) n;
+            if (Math.abs(curve[c] - exactMissRatio) > 0.05) {
+                return "Estimated miss ratio too far from LRU for k = " + c;
+            }
+            if (errors[c] <= 0 || errors[c] > 0.1) {
+                return "Standard error of the estimate not in the expected range for k = " + c;
+            }
+        }
+
+        // about 20000 distinct pages are requested, more than the 1000 tracked pages, so the rate has to go down
+        ShardsEstimator boundedEstimator = new ShardsEstimator(1, 400, 1000, 1, 7);
+        boundedEstimator.offer(requestSequence, 0, n);
+        if (boundedEstimator.samplingRate() >= 1 || boundedEstimator.samplingRate() <= 0) {
+            return "Sampling rate not lowered when there are too many tracked pages";
+        }
+        if (Math.abs(boundedEstimator.missRatioCurve()[400] - paging.LRU(400, requestSequence) / (double) n) > 0.05) {
+            return "Estimated miss ratio too far from LRU with a bounded number of tracked pages";
+        }
+
+        System.out.println("---------Finished test31---------");
+        return SUCCESS;
+    }
+
+    // tests the predictions of the online predictors on a given input
+    private static String test32() {
+        System.out.println("\n---------Running test32---------");
+
+        int[] pageRequests = new int[] {1, 2, 1, 3, 2, 1, 1};
+        int never = NextAccessPredictor.NEVER;
+
+        // I have calculated these manually on paper
+        // gaps of page 1 are 2, 3 and 1, and the gap of page 2 is 3
+        int[] expectedLastGap = new int[] {never, never, 5, never, 8, 9, 8};
+        // averages of page 1 are 2, 0.5 * 3 + 0.5 * 2 = 2.5 (rounded to 3) and 0.5 * 1 + 0.5 * 2.5 = 1.75 (rounded to 2)
+        int[] expectedEwma = new int[] {never, never, 5, never, 8, 9, 9};
+        // page 1 came back 1, 2 and 3 times in 2, 5 and 6 requests since its first request
+        int[] expectedFrequency = new int[] {never, never, 5, never, 8, 9, 9};
+
+        if (!Arrays.equals(new LastGapPredictor().predictAll(pageRequests), expectedLastGap)) {
+            return "Predictions of LastGapPredictor not the same as expected";
+        }
+        if (!Arrays.equals(new EwmaGapPredictor(0.5).predictAll(pageRequests), expectedEwma)) {
+            return "Predictions of EwmaGapPredictor not the same as expected";
+        }
+        if (!Arrays.equals(new FrequencyPredictor().predictAll(pageRequests), expectedFrequency)) {
+            return "Predictions of FrequencyPredictor not the same as expected";
+        }
+
+        // a page requested at a fixed interval is predicted exactly, starting from its second request
+        Paging paging = new Paging();
+        int[] loopSequence = new int[100];
+        for (int i = 0; i < loopSequence.length; i ++) {
+            loopSequence[i] = i % 7 + 1;
+        }
+        int[] h = paging.generateH(loopSequence);
+        int[] hPredictions = new LastGapPredictor().predictAll(loopSequence);
+        for (int i = 7; i < loopSequence.length - 7; i ++) {
+            if (hPredictions[i] != h[i]) {
+                return "LastGapPredictor does not predict a loop exactly";
+            }
+        }
+
+        System.out.println("---------Finished test32---------");
+        return SUCCESS;
+    }
+
+    // tests that predictions made one request at a time give the same page faults as predictions made for the whole sequence
+    private static String test33() {
+        System.out.println("\n---------Running test33---------");
+
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+        double threshold = 0.1;
+
+        NextAccessPredictor[] predictors = {new LastGapPredictor(), new EwmaGapPredictor(0.3, N), new FrequencyPredictor(N)};
+        CombinedCache combinedCache = new CombinedCache(k, threshold, N);
+        for (int trial = 0; trial < 2; trial ++) {
+            int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+            for (NextAccessPredictor predictor : predictors) {
+
+                predictor.reset();
+                int[] hPredictions = predictor.predictAll(requestSequence);
+                for (int i = 0; i < n; i ++) {
+                    if (hPredictions[i] <= i + 1) {
+                        return "Prediction is not after the position of the request";
+                    }
+                }
+
+                // the same instances are reused after reset
+                predictor.reset();
+                combinedCache.reset();
+                for (int page : requestSequence) {
+                    combinedCache.access(page, predictor.predict(page));
+                }
+                if (combinedCache.pageFaults() != paging.combinedAlg(k, requestSequence, hPredictions, threshold)) {
+                    return "Page faults of CombinedCache with online predictions not the same as combinedAlg";
+                }
+            }
         }
 
-        System.out.println("---------Finished test4---------");
+        System.out.println("---------Finished test33---------");
         return SUCCESS;
     }
 
-    // tests if each element at index i in Hseq is in [i + 1, n + 1]
-    private static String test5() {
-        System.out.println("\n---------Running test5---------");
-        Paging paging = new Paging();
-
-        int N = 1000;
-        int n = 2000;
-        int k = 5;
-        double epsilon = 0.7;
+    // tests if running combinedAlg for many thresholds at once gives the same page faults as running it for each threshold
+    private static String test34() {
+        System.out.println("\n---------Running test34---------");
 
-        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+        double[] thresholds = new double[] {0, 0.01, 0.05, 0.1, 0.2, 0.5, 1, 2, 10};
 
-        int[] generatedHSeq = paging.generateH(requestSequence);
+        for (double tow : new double[] {0.1, 0.5, 0.9}) {
+            int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+            int[] hPredictions = paging.generateH(requestSequence);
+            paging.addNoise(hPredictions, tow, 500);
 
-        // checks if the length of the H sequence is the same as the request sequence
-        if (generatedHSeq.length != n) {
-            return "Hsequence length is not equal to n which is wrong";
+            int[] pageFaults = paging.combinedAlg(k, requestSequence, hPredictions, thresholds);
+            for (int t = 0; t < thresholds.length; t ++) {
+                if (pageFaults[t] != paging.combinedAlg(k, requestSequence, hPredictions, thresholds[t])) {
+                    return "Page faults for threshold " + thresholds[t] + " not the same as combinedAlg";
+                }
+            }
         }
 
-        // checks if every element in the H sequence is in [i + 1, n + 1]
-        for (int i = 1; i <= generatedHSeq.length; i ++) {
-            if (generatedHSeq[i - 1] < i + 1 || generatedHSeq[i - 1] > n + 1) {
-                return "Element at index i in Hseq is not in [i + 1, n + 1]";
-            }
+        if (paging.combinedAlg(k, new int[] {1, 2, 3}, new int[] {4, 4, 4}, new double[0]).length != 0) {
+            return "Page faults returned when there are no thresholds";
         }
 
-        System.out.println("---------Finished test5---------");
+        System.out.println("---------Finished test34---------");
         return SUCCESS;
     }
 
-    // tests if each predicted h[i] is in [l = max(i + 1, actual h[i] − floor(omega/2)), l + omega]
-    private static String test6() {
-        System.out.println("\n---------Running test6---------");
-        Paging paging = new Paging();
+    // tests the seeded request sequences and the trial cache
+    private static String test35() {
+        System.out.println("\n---------Running test35---------");
 
-        int N = 1000;
-        int n = 2000;
-        int k = 5;
-        double epsilon = 0.7;
-        double tow = 0.6;
-        int omega = 50;
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 100;
+        int n = 1000;
 
-        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
-        int[] hSeq = paging.generateH(requestSequence);
+        if (!Arrays.equals(paging.generateRandomSequence(k, N, n, 0.5, new Random(42)), paging.generateRandomSequence(k, N, n, 0.5, new Random(42)))) {
+            return "Same seed does not give the same request sequence";
+        }
 
-        int[] hPredictions = Arrays.copyOf(hSeq, n);
-        paging.addNoise(hPredictions, tow, omega);
+        // each trial takes 2 arrays of n ints plus 128 bytes, so the cache holds 3 trials
+        TrialCache trialCache = new TrialCache(3 * (8L * n + 128));
+        TrialCache.Trial trial = trialCache.get(paging, k, N, n, 0.5, 7, 0);
+        if (trialCache.get(paging, k, N, n, 0.5, 7, 0) != trial || trialCache.hits() != 1 || trialCache.misses() != 1) {
+            return "Trial not found in the cache";
+        }
+        if (trial.pageFaultsOfOpt != paging.blindOracle(k, trial.requestSequence, paging.generateH(trial.requestSequence))
+                || trial.pageFaultsOfLRU != paging.LRU(k, trial.requestSequence)
+                || trial.pageFaultsOfARC != paging.ARC(k, trial.requestSequence)
+                || trial.pageFaultsOfLIRS != paging.LIRS(k, trial.requestSequence)
+                || !Arrays.equals(trial.trueHSequence, paging.generateH(trial.requestSequence))) {
+            return "Values in the trial not the same as running the algorithms";
+        }
 
-        // checks if the length of the H sequence after adding noise remains the same (i.e. n)
-        if (hSeq.length != n) {
-            return "Predictions length is not equal to n which is wrong";
+        // different trials, seeds and epsilons are different keys
+        TrialCache.Trial otherTrial = trialCache.get(paging, k, N, n, 0.5, 7, 1);
+        trialCache.get(paging, k, N, n, 0.6, 7, 0);
+        if (Arrays.equals(otherTrial.requestSequence, trial.requestSequence) || trialCache.size() != 3) {
+            return "Different trials have the same request sequence";
         }
 
-        // checks if each predicted h[i] is in [l = max(i + 1, actual h[i] − floor(omega/2)), l + omega]
-        for (int i = 1; i <= n; i ++) {
-            int l = Math.max(i + 1, hSeq[i - 1] - (omega / 2));
-            if ((hPredictions[i - 1] < l) || (hPredictions[i - 1] > l + omega)) {
-                return "Element at index i in predicted h values is not in [l = max(i + 1, h[i] − floor(omega/2)), l + omega]";
-            }
+        // trial 0 was used last among the first 3, so adding a 4th trial evicts trial 1, which is generated again with the same values
+        trialCache.get(paging, k, N, n, 0.5, 7, 0);
+        trialCache.get(paging, k, N, n, 0.5, 8, 0);
+        if (trialCache.size() != 3 || trialCache.get(paging, k, N, n, 0.5, 7, 0) != trial) {
+            return "Least recently used trial not evicted";
+        }
+        TrialCache.Trial regeneratedTrial = trialCache.get(paging, k, N, n, 0.5, 7, 1);
+        if (regeneratedTrial == otherTrial || !Arrays.equals(regeneratedTrial.requestSequence, otherTrial.requestSequence)) {
+            return "Evicted trial not generated again with the same request sequence";
         }
 
-        System.out.println("---------Finished test6---------");
+        System.out.println("---------Finished test35---------");
         return SUCCESS;
     }
 
-    // tests if high value of tow adds more noise to Hseq
-    private static String test7() {
-        System.out.println("\n---------Running test7---------");
-        Paging paging = new Paging();
+    // tests the buffers and caches that are reused between trails
+    private static String test36() {
+        System.out.println("\n---------Running test36---------");
 
-        int N = 1000;
-        int n = 2000;
-        int k = 5;
-        double epsilon = 0.7;
-        int omega = 50;
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 100;
+        int n = 5000;
 
-        // testing the same 10 times to gain more confidence as we are using randomness in the methods
-        int iterations = 10;
-        while (iterations > 0) {
+        // the same arrays are used to generate H for 2 sequences
+        int[] h = new int[n];
+        int[] nextRequestOf = new int[N + 1];
+        for (double epsilon : new double[] {0.3, 0.8}) {
             int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
-            int[] hSeq = paging.generateH(requestSequence);
+            paging.generateH(requestSequence, h, nextRequestOf);
+            if (!Arrays.equals(h, paging.generateH(requestSequence)) || h[n - 1] != n + 1) {
+                return "H sequence generated in reused arrays not the same as generateH";
+            }
+        }
 
-            int[] hPredictionsForHighTow = Arrays.copyOf(hSeq, n);
-            int[] hPredictionsForLowTow = Arrays.copyOf(hSeq, n);
+        // a MarkerCache that is reset gives the same page faults as a new one with the same random numbers
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+        int[] hPredictions = paging.generateH(requestSequence);
+        paging.addNoise(hPredictions, 0.5, 200);
+        for (boolean followChains : new boolean[] {true, false}) {
+            Random random = new Random(3);
+            MarkerCache markerCache = new MarkerCache(k, followChains, N, random);
+            markerCache.accessBatch(paging.generateRandomSequence(k, N, n, 0.5), hPredictions, 0, n, null);
+            markerCache.reset();
+            random.setSeed(5);
+            int pageFaults = markerCache.accessBatch(requestSequence, hPredictions, 0, n, null);
+            if (pageFaults != new MarkerCache(k, followChains, N, new Random(5)).accessBatch(requestSequence, hPredictions, 0, n, null)) {
+                return "Page faults of a MarkerCache after reset not the same as a new MarkerCache";
+            }
+        }
 
-            paging.addNoise(hPredictionsForHighTow, 0.7, omega);
-            paging.addNoise(hPredictionsForLowTow, 0.2, omega);
+        // the context of a thread keeps its caches and buffer while k, the threshold and n stay the same
+        TrialContext context = TrialContext.current();
+        context.prepare(k, 0.1);
+        CombinedCache combinedCache = context.combinedCache();
+        int[] buffer = context.hPredictions(n);
+        int pageFaults = combinedCache.accessBatch(requestSequence, hPredictions, 0, n, null);
+        context.prepare(k, 0.1);
+        if (context.combinedCache() != combinedCache || context.hPredictions(n) != buffer || combinedCache.pageFaults() != 0) {
+            return "Caches of the context not reused and reset";
+        }
+        if (pageFaults != paging.combinedAlg(k, requestSequence, hPredictions, 0.1)
+                || context.blindOracleCache().accessBatch(requestSequence, hPredictions, 0, n, null) != paging.blindOracle(k, requestSequence, hPredictions)) {
+            return "Page faults of the caches of the context not the same as combinedAlg and blindOracle";
+        }
+        context.prepare(k + 1, 0.1);
+        if (context.combinedCache() == combinedCache || context.blindOracleCache().accessBatch(requestSequence, hPredictions, 0, n, null) != paging.blindOracle(k + 1, requestSequence, hPredictions)) {
+            return "Caches of the context not created again for a new cache size";
+        }
 
-            int numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithHighTow = 0;
-            int numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithLowTow = 0;
-            for (int i = 0; i < n; i ++) {
-                if (hSeq[i] == hPredictionsForHighTow[i]) {
-                    numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithHighTow ++;
-                }
-                if (hSeq[i] == hPredictionsForLowTow[i]) {
-                    numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithLowTow ++;
-                }
-            }
+        System.out.println("---------Finished test36---------");
+        return SUCCESS;
+    }
 
-            // if we use high value of tow (keeping omega constant), that should change more elements in the actual H sequence
-            // which means high tow is increasing the noise
-            // Note: We can create cases to fail this by using lower values of N and n and choosing randomness to behave in some way
-            // I am taking high values for N and n. Also assuming Java uses randomness which is close to true randomness
-            if (numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithHighTow > numOfValuesSameAsOriginalHSeqAfterAddingNoiseWithLowTow) {
-                return "High tow did not add more noise";
+    // tests the metrics written by the experiment telemetry
+    private static String test37() {
+        System.out.println("\n---------Running test37---------");
+
+        try {
+            Path metricsFile = Files.createTempFile("metrics", ".jsonl");
+
+            // no periodic reports, only the ones asked for
+            ExperimentTelemetry telemetry = new ExperimentTelemetry(metricsFile, 0, 2);
+            telemetry.startPoint("trend0-regime1", "k=3", 1000);
+            // recorded from many threads at once, as in the experiments
+            IntStream.range(0, 1000).parallel().forEach(trail -> {
+                telemetry.recordAlgorithm("LRU", 100, 1000);
+                telemetry.recordTrail(2000);
+            });
+            telemetry.endPoint();
+            telemetry.startPoint("trend0-regime1", "k=5", 1000);
+            telemetry.report();
+            telemetry.close();
+
+            List<String> lines = Files.readAllLines(metricsFile);
+            Files.delete(metricsFile);
+            // the point, the report and the last report when closing
+            if (lines.size() != 3) {
+                return "Expected 3 lines in the metrics file but found " + lines.size();
             }
-
-            iterations --;
+            if (!lines.get(0).startsWith("{\"type\":\"point\"") || !lines.get(0).contains("\"point\":\"k=3\"") || !lines.get(0).contains("\"trails\":1000")) {
+                return "Point line not as expected: " + lines.get(0);
+            }
+            // 100000 requests in 1 ms is 100 million requests per second
+            String report = lines.get(1);
+            if (!report.startsWith("{\"type\":\"progress\"") || !report.contains("\"point\":\"k=5\"") || !report.contains("\"pointsDone\":1,\"expectedPoints\":2")
+                    || !report.contains("\"trails\":1000") || !report.contains("\"LRU\":{\"requests\":100000,\"seconds\":0.001,\"requestsPerSecond\":100000000}")
+                    || !report.endsWith("}}")) {
+                return "Progress line not as expected: " + report;
+            }
+        } catch (IOException e) {
+            return "Could not read the metrics file: " + e.getMessage();
         }
 
-        System.out.println("---------Finished test7---------");
+        System.out.println("---------Finished test37---------");
         return SUCCESS;
     }
 
-    // tests if high value of omega adds more noise to Hseq -- omega suggests how much the predicted value is deviated from the actual
-    private static String test8() {
-        System.out.println("\n---------Running test8---------");
+    // tests the 2-tier cache hierarchy in inclusive and exclusive mode
+    private static String test38() {
+        System.out.println("\n---------Running test38---------");
+
+        // I have calculated these manually on paper, with L1 of size 1 and L2 of size 2
+        // inclusive: the requests to 1 at indices 2 and 4 are found in L2, and 3 evicts 2 from L2
+        // exclusive: the 2 tiers hold all 3 pages, so only the first requests to 1, 2 and 3 are page faults
+        int[] pageRequests = new int[] {1, 2, 1, 3, 1, 2};
+        int[] hPredictions = new int[pageRequests.length];
+        CacheHierarchy inclusiveHierarchy = new CacheHierarchy(new LRUCache(1), new LRUCache(2), true);
+        CacheHierarchy exclusiveHierarchy = new CacheHierarchy(new LRUCache(1), new LRUCache(2), false);
+        CacheHierarchy.runAll(List.of(inclusiveHierarchy, exclusiveHierarchy), pageRequests, hPredictions);
+        if (inclusiveHierarchy.l1Misses() != 6 || inclusiveHierarchy.l2Misses() != 4 || inclusiveHierarchy.l2Hits() != 2) {
+            return "Misses of the inclusive hierarchy not the same as expected";
+        }
+        if (exclusiveHierarchy.l1Misses() != 6 || exclusiveHierarchy.l2Misses() != 3) {
+            return "Misses of the exclusive hierarchy not the same as expected";
+        }
+
         Paging paging = new Paging();
+        int N = 100;
+        int n = 5000;
+        int[] requestSequence = paging.generateRandomSequence(10, N, n, 0.5);
+        int[] h = paging.generateH(requestSequence);
+        paging.addNoise(h, 0.3, 100);
+
+        // exclusive LRU tiers of sizes k1 and k2 keep the k1 + k2 most recently used pages, as a single LRU cache does
+        CacheHierarchy exclusiveLRU = new CacheHierarchy(new LRUCache(4), new LRUCache(12), false);
+        exclusiveLRU.accessBatch(requestSequence, h, 0, n);
+        if (exclusiveLRU.l1Misses() != paging.LRU(4, requestSequence) || exclusiveLRU.l2Misses() != paging.LRU(16, requestSequence)) {
+            return "Exclusive LRU hierarchy does not give the same page faults as LRU";
+        }
 
-        int N = 1000;
-        int n = 2000;
-        int k = 5;
-        double epsilon = 0.7;
-        double tow = 0.6;
+        // a page put into a cache with insert evicts like a request but is not a page fault
+        LRUCache lru = new LRUCache(2);
+        lru.access(1, 0);
+        if (lru.insert(2, 0) || lru.insert(3, 0) || lru.lastEvicted() != 1 || !lru.insert(3, 0) || lru.pageFaults() != 1) {
+            return "Page put into LRU with insert not placed like a request or counted as a page fault";
+        }
 
-        int iterations = 10;
-        while (iterations > 0) {
-            int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon);
-            int[] hSeq = paging.generateH(requestSequence);
+        // a page in L1 is always in L2 for inclusive tiers, and never for exclusive tiers, also when a CombinedCache
+        // tier switches and changes its pages without going through the other tier
+        CachePolicy[][] tiers = {
+                {new LRUCache(4), new BlindOracleCache(12)},
+                {new BlindOracleCache(4), new LRUCache(12)},
+                {new MarkerCache(4, true), new BlindOracleCache(12)},
+                {new LRUCache(4), new CombinedCache(12, 0.01)},
+                {new CombinedCache(4, 0.01), new CombinedCache(12, 0.01)}
+        };
+        for (boolean inclusive : new boolean[] {true, false}) {
+            for (CachePolicy[] tier : tiers) {
+                CacheHierarchy hierarchy = new CacheHierarchy(tier[0], tier[1], inclusive);
+                hierarchy.reset();
+                for (int i = 0; i < n; i ++) {
+                    long l1MissesBefore = hierarchy.l1Misses();
+                    int found = hierarchy.access(requestSequence[i], h[i]);
+                    if (!tier[0].contains(requestSequence[i]) || (!inclusive && tier[1].contains(requestSequence[i]))) {
+                        return "Requested page not in L1 (and only in L1 for exclusive tiers)";
+                    }
+                    if ((found == 1) != (hierarchy.l1Misses() == l1MissesBefore)) {
+                        return "L1 hit not counted correctly";
+                    }
+                    for (int page = 1; page <= N; page ++) {
+                        if (tier[0].contains(page) && tier[1].contains(page) != inclusive) {
+                            return "Pages in L1 and L2 break the " + (inclusive ? "inclusive" : "exclusive") + " property";
+                        }
+                    }
+                }
+                if (hierarchy.requests() != n || hierarchy.l2Misses() > hierarchy.l1Misses()) {
+                    return "Counts of the hierarchy not consistent";
+                }
+                // a Combined L2 counts every request that misses in L1, in both modes, and switches on them
+                if (tier[1] instanceof CombinedCache) {
+                    CombinedCache combinedL2 = (CombinedCache) tier[1];
+                    if (combinedL2.switches() == 0 || combinedL2.pageFaults() != hierarchy.l2Misses() + 12L * combinedL2.switches()) {
+                        return "Combined L2 does not count the requests that miss in L1 (" + (inclusive ? "inclusive" : "exclusive") + ")";
+                    }
+                }
+            }
+        }
 
-            int[] hPredictionsForHighOmega = Arrays.copyOf(hSeq, n);
-            int[] hPredictionsForLowOmega = Arrays.copyOf(hSeq, n);
+        System.out.println("---------Finished test38---------");
+        return SUCCESS;
+    }
 
-            paging.addNoise(hPredictionsForHighOmega, tow, 100);
-            paging.addNoise(hPredictionsForLowOmega, tow, 20);
+    // tests the interleaving of tenant streams, the shared and partitioned caches and the optimal partition
+    private static String test39() {
+        System.out.println("\n---------Running test39---------");
 
-            int deviationForHighOmega = 0;
-            int deviationForLowOmega = 0;
-            for (int i = 0; i < n; i ++) {
-                deviationForHighOmega += Math.abs(hSeq[i] - hPredictionsForHighOmega[i]);
-                deviationForLowOmega += Math.abs(hSeq[i] - hPredictionsForLowOmega[i]);
+        // I have calculated this manually on paper: with 3 pages, (1, 2) gives 5 + 2 = 7 page faults, the fewest
+        long[][] curves = new long[][] {{10, 5, 5, 5}, {10, 8, 2, 1}};
+        if (!Arrays.equals(MultiTenantSimulation.optimalPartition(curves, 3), new int[] {1, 2})) {
+            return "Optimal partition not the same as expected";
+        }
+
+        Paging paging = new Paging();
+        int[][] streams = new int[][] {
+                paging.generateRandomSequence(5, 50, 3000, 0.8),
+                paging.generateRandomSequence(10, 200, 2000, 0.3),
+                paging.generateRandomSequence(3, 20, 1000, 0.5)
+        };
+        MultiTenantSimulation simulation = new MultiTenantSimulation(Arrays.asList(streams), new double[] {3, 2, 1}, new Random(1));
+        int[] requestSequence = simulation.requestSequence();
+        int[] tenantOf = simulation.tenantOf();
+
+        // the requests of every tenant are in the same order as in its stream, moved by the same offset, and no
+        // other tenant has the same pages
+        if (requestSequence.length != 6000) {
+            return "Interleaved request sequence does not have all the requests";
+        }
+        int[] nextRequestOfTenant = new int[3];
+        int[] offsetOfTenant = new int[] {-1, -1, -1};
+        int[] tenantOfPage = new int[paging.maxPage(requestSequence) + 1];
+        Arrays.fill(tenantOfPage, -1);
+        for (int i = 0; i < requestSequence.length; i ++) {
+            int tenant = tenantOf[i];
+            int offset = requestSequence[i] - streams[tenant][nextRequestOfTenant[tenant] ++];
+            if (offsetOfTenant[tenant] != -1 && offsetOfTenant[tenant] != offset) {
+                return "Requests of a tenant not in the same order as its stream";
+            }
+            offsetOfTenant[tenant] = offset;
+            if (tenantOfPage[requestSequence[i]] != -1 && tenantOfPage[requestSequence[i]] != tenant) {
+                return "Pages of different tenants are the same";
             }
+            tenantOfPage[requestSequence[i]] = tenant;
+        }
 
-            // increasing omega means increasing the range to choose a value from, to replace the actual H value
-            // so when using high omega (keeping tow constant), the average deviation of the sequence should be more than when using low omega
-            // Note: We can create cases to fail this by using lower values of N and n and choosing randomness to behave in some way
-            // I am taking high values for N and n. Also assuming Java uses randomness which is close to true randomness
-            if (deviationForLowOmega > deviationForHighOmega) {
-                return "High omega did not add more deviation (a parameter to measure noise)";
+        int cacheSize = 20;
+        long[] sharedPageFaults = simulation.sharedPageFaults(new LRUCache(cacheSize), null);
+        if (sharedPageFaults[0] + sharedPageFaults[1] + sharedPageFaults[2] != paging.LRU(cacheSize, requestSequence)) {
+            return "Page faults of the shared cache not the same as LRU";
+        }
+
+        // a partition of size s gives the LRU page faults of the stream alone, and the curves are exact with sampling rate 1
+        long[][] pageFaultCurves = simulation.pageFaultCurves(cacheSize, 1);
+        long[] partitionedPageFaults = simulation.partitionedPageFaults(new int[] {0, 7, 13});
+        if (partitionedPageFaults[0] != 3000 || partitionedPageFaults[1] != paging.LRU(7, streams[1]) || partitionedPageFaults[2] != paging.LRU(13, streams[2])) {
+            return "Page faults of the partitioned cache not the same as LRU on every stream";
+        }
+        for (int t = 0; t < 3; t ++) {
+            for (int c = 1; c <= cacheSize; c ++) {
+                if (pageFaultCurves[t][c] != paging.LRU(c, streams[t])) {
+                    return "Page fault curve of tenant " + t + " not the same as LRU";
+                }
             }
+        }
 
-            iterations --;
+        // the dynamic programming gives the fewest page faults of all the partitions
+        int[] partitionSizes = MultiTenantSimulation.optimalPartition(pageFaultCurves, cacheSize);
+        long fewestPageFaults = Long.MAX_VALUE;
+        for (int s0 = 0; s0 <= cacheSize; s0 ++) {
+            for (int s1 = 0; s0 + s1 <= cacheSize; s1 ++) {
+                fewestPageFaults = Math.min(fewestPageFaults, pageFaultCurves[0][s0] + pageFaultCurves[1][s1] + pageFaultCurves[2][cacheSize - s0 - s1]);
+            }
+        }
+        long[] optimalPageFaults = simulation.partitionedPageFaults(partitionSizes);
+        if (partitionSizes[0] + partitionSizes[1] + partitionSizes[2] != cacheSize
+                || optimalPageFaults[0] + optimalPageFaults[1] + optimalPageFaults[2] != fewestPageFaults) {
+            return "Optimal partition does not give the fewest page faults";
         }
 
-        System.out.println("---------Finished test8---------");
+        System.out.println("---------Finished test39---------");
         return SUCCESS;
     }
 
-    // tests if BlindOracle works as expected on a given input
-    private static String test9() {
-        System.out.println("\n---------Running test9---------");
-        Paging paging = new Paging();
+    // tests the consistent hashing and the page faults of the cache cluster
+    private static String test40() {
+        System.out.println("\n---------Running test40---------");
 
-        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 4, 8, 9, 7, 5, 5, 9, 5, 9, 4, 3, 4, 5, 8, 3};
-        int[] hPredictions = new int[] {23, 21, 14, 22, 20, 17, 18, 11, 21, 11, 13, 14, 18, 21, 19, 24, 20, 21, 21, 18};
-        int k = 3;
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 1000;
+        int n = 20000;
+        double threshold = 0.1;
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+        int[] hPredictions = paging.generateH(requestSequence);
+        paging.addNoise(hPredictions, 0.5, 200);
+
+        // adding a 5th node only moves pages to the new node
+        CacheCluster fourNodes = new CacheCluster(4, 100, 7);
+        CacheCluster fiveNodes = new CacheCluster(5, 100, 7);
+        int movedPages = 0;
+        for (int page = 1; page <= N; page ++) {
+            if (fiveNodes.nodeOf(page) != fourNodes.nodeOf(page)) {
+                movedPages ++;
+                if (fiveNodes.nodeOf(page) != 4) {
+                    return "Page moved between old nodes when a node was added";
+                }
+            }
+        }
+        // about 1 / 5 of the pages should move
+        if (movedPages < N / 10 || movedPages > N * 3 / 10) {
+            return "Number of pages moved to the new node not close to 1 / 5 of the pages: " + movedPages;
+        }
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 13;
+        try {
+            // small blocks and queues, so that the router has to wait for the nodes
+            CacheCluster.Result result = fourNodes.run(requestSequence, hPredictions, node -> new CombinedCache(k, threshold), 7, 2);
+            if (result.totalRequests() != n) {
+                return "Not every request was run on a node";
+            }
 
-        int pageFaults = paging.blindOracle(k, pageRequests, hPredictions);
+            // every node gives the same page faults as combinedAlg on the requests routed to it
+            for (int node = 0; node < 4; node ++) {
+                int[] requestsOfNode = new int[(int) result.requestsOfNode[node]];
+                int[] hPredictionsOfNode = new int[requestsOfNode.length];
+                int j = 0;
+                for (int i = 0; i < n; i ++) {
+                    if (fourNodes.nodeOf(requestSequence[i]) == node) {
+                        requestsOfNode[j] = requestSequence[i];
+                        hPredictionsOfNode[j ++] = hPredictions[i];
+                    }
+                }
+                if (j != requestsOfNode.length || result.pageFaultsOfNode[node] != paging.combinedAlg(k, requestsOfNode, hPredictionsOfNode, threshold)) {
+                    return "Page faults of node " + node + " not the same as combinedAlg on its requests";
+                }
+            }
+            if (result.loadSkew() < 1 || result.pageFaultSkew() < 1) {
+                return "Skew is less than 1";
+            }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+            // a single node is a single cache
+            CacheCluster.Result singleNode = new CacheCluster(1, 1, 7).run(requestSequence, null, node -> new LRUCache(k), 1000, 4);
+            if (singleNode.totalPageFaults() != paging.LRU(k, requestSequence) || singleNode.loadSkew() != 1) {
+                return "Page faults of a cluster with 1 node not the same as LRU";
+            }
+        } catch (InterruptedException e) {
+            return "Interrupted while running the cluster";
         }
 
-        System.out.println("---------Finished test9---------");
+        System.out.println("---------Finished test40---------");
         return SUCCESS;
     }
 
-    // tests BlindOracle when N = k + 1
-    private static String test10() {
-        System.out.println("\n---------Running test10---------");
-        Paging paging = new Paging();
+    // tests GreedyDual, cost-aware BlindOracle and cost-aware Combined
+    private static String test41() {
+        System.out.println("\n---------Running test41---------");
 
-        int k = 4;
+        Paging paging = new Paging();
 
-        // N is 5 and n is 20
-        int[] pageRequests = new int[] {1, 2, 3, 4, 2, 1, 5, 3, 4, 3, 4, 5, 5, 1, 2, 2, 2, 3, 2, 1};
-        int[] hPredictions = new int[] {6, 5, 9, 9, 14, 13, 12, 10, 11, 17, 21, 15, 19, 19, 17, 20, 22, 22, 21, 24};
+        // page 0 costs 10 and the others 1, so keeping page 0 saves cost even when the number of page faults is the same
+        int[] requestSequence = new int[] {0, 1, 2, 1, 0};
+        int[] costs = new int[] {10, 1, 1, 1, 10};
+        int[] trueHSequence = paging.generateH(requestSequence);
+        CostResult greedyDual = paging.greedyDual(2, requestSequence, costs);
+        CostResult costAwareBlindOracle = paging.costAwareBlindOracle(2, requestSequence, costs, trueHSequence);
+        CostResult blindOracle = paging.costOf(new BlindOracleCache(2), requestSequence, trueHSequence, costs);
+        CostResult lru = paging.costOf(new LRUCache(2), requestSequence, null, costs);
+        if (greedyDual.pageFaults != 4 || greedyDual.missCost != 13) {
+            return "GreedyDual does not give 4 page faults with cost 13: " + greedyDual;
+        }
+        if (costAwareBlindOracle.pageFaults != 4 || costAwareBlindOracle.missCost != 13 || costAwareBlindOracle.totalCost() != 13) {
+            return "Cost-aware BlindOracle does not give 4 page faults with cost 13: " + costAwareBlindOracle;
+        }
+        if (blindOracle.pageFaults != 4 || blindOracle.missCost != 22 || lru.pageFaults != 4 || lru.missCost != 22) {
+            return "BlindOracle and LRU do not give 4 page faults with cost 22";
+        }
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 6;
+        // with all costs 1 they evict like the algorithms that count page faults
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+        double threshold = 0.1;
+        for (int t = 0; t < 5; t ++) {
+            requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+            int[] hPredictions = paging.generateH(requestSequence);
+            paging.addNoise(hPredictions, 0.5, 100);
+            int[] unitCosts = new int[n];
+            Arrays.fill(unitCosts, 1);
+
+            if (paging.greedyDual(k, requestSequence, unitCosts).pageFaults != paging.LRU(k, requestSequence)) {
+                return "GreedyDual with all costs 1 not the same as LRU";
+            }
+            if (paging.costAwareBlindOracle(k, requestSequence, unitCosts, hPredictions).pageFaults != paging.blindOracle(k, requestSequence, hPredictions)) {
+                return "Cost-aware BlindOracle with all costs 1 not the same as BlindOracle";
+            }
+            if (paging.costAwareCombinedAlg(k, requestSequence, unitCosts, hPredictions, threshold).totalCost() != paging.combinedAlg(k, requestSequence, hPredictions, threshold)) {
+                return "Cost-aware Combined with all costs 1 not the same as combinedAlg";
+            }
 
-        int pageFaults = paging.blindOracle(k, pageRequests, hPredictions);
+            // the costs of the page faults are between the smallest and the largest cost
+            costs = paging.generateCosts(requestSequence, 100, 100000);
+            CostResult combined = paging.costAwareCombinedAlg(k, requestSequence, costs, hPredictions, threshold);
+            if (combined.missCost < 100L * combined.pageFaults || combined.missCost > 100000L * combined.pageFaults || combined.switchCost < 0) {
+                return "Cost of the page faults of cost-aware Combined out of range";
+            }
+            // every request to a page has the same cost
+            int[] costOfPage = new int[N + 1];
+            for (int i = 0; i < n; i ++) {
+                if (costOfPage[requestSequence[i]] != 0 && costOfPage[requestSequence[i]] != costs[i]) {
+                    return "Requests to the same page have different costs";
+                }
+                costOfPage[requestSequence[i]] = costs[i];
+            }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+            // the heaps evict the same pages as a scan of all the pages in the cache at every page fault
+            for (boolean usingHPredictions : new boolean[] {false, true}) {
+                boolean[] inCache = new boolean[N + 1];
+                long[] priorityOf = new long[N + 1];
+                int[] updatedAt = new int[N + 1];
+                int size = 0;
+                long inflation = 0;
+                CostResult scan = new CostResult();
+                for (int i = 0; i < n; i ++) {
+                    int page = requestSequence[i];
+                    if (!inCache[page]) {
+                        scan.pageFaults ++;
+                        scan.missCost += costs[i];
+                        if (size == k) {
+                            int victim = -1;
+                            for (int other = 0; other <= N; other ++) {
+                                if (!inCache[other]) {
+                                    continue;
+                                }
+                                boolean evictsBefore;
+                                if (victim == -1) {
+                                    evictsBefore = true;
+                                } else if (!usingHPredictions) {
+                                    // lowest credit, then least recently used
+                                    evictsBefore = priorityOf[other] < priorityOf[victim] || (priorityOf[other] == priorityOf[victim] && updatedAt[other] < updatedAt[victim]);
+                                } else {
+                                    // highest distance divided by cost, then highest H prediction, then least recently used
+                                    long difference = Math.max(1, priorityOf[other] - i) * costOfPage[victim] - Math.max(1, priorityOf[victim] - i) * costOfPage[other];
+                                    evictsBefore = difference > 0 || (difference == 0 && (priorityOf[other] > priorityOf[victim]
+                                            || (priorityOf[other] == priorityOf[victim] && updatedAt[other] < updatedAt[victim])));
+                                }
+                                if (evictsBefore) {
+                                    victim = other;
+                                }
+                            }
+                            if (!usingHPredictions) {
+                                inflation = priorityOf[victim];
+                            }
+                            inCache[victim] = false;
+                            size --;
+                        }
+                        inCache[page] = true;
+                        size ++;
+                    }
+                    priorityOf[page] = usingHPredictions ? hPredictions[i] : inflation + costs[i];
+                    updatedAt[page] = i;
+                }
+                CostResult heap = usingHPredictions ? paging.costAwareBlindOracle(k, requestSequence, costs, hPredictions) : paging.greedyDual(k, requestSequence, costs);
+                if (heap.pageFaults != scan.pageFaults || heap.missCost != scan.missCost) {
+                    return (usingHPredictions ? "Cost-aware BlindOracle" : "GreedyDual") + " not the same as a scan of the cache: " + heap + " instead of " + scan;
+                }
+            }
         }
 
-        System.out.println("---------Finished test10---------");
+        System.out.println("---------Finished test41---------");
         return SUCCESS;
     }
 
-    // tests BlindOracle when N >> k
-    private static String test11() {
-        System.out.println("\n---------Running test11---------");
-        Paging paging = new Paging();
+    // tests the cache advisor server with clients on localhost
+    private static String test42() {
+        System.out.println("\n---------Running test42---------");
 
-        int k = 4;
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 200;
+        int n = 20000;
+        double threshold = 0.1;
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+        int[] hPredictions = paging.generateH(requestSequence);
+        paging.addNoise(hPredictions, 0.5, 100);
+
+        // the hits and the evicted pages of the same cache run in this thread
+        CachePolicy localCache = new CombinedCache(k, threshold);
+        long[] localHitBitmap = new long[(n + 63) >>> 6];
+        int[] localEvictedPages = new int[n];
+        // the page faults of the requests, without the k page faults CombinedCache counts for a switch
+        long localPageFaults = 0;
+        for (int i = 0; i < n; i ++) {
+            boolean hit = localCache.access(requestSequence[i], hPredictions[i]);
+            if (!hit) {
+                localPageFaults ++;
+            }
+            CachePolicy.setHitBit(localHitBitmap, i, hit);
+            localEvictedPages[i] = hit ? -1 : localCache.lastEvicted();
+        }
 
-        // N is 1000 and n is 20
-        int[] pageRequests = new int[] {1, 2, 3, 1, 255, 2, 2, 1, 255, 255, 1, 298, 95, 2, 2, 2, 2, 851, 95, 95};
-        int[] hPredictions = new int[] {4, 6, 21, 8, 9, 7, 14, 11, 10, 21, 21, 21, 22, 19, 16, 26, 21, 21, 20, 21};
+        try (CacheAdvisorServer server = new CacheAdvisorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), () -> new CombinedCache(k, threshold), N)) {
+            server.start();
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 8;
+            // every connection has its own cache, so 2 clients at the same time get the same answers
+            try (CacheAdvisorClient first = new CacheAdvisorClient(server.localAddress());
+                 CacheAdvisorClient second = new CacheAdvisorClient(server.localAddress())) {
+                long[] hitBitmap = new long[(n + 63) >>> 6];
+                int[] evictedPages = new int[n];
+                if (first.run(requestSequence, hPredictions, 1000, 4, hitBitmap, evictedPages) != localPageFaults) {
+                    return "Page faults from the server not the same as CombinedCache";
+                }
+                if (!Arrays.equals(hitBitmap, localHitBitmap) || !Arrays.equals(evictedPages, localEvictedPages)) {
+                    return "Hits or evicted pages from the server not the same as CombinedCache";
+                }
 
-        int pageFaults = paging.blindOracle(k, pageRequests, hPredictions);
+                // one batch at a time, with batches of different sizes
+                long pageFaults = 0;
+                for (int i = 0, len = 1; i < n; i += len, len = len % 500 + 1) {
+                    len = Math.min(len, n - i);
+                    pageFaults += second.advise(requestSequence, hPredictions, i, len, hitBitmap, evictedPages);
+                }
+                if (pageFaults != localPageFaults || !Arrays.equals(hitBitmap, localHitBitmap) || !Arrays.equals(evictedPages, localEvictedPages)) {
+                    return "Answers to batches of different sizes not the same as CombinedCache";
+                }
+            }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+            // a wrong frame closes only the connection that sent it
+            try (CacheAdvisorClient wrong = new CacheAdvisorClient(server.localAddress())) {
+                wrong.send(new int[] {-5}, null, 0, 1);
+                wrong.receive(null, null, 0);
+                return "Server answered a batch with a negative page";
+            } catch (IOException e) {
+                // expected, the server closed the connection
+            }
+            // a page larger than the largest page would make the cache grow its tables to it
+            try (CacheAdvisorClient wrong = new CacheAdvisorClient(server.localAddress())) {
+                wrong.send(new int[] {Integer.MAX_VALUE - 1}, null, 0, 1);
+                wrong.receive(null, null, 0);
+                return "Server answered a batch with a page larger than the largest page";
+            } catch (IOException e) {
+                // expected, the server closed the connection
+            }
+            try (CacheAdvisorClient client = new CacheAdvisorClient(server.localAddress())) {
+                if (client.run(requestSequence, hPredictions, 4096, 2, null, null) != localPageFaults) {
+                    return "Server does not answer after closing a connection";
+                }
+            }
+            if (server.requests() != 3L * n) {
+                return "Number of requests answered by the server is wrong: " + server.requests();
+            }
+        } catch (IOException e) {
+            return "Could not run the server on localhost: " + e;
         }
 
-        System.out.println("---------Finished test11---------");
-        return SUCCESS;
-    }
-
-    // generate request sequence, predictions and run BlindOracle on them to test if the page faults are a valid number
-    private static String test12() {
-        System.out.println("\n---------Running test12---------");
-        Paging paging = new Paging();
-
-        int N = 10;
-        int n = 20;
-        int k = 3;
-        double epsilon = 0.7;
-        double tow = 0.4;
-        int omega = 5;
+        System.out.println("---------Finished test42---------");
+        return SUCCESS;
+    }
 
-        int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
-        int[] hSequence = paging.generateH(pageRequests);
-        paging.addNoise(hSequence, tow, omega);
+    // tests the pipelined simulation
+    private static String test43() {
+        System.out.println("\n---------Running test43---------");
 
-        int pageFaults = paging.blindOracle(k, pageRequests, hSequence);
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 200;
+        int n = 20000;
+        double threshold = 0.1;
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+        int[] hPredictions = new EwmaGapPredictor(0.5).predictAll(requestSequence);
+
+        try {
+            // small blocks and rings, so that the stages wait for each other and the rings wrap around many times
+            PipelinedSimulation pipeline = new PipelinedSimulation(7, 2);
+            PipelinedSimulation.Result result = pipeline.run(PipelinedSimulation.RequestSource.of(requestSequence), new EwmaGapPredictor(0.5),
+                    List.of(new LRUCache(k), new BlindOracleCache(k), new CombinedCache(k, threshold)));
+            if (result.requests != n) {
+                return "Not every request went through the pipeline";
+            }
+            if (result.pageFaultsOfPolicy[0] != paging.LRU(k, requestSequence)
+                    || result.pageFaultsOfPolicy[1] != paging.blindOracle(k, requestSequence, hPredictions)
+                    || result.pageFaultsOfPolicy[2] != paging.combinedAlg(k, requestSequence, hPredictions, threshold)) {
+                return "Page faults of the pipeline not the same as running the policies one after another";
+            }
 
-        // tests if page faults are in [k, n]
-        if (pageFaults < 3 || pageFaults > 20) {
-            return "Page faults should be in between k and n (both inclusive)";
+            // a stage that fails stops the whole pipeline instead of leaving the other stages waiting
+            try {
+                new PipelinedSimulation(16, 4).run(consumer -> {
+                    for (int i = 0; i < 1000; i ++) {
+                        consumer.accept(requestSequence[i]);
+                    }
+                    throw new IOException("trace cut short");
+                }, null, List.of(new LRUCache(k), new LRUCache(k)));
+                return "Failure of the source stage not reported";
+            } catch (IllegalStateException e) {
+                if (!(e.getCause() instanceof IOException)) {
+                    return "Failure of the source stage reported with the wrong cause";
+                }
+            }
+        } catch (InterruptedException e) {
+            return "Interrupted while running the pipeline";
         }
 
-        System.out.println("---------Finished test12---------");
+        System.out.println("---------Finished test43---------");
         return SUCCESS;
     }
 
-    // tests if LRU works as expected on a given input
-    private static String test13() {
-        System.out.println("\n---------Running test13---------");
+    // tests the BlindOracle that sees only a window of the next requests
+    private static String test44() {
+        System.out.println("\n---------Running test44---------");
+
         Paging paging = new Paging();
 
-        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 4, 8, 9, 7, 5, 5, 9, 5, 9, 4, 3, 4, 5, 8, 3};
-        int k = 3;
+        // k = 2, the window shows the next 2 requests: at the request to 3 only page 1 is requested in the window
+        int[] requestSequence = new int[] {1, 2, 3, 1, 4, 2};
+        if (paging.lookaheadBlindOracle(2, requestSequence, 2, null) != 5 || paging.lookaheadBlindOracle(2, requestSequence, 6, null) != 5
+                || paging.lookaheadBlindOracle(2, requestSequence, 0, null) != 6) {
+            return "Lookahead BlindOracle does not give 5, 5 and 6 page faults on a given input";
+        }
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 15;
+        int k = 10;
+        int N = 100;
+        int n = 5000;
+        for (int t = 0; t < 5; t ++) {
+            requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+            int[] trueHSequence = paging.generateH(requestSequence);
+            int[] hPredictions = Arrays.copyOf(trueHSequence, n);
+            paging.addNoise(hPredictions, 0.5, 100);
+
+            // a window with the whole future is OPT, and an empty window is LRU or BlindOracle on the predictions
+            if (paging.lookaheadBlindOracle(k, requestSequence, n, null) != paging.blindOracle(k, requestSequence, trueHSequence)) {
+                return "Lookahead BlindOracle with the whole future not the same as OPT";
+            }
+            if (paging.lookaheadBlindOracle(k, requestSequence, 0, null) != paging.LRU(k, requestSequence)) {
+                return "Lookahead BlindOracle with an empty window not the same as LRU";
+            }
+            if (paging.lookaheadBlindOracle(k, requestSequence, 0, hPredictions) != paging.blindOracle(k, requestSequence, hPredictions)) {
+                return "Lookahead BlindOracle with an empty window and predictions not the same as BlindOracle";
+            }
 
-        int pageFaults = paging.LRU(k, pageRequests);
+            // in between it is never better than OPT
+            int opt = paging.blindOracle(k, requestSequence, trueHSequence);
+            for (int window : new int[] {1, 10, 100, 1000}) {
+                if (paging.lookaheadBlindOracle(k, requestSequence, window, null) < opt || paging.lookaheadBlindOracle(k, requestSequence, window, hPredictions) < opt) {
+                    return "Lookahead BlindOracle with window " + window + " better than OPT";
+                }
+            }
+        }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+        // the same instance runs another sequence after reset, and requests can be offered one at a time
+        LookaheadBlindOracle cache = new LookaheadBlindOracle(k, 50, false);
+        for (int page : requestSequence) {
+            cache.offer(page, 0);
+        }
+        cache.reset();
+        long pageFaults = 0;
+        for (int page : requestSequence) {
+            pageFaults += cache.offer(page, 0);
+        }
+        pageFaults += cache.finish();
+        if (pageFaults != cache.pageFaults() || pageFaults != paging.lookaheadBlindOracle(k, requestSequence, 50, null)) {
+            return "Lookahead BlindOracle after reset not the same as a new one";
         }
 
-        System.out.println("---------Finished test13---------");
+        System.out.println("---------Finished test44---------");
         return SUCCESS;
     }
 
-    // tests LRU when N = k + 1
-    private static String test14() {
-        System.out.println("\n---------Running test14---------");
-        Paging paging = new Paging();
+    // tests the Combined algorithm with lazy switching
+    private static String test45() {
+        System.out.println("\n---------Running test45---------");
 
-        int k = 4;
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 100;
+        int n = 5000;
 
-        // N is 5 and n is 20
-        int[] pageRequests = new int[] {1, 2, 3, 4, 2, 1, 5, 3, 4, 3, 4, 5, 5, 1, 2, 2, 2, 3, 2, 1};
+        for (int t = 0; t < 5; t ++) {
+            int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+            int[] hPredictions = paging.generateH(requestSequence);
+            paging.addNoise(hPredictions, 0.5, 100);
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 9;
+            // without switches the real cache is the LRU cache
+            if (paging.lazyCombinedAlg(k, requestSequence, hPredictions, 1e9) != paging.LRU(k, requestSequence)) {
+                return "Lazy Combined without switches not the same as LRU";
+            }
 
-        int pageFaults = paging.LRU(k, pageRequests);
+            // a switch costs at most the pages that are missing, so never more than the k of combinedAlg
+            for (double threshold : new double[] {0, 0.01, 0.1, 0.5}) {
+                resetSwitchesCount();
+                int combined = paging.combinedAlg(k, requestSequence, hPredictions, threshold);
+                LazyCombinedCache cache = new LazyCombinedCache(k, threshold);
+                int lazy = cache.accessBatch(requestSequence, hPredictions, 0, n, null);
+                if (lazy > combined) {
+                    return "Lazy Combined has more page faults than combinedAlg with threshold " + threshold;
+                }
+                if (cache.getSwitches() != switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU) {
+                    return "Lazy Combined does not switch at the same requests as combinedAlg";
+                }
+            }
+        }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+        // the symmetric difference and the pages to load, checked against the shadow caches after every request
+        int[] requestSequence = paging.generateRandomSequence(k, N, 2000, 0.3);
+        int[] hPredictions = paging.generateH(requestSequence);
+        paging.addNoise(hPredictions, 0.5, 100);
+        LazyCombinedCache cache = new LazyCombinedCache(k, 0);
+        LRUCache lruCache = new LRUCache(k);
+        BlindOracleCache blindOracleCache = new BlindOracleCache(k);
+        for (int i = 0; i < requestSequence.length; i ++) {
+            cache.access(requestSequence[i], hPredictions[i]);
+            lruCache.access(requestSequence[i], hPredictions[i]);
+            blindOracleCache.access(requestSequence[i], hPredictions[i]);
+            int symmetricDifference = 0;
+            int pagesToLoad = 0;
+            int pagesInCache = 0;
+            for (int page = 0; page <= N; page ++) {
+                if (lruCache.contains(page) != blindOracleCache.contains(page)) {
+                    symmetricDifference ++;
+                }
+                boolean inShadowCache = cache.isUsingLRU() ? lruCache.contains(page) : blindOracleCache.contains(page);
+                if (inShadowCache && !cache.contains(page)) {
+                    pagesToLoad ++;
+                }
+                if (cache.contains(page)) {
+                    pagesInCache ++;
+                }
+            }
+            if (cache.symmetricDifference() != symmetricDifference || cache.pagesToLoad() != pagesToLoad || pagesInCache > k) {
+                return "Symmetric difference or pages to load not right after request " + i;
+            }
         }
 
-        System.out.println("---------Finished test14---------");
+        System.out.println("---------Finished test45---------");
         return SUCCESS;
     }
 
-    // tests LRU when N >> k
-    private static String test15() {
-        System.out.println("\n---------Running test15---------");
+    // tests the workload generators
+    private static String test46() {
+        System.out.println("\n---------Running test46---------");
+
         Paging paging = new Paging();
+        int k = 10;
+
+        // the alias table gives every outcome its probability
+        double[] weights = new double[] {5, 1, 0, 3, 1};
+        WorkloadGenerator.AliasTable aliasTable = new WorkloadGenerator.AliasTable(weights);
+        for (int i = 0; i < weights.length; i ++) {
+            if (Math.abs(aliasTable.probabilityOf(i) - weights[i] / 10) > 1e-9) {
+                return "Alias table does not give outcome " + i + " its probability";
+            }
+        }
 
-        int k = 4;
+        // a scan, a loop over k + 1 pages, a Zipfian phase and a mixture, with phases that do not end at a chunk
+        int chunk = WorkloadGenerator.CHUNK_SIZE;
+        List<WorkloadGenerator.Phase> phases = List.of(
+                new WorkloadGenerator.Phase(WorkloadGenerator.scan(1), chunk / 2),
+                new WorkloadGenerator.Phase(WorkloadGenerator.loop(1, k + 1), chunk),
+                new WorkloadGenerator.Phase(WorkloadGenerator.zipf(1, 1000, 1.0), 2L * chunk),
+                new WorkloadGenerator.Phase(WorkloadGenerator.mixture(
+                        new WorkloadGenerator.Pattern[] {WorkloadGenerator.zipf(1, 100, 0.8), WorkloadGenerator.loop(1001, 50)}, new double[] {3, 1}), chunk + 7));
+        WorkloadGenerator generator = new WorkloadGenerator(phases, 42);
+        int[] requestSequence = generator.generate();
+        if (requestSequence.length != generator.length() || generator.length() != chunk / 2 + chunk + 2L * chunk + chunk + 7) {
+            return "Generated sequence does not have the length of the phases";
+        }
 
-        // N is 1000 and n is 20
-        int[] pageRequests = new int[] {1, 2, 3, 1, 255, 2, 2, 1, 255, 255, 1, 298, 95, 2, 2, 2, 2, 851, 95, 95};
+        // the same seed gives the same sequence, in parallel or as a stream, and another seed another sequence
+        if (!Arrays.equals(requestSequence, new WorkloadGenerator(phases, 42).generate())
+                || Arrays.equals(requestSequence, new WorkloadGenerator(phases, 43).generate())) {
+            return "Same seed does not give the same sequence, or another seed gives the same";
+        }
+        int[] streamed = new int[requestSequence.length];
+        int[] next = new int[1];
+        try {
+            generator.source().forEach(page -> streamed[next[0] ++] = page);
+        } catch (IOException e) {
+            return "Generating the sequence as a stream failed";
+        }
+        if (!Arrays.equals(requestSequence, streamed)) {
+            return "Sequence generated as a stream not the same as generated in parallel";
+        }
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 8;
+        // the scan never requests a page twice, and LRU misses on every request of the loop
+        int[] scan = Arrays.copyOfRange(requestSequence, 0, chunk / 2);
+        int[] loop = Arrays.copyOfRange(requestSequence, chunk / 2, chunk / 2 + chunk);
+        if (paging.LRU(k, scan) != scan.length || paging.LRU(k, loop) != loop.length) {
+            return "LRU does not miss on every request of the scan and the loop";
+        }
+        if (loop[0] != 1 || loop[k] != k + 1 || loop[k + 1] != 1) {
+            return "Loop does not go over its pages in order";
+        }
 
-        int pageFaults = paging.LRU(k, pageRequests);
+        // the pages of the Zipfian phase are requested about as often as their probability
+        int zipfStart = chunk / 2 + chunk;
+        int[] count = new int[1001];
+        for (int i = zipfStart; i < zipfStart + 2 * chunk; i ++) {
+            count[requestSequence[i]] ++;
+        }
+        double harmonic = 0;
+        for (int rank = 1; rank <= 1000; rank ++) {
+            harmonic += 1.0 / rank;
+        }
+        for (int rank = 1; rank <= 3; rank ++) {
+            double expected = 2.0 * chunk / (rank * harmonic);
+            if (Math.abs(count[rank] - expected) > 5 * Math.sqrt(expected)) {
+                return "Page of rank " + rank + " of the Zipfian phase not requested as often as expected";
+            }
+        }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+        // the mixture has the pages of both of its patterns and no other
+        int fromLoop = 0;
+        for (int i = zipfStart + 2 * chunk; i < requestSequence.length; i ++) {
+            int page = requestSequence[i];
+            if (page > 1050 || (page > 100 && page <= 1000)) {
+                return "Mixture has a page of neither of its patterns";
+            }
+            fromLoop += page > 1000 ? 1 : 0;
+        }
+        if (Math.abs(fromLoop - (chunk + 7) / 4.0) > 5 * Math.sqrt(chunk)) {
+            return "Mixture does not follow the loop on about 1 / 4 of the requests";
         }
 
-        System.out.println("---------Finished test15---------");
+        System.out.println("---------Finished test46---------");
         return SUCCESS;
     }
 
-    // generate request sequence, predictions and run CombinedAlg on them to test if the number of page faults is a valid number
-    private static String test16() {
-        System.out.println("\n---------Running test16---------");
-        Paging paging = new Paging();
-        resetSwitchesCount();
+    // tests the snapshots of the caches
+    private static String test47() {
+        System.out.println("\n---------Running test47---------");
 
-        int N = 100;
-        int n = 2000;
-        int k = 4;
-        double epsilon = 0.7;
-        double tow = 0.3;
-        int omega = 5;
-        double threshold = 0.3;
+        Paging paging = new Paging();
+        int k = 10;
+        int N = 200;
+        int n = 20000;
+        double threshold = 0.1;
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+        int[] hPredictions = paging.generateH(requestSequence);
+        paging.addNoise(hPredictions, 0.5, 100);
+
+        try {
+            Path snapshot = Files.createTempFile("cache", ".snapshot");
+            try {
+                CachePolicy[] caches = new CachePolicy[] {new LRUCache(k), new BlindOracleCache(k), new CombinedCache(k, threshold)};
+                for (CachePolicy cache : caches) {
+                    // runs half of the sequence, saves the cache and goes on with the saved and the restored cache
+                    cache.accessBatch(requestSequence, hPredictions, 0, n / 2, null);
+                    PolicySnapshot.save(cache, snapshot);
+                    CachePolicy restored = PolicySnapshot.load(snapshot);
+                    if (restored.getClass() != cache.getClass() || restored.pageFaults() != cache.pageFaults()) {
+                        return "Restored " + cache.getClass().getSimpleName() + " does not have the same page faults";
+                    }
+                    for (int page = 0; page <= N; page ++) {
+                        if (restored.contains(page) != cache.contains(page)) {
+                            return "Restored " + cache.getClass().getSimpleName() + " does not have the same pages";
+                        }
+                    }
+                    for (int i = n / 2; i < n; i ++) {
+                        boolean hit = cache.access(requestSequence[i], hPredictions[i]);
+                        if (restored.access(requestSequence[i], hPredictions[i]) != hit || restored.lastEvicted() != cache.lastEvicted()) {
+                            return "Restored " + cache.getClass().getSimpleName() + " does not make the same decision at request " + i;
+                        }
+                    }
+                }
 
-        int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
-        int[] hSequence = paging.generateH(pageRequests);
-        paging.addNoise(hSequence, tow, omega);
+                // the combined cache also keeps the algorithm in use and the switches
+                CombinedCache combined = (CombinedCache) caches[2];
+                PolicySnapshot.save(combined, snapshot);
+                CombinedCache restored = (CombinedCache) PolicySnapshot.load(snapshot);
+                if (restored.isUsingLRU() != combined.isUsingLRU() || restored.getSwitchesFromLRUToBlindOracle() != combined.getSwitchesFromLRUToBlindOracle()
+                        || restored.getSwitchesFromBlindOracleToLRU() != combined.getSwitchesFromBlindOracleToLRU()) {
+                    return "Restored CombinedCache does not have the same algorithm in use and switches";
+                }
+                // only the pages in the caches are written
+                if (Files.size(snapshot) != PolicySnapshot.SNAPSHOT_HEADER_SIZE + combined.snapshotBytes() || Files.size(snapshot) > 1000) {
+                    return "Snapshot is not as small as the pages in the cache";
+                }
 
-        int pageFaults = paging.combinedAlg(k, pageRequests, hSequence, threshold);
+                // a file that is not a snapshot is not loaded
+                Files.write(snapshot, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+                try {
+                    PolicySnapshot.load(snapshot);
+                    return "File that is not a snapshot was loaded";
+                } catch (IOException e) {
+                    // expected
+                }
 
-        // tests if page faults are >= k
-        if (pageFaults < k) {
-            return "Page faults should be greater than or equal to k";
+                // a snapshot with a damaged state is not loaded: a flipped bit, and with a CRC32 that matches, more pages
+                // than the capacity, a negative page and more bytes than the cache
+                PolicySnapshot.save(caches[0], snapshot);
+                byte[] saved = Files.readAllBytes(snapshot);
+                for (int damage = 0; damage < 4; damage ++) {
+                    byte[] bytes = Arrays.copyOf(saved, saved.length + (damage == 3 ? 4 : 0));
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                    int state = PolicySnapshot.SNAPSHOT_HEADER_SIZE;
+                    if (damage == 0) {
+                        bytes[state + 16] ^= 1;
+                    } else {
+                        if (damage == 1) {
+                            buffer.putInt(state + 12, k + 1);
+                        } else if (damage == 2) {
+                            buffer.putInt(state + 16, -5);
+                        } else {
+                            buffer.putInt(12, bytes.length - state);
+                        }
+                        CRC32 crc = new CRC32();
+                        crc.update(bytes, state, bytes.length - state);
+                        buffer.putInt(PolicySnapshot.CRC_OFFSET, (int) crc.getValue());
+                    }
+                    Files.write(snapshot, bytes);
+                    try {
+                        PolicySnapshot.load(snapshot);
+                        return "Snapshot with a damaged state was loaded (damage " + damage + ")";
+                    } catch (IOException e) {
+                        // expected
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(snapshot);
+            }
+        } catch (IOException e) {
+            return "Could not write or read a snapshot: " + e;
         }
 
-        System.out.println("---------Finished test16---------");
+        System.out.println("---------Finished test47---------");
         return SUCCESS;
     }
 
-    // tests if CombinedAlg works as expected on a given request sequence and H predictions
-    private static String test17() {
-        System.out.println("\n---------Running test17---------");
+    // tests collapsing the runs of back-to-back requests to the same page
+    private static String test48() {
+        System.out.println("\n---------Running test48---------");
+
         Paging paging = new Paging();
+        int k = 10;
+        double threshold = 0.1;
+
+        // every request of a random sequence repeated 1 to 4 times
+        Random random = new Random(48);
+        int[] randomSequence = paging.generateRandomSequence(k, 100, 5000, 0.5);
+        int[] requestSequence = Arrays.stream(randomSequence).flatMap(page -> IntStream.range(0, 1 + random.nextInt(4)).map(j -> page)).toArray();
+        int n = requestSequence.length;
+        int[] hPredictions = new EwmaGapPredictor(0.5).predictAll(requestSequence);
+        int[] trueHSequence = paging.generateH(requestSequence);
+
+        CollapsedTrace trace = CollapsedTrace.collapse(requestSequence, hPredictions);
+        if (!Arrays.equals(trace.expand(), requestSequence) || trace.originalLength() != n || trace.length() >= n) {
+            return "Collapsed sequence does not expand to the sequence";
+        }
+        for (int run = 1; run < trace.length(); run ++) {
+            if (trace.pages[run] == trace.pages[run - 1]) {
+                return "Run of the same page not collapsed";
+            }
+        }
+
+        // the page faults of the algorithms in Paging are the same, with the last H prediction of every run
+        CollapsedTrace traceWithTrueH = CollapsedTrace.collapse(requestSequence, trueHSequence);
+        if (paging.LRU(k, trace.pages) != paging.LRU(k, requestSequence)
+                || paging.blindOracle(k, trace.pages, trace.hPredictions) != paging.blindOracle(k, requestSequence, hPredictions)
+                || paging.blindOracle(k, traceWithTrueH.pages, traceWithTrueH.hPredictions) != paging.blindOracle(k, requestSequence, trueHSequence)) {
+            return "Page faults of LRU or BlindOracle changed by collapsing the runs";
+        }
         resetSwitchesCount();
+        int combinedAlgPageFaults = paging.combinedAlg(k, requestSequence, hPredictions, threshold);
+        int switches = switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU;
+        resetSwitchesCount();
+        if (paging.combinedAlg(k, trace.pages, trace.hPredictions, threshold) != combinedAlgPageFaults
+                || switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU != switches) {
+            return "Page faults or switches of combinedAlg changed by collapsing the runs";
+        }
 
-        int[] pageRequests = new int[] {1, 2, 3, 6, 10, 6, 4, 8, 10, 3, 4, 4, 5, 1, 5, 2, 3, 2, 1, 1};
-        int[] hPredictions = new int[] {14, 16, 10, 6, 9, 21, 11, 9, 15, 21, 21, 13, 21, 21, 17, 18, 21, 20, 20, 21};
+        // and so are the page faults of the caches, the requests left out being hits
+        List<Supplier<CachePolicy>> caches = List.of(() -> new LRUCache(k), () -> new BlindOracleCache(k), () -> new CombinedCache(k, threshold),
+                () -> new LazyCombinedCache(k, threshold), () -> new MarkerCache(k, true, 16, new Random(1)));
+        for (Supplier<CachePolicy> cache : caches) {
+            long pageFaults = trace.pageFaults(cache.get());
+            CachePolicy policy = cache.get();
+            int expectedPageFaults = policy.accessBatch(requestSequence, hPredictions, 0, n, null);
+            if (pageFaults != expectedPageFaults || trace.hits(pageFaults) != n - expectedPageFaults) {
+                return "Page faults of " + policy.getClass().getSimpleName() + " changed by collapsing the runs";
+            }
+        }
 
-        int k = 4;
-        double threshold = 0.09;
+        try {
+            // a trace read collapsed is the same as the trace read and then collapsed
+            Path log = Files.createTempFile("runs", ".log");
+            Path binaryTrace = Files.createTempFile("runs", ".trace");
+            try {
+                Files.write(log, Arrays.stream(requestSequence).mapToObj(Integer::toString).collect(Collectors.toList()));
+                TraceIngester.ingest(log, binaryTrace, -1, (byte) ',', 0, 0);
+                CollapsedTrace collapsedTrace = TraceIngester.readCollapsedTrace(binaryTrace);
+                CollapsedTrace expected = CollapsedTrace.collapse(TraceIngester.readTrace(binaryTrace), null);
+                if (!Arrays.equals(collapsedTrace.pages, expected.pages) || !Arrays.equals(collapsedTrace.repeats, expected.repeats)
+                        || collapsedTrace.originalLength() != n || collapsedTrace.hPredictions != null) {
+                    return "Trace read collapsed is not the collapsed trace";
+                }
+            } finally {
+                Files.deleteIfExists(log);
+                Files.deleteIfExists(binaryTrace);
+            }
 
-        // I have calculated expected page faults manually on paper
-        int expectedPageFaults = 23;
+            // the pipeline runs the collapsed requests, including runs that go on over the end of a block
+            PipelinedSimulation.Result result = new PipelinedSimulation(7, 2, true).run(PipelinedSimulation.RequestSource.of(requestSequence),
+                    new EwmaGapPredictor(0.5), List.of(new LRUCache(k), new BlindOracleCache(k), new CombinedCache(k, threshold)));
+            if (result.requests != n || result.requestsRun != trace.length()) {
+                return "Pipeline did not run one request for every run";
+            }
+            if (result.pageFaultsOfPolicy[0] != paging.LRU(k, requestSequence)
+                    || result.pageFaultsOfPolicy[1] != paging.blindOracle(k, requestSequence, hPredictions)
+                    || result.pageFaultsOfPolicy[2] != new CombinedCache(k, threshold).accessBatch(requestSequence, hPredictions, 0, n, null)) {
+                return "Page faults of the pipeline changed by collapsing the runs";
+            }
+        } catch (IOException e) {
+            return "Could not write or read the trace: " + e;
+        } catch (InterruptedException e) {
+            return "Interrupted while running the pipeline";
+        }
 
-        int pageFaults = paging.combinedAlg(k, pageRequests, hPredictions, threshold);
+        System.out.println("---------Finished test48---------");
+        return SUCCESS;
+    }
 
-        if (pageFaults != expectedPageFaults) {
-            return "Page faults not the same as expected";
+    // tests the parallel exact reuse distances
+    private static String test49() {
+        System.out.println("\n---------Running test49---------");
+
+        Paging paging = new Paging();
+        int maxCacheSize = 40;
+
+        // a random sequence, and a loop over 30 pages after a scan, where a chunk boundary falls in the middle of a loop
+        int[] randomSequence = paging.generateRandomSequence(10, 100, 5000, 0.5);
+        int[] loopSequence = new WorkloadGenerator(List.of(new WorkloadGenerator.Phase(WorkloadGenerator.scan(100), 500),
+                new WorkloadGenerator.Phase(WorkloadGenerator.loop(1, 30), 3000)), 49).generate();
+        for (int[] requestSequence : new int[][] {randomSequence, loopSequence}) {
+            long[] expected = new long[maxCacheSize + 1];
+            expected[0] = requestSequence.length;
+            for (int k = 1; k <= maxCacheSize; k ++) {
+                expected[k] = paging.LRU(k, requestSequence);
+            }
+            // chunks of 1 request, chunks that do not divide the sequence, and a single chunk
+            for (int chunkSize : new int[] {1, 7, 1000, requestSequence.length}) {
+                if (!Arrays.equals(ReuseDistance.lruPageFaults(requestSequence, maxCacheSize, chunkSize), expected)) {
+                    return "Page faults from reuse distances with chunks of " + chunkSize + " not the same as LRU";
+                }
+            }
         }
 
-        // As I calculated on paper, there should be 1 swap from LRU to BlindOracle and 1 from BlindOracle to LRU
-        if (switchesFromLRUToBlindOracle != 1 && switchesFromBlindOracleToLRU != 1) {
-            return "There should be one switch from LRU to BlindOracle and one from BlindOracle to LRU";
+        // the chunks of a binary trace are read on their own
+        try {
+            Path log = Files.createTempFile("reuse", ".log");
+            Path trace = Files.createTempFile("reuse", ".trace");
+            try {
+                Files.write(log, Arrays.stream(randomSequence).mapToObj(Integer::toString).collect(Collectors.toList()));
+                TraceIngester.ingest(log, trace, -1, (byte) ',', 0, 0);
+                int[] requestSequence = TraceIngester.readTrace(trace);
+                if (!Arrays.equals(ReuseDistance.lruPageFaults(trace, maxCacheSize, 333), ReuseDistance.lruPageFaults(requestSequence, maxCacheSize, 5000))) {
+                    return "Page faults from the reuse distances of a binary trace not the same as of the sequence";
+                }
+            } finally {
+                Files.deleteIfExists(log);
+                Files.deleteIfExists(trace);
+            }
+        } catch (IOException e) {
+            return "Could not write or read the trace: " + e;
         }
 
-        System.out.println("---------Finished test17---------");
+        System.out.println("---------Finished test49---------");
         return SUCCESS;
     }
 
-    // more threshold for CombinedAlg should imply fewer switches
-    private static String test18() {
-        System.out.println("\n---------Running test18---------");
-        Paging paging = new Paging();
+    // tests the hit/miss logs and their queries
+    private static String test50() {
+        System.out.println("\n---------Running test50---------");
 
-        int N = 100;
+        Paging paging = new Paging();
+        int k = 10;
         int n = 10000;
-        int k = 4;
-        double epsilon = 0.5;
-        double tow = 0.7;
-        int omega = 50;
+        int[] requestSequence = paging.generateRandomSequence(k, 100, n, 0.5);
+        int[] hPredictions = new EwmaGapPredictor(0.5).predictAll(requestSequence);
+
+        // the hit bits of LRU and BlindOracle from accessBatch on the whole sequence
+        long[][] hitBitmaps = new long[2][(n + 63) >>> 6];
+        new LRUCache(k).accessBatch(requestSequence, null, 0, n, hitBitmaps[0]);
+        new BlindOracleCache(k).accessBatch(requestSequence, hPredictions, 0, n, hitBitmaps[1]);
+
+        try {
+            Path[] logs = {Files.createTempFile("lru", ".hits"), Files.createTempFile("blindOracle", ".hits"), Files.createTempFile("bits", ".hits")};
+            try {
+                CachePolicy[] policies = {new LRUCache(k), new BlindOracleCache(k)};
+                for (int p = 0; p < policies.length; p ++) {
+                    try (HitMissLog.Writer writer = new HitMissLog.Writer(logs[p])) {
+                        if (writer.run(policies[p], requestSequence, hPredictions) != policies[p].pageFaults() || writer.requests() != n) {
+                            return "Page faults of a policy run with a log not the same";
+                        }
+                    }
+                }
 
-        // testing the same 10 times to gain more confidence as we are using randomness in the methods
-        int iterations = 10;
-        while (iterations > 0) {
-            double highThreshold = 0.4;
-            double lowThreshold = 0.2;
+                // the runs of the log give back every hit bit
+                for (int p = 0; p < policies.length; p ++) {
+                    long[] hitBitmap = new long[(n + 63) >>> 6];
+                    int position = 0;
+                    try (HitMissLog.Reader reader = new HitMissLog.Reader(logs[p])) {
+                        for (long length = reader.nextRun(); length >= 0; length = reader.nextRun()) {
+                            for (long j = 0; j < length; j ++) {
+                                CachePolicy.setHitBit(hitBitmap, position ++, reader.isRunOfHits());
+                            }
+                        }
+                    }
+                    if (position != n || !Arrays.equals(hitBitmap, hitBitmaps[p])) {
+                        return "Hit bits read from the log not the same as the hits of the policy";
+                    }
+                }
 
-            int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
-            int[] hSequence = paging.generateH(pageRequests);
-            paging.addNoise(hSequence, tow, omega);
+                // adding the bits one by one writes the same log
+                try (HitMissLog.Writer writer = new HitMissLog.Writer(logs[2])) {
+                    for (int i = 0; i < n; i ++) {
+                        writer.append((hitBitmaps[0][i >>> 6] & (1L << i)) != 0);
+                    }
+                }
+                if (!Arrays.equals(Files.readAllBytes(logs[2]), Files.readAllBytes(logs[0]))) {
+                    return "Log written bit by bit not the same as written in blocks";
+                }
 
-            resetSwitchesCount();
-            int pageFaultsForHighThreshold = paging.combinedAlg(k, pageRequests, hSequence, highThreshold);
-            int switchesForHighThreshold = switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU;
+                // the hit rate of every window, the last one shorter
+                for (int window : new int[] {1000, 777}) {
+                    double[] hitRates = HitMissLog.windowedHitRates(logs[0], window);
+                    if (hitRates.length != (n + window - 1) / window) {
+                        return "Wrong number of windows";
+                    }
+                    for (int w = 0; w < hitRates.length; w ++) {
+                        int hits = 0;
+                        int end = Math.min(n, (w + 1) * window);
+                        for (int i = w * window; i < end; i ++) {
+                            hits += (hitBitmaps[0][i >>> 6] >>> i) & 1;
+                        }
+                        if (Math.abs(hitRates[w] - (double) hits / (end - w * window)) > 1e-12) {
+                            return "Hit rate of window " + w + " not the same as counted from the hits";
+                        }
+                    }
+                }
 
-            resetSwitchesCount();
-            int pageFaultsForLowThreshold = paging.combinedAlg(k, pageRequests, hSequence, lowThreshold);
-            int switchesForLowThreshold = switchesFromLRUToBlindOracle + switchesFromBlindOracleToLRU;
+                // the lead changes, against the difference of the hits after every request
+                List<HitMissLog.LeadChange> leadChanges = HitMissLog.leadChanges(logs[0], logs[1]);
+                List<String> expectedLeadChanges = new ArrayList<>();
+                int difference = 0;
+                for (int i = 0; i < n; i ++) {
+                    int previousDifference = difference;
+                    difference += (int) ((hitBitmaps[0][i >>> 6] >>> i) & 1) - (int) ((hitBitmaps[1][i >>> 6] >>> i) & 1);
+                    if (difference != 0 && Integer.signum(difference) != Integer.signum(previousDifference)) {
+                        expectedLeadChanges.add((difference > 0 ? "first" : "second") + " ahead from request " + i);
+                    }
+                }
+                if (expectedLeadChanges.isEmpty() || !leadChanges.toString().equals(expectedLeadChanges.toString())) {
+                    return "Lead changes not the same as found from the hits";
+                }
 
-            if (switchesForHighThreshold > switchesForLowThreshold) {
-                return "Number of switches with higher threshold should not be more than number of switches with lower threshold";
-            }
+                // a loop that fits in the cache is all hits after the first requests, a few bits for the whole log
+                int[] loopSequence = new WorkloadGenerator(List.of(new WorkloadGenerator.Phase(WorkloadGenerator.loop(1, k), 100000)), 50).generate();
+                try (HitMissLog.Writer writer = new HitMissLog.Writer(logs[2])) {
+                    writer.run(new LRUCache(k), loopSequence, null);
+                    if (writer.bitsPerRequest() > 0.01) {
+                        return "Log of a run of hits is not compressed";
+                    }
+                }
 
-            iterations --;
+                // the pipeline writes the same log as running the policy on its own
+                try (HitMissLog.Writer writer = new HitMissLog.Writer(logs[2])) {
+                    new PipelinedSimulation(7, 2).run(PipelinedSimulation.RequestSource.of(requestSequence), null, List.of(new LRUCache(k)), List.of(writer));
+                }
+                if (!Arrays.equals(Files.readAllBytes(logs[2]), Files.readAllBytes(logs[0]))) {
+                    return "Log written by the pipeline not the same";
+                }
+
+                // a file that is not a log is not read
+                Files.write(logs[2], new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+                try {
+                    HitMissLog.windowedHitRates(logs[2], 10);
+                    return "File that is not a log was read";
+                } catch (IOException e) {
+                    // expected
+                }
+            } finally {
+                for (Path log : logs) {
+                    Files.deleteIfExists(log);
+                }
+            }
+        } catch (IOException e) {
+            return "Could not write or read a log: " + e;
+        } catch (InterruptedException e) {
+            return "Interrupted while running the pipeline";
         }
 
-        System.out.println("---------Finished test18---------");
+        System.out.println("---------Finished test50---------");
         return SUCCESS;
     }
 
-    // more noise in predictions implies fewer switches from LRU to BlindOracle and higher switches from BlindOracle to LRU
-    private static String test19() {
-        System.out.println("\n---------Running test19---------");
-        Paging paging = new Paging();
+    // tests the lock-free CLOCK cache and the concurrent load driver
+    private static String test51() {
+        System.out.println("\n---------Running test51---------");
 
+        Paging paging = new Paging();
+        int k = 10;
         int N = 100;
-        int n = 10000;
-        int k = 4;
-        double epsilon = 0.6;
-        double threshold = 0.1;
-
-        // testing the same 10 times to gain more confidence as we are using randomness in the methods
-        int iterations = 10;
-        while (iterations > 0) {
-
-            double highTow = 0.8;
-            int highOmega = 250;
-
-            double lowTow = 0.3;
-            int lowOmega = 50;
-
-            int[] pageRequests = paging.generateRandomSequence(k, N, n, epsilon);
-            int[] hSequence = paging.generateH(pageRequests);
-            paging.addNoise(hSequence, highTow, highOmega);
-
-            resetSwitchesCount();
-            int pageFaultsForHighNoise = paging.combinedAlg(k, pageRequests, hSequence, threshold);
-            int netSwitchesFromLRUToBlindOracleForHighNoise = switchesFromLRUToBlindOracle - switchesFromBlindOracleToLRU;
-
-            hSequence = paging.generateH(pageRequests);
-            paging.addNoise(hSequence, lowTow, lowOmega);
+        int n = 20000;
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, 0.5);
+        int[] hPredictions = new EwmaGapPredictor(0.5).predictAll(requestSequence);
+
+        // on one thread it is CLOCK: the hand clears the reference bits until it finds a clear one
+        ConcurrentClockCache clock = new ConcurrentClockCache(k, N);
+        int[] frames = new int[k];
+        boolean[] referenced = new boolean[k];
+        Arrays.fill(frames, -1);
+        int hand = 0;
+        int expectedPageFaults = 0;
+        for (int page : requestSequence) {
+            int frame = IntStream.range(0, k).filter(f -> frames[f] == page).findFirst().orElse(-1);
+            boolean hit = frame >= 0;
+            if (hit) {
+                referenced[frame] = true;
+            } else {
+                expectedPageFaults ++;
+                while (referenced[hand]) {
+                    referenced[hand] = false;
+                    hand = (hand + 1) % k;
+                }
+                frames[hand] = page;
+                referenced[hand] = true;
+                hand = (hand + 1) % k;
+            }
+            if (clock.access(page) != hit) {
+                return "ConcurrentClockCache on one thread not the same as CLOCK";
+            }
+        }
+        if (clock.pageFaults() != expectedPageFaults) {
+            return "Page faults of ConcurrentClockCache not counted";
+        }
 
-            resetSwitchesCount();
-            int pageFaultsForLowNoise = paging.combinedAlg(k, pageRequests, hSequence, threshold);
-            int netSwitchesFromLRUToBlindOracleForLowNoise = switchesFromLRUToBlindOracle - switchesFromBlindOracleToLRU;
+        ConcurrentLoadDriver driver = new ConcurrentLoadDriver(requestSequence, hPredictions);
+        try {
+            // one thread replays the sequence in order, so the shared caches hit as the policies on their own
+            if (driver.run(ConcurrentLoadDriver.Variant.SYNCHRONIZED, LRUCache::new, k, 1, 1).hits != n - paging.LRU(k, requestSequence)
+                    || driver.run(ConcurrentLoadDriver.Variant.SYNCHRONIZED, BlindOracleCache::new, k, 1, 1).hits != n - paging.blindOracle(k, requestSequence, hPredictions)
+                    || driver.run(ConcurrentLoadDriver.Variant.STRIPED, LRUCache::new, k, 1, 1).hits != n - paging.LRU(k, requestSequence)
+                    || driver.run(ConcurrentLoadDriver.Variant.LOCK_FREE_CLOCK, null, k, 1, 1).hits != n - expectedPageFaults) {
+                return "Shared caches on one thread do not hit as the policies";
+            }
 
-            if (netSwitchesFromLRUToBlindOracleForHighNoise > netSwitchesFromLRUToBlindOracleForLowNoise) {
-                return "Net number of switches from LRU to BlindOracle with higher noise should not be more than the net number of switches with lower noise";
+            // with room for every page, only the first request to a page is a page fault whatever the order of the threads
+            int[] numsOfThreads = {1, 2, 4};
+            for (ConcurrentLoadDriver.Variant variant : ConcurrentLoadDriver.Variant.values()) {
+                List<ConcurrentLoadDriver.Result> results = driver.scale(variant, LRUCache::new, 8 * (N + 1), 4, numsOfThreads);
+                for (int r = 0; r < numsOfThreads.length; r ++) {
+                    ConcurrentLoadDriver.Result result = results.get(r);
+                    long distinctPages = Arrays.stream(requestSequence).distinct().count();
+                    // in the lock-free cache a thread that requests a page that another thread is loading counts a page fault
+                    boolean hitsAsExpected = variant == ConcurrentLoadDriver.Variant.LOCK_FREE_CLOCK
+                            ? result.hits <= n - distinctPages && result.hits > 0 : result.hits == n - distinctPages;
+                    if (result.requests != n || result.numOfThreads != numsOfThreads[r] || !hitsAsExpected) {
+                        return "Wrong hits of " + variant + " with " + numsOfThreads[r] + " threads";
+                    }
+                    if (result.p50Nanos > result.p99Nanos || result.p99Nanos > result.p999Nanos || result.p999Nanos > result.maxNanos
+                            || result.requestsPerSecond() <= 0) {
+                        return "Latency percentiles of " + variant + " not in order";
+                    }
+                }
             }
 
-            iterations --;
+            // the capacity is split between the stripes
+            try {
+                driver.run(ConcurrentLoadDriver.Variant.STRIPED, LRUCache::new, k, k + 1, 2);
+                return "More stripes than pages in the cache accepted";
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } catch (InterruptedException e) {
+            return "Interrupted while running the load driver";
         }
 
-        System.out.println("---------Finished test19---------");
+        System.out.println("---------Finished test51---------");
         return SUCCESS;
     }
 
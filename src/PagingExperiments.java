@@ -2,10 +2,19 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.stream.IntStream;
 
 /**
@@ -15,6 +24,30 @@ public class PagingExperiments {
 
     private static final double NUM_OF_TRAILS = 100.00;
 
+    // request sequences of the trails are generated from this seed, so every point of a trend that only varies the noise
+    // (trend2 and trend4) uses the same sequences, and they are generated only once (set a fixed value to repeat a run)
+    private static final long SEED = new Random().nextLong();
+    // values of the varying parameter of every trend, the same in both regimes except for epsilon, where regime1 also has 1
+    private static final int[] K_VALUES_OF_TREND1 = IntStream.iterate(3, k -> k <= 50, k -> k + 2).toArray();
+    private static final int[] OMEGA_VALUES_OF_TREND2 = IntStream.iterate(0, omega -> omega < 2000, omega -> omega + 50).toArray();
+    private static final double[] EPSILON_VALUES_OF_TREND3_REGIME1 = stepsOfFivePercent(true);
+    private static final double[] EPSILON_VALUES_OF_TREND3_REGIME2 = stepsOfFivePercent(false);
+    private static final double[] TOW_VALUES_OF_TREND4 = stepsOfFivePercent(false);
+    // number of points in all the trends, for the estimated time left
+    private static final int NUM_OF_POINTS = 2 * K_VALUES_OF_TREND1.length + 2 * OMEGA_VALUES_OF_TREND2.length
+            + EPSILON_VALUES_OF_TREND3_REGIME1.length + EPSILON_VALUES_OF_TREND3_REGIME2.length + 2 * TOW_VALUES_OF_TREND4.length;
+    // progress and throughput of the trends, reported every 5 seconds on the console and in experiment-metrics.jsonl
+    private static final ExperimentTelemetry TELEMETRY = new ExperimentTelemetry(
+            Paths.get(System.getProperty("user.dir"), "experiment-metrics.jsonl"), 5000, NUM_OF_POINTS);
+    // keeps the request sequences, true H sequences and page faults of the algorithms without predictions, 64 MB holds
+    // the trails of a few points
+    private static final TrialCache TRIAL_CACHE = new TrialCache(64L << 20, TELEMETRY);
+
+    // columns of the csv files, one for each algorithm
+    private static final List<String> PAGE_FAULT_COLUMNS = List.of(
+            "pageFaultsOfOpt", "pageFaultsOfBlindOracle", "pageFaultsOfLRU", "pageFaultsOfCombined",
+            "pageFaultsOfARC", "pageFaultsOfLIRS", "pageFaultsOfPredictiveMarker", "pageFaultsOfLMarker");
+
     /**
      * Runs a couple of example that show how values are chosen for regime1 and regime2
      * @param args no arguments need to be passed to run this program
@@ -22,11 +55,29 @@ public class PagingExperiments {
     public static void main(String[] args) {
         example1();
         example2();
+        example3();
+        example4();
+        example5();
+        example6();
+        example7();
+        example8();
+        example9();
+        example10();
+        example11();
+        example12();
+        example13();
+        example14();
+        example15();
+        example16();
+        example17();
+        example18();
 
         trend1();
         trend2();
         trend3();
         trend4();
+
+        TELEMETRY.close();
     }
 
     // Note: epsilon, tow, omega, threshold etc., carry the usual meanings which are explained in Paging class.
@@ -61,11 +112,19 @@ public class PagingExperiments {
         int pageFaultsOfBlindOracle = paging.blindOracle(k, randomInputSequence, hSeq);
         int pageFaultsOfLRU = paging.LRU(k, randomInputSequence);
         int pageFaultsOfCombinedAlg = paging.combinedAlg(k, randomInputSequence, hSeq, threshold);
+        int pageFaultsOfARC = paging.ARC(k, randomInputSequence);
+        int pageFaultsOfLIRS = paging.LIRS(k, randomInputSequence);
+        int pageFaultsOfPredictiveMarker = paging.predictiveMarker(k, randomInputSequence, hSeq);
+        int pageFaultsOfLMarker = paging.lMarker(k, randomInputSequence, hSeq);
 
         System.out.println("pageFaultsOfOpt: " + pageFaultsOfOpt);
         System.out.println("pageFaultsOfBlindOracle: " + pageFaultsOfBlindOracle);
         System.out.println("pageFaultsOfLRU: " + pageFaultsOfLRU);
         System.out.println("pageFaultsOfCombinedAlg: " + pageFaultsOfCombinedAlg);
+        System.out.println("pageFaultsOfARC: " + pageFaultsOfARC);
+        System.out.println("pageFaultsOfLIRS: " + pageFaultsOfLIRS);
+        System.out.println("pageFaultsOfPredictiveMarker: " + pageFaultsOfPredictiveMarker);
+        System.out.println("pageFaultsOfLMarker: " + pageFaultsOfLMarker);
         System.out.println("------------------");
     }
 
@@ -98,14 +157,660 @@ public class PagingExperiments {
         int pageFaultsOfBlindOracle = paging.blindOracle(k, randomInputSequence, hSeq);
         int pageFaultsOfLRU = paging.LRU(k, randomInputSequence);
         int pageFaultsOfCombinedAlg = paging.combinedAlg(k, randomInputSequence, hSeq, threshold);
+        int pageFaultsOfARC = paging.ARC(k, randomInputSequence);
+        int pageFaultsOfLIRS = paging.LIRS(k, randomInputSequence);
+        int pageFaultsOfPredictiveMarker = paging.predictiveMarker(k, randomInputSequence, hSeq);
+        int pageFaultsOfLMarker = paging.lMarker(k, randomInputSequence, hSeq);
 
         System.out.println("pageFaultsOfOpt: " + pageFaultsOfOpt);
         System.out.println("pageFaultsOfBlindOracle: " + pageFaultsOfBlindOracle);
         System.out.println("pageFaultsOfLRU: " + pageFaultsOfLRU);
         System.out.println("pageFaultsOfCombinedAlg: " + pageFaultsOfCombinedAlg);
+        System.out.println("pageFaultsOfARC: " + pageFaultsOfARC);
+        System.out.println("pageFaultsOfLIRS: " + pageFaultsOfLIRS);
+        System.out.println("pageFaultsOfPredictiveMarker: " + pageFaultsOfPredictiveMarker);
+        System.out.println("pageFaultsOfLMarker: " + pageFaultsOfLMarker);
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs LRU, BlindOracle and Combined in the byte-capacity mode, where pages have sizes from 1 KB to 1 MB
+     * and the cache holds a number of bytes instead of a number of pages
+     */
+    private static void example3() {
+
+        System.out.println("Running LRU, BlindOracle and Combined with pages of different sizes and a cache capacity in bytes:");
+
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+        double threshold = 0.1;
+
+        double epsilon = 0.3;
+        double tow = 0.5;
+        int omega = 180;
+
+        // about k pages of the average size fit in the cache
+        int minSize = 1 << 10;
+        int maxSize = 1 << 20;
+        long capacity = (long) (k * (maxSize - minSize) / Math.log((double) maxSize / minSize));
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] sizes = paging.generateSizes(randomInputSequence, minSize, maxSize);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        int[] trueHSeq = Arrays.copyOf(hSeq, hSeq.length);
+        paging.addNoise(hSeq, tow, omega);
+
+        System.out.println("capacity in bytes: " + capacity);
+        System.out.println("Opt: " + paging.weightedBlindOracle(capacity, randomInputSequence, sizes, trueHSeq));
+        System.out.println("BlindOracle: " + paging.weightedBlindOracle(capacity, randomInputSequence, sizes, hSeq));
+        System.out.println("LRU: " + paging.weightedLRU(capacity, randomInputSequence, sizes));
+        System.out.println("CombinedAlg: " + paging.weightedCombinedAlg(capacity, randomInputSequence, sizes, hSeq, threshold));
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs BlindOracle, Combined and the marking algorithms with predictions made online from the requests seen so far
+     * (no knowledge of the future), on a random sequence and on a sequence that loops over k + 1 pages
+     */
+    private static void example4() {
+
+        System.out.println("Running the algorithms with H predictions from online predictors:");
+
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+        double threshold = 0.1;
+        double epsilon = 0.3;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        // LRU has a page fault on every request of the loop, while the last gap of a page tells exactly when it comes back
+        int[] loopInputSequence = new int[n];
+        for (int i = 0; i < n; i ++) {
+            loopInputSequence[i] = i % (k + 1) + 1;
+        }
+
+        runWithOnlinePredictors(paging, "random sequence", k, randomInputSequence, threshold);
+        runWithOnlinePredictors(paging, "loop sequence", k, loopInputSequence, threshold);
+        System.out.println("------------------");
+    }
+
+    private static void runWithOnlinePredictors(Paging paging, String name, int k, int[] requestSequence, double threshold) {
+
+        System.out.println(name + ": Opt: " + paging.blindOracle(k, requestSequence, paging.generateH(requestSequence))
+                + ", LRU: " + paging.LRU(k, requestSequence));
+
+        NextAccessPredictor[] predictors = {new LastGapPredictor(), new EwmaGapPredictor(0.5), new FrequencyPredictor()};
+        for (NextAccessPredictor predictor : predictors) {
+            int[] hPredictions = predictor.predictAll(requestSequence);
+            System.out.println("    " + predictor.getClass().getSimpleName()
+                    + ": BlindOracle: " + paging.blindOracle(k, requestSequence, hPredictions)
+                    + ", CombinedAlg: " + paging.combinedAlg(k, requestSequence, hPredictions, threshold)
+                    + ", PredictiveMarker: " + paging.predictiveMarker(k, requestSequence, hPredictions)
+                    + ", LMarker: " + paging.lMarker(k, requestSequence, hPredictions));
+        }
+    }
+
+    /**
+     * finds the threshold that gives the fewest page faults for Combined, with a single run over the request sequence
+     */
+    private static void example5() {
+
+        System.out.println("Choosing the threshold of Combined for a request sequence:");
+
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+
+        double epsilon = 0.5;
+        double tow = 0.5;
+        int omega = 180;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        double[] thresholds = new double[101];
+        for (int t = 0; t < thresholds.length; t ++) {
+            thresholds[t] = t / 100.0;
+        }
+        int[] pageFaults = paging.combinedAlg(k, randomInputSequence, hSeq, thresholds);
+
+        int best = 0;
+        for (int t = 1; t < thresholds.length; t ++) {
+            if (pageFaults[t] < pageFaults[best]) {
+                best = t;
+            }
+        }
+        System.out.println("thresholds from 0 to 1, page faults from " + pageFaults[0] + " to " + pageFaults[thresholds.length - 1]);
+        System.out.println("best threshold: " + thresholds[best] + ", page faults: " + pageFaults[best]);
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs 2-tier hierarchies with every pair of policies, in inclusive and exclusive mode, in a single pass over the
+     * request sequence
+     */
+    private static void example6() {
+
+        System.out.println("Running 2-tier cache hierarchies (L1 of size 5, L2 of size 20) in a single pass:");
+
+        int k1 = 5;
+        int k2 = 20;
+        int N = 100;
+        int n = 10000;
+        double threshold = 0.1;
+
+        double epsilon = 0.5;
+        double tow = 0.5;
+        int omega = 180;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k2, N, n, epsilon);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        List<CacheHierarchy> hierarchies = new ArrayList<>();
+        for (boolean inclusive : new boolean[] {true, false}) {
+            for (int l1Policy = 0; l1Policy < 3; l1Policy ++) {
+                for (int l2Policy = 0; l2Policy < 3; l2Policy ++) {
+                    hierarchies.add(new CacheHierarchy(createPolicy(l1Policy, k1, threshold), createPolicy(l2Policy, k2, threshold), inclusive));
+                }
+            }
+        }
+        CacheHierarchy.runAll(hierarchies, randomInputSequence, hSeq);
+
+        for (CacheHierarchy hierarchy : hierarchies) {
+            System.out.println(hierarchy);
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs 3 tenants with different locality on a shared LRU cache, on an equal partition of the cache and on the
+     * partition with the fewest page faults (computed from the page fault curve of every tenant)
+     */
+    private static void example7() {
+
+        System.out.println("Running 3 tenants on a shared cache of size 30 and on partitions of it:");
+
+        int cacheSize = 30;
+        Paging paging = new Paging();
+
+        // a tenant with a small hot set, a tenant with a large working set and little locality, and a small tenant
+        List<int[]> tenantStreams = List.of(
+                paging.generateRandomSequence(5, 100, 20000, 0.9),
+                paging.generateRandomSequence(20, 500, 20000, 0.5),
+                paging.generateRandomSequence(10, 50, 10000, 0.7));
+        MultiTenantSimulation simulation = new MultiTenantSimulation(tenantStreams, new double[] {2, 2, 1}, new Random());
+
+        long[][] pageFaultCurves = simulation.pageFaultCurves(cacheSize, 1);
+        int[] optimalPartitionSizes = MultiTenantSimulation.optimalPartition(pageFaultCurves, cacheSize);
+        int[] equalPartitionSizes = new int[] {10, 10, 10};
+
+        long[] sharedPageFaults = simulation.sharedPageFaults(new LRUCache(cacheSize), null);
+        long[] equalPartitionPageFaults = simulation.partitionedPageFaults(equalPartitionSizes);
+        long[] optimalPartitionPageFaults = simulation.partitionedPageFaults(optimalPartitionSizes);
+        System.out.println("shared LRU: " + Arrays.toString(sharedPageFaults) + ", total " + Arrays.stream(sharedPageFaults).sum());
+        System.out.println("equal partition " + Arrays.toString(equalPartitionSizes) + ": "
+                + Arrays.toString(equalPartitionPageFaults) + ", total " + Arrays.stream(equalPartitionPageFaults).sum());
+        System.out.println("optimal partition " + Arrays.toString(optimalPartitionSizes) + ": "
+                + Arrays.toString(optimalPartitionPageFaults) + ", total " + Arrays.stream(optimalPartitionPageFaults).sum());
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs the same request sequence on clusters of 1 to 8 nodes (each node with a Combined cache of size k) to see
+     * how the page faults and the load skew change as nodes are added
+     */
+    private static void example8() {
+
+        System.out.println("Running a cache cluster with 1, 2, 4 and 8 nodes, each with a cache of size 20:");
+
+        int k = 20;
+        int N = 1000;
+        int n = 100000;
+        double threshold = 0.1;
+
+        double epsilon = 0.5;
+        double tow = 0.5;
+        int omega = 180;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        try {
+            for (int numOfNodes = 1; numOfNodes <= 8; numOfNodes *= 2) {
+                CacheCluster cluster = new CacheCluster(numOfNodes, 100, 0);
+                CacheCluster.Result result = cluster.run(randomInputSequence, hSeq, node -> new CombinedCache(k, threshold), 1024, 4);
+                System.out.println(numOfNodes + " nodes: " + result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs the algorithms that count page faults and the cost-aware algorithms on pages whose miss costs range from 100
+     * (a local read) to 100000 (a fetch from far away), and compares the total cost
+     */
+    private static void example9() {
+
+        System.out.println("Running LRU, BlindOracle and Combined and their cost-aware versions with miss costs from 100 to 100000:");
+
+        int k = 10;
+        int N = 100;
+        int n = 10000;
+        double threshold = 0.1;
+
+        double epsilon = 0.3;
+        double tow = 0.5;
+        int omega = 180;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] costs = paging.generateCosts(randomInputSequence, 100, 100000);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        int[] trueHSeq = Arrays.copyOf(hSeq, hSeq.length);
+        paging.addNoise(hSeq, tow, omega);
+
+        System.out.println("Opt (fewest page faults): " + paging.costOf(new BlindOracleCache(k), randomInputSequence, trueHSeq, costs));
+        System.out.println("BlindOracle: " + paging.costOf(new BlindOracleCache(k), randomInputSequence, hSeq, costs));
+        System.out.println("LRU: " + paging.costOf(new LRUCache(k), randomInputSequence, null, costs));
+        System.out.println("CombinedAlg: " + paging.costOf(new CombinedCache(k, threshold), randomInputSequence, hSeq, costs));
+        System.out.println("Cost-aware BlindOracle with true H values: " + paging.costAwareBlindOracle(k, randomInputSequence, costs, trueHSeq));
+        System.out.println("Cost-aware BlindOracle: " + paging.costAwareBlindOracle(k, randomInputSequence, costs, hSeq));
+        System.out.println("GreedyDual: " + paging.greedyDual(k, randomInputSequence, costs));
+        System.out.println("Cost-aware CombinedAlg: " + paging.costAwareCombinedAlg(k, randomInputSequence, costs, hSeq, threshold));
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs Combined through a CacheAdvisorServer on localhost with different batch sizes, and prints the time per request
+     */
+    private static void example10() {
+
+        System.out.println("Running Combined through the cache advisor server on localhost with batches of 1, 16, 256 and 4096 requests:");
+
+        int k = 20;
+        int N = 1000;
+        int n = 200000;
+        double threshold = 0.1;
+
+        double epsilon = 0.5;
+        double tow = 0.5;
+        int omega = 180;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        try (CacheAdvisorServer server = new CacheAdvisorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), () -> new CombinedCache(k, threshold), N)) {
+            server.start();
+            for (int batchSize = 1; batchSize <= 4096; batchSize *= 16) {
+                // batches of 1 request are sent one at a time, to show the cost of a round trip
+                int batchesInFlight = batchSize == 1 ? 1 : 4;
+                int requests = batchSize == 1 ? n / 10 : n;
+                try (CacheAdvisorClient client = new CacheAdvisorClient(server.localAddress())) {
+                    long start = System.nanoTime();
+                    long pageFaults = client.run(Arrays.copyOf(randomInputSequence, requests), Arrays.copyOf(hSeq, requests), batchSize, batchesInFlight, null, null);
+                    double microsPerRequest = (System.nanoTime() - start) / 1000.0 / requests;
+                    System.out.printf("batch size %d, %d batches in flight: %.3f microseconds per request, %d page faults in %d requests%n",
+                            batchSize, batchesInFlight, microsPerRequest, pageFaults, requests);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs LRU, BlindOracle and Combined with online predictions on a long sequence, one after another and as stages of
+     * a PipelinedSimulation, and prints the time of both
+     */
+    private static void example11() {
+
+        System.out.println("Running LRU, BlindOracle and Combined one after another and in a pipeline:");
+
+        int k = 20;
+        int N = 1000;
+        int n = 2000000;
+        double threshold = 0.1;
+        double epsilon = 0.5;
+
+        Paging paging = new Paging();
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+
+        long start = System.nanoTime();
+        int[] hSeq = new EwmaGapPredictor(0.5).predictAll(randomInputSequence);
+        long[] pageFaults = new long[3];
+        for (int policy = 0; policy < 3; policy ++) {
+            pageFaults[policy] = createPolicy(policy, k, threshold).accessBatch(randomInputSequence, hSeq, 0, n, null);
+        }
+        System.out.printf("one after another: page faults %s, %.2f M requests/s%n", Arrays.toString(pageFaults), n * 1e3 / (System.nanoTime() - start));
+
+        try {
+            PipelinedSimulation.Result result = new PipelinedSimulation(4096, 8).run(PipelinedSimulation.RequestSource.of(randomInputSequence),
+                    new EwmaGapPredictor(0.5), List.of(createPolicy(0, k, threshold), createPolicy(1, k, threshold), createPolicy(2, k, threshold)));
+            System.out.println("pipeline on " + Runtime.getRuntime().availableProcessors() + " cores: " + result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
         System.out.println("------------------");
     }
 
+    /**
+     * runs the BlindOracle that sees only the next W requests for growing W, with LRU and with the predictions for the
+     * pages without a request in the window, next to LRU, BlindOracle and OPT
+     */
+    private static void example12() {
+
+        System.out.println("Running BlindOracle with a window of the next W requests:");
+
+        int k = 20;
+        int N = 1000;
+        int n = 100000;
+
+        double epsilon = 0.5;
+        double tow = 0.5;
+        int omega = 180;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        int[] trueHSeq = Arrays.copyOf(hSeq, hSeq.length);
+        paging.addNoise(hSeq, tow, omega);
+
+        System.out.println("Opt: " + paging.blindOracle(k, randomInputSequence, trueHSeq)
+                + ", BlindOracle: " + paging.blindOracle(k, randomInputSequence, hSeq) + ", LRU: " + paging.LRU(k, randomInputSequence));
+        for (int window = 0; window <= 10000; window = window == 0 ? 10 : window * 10) {
+            System.out.println("W = " + window + ": with LRU beyond the window " + paging.lookaheadBlindOracle(k, randomInputSequence, window, null)
+                    + ", with predictions beyond the window " + paging.lookaheadBlindOracle(k, randomInputSequence, window, hSeq));
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs combinedAlg and the Combined algorithm with lazy switching for thresholds from 0 to 1, and prints the best
+     * threshold of both
+     */
+    private static void example13() {
+
+        System.out.println("Running Combined with a flat switch cost of k and with lazy switching:");
+
+        int k = 20;
+        int N = 1000;
+        int n = 100000;
+
+        double epsilon = 0.3;
+        double tow = 0.8;
+        int omega = 2000;
+
+        Paging paging = new Paging();
+
+        int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
+        int[] hSeq = paging.generateH(randomInputSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        double[] thresholds = new double[] {0, 0.001, 0.01, 0.05, 0.1, 0.2, 0.5, 1};
+        int[] pageFaultsOfCombined = paging.combinedAlg(k, randomInputSequence, hSeq, thresholds);
+        int bestOfCombined = 0;
+        int bestOfLazyCombined = 0;
+        int[] pageFaultsOfLazyCombined = new int[thresholds.length];
+        for (int t = 0; t < thresholds.length; t ++) {
+            pageFaultsOfLazyCombined[t] = paging.lazyCombinedAlg(k, randomInputSequence, hSeq, thresholds[t]);
+            System.out.println("threshold " + thresholds[t] + ": CombinedAlg " + pageFaultsOfCombined[t] + ", lazy CombinedAlg " + pageFaultsOfLazyCombined[t]);
+            bestOfCombined = pageFaultsOfCombined[t] < pageFaultsOfCombined[bestOfCombined] ? t : bestOfCombined;
+            bestOfLazyCombined = pageFaultsOfLazyCombined[t] < pageFaultsOfLazyCombined[bestOfLazyCombined] ? t : bestOfLazyCombined;
+        }
+        System.out.println("best threshold of CombinedAlg: " + thresholds[bestOfCombined] + ", of lazy CombinedAlg: " + thresholds[bestOfLazyCombined]);
+        System.out.println("LRU: " + paging.LRU(k, randomInputSequence) + ", BlindOracle: " + paging.blindOracle(k, randomInputSequence, hSeq));
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs OPT, BlindOracle, LRU and Combined on sequences from WorkloadGenerator: Zipfian popularity, a loop over more
+     * than k pages, Zipf with scans mixed in, and the 3 of them one after another as phases
+     */
+    private static void example14() {
+
+        System.out.println("Running OPT, BlindOracle, LRU and Combined on Zipf, loop, scan and phase-changing workloads:");
+
+        int k = 100;
+        int n = 1000000;
+        double threshold = 0.1;
+        double tow = 0.5;
+        int omega = 180;
+
+        WorkloadGenerator.Pattern zipf = WorkloadGenerator.zipf(1, 10000, 0.9);
+        WorkloadGenerator.Pattern loop = WorkloadGenerator.loop(20001, 2 * k);
+        WorkloadGenerator.Pattern zipfWithScans = WorkloadGenerator.mixture(new WorkloadGenerator.Pattern[] {zipf, WorkloadGenerator.scan(30001)}, new double[] {0.7, 0.3});
+
+        Map<String, List<WorkloadGenerator.Phase>> workloads = new LinkedHashMap<>();
+        workloads.put("zipf", List.of(new WorkloadGenerator.Phase(zipf, n)));
+        workloads.put("loop", List.of(new WorkloadGenerator.Phase(loop, n)));
+        workloads.put("zipf with scans", List.of(new WorkloadGenerator.Phase(zipfWithScans, n)));
+        workloads.put("phases", List.of(new WorkloadGenerator.Phase(zipf, n / 3), new WorkloadGenerator.Phase(loop, n / 3), new WorkloadGenerator.Phase(zipfWithScans, n / 3)));
+
+        Paging paging = new Paging();
+        for (Map.Entry<String, List<WorkloadGenerator.Phase>> workload : workloads.entrySet()) {
+            long start = System.nanoTime();
+            int[] requestSequence = new WorkloadGenerator(workload.getValue(), SEED).generate();
+            double generationMillis = (System.nanoTime() - start) / 1e6;
+
+            int[] hSeq = paging.generateH(requestSequence);
+            int[] trueHSeq = Arrays.copyOf(hSeq, hSeq.length);
+            paging.addNoise(hSeq, tow, omega);
+            System.out.printf("%s (generated in %.1f ms): Opt %d, BlindOracle %d, LRU %d, CombinedAlg %d%n", workload.getKey(), generationMillis,
+                    new BlindOracleCache(k).accessBatch(requestSequence, trueHSeq, 0, requestSequence.length, null),
+                    new BlindOracleCache(k).accessBatch(requestSequence, hSeq, 0, requestSequence.length, null),
+                    new LRUCache(k).accessBatch(requestSequence, null, 0, requestSequence.length, null),
+                    new CombinedCache(k, threshold).accessBatch(requestSequence, hSeq, 0, requestSequence.length, null));
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * runs LRU, BlindOracle and Combined on a sequence where every page is requested a few times in a row, as in block
+     * traces where a page is read in several pieces, and on the same sequence with the runs collapsed
+     */
+    private static void example15() {
+
+        System.out.println("Running LRU, BlindOracle and Combined with and without collapsing back-to-back requests to the same page:");
+
+        int k = 100;
+        int N = 1000;
+        int n = 300000;
+        double threshold = 0.1;
+        double tow = 0.5;
+        int omega = 180;
+
+        // every request repeated 1 + a geometric number of times, 4 requests per run on average
+        Paging paging = new Paging();
+        Random random = new Random(SEED);
+        int[] requestSequence = Arrays.stream(paging.generateRandomSequence(k, N, n / 4, 0.5))
+                .flatMap(page -> IntStream.range(0, 1 + (int) (Math.log(1 - random.nextDouble()) / Math.log(0.75))).map(j -> page)).toArray();
+        int[] hSeq = paging.generateH(requestSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        long start = System.nanoTime();
+        CollapsedTrace trace = CollapsedTrace.collapse(requestSequence, hSeq);
+        double collapseMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%d requests collapsed into %d runs in %.1f ms%n", requestSequence.length, trace.length(), collapseMillis);
+
+        int[][] sequences = {requestSequence, trace.pages};
+        int[][] predictions = {hSeq, trace.hPredictions};
+        String[] names = {"whole sequence", "collapsed"};
+        for (int s = 0; s < sequences.length; s ++) {
+            start = System.nanoTime();
+            int lruPageFaults = paging.LRU(k, sequences[s]);
+            int blindOraclePageFaults = paging.blindOracle(k, sequences[s], predictions[s]);
+            int combinedAlgPageFaults = paging.combinedAlg(k, sequences[s], predictions[s], threshold);
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%s: LRU %d, BlindOracle %d, CombinedAlg %d, hits of LRU %d, took %.1f ms%n", names[s], lruPageFaults,
+                    blindOraclePageFaults, combinedAlgPageFaults, requestSequence.length - lruPageFaults, millis);
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * computes the exact LRU page faults for every cache size up to 1000 of a 10000000-request sequence from the reuse
+     * distances, with a single chunk and with chunks run in parallel, and checks a few cache sizes against LRUCache
+     */
+    private static void example16() {
+
+        System.out.println("Computing the exact LRU page faults for every cache size from reuse distances, in one chunk and in parallel chunks:");
+
+        int maxCacheSize = 1000;
+        int n = 10000000;
+        WorkloadGenerator.Pattern zipf = WorkloadGenerator.zipf(1, 100000, 0.9);
+        int[] requestSequence = new WorkloadGenerator(List.of(new WorkloadGenerator.Phase(zipf, n)), SEED).generate();
+
+        long[] pageFaults = null;
+        for (int chunkSize : new int[] {n, 1 << 20, 1 << 16}) {
+            long start = System.nanoTime();
+            long[] pageFaultsOfChunks = ReuseDistance.lruPageFaults(requestSequence, maxCacheSize, chunkSize);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("chunks of %d requests on %d cores: %.2f s (%.1f M requests/s), same page faults as one chunk: %b%n", chunkSize,
+                    Runtime.getRuntime().availableProcessors(), seconds, n / seconds / 1e6, pageFaults == null || Arrays.equals(pageFaults, pageFaultsOfChunks));
+            pageFaults = pageFaultsOfChunks;
+        }
+        for (int k : new int[] {10, 100, 1000}) {
+            System.out.printf("k = %d: page faults %d, LRUCache %d%n", k, pageFaults[k],
+                    new LRUCache(k).accessBatch(requestSequence, null, 0, n, null));
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * logs the hits of LRU and BlindOracle on the Zipf, loop and Zipf with scans phases of example14, and prints the size
+     * of the logs, the hit rate of both in every window of 100000 requests and where one of them takes the lead
+     */
+    private static void example17() {
+
+        System.out.println("Logging the hits of LRU and BlindOracle on a phase-changing workload and comparing them window by window:");
+
+        int k = 100;
+        int n = 1200000;
+        int window = 100000;
+        double tow = 0.5;
+        int omega = 180;
+
+        WorkloadGenerator.Pattern zipf = WorkloadGenerator.zipf(1, 10000, 0.9);
+        WorkloadGenerator.Pattern loop = WorkloadGenerator.loop(20001, 2 * k);
+        WorkloadGenerator.Pattern zipfWithScans = WorkloadGenerator.mixture(new WorkloadGenerator.Pattern[] {zipf, WorkloadGenerator.scan(30001)}, new double[] {0.7, 0.3});
+        int[] requestSequence = new WorkloadGenerator(List.of(new WorkloadGenerator.Phase(zipf, n / 3), new WorkloadGenerator.Phase(loop, n / 3),
+                new WorkloadGenerator.Phase(zipfWithScans, n / 3)), SEED).generate();
+
+        Paging paging = new Paging();
+        int[] hSeq = paging.generateH(requestSequence);
+        paging.addNoise(hSeq, tow, omega);
+
+        try {
+            Path lruLog = Files.createTempFile("lru", ".hits");
+            Path blindOracleLog = Files.createTempFile("blindOracle", ".hits");
+            try {
+                try (HitMissLog.Writer lruWriter = new HitMissLog.Writer(lruLog); HitMissLog.Writer blindOracleWriter = new HitMissLog.Writer(blindOracleLog)) {
+                    long start = System.nanoTime();
+                    int lruPageFaults = lruWriter.run(new LRUCache(k), requestSequence, null);
+                    int blindOraclePageFaults = blindOracleWriter.run(new BlindOracleCache(k), requestSequence, hSeq);
+                    double millis = (System.nanoTime() - start) / 1e6;
+                    System.out.printf("LRU %d page faults, %.2f bits per request; BlindOracle %d page faults, %.2f bits per request; run and logged in %.1f ms%n",
+                            lruPageFaults, lruWriter.bitsPerRequest(), blindOraclePageFaults, blindOracleWriter.bitsPerRequest(), millis);
+                }
+
+                double[] lruHitRates = HitMissLog.windowedHitRates(lruLog, window);
+                double[] blindOracleHitRates = HitMissLog.windowedHitRates(blindOracleLog, window);
+                for (int w = 0; w < lruHitRates.length; w ++) {
+                    System.out.printf("requests %d to %d: hit rate of LRU %.3f, BlindOracle %.3f%n", w * window, Math.min(n, (w + 1) * window) - 1,
+                            lruHitRates[w], blindOracleHitRates[w]);
+                }
+                List<HitMissLog.LeadChange> leadChanges = HitMissLog.leadChanges(lruLog, blindOracleLog);
+                System.out.println(leadChanges.size() + " lead changes (LRU first), the last ones: "
+                        + leadChanges.subList(Math.max(0, leadChanges.size() - 3), leadChanges.size()));
+            } finally {
+                Files.deleteIfExists(lruLog);
+                Files.deleteIfExists(blindOracleLog);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("------------------");
+    }
+
+    /**
+     * replays 2000000 Zipfian requests from 1, 2, 4 and 8 threads against a shared LRU and BlindOracle behind one lock,
+     * an LRU with 16 stripes and a lock-free CLOCK, and prints the throughput, the latency percentiles and the hit ratio
+     */
+    private static void example18() {
+
+        System.out.println("Replaying a sequence from more and more threads against a shared cache:");
+
+        int k = 1000;
+        int n = 2000000;
+        int[] numsOfThreads = {1, 2, 4, 8};
+        int[] requestSequence = new WorkloadGenerator(List.of(new WorkloadGenerator.Phase(WorkloadGenerator.zipf(1, 100000, 0.9), n)), SEED).generate();
+        int[] hPredictions = new EwmaGapPredictor(0.5).predictAll(requestSequence);
+
+        ConcurrentLoadDriver driver = new ConcurrentLoadDriver(requestSequence, hPredictions);
+        try {
+            List<List<ConcurrentLoadDriver.Result>> results = List.of(
+                    driver.scale(ConcurrentLoadDriver.Variant.SYNCHRONIZED, LRUCache::new, k, 1, numsOfThreads),
+                    driver.scale(ConcurrentLoadDriver.Variant.SYNCHRONIZED, BlindOracleCache::new, k, 1, numsOfThreads),
+                    driver.scale(ConcurrentLoadDriver.Variant.STRIPED, LRUCache::new, k, 16, numsOfThreads),
+                    driver.scale(ConcurrentLoadDriver.Variant.LOCK_FREE_CLOCK, null, k, 1, numsOfThreads));
+            String[] names = {"LRU", "BlindOracle", "LRU in 16 stripes", "CLOCK"};
+            System.out.println("on " + Runtime.getRuntime().availableProcessors() + " cores");
+            for (int c = 0; c < results.size(); c ++) {
+                for (ConcurrentLoadDriver.Result result : results.get(c)) {
+                    System.out.println(names[c] + " " + result);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("------------------");
+    }
+
+    // 0 for LRU, 1 for BlindOracle and 2 for Combined
+    private static CachePolicy createPolicy(int policy, int k, double threshold) {
+        if (policy == 0) {
+            return new LRUCache(k);
+        }
+        return policy == 1 ? new BlindOracleCache(k) : new CombinedCache(k, threshold);
+    }
+
+    /**
+     * @param withOne whether the last value is 1
+     * @return 0, 0.05, 0.1, ... up to 1, rounded down to 2 decimals
+     */
+    private static double[] stepsOfFivePercent(boolean withOne) {
+        List<Double> values = new ArrayList<>();
+        for (double value = 0.00; withOne ? value <= 1.00 : value < 1.00; value = value + 0.05) {
+            value = Math.floor(value * 100) / 100;
+            values.add(value);
+        }
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
     /**
      * Varies cache size and provides the csv files with the output data for each regime
      */
@@ -125,26 +830,20 @@ public class PagingExperiments {
         omega = 180;
 
         List<String> kValues = new ArrayList<>();
-        List<String> pageFaultsOfOpt = new ArrayList<>();
-        List<String> pageFaultsOfBlindOracle = new ArrayList<>();
-        List<String> pageFaultsOfLRU = new ArrayList<>();
-        List<String> pageFaultsOfCombined = new ArrayList<>();
+        Map<String, List<String>> pageFaults = createPageFaultColumns();
 
-        for (k = 3; k <= 50; k = k + 2) {
+        for (int kValue : K_VALUES_OF_TREND1) {
+            k = kValue;
             N = k * 10;
             kValues.add(String.valueOf(k));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend1-regime1", "k=" + k);
         }
-        putValuesInCsv("trend1-regime1", "k", kValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend1-regime1", "k", kValues, pageFaults);
         // finished regime1
 
         kValues.clear();
-        pageFaultsOfOpt.clear();
-        pageFaultsOfBlindOracle.clear();
-        pageFaultsOfLRU.clear();
-        pageFaultsOfCombined.clear();
+        pageFaults.values().forEach(List::clear);
 
         // starting regime2
         // the below values are specific to regime 2
@@ -152,14 +851,14 @@ public class PagingExperiments {
         tow = 0.9;
         omega = 1000;
 
-        for (k = 3; k <= 50; k = k + 2) {
+        for (int kValue : K_VALUES_OF_TREND1) {
+            k = kValue;
             N = k * 10;
             kValues.add(String.valueOf(k));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend1-regime2", "k=" + k);
         }
-        putValuesInCsv("trend1-regime2", "k", kValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend1-regime2", "k", kValues, pageFaults);
         // finished regime2
         System.out.println("Trend 1 finished");
     }
@@ -184,38 +883,32 @@ public class PagingExperiments {
         tow = 0.5;
 
         List<String> omegaValues = new ArrayList<>();
-        List<String> pageFaultsOfOpt = new ArrayList<>();
-        List<String> pageFaultsOfBlindOracle = new ArrayList<>();
-        List<String> pageFaultsOfLRU = new ArrayList<>();
-        List<String> pageFaultsOfCombined = new ArrayList<>();
+        Map<String, List<String>> pageFaults = createPageFaultColumns();
 
-        for (omega = 0; omega < 2000; omega = omega + 50) {
+        for (int omegaValue : OMEGA_VALUES_OF_TREND2) {
+            omega = omegaValue;
             omegaValues.add(String.valueOf(omega));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend2-regime1", "omega=" + omega);
         }
-        putValuesInCsv("trend2-regime1", "omega", omegaValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend2-regime1", "omega", omegaValues, pageFaults);
         // finished regime1
 
         omegaValues.clear();
-        pageFaultsOfOpt.clear();
-        pageFaultsOfBlindOracle.clear();
-        pageFaultsOfLRU.clear();
-        pageFaultsOfCombined.clear();
+        pageFaults.values().forEach(List::clear);
 
         // starting regime2
         // the below values are specific to regime 2
         epsilon = 0.8;
         tow = 0.9;
 
-        for (omega = 0; omega < 2000; omega = omega + 50) {
+        for (int omegaValue : OMEGA_VALUES_OF_TREND2) {
+            omega = omegaValue;
             omegaValues.add(String.valueOf(omega));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend2-regime2", "omega=" + omega);
         }
-        putValuesInCsv("trend2-regime2", "omega", omegaValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend2-regime2", "omega", omegaValues, pageFaults);
         // finished regime2
 
         System.out.println("Trend 2 finished");
@@ -241,40 +934,32 @@ public class PagingExperiments {
         omega = 180;
 
         List<String> epsilonValues = new ArrayList<>();
-        List<String> pageFaultsOfOpt = new ArrayList<>();
-        List<String> pageFaultsOfBlindOracle = new ArrayList<>();
-        List<String> pageFaultsOfLRU = new ArrayList<>();
-        List<String> pageFaultsOfCombined = new ArrayList<>();
+        Map<String, List<String>> pageFaults = createPageFaultColumns();
 
-        for (epsilon = 0.00; epsilon <= 1.00; epsilon = epsilon + 0.05) {
-            epsilon = Math.floor(epsilon * 100) / 100;
+        for (double epsilonValue : EPSILON_VALUES_OF_TREND3_REGIME1) {
+            epsilon = epsilonValue;
             epsilonValues.add(String.valueOf(epsilon));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend3-regime1", "epsilon=" + epsilon);
         }
-        putValuesInCsv("trend3-regime1", "epsilon", epsilonValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend3-regime1", "epsilon", epsilonValues, pageFaults);
         // finished regime1
 
         epsilonValues.clear();
-        pageFaultsOfOpt.clear();
-        pageFaultsOfBlindOracle.clear();
-        pageFaultsOfLRU.clear();
-        pageFaultsOfCombined.clear();
+        pageFaults.values().forEach(List::clear);
 
         // starting regime2
         // the below values are specific to regime 2
         tow = 0.9;
         omega = 1000;
 
-        for (epsilon = 0.00; epsilon < 1.00; epsilon = epsilon + 0.05) {
-            epsilon = Math.floor(epsilon * 100) / 100;
+        for (double epsilonValue : EPSILON_VALUES_OF_TREND3_REGIME2) {
+            epsilon = epsilonValue;
             epsilonValues.add(String.valueOf(epsilon));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend3-regime2", "epsilon=" + epsilon);
         }
-        putValuesInCsv("trend3-regime2", "epsilon", epsilonValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend3-regime2", "epsilon", epsilonValues, pageFaults);
         // finished regime2
         System.out.println("Trend 3 finished");
     }
@@ -299,40 +984,32 @@ public class PagingExperiments {
         omega = 180;
 
         List<String> towValues = new ArrayList<>();
-        List<String> pageFaultsOfOpt = new ArrayList<>();
-        List<String> pageFaultsOfBlindOracle = new ArrayList<>();
-        List<String> pageFaultsOfLRU = new ArrayList<>();
-        List<String> pageFaultsOfCombined = new ArrayList<>();
+        Map<String, List<String>> pageFaults = createPageFaultColumns();
 
-        for (tow = 0.00; tow < 1.00; tow = tow + 0.05) {
-            tow = Math.floor(tow * 100) / 100;
+        for (double towValue : TOW_VALUES_OF_TREND4) {
+            tow = towValue;
             towValues.add(String.valueOf(tow));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend4-regime1", "tow=" + tow);
         }
-        putValuesInCsv("trend4-regime1", "tow", towValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend4-regime1", "tow", towValues, pageFaults);
         // finished regime1
 
         towValues.clear();
-        pageFaultsOfOpt.clear();
-        pageFaultsOfBlindOracle.clear();
-        pageFaultsOfLRU.clear();
-        pageFaultsOfCombined.clear();
+        pageFaults.values().forEach(List::clear);
 
         // starting regime2
         // the below values are specific to regime 2
         epsilon = 0.8;
         omega = 1000;
 
-        for (tow = 0.00; tow < 1.00; tow = tow + 0.05) {
-            tow = Math.floor(tow * 100) / 100;
+        for (double towValue : TOW_VALUES_OF_TREND4) {
+            tow = towValue;
             towValues.add(String.valueOf(tow));
-            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold,
-                    pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+            runTrailsAndComputeAveragePageFaults(paging, k, N, n, epsilon, tow, omega, threshold, pageFaults,
+                    "trend4-regime2", "tow=" + tow);
         }
-        putValuesInCsv("trend4-regime2", "tow", towValues,
-                pageFaultsOfOpt, pageFaultsOfBlindOracle, pageFaultsOfLRU, pageFaultsOfCombined);
+        putValuesInCsv("trend4-regime2", "tow", towValues, pageFaults);
         // finished regime2
         System.out.println("Trend 4 finished");
     }
@@ -347,38 +1024,88 @@ public class PagingExperiments {
      * @param tow controls noise (how many values in true H sequence are to be changed)
      * @param omega controls noise (by how much values in true H sequence are to be changed)
      * @param threshold determines when a Combined algorithm can switch between LRU and BlindOracle
-     * @param pageFaultsOfOpt list that stores the average page faults of OPT for each value of the varying parameter
-     * @param pageFaultsOfBlindOracle list that stores the average page faults of BlindOracle for each value of the varying parameter
-     * @param pageFaultsOfLRU list that stores the average page faults of LRU for each value of the varying parameter
-     * @param pageFaultsOfCombined list that stores the average page faults of Combined for each value of the varying parameter
+     * @param pageFaults maps each column in PAGE_FAULT_COLUMNS to the list that stores the average page faults of that algorithm for each value of the varying parameter
+     * @param stage the trend and regime, for the telemetry
+     * @param point the value of the varying parameter, for the telemetry
      */
     private static void runTrailsAndComputeAveragePageFaults(
             Paging paging, int k, int N, int n, double epsilon, double tow, int omega, double threshold,
-            List<String> pageFaultsOfOpt, List<String> pageFaultsOfBlindOracle,
-            List<String> pageFaultsOfLRU, List<String> pageFaultsOfCombined) {
+            Map<String, List<String>> pageFaults, String stage, String point) {
+
+        TELEMETRY.startPoint(stage, point, (int) NUM_OF_TRAILS);
 
-        AtomicInteger totalPageFaultsOfOptInAllTrails = new AtomicInteger();
-        AtomicInteger totalPageFaultsOfBlindOracleInAllTrails = new AtomicInteger();
-        AtomicInteger totalPageFaultsOfLRUInAllTrails = new AtomicInteger();
-        AtomicInteger totalPageFaultsOfCombinedInAllTrails = new AtomicInteger();
+        AtomicIntegerArray totalPageFaultsInAllTrails = new AtomicIntegerArray(PAGE_FAULT_COLUMNS.size());
 
         // Used parallel streams to reduce the time taken for a run
-        IntStream.range(0, 100).parallel().forEach(trail -> {
-            int[] randomInputSequence = paging.generateRandomSequence(k, N, n, epsilon);
-            int[] hSeq = paging.generateH(randomInputSequence);
-            int[] trueHSeq = Arrays.copyOf(hSeq, hSeq.length);
+        // the request sequence of a trail only depends on (k, N, n, epsilon, trail), so it comes from the cache when an
+        // earlier point had the same values, and only the noise is new
+        // the H predictions and the caches are reused from the context of the thread, so a trail does not allocate
+        IntStream.range(0, (int) NUM_OF_TRAILS).parallel().forEach(trail -> {
+            long start = System.nanoTime();
+            TrialCache.Trial trial = TRIAL_CACHE.get(paging, k, N, n, epsilon, SEED, trail);
+            TrialContext context = TrialContext.current();
+            context.prepare(k, threshold);
+            int[] hSeq = context.hPredictions(n);
+            System.arraycopy(trial.trueHSequence, 0, hSeq, 0, n);
             paging.addNoise(hSeq, tow, omega);
 
-            totalPageFaultsOfOptInAllTrails.addAndGet(paging.blindOracle(k, randomInputSequence, trueHSeq));
-            totalPageFaultsOfBlindOracleInAllTrails.addAndGet(paging.blindOracle(k, randomInputSequence, hSeq));
-            totalPageFaultsOfLRUInAllTrails.addAndGet(paging.LRU(k, randomInputSequence));
-            totalPageFaultsOfCombinedInAllTrails.addAndGet(paging.combinedAlg(k, randomInputSequence, hSeq, threshold));
+            runAllAlgorithms(context, trial, hSeq, totalPageFaultsInAllTrails);
+            TELEMETRY.recordTrail(System.nanoTime() - start);
         });
 
-        pageFaultsOfOpt.add(String.valueOf(totalPageFaultsOfOptInAllTrails.get() / NUM_OF_TRAILS));
-        pageFaultsOfBlindOracle.add(String.valueOf(totalPageFaultsOfBlindOracleInAllTrails.get() / NUM_OF_TRAILS));
-        pageFaultsOfLRU.add(String.valueOf(totalPageFaultsOfLRUInAllTrails.get() / NUM_OF_TRAILS));
-        pageFaultsOfCombined.add(String.valueOf(totalPageFaultsOfCombinedInAllTrails.get() / NUM_OF_TRAILS));
+        for (int i = 0; i < PAGE_FAULT_COLUMNS.size(); i ++) {
+            pageFaults.get(PAGE_FAULT_COLUMNS.get(i)).add(String.valueOf(totalPageFaultsInAllTrails.get(i) / NUM_OF_TRAILS));
+        }
+        TELEMETRY.endPoint();
+    }
+
+    /**
+     * Runs every algorithm on the request sequence of a trail and adds the page faults to the totals, the algorithms
+     * without predictions were already run by the trial cache
+     * @param context the caches of the thread, ready for a new trail
+     * @param trial request sequence of the trail with the page faults of OPT, LRU, ARC and LIRS
+     * @param hSeq H predictions (actual H sequence with noise)
+     * @param totalPageFaults total page faults of each algorithm, in the same order as PAGE_FAULT_COLUMNS
+     */
+    private static void runAllAlgorithms(TrialContext context, TrialCache.Trial trial, int[] hSeq, AtomicIntegerArray totalPageFaults) {
+
+        int[] requestSequence = trial.requestSequence;
+        int n = requestSequence.length;
+
+        // every algorithm is timed for the telemetry
+        totalPageFaults.addAndGet(0, trial.pageFaultsOfOpt);
+        long start = System.nanoTime();
+        totalPageFaults.addAndGet(1, context.blindOracleCache().accessBatch(requestSequence, hSeq, 0, n, null));
+        long end = System.nanoTime();
+        TELEMETRY.recordAlgorithm("BlindOracle", n, end - start);
+        totalPageFaults.addAndGet(2, trial.pageFaultsOfLRU);
+        start = end;
+        totalPageFaults.addAndGet(3, context.combinedCache().accessBatch(requestSequence, hSeq, 0, n, null));
+        end = System.nanoTime();
+        TELEMETRY.recordAlgorithm("Combined", n, end - start);
+        totalPageFaults.addAndGet(4, trial.pageFaultsOfARC);
+        totalPageFaults.addAndGet(5, trial.pageFaultsOfLIRS);
+        start = end;
+        totalPageFaults.addAndGet(6, context.predictiveMarkerCache().accessBatch(requestSequence, hSeq, 0, n, null));
+        end = System.nanoTime();
+        TELEMETRY.recordAlgorithm("PredictiveMarker", n, end - start);
+        start = end;
+        totalPageFaults.addAndGet(7, context.lMarkerCache().accessBatch(requestSequence, hSeq, 0, n, null));
+        end = System.nanoTime();
+        TELEMETRY.recordAlgorithm("LMarker", n, end - start);
+    }
+
+    /**
+     * Creates an empty list of average page faults for each algorithm
+     * @return map from each column in PAGE_FAULT_COLUMNS to an empty list, in the same order as PAGE_FAULT_COLUMNS
+     */
+    private static Map<String, List<String>> createPageFaultColumns() {
+
+        Map<String, List<String>> pageFaults = new LinkedHashMap<>();
+        for (String column : PAGE_FAULT_COLUMNS) {
+            pageFaults.put(column, new ArrayList<>());
+        }
+        return pageFaults;
     }
 
     /**
@@ -386,26 +1113,27 @@ public class PagingExperiments {
      * @param fileName name of the csv file to put the data into
      * @param varyingParameterName the name of the parameter that is varying
      * @param varyingParameterValues the values taken by the varying parameter
-     * @param pageFaultsOfOpt list that stores the average page faults of OPT for each value of the varying parameter
-     * @param pageFaultsOfBlindOracle list that stores the average page faults of BlindOracle for each value of the varying parameter
-     * @param pageFaultsOfLRU list that stores the average page faults of LRU for each value of the varying parameter
-     * @param pageFaultsOfCombined list that stores the average page faults of Combined for each value of the varying parameter
+     * @param pageFaults maps each column to the list that stores the average page faults of that algorithm for each value of the varying parameter
      */
     private static void putValuesInCsv(
             String fileName, String varyingParameterName, List<String> varyingParameterValues,
-            List<String> pageFaultsOfOpt, List<String> pageFaultsOfBlindOracle,
-            List<String> pageFaultsOfLRU, List<String> pageFaultsOfCombined) {
+            Map<String, List<String>> pageFaults) {
 
         String filePath = System.getProperty("user.dir") + File.separator + fileName + ".csv";
         createFile(filePath);
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            writer.write(createCsvRow(varyingParameterName,
-                    "pageFaultsOfOpt", "pageFaultsOfBlindOracle", "pageFaultsOfLRU", "pageFaultsOfCombined"));
+            List<String> header = new ArrayList<>();
+            header.add(varyingParameterName);
+            header.addAll(pageFaults.keySet());
+            writer.write(createCsvRow(header.toArray(new String[0])));
             for (int i = 0; i < varyingParameterValues.size(); i ++) {
-                writer.write(createCsvRow(varyingParameterValues.get(i),
-                        pageFaultsOfOpt.get(i), pageFaultsOfBlindOracle.get(i),
-                        pageFaultsOfLRU.get(i), pageFaultsOfCombined.get(i)));
+                List<String> row = new ArrayList<>();
+                row.add(varyingParameterValues.get(i));
+                for (List<String> column : pageFaults.values()) {
+                    row.add(column.get(i));
+                }
+                writer.write(createCsvRow(row.toArray(new String[0])));
             }
         } catch (IOException e) {
             throw new RuntimeException("Error when writing to csv file");
@@ -0,0 +1,425 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs a request sequence through a pipeline of stages, each on its own thread, so that a single long trace uses
+ * several cores at once
+ * <p>
+ * The source stage reads or generates the requests, the prediction stage gives every request its H prediction from a
+ * NextAccessPredictor, and every cache policy is a stage of its own. The stages pass blocks of requests through
+ * single-producer single-consumer ring buffers: the source fills the blocks of the ring to the prediction stage, and
+ * the prediction stage copies every block into the ring of each policy. The blocks are allocated once, and a stage
+ * that gets ahead waits for a free block in its output ring, so the memory used does not depend on the length of the trace.
+ * <p>
+ * The H sequence of generateH needs the future of the whole trace, which a stream does not have, so the predictions
+ * come from a NextAccessPredictor (which only looks at the requests seen so far).
+ * <p>
+ * The prediction stage can also collapse every run of back-to-back requests to the same page into one request with
+ * the H prediction of the last request of the run (see CollapsedTrace). The predictor still sees every request, and
+ * the page faults of the policies are the same, but the policies run fewer requests.
+ */
+final class PipelinedSimulation {
+
+    private final int blockSize;
+    private final int ringCapacity;
+    private final boolean collapsingRepeats;
+
+    /**
+     * Gives the requests of a sequence one at a time, in order
+     */
+    @FunctionalInterface
+    interface RequestSource {
+
+        /**
+         * @param consumer gets every page request, in order
+         * @throws IOException if the requests can not be read
+         */
+        void forEach(IntConsumer consumer) throws IOException;
+
+        /**
+         * @param requestSequence sequence of page requests
+         * @return a source with the requests of the sequence
+         */
+        static RequestSource of(int[] requestSequence) {
+            return consumer -> {
+                for (int page : requestSequence) {
+                    consumer.accept(page);
+                }
+            };
+        }
+
+        /**
+         * @param trace binary trace written by TraceIngester
+         * @return a source that streams the requests of the trace, without reading the whole trace into memory
+         */
+        static RequestSource ofTrace(Path trace) {
+            return consumer -> TraceIngester.streamTrace(trace, consumer);
+        }
+    }
+
+    /**
+     * Number of requests and page faults of every policy after a run
+     */
+    static final class Result {
+
+        final long requests;
+        // requests the policies ran, fewer than requests when runs of the same page are collapsed
+        final long requestsRun;
+        final long[] pageFaultsOfPolicy;
+        final long elapsedNanos;
+
+        private Result(long requests, long requestsRun, long[] pageFaultsOfPolicy, long elapsedNanos) {
+            this.requests = requests;
+            this.requestsRun = requestsRun;
+            this.pageFaultsOfPolicy = pageFaultsOfPolicy;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return requests run through the pipeline per second
+         */
+        double requestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "requests " + requests + ", page faults " + Arrays.toString(pageFaultsOfPolicy)
+                    + String.format(", %.2f M requests/s", requestsPerSecond() / 1e6);
+        }
+    }
+
+    /**
+     * A block of requests and their H predictions
+     */
+    private static final class Block {
+
+        private final int[] pages;
+        private final int[] hPredictions;
+        // -1 marks the end of the requests
+        private int size;
+
+        private Block(int capacity) {
+            pages = new int[capacity];
+            hPredictions = new int[capacity];
+        }
+    }
+
+    /**
+     * Thrown in a stage that waits on a ring when another stage has failed, so that every stage stops
+     */
+    private static final class Aborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Aborted() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Ring buffer of blocks between one producer thread and one consumer thread
+     * <p>
+     * The producer fills the block at tail and publishes it by moving tail, the consumer reads the block at head and
+     * gives it back by moving head. Each index is written by one thread only, and lazySet (a release store) makes the
+     * contents of a block visible before the index that hands it over, so no lock is needed.
+     */
+    private static final class Ring {
+
+        private final Block[] blocks;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicReference<Throwable> failure;
+
+        // the last values of the other thread's index each side has read, so the shared indexes are read less often
+        private long headSeenByProducer;
+        private long tailSeenByConsumer;
+
+        private Ring(int capacity, int blockSize, AtomicReference<Throwable> failure) {
+            blocks = new Block[capacity];
+            for (int b = 0; b < capacity; b ++) {
+                blocks[b] = new Block(blockSize);
+            }
+            mask = capacity - 1;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the next block to fill, after waiting for the consumer to give one back if all of them are in use
+         */
+        private Block claim() {
+            long t = tail.get();
+            for (int spins = 0; t - headSeenByProducer == blocks.length; spins ++) {
+                headSeenByProducer = head.get();
+                backOff(spins);
+            }
+            return blocks[(int) t & mask];
+        }
+
+        private void publish() {
+            tail.lazySet(tail.get() + 1);
+        }
+
+        /**
+         * @return the next block to read, after waiting for the producer to publish one
+         */
+        private Block take() {
+            long h = head.get();
+            for (int spins = 0; h == tailSeenByConsumer; spins ++) {
+                tailSeenByConsumer = tail.get();
+                if (h != tailSeenByConsumer) {
+                    break;
+                }
+                backOff(spins);
+            }
+            return blocks[(int) h & mask];
+        }
+
+        private void release() {
+            head.lazySet(head.get() + 1);
+        }
+
+        // spins first, as the other stage usually hands over a block soon, then gives the core to the other stages
+        private void backOff(int spins) {
+            if (failure.get() != null) {
+                throw new Aborted();
+            }
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else if (spins < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+    }
+
+    /**
+     * @param blockSize number of requests in a block passed between stages
+     * @param ringCapacity number of blocks in every ring buffer, a power of 2
+     */
+    PipelinedSimulation(int blockSize, int ringCapacity) {
+        this(blockSize, ringCapacity, false);
+    }
+
+    /**
+     * @param blockSize number of requests in a block passed between stages
+     * @param ringCapacity number of blocks in every ring buffer, a power of 2
+     * @param collapsingRepeats whether back-to-back requests to the same page are run as one request, which only
+     *                          policies where such a request changes nothing but the H prediction of the page should use
+     */
+    PipelinedSimulation(int blockSize, int ringCapacity, boolean collapsingRepeats) {
+        if (blockSize <= 0 || ringCapacity <= 0 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("Block size should be positive and ring capacity a power of 2");
+        }
+        this.blockSize = blockSize;
+        this.ringCapacity = ringCapacity;
+        this.collapsingRepeats = collapsingRepeats;
+    }
+
+    /**
+     * Runs the requests of the source on every policy, each stage on its own thread
+     * @param source source of the page requests
+     * @param predictor gives the H prediction of every request, can be null for policies that do not use predictions
+     * @param policies the (empty) caches to run, each on its own thread
+     * @return the number of requests and the page faults of every policy
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the stages
+     */
+    Result run(RequestSource source, NextAccessPredictor predictor, List<CachePolicy> policies) throws InterruptedException {
+        return run(source, predictor, policies, null);
+    }
+
+    /**
+     * Runs the requests of the source on every policy, each stage on its own thread, and writes the hit bit of every
+     * request of every policy to its log
+     * @param source source of the page requests
+     * @param predictor gives the H prediction of every request, can be null for policies that do not use predictions
+     * @param policies the (empty) caches to run, each on its own thread
+     * @param logs the log of every policy, in the same order as policies (a log can be null), or null for no logs, the caller closes them
+     * @return the number of requests and the page faults of every policy
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the stages
+     */
+    Result run(RequestSource source, NextAccessPredictor predictor, List<CachePolicy> policies, List<HitMissLog.Writer> logs) throws InterruptedException {
+
+        if (logs != null && logs.size() != policies.size()) {
+            throw new IllegalArgumentException("Expected a log for each of the " + policies.size() + " policies");
+        }
+        if (logs != null && collapsingRepeats) {
+            throw new IllegalArgumentException("The policies do not run every request when runs are collapsed, so there are no hit bits to log");
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Ring toPredictions = new Ring(ringCapacity, blockSize, failure);
+        Ring[] toPolicies = new Ring[policies.size()];
+        for (int p = 0; p < toPolicies.length; p ++) {
+            toPolicies[p] = new Ring(ringCapacity, blockSize, failure);
+        }
+        long[] requests = new long[2];
+        long[] pageFaultsOfPolicy = new long[policies.size()];
+
+        Thread[] threads = new Thread[2 + policies.size()];
+        threads[0] = stage("pipeline-source", failure, () -> {
+            Block[] block = {toPredictions.claim()};
+            block[0].size = 0;
+            source.forEach(page -> {
+                block[0].pages[block[0].size ++] = page;
+                if (block[0].size == blockSize) {
+                    toPredictions.publish();
+                    block[0] = toPredictions.claim();
+                    block[0].size = 0;
+                }
+            });
+            if (block[0].size > 0) {
+                toPredictions.publish();
+                block[0] = toPredictions.claim();
+            }
+            block[0].size = -1;
+            toPredictions.publish();
+        });
+        threads[1] = stage("pipeline-predictions", failure, () -> {
+            // the last request of the previous blocks, held back while the next block may repeat its page: {held back (1) or not (0), page, H prediction}
+            int[] heldBack = new int[3];
+            while (true) {
+                Block in = toPredictions.take();
+                int size = in.size;
+                if (size > 0) {
+                    for (int j = 0; j < size; j ++) {
+                        in.hPredictions[j] = predictor == null ? 0 : predictor.predict(in.pages[j]);
+                    }
+                    requests[0] += size;
+                    int sizeRun = collapsingRepeats ? collapseRuns(in, size, heldBack) : size;
+                    if (sizeRun > 0) {
+                        forward(in, sizeRun, toPolicies);
+                        requests[1] += sizeRun;
+                    }
+                } else {
+                    if (heldBack[0] == 1) {
+                        in.pages[0] = heldBack[1];
+                        in.hPredictions[0] = heldBack[2];
+                        forward(in, 1, toPolicies);
+                        requests[1] ++;
+                    }
+                    forward(in, size, toPolicies);
+                }
+                toPredictions.release();
+                if (size < 0) {
+                    break;
+                }
+            }
+        });
+        for (int p = 0; p < toPolicies.length; p ++) {
+            Ring ring = toPolicies[p];
+            CachePolicy policy = policies.get(p);
+            HitMissLog.Writer log = logs == null ? null : logs.get(p);
+            int thisPolicy = p;
+            threads[2 + p] = stage("pipeline-policy-" + p, failure, () -> {
+                long[] hitBitmap = log == null ? null : new long[(blockSize + 63) >>> 6];
+                while (true) {
+                    Block block = ring.take();
+                    if (block.size < 0) {
+                        break;
+                    }
+                    pageFaultsOfPolicy[thisPolicy] += policy.accessBatch(block.pages, block.hPredictions, 0, block.size, hitBitmap);
+                    if (log != null) {
+                        log.append(hitBitmap, block.size);
+                    }
+                    ring.release();
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            // stops the other stages before giving up
+            failure.compareAndSet(null, e);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            throw e;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("A stage of the pipeline failed", failure.get());
+        }
+        return new Result(requests[0], requests[1], pageFaultsOfPolicy, elapsedNanos);
+    }
+
+    /**
+     * Copies the first size requests of a block into a block of the ring of every policy
+     * @param size number of requests, or -1 to mark the end of the requests
+     */
+    private static void forward(Block in, int size, Ring[] toPolicies) {
+        for (Ring ring : toPolicies) {
+            Block out = ring.claim();
+            if (size > 0) {
+                System.arraycopy(in.pages, 0, out.pages, 0, size);
+                System.arraycopy(in.hPredictions, 0, out.hPredictions, 0, size);
+            }
+            out.size = size;
+            ring.publish();
+        }
+    }
+
+    /**
+     * Collapses the runs of the same page in a block in place, each into its page with the H prediction of its last
+     * request. The last run may go on in the next block, so it is held back, and the run held back from the previous
+     * block goes first.
+     * @param heldBack {1 if a run is held back else 0, its page, its H prediction}, updated for the next block
+     * @return number of requests left in the block to run
+     */
+    private static int collapseRuns(Block in, int size, int[] heldBack) {
+
+        // at most one request is written for every request read before, so a request is read before it is overwritten
+        int sizeRun = 0;
+        for (int j = 0; j < size; j ++) {
+            int page = in.pages[j];
+            int hPrediction = in.hPredictions[j];
+            if (heldBack[0] == 1 && heldBack[1] == page) {
+                heldBack[2] = hPrediction;
+                continue;
+            }
+            if (heldBack[0] == 1) {
+                in.pages[sizeRun] = heldBack[1];
+                in.hPredictions[sizeRun ++] = heldBack[2];
+            }
+            heldBack[0] = 1;
+            heldBack[1] = page;
+            heldBack[2] = hPrediction;
+        }
+        return sizeRun;
+    }
+
+    /**
+     * A stage that keeps the first failure of any stage, which makes the other stages stop at their next wait
+     */
+    private static Thread stage(String name, AtomicReference<Throwable> failure, StageBody body) {
+        return new Thread(() -> {
+            try {
+                body.run();
+            } catch (Aborted e) {
+                // another stage failed first
+            } catch (IOException | RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        }, name);
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshots of the state of a cache, so that a cache can be restored warm after a restart
+ * <p>
+ * A snapshot has the pages in the cache and everything that decides what the cache evicts next: the recency order of
+ * LRU, the H prediction values of BlindOracle (and the order in which the pages got them, for the ties), the page
+ * faults of both in Combined and the algorithm in use. A restored cache makes the same decisions on the next requests
+ * as the cache that was saved. The H prediction values are positions in the request sequence, so the requests after
+ * the restore should be numbered after the requests before it.
+ * <p>
+ * The file is a header (magic number, version, type of the cache, number of bytes of the state, CRC32 of the state)
+ * followed by the state, little-endian like the binary traces of TraceIngester. It is written through a memory-mapped
+ * file next to the target and moved over it, so a crash never leaves half a snapshot, and read by mapping the file. A
+ * snapshot whose state does not match its CRC32, or has a size, a page or a length that no cache could have written, is
+ * not loaded. Only the pages in the cache are written, so a snapshot takes O(k) bytes whatever the largest page is.
+ */
+final class PolicySnapshot {
+
+    // "PGSP" in ascii, identifies a snapshot
+    static final int SNAPSHOT_MAGIC = 0x50475350;
+    static final int VERSION = 3;
+    // magic (4 bytes) + version (4 bytes) + type (4 bytes) + number of bytes of the state (4 bytes) + CRC32 of the state (4 bytes)
+    static final int SNAPSHOT_HEADER_SIZE = 20;
+    static final int CRC_OFFSET = 16;
+
+    private static final int LRU = 0;
+    private static final int BLIND_ORACLE = 1;
+    private static final int COMBINED = 2;
+
+    private PolicySnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a cache
+     * @param policy an LRUCache, BlindOracleCache or CombinedCache
+     * @param file the snapshot file, replaced if it exists
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void save(CachePolicy policy, Path file) throws IOException {
+
+        int type;
+        int stateBytes;
+        if (policy instanceof LRUCache) {
+            type = LRU;
+            stateBytes = ((LRUCache) policy).snapshotBytes();
+        } else if (policy instanceof BlindOracleCache) {
+            type = BLIND_ORACLE;
+            stateBytes = ((BlindOracleCache) policy).snapshotBytes();
+        } else if (policy instanceof CombinedCache) {
+            type = COMBINED;
+            stateBytes = ((CombinedCache) policy).snapshotBytes();
+        } else {
+            throw new IllegalArgumentException("No snapshot for " + policy.getClass().getSimpleName());
+        }
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = out.map(FileChannel.MapMode.READ_WRITE, 0, SNAPSHOT_HEADER_SIZE + stateBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(type);
+            buffer.putInt(stateBytes);
+            buffer.putInt(0);
+            if (type == LRU) {
+                ((LRUCache) policy).writeSnapshot(buffer);
+            } else if (type == BLIND_ORACLE) {
+                ((BlindOracleCache) policy).writeSnapshot(buffer);
+            } else {
+                ((CombinedCache) policy).writeSnapshot(buffer);
+            }
+            buffer.putInt(CRC_OFFSET, crcOf(buffer, stateBytes));
+            buffer.force();
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a cache from a snapshot
+     * @param file the snapshot file
+     * @return the cache, of the same class as the cache that was saved
+     * @throws IOException if the snapshot cannot be read, is not a snapshot or is damaged
+     */
+    static CachePolicy load(Path file) throws IOException {
+
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = in.size();
+            if (fileSize < SNAPSHOT_HEADER_SIZE) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Snapshot version " + version + " is not supported: " + file);
+            }
+            int type = buffer.getInt();
+            int stateBytes = buffer.getInt();
+            if (stateBytes != fileSize - SNAPSHOT_HEADER_SIZE) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+            if (buffer.getInt() != crcOf(buffer, stateBytes)) {
+                throw new IOException("Snapshot is damaged, its CRC32 does not match: " + file);
+            }
+            if (type != LRU && type != BLIND_ORACLE && type != COMBINED) {
+                throw new IOException("Unknown type of cache " + type + " in snapshot: " + file);
+            }
+
+            CachePolicy cache;
+            try {
+                if (type == LRU) {
+                    cache = LRUCache.readSnapshot(buffer);
+                } else if (type == BLIND_ORACLE) {
+                    cache = BlindOracleCache.readSnapshot(buffer);
+                } else {
+                    cache = CombinedCache.readSnapshot(buffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                throw new IOException("Snapshot is damaged: " + file, e);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Snapshot is damaged, its state is longer than the cache: " + file);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @param buffer a snapshot, from its first byte
+     * @param stateBytes number of bytes of the state after the header
+     * @return CRC32 of the state, the low 32 bits
+     */
+    private static int crcOf(ByteBuffer buffer, int stateBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(SNAPSHOT_HEADER_SIZE, stateBytes));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the exact reuse distance of every request of a trace in parallel, and from it the page faults of LRU for
+ * every cache size
+ * <p>
+ * The reuse distance of a request is the number of distinct pages requested since the last request to the same page,
+ * and a request is a hit in an LRU cache of size k exactly when its reuse distance is less than k. ShardsEstimator
+ * computes the distances one request after another (and samples the pages), here the trace is cut into chunks and the
+ * distances are exact:
+ * <p>
+ * 1. Every chunk is run on its own (in parallel) with a Fenwick tree over its positions. A request whose last request
+ * to the same page is in the chunk gets its distance there. The others are the first requests of their pages in the
+ * chunk, and the chunk keeps them in order, with its pages in the order of their last requests.
+ * <p>
+ * 2. The chunks are merged one after another: the LRU stack at the start of every chunk is kept as a Fenwick tree over
+ * the times of the last requests of the pages, so the depth of every first request of the chunk in the stack at its
+ * start is read from it, and then the pages of the chunk move to the top in the order of their last requests. This
+ * takes time for the distinct pages of every chunk, not for all its requests.
+ * <p>
+ * 3. Every chunk (in parallel) finishes its first requests: the distinct pages since the last request are the pages
+ * above it in the stack at the start of the chunk, and the pages requested earlier in the chunk that were deeper in
+ * that stack or not in it at all.
+ * <p>
+ * The page faults are the same as running LRU for every cache size, whatever the size of the chunks. Only the chunks
+ * being run and what the chunks keep (their distinct pages) are in memory, so binary traces are read one chunk at a time.
+ * The hits for every distance are counted in one histogram per thread, not per chunk.
+ */
+final class ReuseDistance {
+
+    // depth of a page that is not in the LRU stack (never requested before)
+    private static final int NOT_IN_STACK = Integer.MAX_VALUE;
+
+    /**
+     * Reads the requests of a chunk
+     */
+    @FunctionalInterface
+    private interface ChunkReader {
+        int read(long firstRequest, int[] out) throws IOException;
+    }
+
+    /**
+     * What a chunk keeps after it is run on its own
+     */
+    private static final class Chunk {
+
+        // pages in the order of their first requests in the chunk
+        private int[] firstRequests;
+        // pages in the order of their last requests in the chunk
+        private int[] lastRequests;
+        // depth of every page of firstRequests in the LRU stack at the start of the chunk, from the merge
+        private int[] depths;
+    }
+
+    /**
+     * Buffers of a thread, reused for every chunk the thread runs
+     */
+    private static final class Buffers {
+
+        private final int[] requests;
+        private final int[] fenwickTree;
+        // last position of every page in the chunk, -1 if the page is not in the chunk
+        private final int[] lastPosition;
+        private final int[] firstRequests;
+
+        private Buffers(int chunkSize, int maxPage) {
+            requests = new int[chunkSize];
+            fenwickTree = new int[chunkSize + 1];
+            lastPosition = new int[maxPage + 1];
+            Arrays.fill(lastPosition, -1);
+            firstRequests = new int[chunkSize];
+        }
+    }
+
+    private ReuseDistance() {
+    }
+
+    /**
+     * Finds the page faults of LRU for every cache size up to a largest one
+     * @param requestSequence sequence of page requests
+     * @param maxCacheSize largest cache size
+     * @param chunkSize number of requests of a chunk run on its own
+     * @return index k is the number of page faults of an LRU cache of size k, the same as LRU(k, requestSequence)
+     */
+    static long[] lruPageFaults(int[] requestSequence, int maxCacheSize, int chunkSize) {
+
+        int maxPage = 0;
+        for (int page : requestSequence) {
+            maxPage = Math.max(maxPage, page);
+        }
+        return lruPageFaults(requestSequence.length, maxPage, maxCacheSize, chunkSize, (firstRequest, out) -> {
+            int count = (int) Math.min(out.length, requestSequence.length - firstRequest);
+            System.arraycopy(requestSequence, (int) firstRequest, out, 0, count);
+            return count;
+        });
+    }
+
+    /**
+     * Finds the page faults of LRU for every cache size up to a largest one, reading the chunks of a binary trace in parallel
+     * @param trace binary trace written by TraceIngester
+     * @param maxCacheSize largest cache size
+     * @param chunkSize number of requests of a chunk run on its own
+     * @return index k is the number of page faults of an LRU cache of size k
+     * @throws IOException if the trace cannot be read or is not a binary trace
+     */
+    static long[] lruPageFaults(Path trace, int maxCacheSize, int chunkSize) throws IOException {
+        try {
+            return lruPageFaults(TraceIngester.readNumOfRequests(trace), TraceIngester.readNumOfDistinctPages(trace), maxCacheSize, chunkSize,
+                    (firstRequest, out) -> TraceIngester.readRequests(trace, firstRequest, out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long[] lruPageFaults(long numOfRequests, int maxPage, int maxCacheSize, int chunkSize, ChunkReader reader) {
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size should be positive");
+        }
+        long numOfChunks = (numOfRequests + chunkSize - 1) / chunkSize;
+        if (numOfChunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks, use larger chunks");
+        }
+        ThreadLocal<Buffers> buffersOfThread = ThreadLocal.withInitial(() -> new Buffers(chunkSize, maxPage));
+        // hits[d] is the number of requests with reuse distance d, for d less than the largest cache size, counted by
+        // every thread in its own array, so there is one array for every thread instead of one for every chunk
+        Queue<long[]> hitsOfThreads = new ConcurrentLinkedQueue<>();
+        ThreadLocal<long[]> hitsOfThread = ThreadLocal.withInitial(() -> {
+            long[] hits = new long[maxCacheSize];
+            hitsOfThreads.add(hits);
+            return hits;
+        });
+
+        // 1. every chunk on its own
+        Chunk[] chunks = new Chunk[(int) numOfChunks];
+        IntStream.range(0, chunks.length).parallel().forEach(c -> {
+            try {
+                chunks[c] = runChunk(reader, (long) c * chunkSize, buffersOfThread.get(), hitsOfThread.get());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // 2. the LRU stack at the start of every chunk
+        merge(chunks, maxPage);
+
+        // 3. the first requests of every chunk
+        IntStream.range(0, chunks.length).parallel().forEach(c -> finishChunk(chunks[c], hitsOfThread.get()));
+
+        long[] pageFaults = new long[maxCacheSize + 1];
+        pageFaults[0] = numOfRequests;
+        long[] hits = new long[maxCacheSize];
+        for (long[] threadHits : hitsOfThreads) {
+            for (int d = 0; d < maxCacheSize; d ++) {
+                hits[d] += threadHits[d];
+            }
+        }
+        for (int k = 1; k <= maxCacheSize; k ++) {
+            pageFaults[k] = pageFaults[k - 1] - hits[k - 1];
+        }
+        return pageFaults;
+    }
+
+    /**
+     * Runs a chunk on its own: a Fenwick tree over the positions of the chunk has a 1 at the last position of every
+     * page so far, and the distance of a request is the number of 1s after the last position of its page
+     * @param hits histogram of the reuse distances of the thread, the distances found in the chunk are added to it
+     */
+    private static Chunk runChunk(ChunkReader reader, long firstRequest, Buffers buffers, long[] hits) throws IOException {
+
+        int[] requests = buffers.requests;
+        int[] fenwickTree = buffers.fenwickTree;
+        int[] lastPosition = buffers.lastPosition;
+        int length = reader.read(firstRequest, requests);
+        Arrays.fill(fenwickTree, 0, length + 1, 0);
+
+        Chunk chunk = new Chunk();
+        int numOfFirstRequests = 0;
+        for (int t = 0; t < length; t ++) {
+            int page = requests[t];
+            int last = lastPosition[page];
+            if (last < 0) {
+                buffers.firstRequests[numOfFirstRequests ++] = page;
+            } else {
+                // 1s at positions last + 1, ..., t - 1
+                int distance = prefixSum(fenwickTree, t) - prefixSum(fenwickTree, last + 1);
+                if (distance < hits.length) {
+                    hits[distance] ++;
+                }
+                update(fenwickTree, last + 1, -1, length);
+            }
+            update(fenwickTree, t + 1, 1, length);
+            lastPosition[page] = t;
+        }
+
+        chunk.firstRequests = Arrays.copyOf(buffers.firstRequests, numOfFirstRequests);
+        chunk.lastRequests = new int[numOfFirstRequests];
+        int next = 0;
+        for (int t = 0; t < length; t ++) {
+            if (lastPosition[requests[t]] == t) {
+                chunk.lastRequests[next ++] = requests[t];
+            }
+        }
+        for (int page : chunk.firstRequests) {
+            lastPosition[page] = -1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Goes through the chunks in order with the LRU stack: a Fenwick tree over merge times has a 1 at the time every
+     * page last moved to the top, so the depth of a page is the number of 1s after its time
+     */
+    private static void merge(Chunk[] chunks, int maxPage) {
+
+        int[] timeOf = new int[maxPage + 1];
+        int[] fenwickTree = new int[2 * (maxPage + 1) + 2];
+        int numOfPagesInStack = 0;
+        int[] nextTime = {1};
+
+        for (Chunk chunk : chunks) {
+            chunk.depths = new int[chunk.firstRequests.length];
+            for (int f = 0; f < chunk.firstRequests.length; f ++) {
+                int time = timeOf[chunk.firstRequests[f]];
+                chunk.depths[f] = time == 0 ? NOT_IN_STACK : numOfPagesInStack - prefixSum(fenwickTree, time);
+            }
+            for (int page : chunk.lastRequests) {
+                if (nextTime[0] == fenwickTree.length) {
+                    renumberTimes(timeOf, fenwickTree, nextTime);
+                }
+                if (timeOf[page] == 0) {
+                    numOfPagesInStack ++;
+                } else {
+                    update(fenwickTree, timeOf[page], -1, fenwickTree.length - 1);
+                }
+                timeOf[page] = nextTime[0];
+                update(fenwickTree, nextTime[0] ++, 1, fenwickTree.length - 1);
+            }
+        }
+    }
+
+    /**
+     * Finishes the first requests of a chunk: the distance of a first request is its depth in the LRU stack at the
+     * start of the chunk plus the number of first requests before it that were deeper or not in the stack
+     * @param hits histogram of the reuse distances of the thread, the distances found are added to it
+     */
+    private static void finishChunk(Chunk chunk, long[] hits) {
+
+        int numOfFirstRequests = chunk.depths.length;
+        // the depths of the pages in the stack are all different, so they are ranked 1, 2, ... and the others come last
+        int[] sortedDepths = chunk.depths.clone();
+        Arrays.sort(sortedDepths);
+        int[] fenwickTree = new int[numOfFirstRequests + 1];
+        for (int f = 0; f < numOfFirstRequests; f ++) {
+            int depth = chunk.depths[f];
+            if (depth == NOT_IN_STACK) {
+                continue;
+            }
+            int rank = Arrays.binarySearch(sortedDepths, depth) + 1;
+            // the first requests before f that were not deeper, counted with rank at most rank
+            int distance = depth + f - prefixSum(fenwickTree, rank);
+            if (distance < hits.length) {
+                hits[distance] ++;
+            }
+            update(fenwickTree, rank, 1, numOfFirstRequests);
+        }
+        chunk.depths = null;
+    }
+
+    /**
+     * Gives the pages in the stack the times 1, 2, 3, ... in the same order, so that new times fit in the tree again
+     */
+    private static void renumberTimes(int[] timeOf, int[] fenwickTree, int[] nextTime) {
+
+        long[] timesAndPages = new long[timeOf.length];
+        int numOfPages = 0;
+        for (int page = 0; page < timeOf.length; page ++) {
+            if (timeOf[page] != 0) {
+                timesAndPages[numOfPages ++] = ((long) timeOf[page] << 32) | page;
+            }
+        }
+        Arrays.sort(timesAndPages, 0, numOfPages);
+
+        Arrays.fill(fenwickTree, 0);
+        nextTime[0] = 1;
+        for (int i = 0; i < numOfPages; i ++) {
+            timeOf[(int) timesAndPages[i]] = nextTime[0];
+            update(fenwickTree, nextTime[0] ++, 1, fenwickTree.length - 1);
+        }
+    }
+
+    // sum of the values at 1, ..., index
+    private static int prefixSum(int[] fenwickTree, int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += fenwickTree[i];
+        }
+        return sum;
+    }
+
+    private static void update(int[] fenwickTree, int index, int delta, int size) {
+        for (int i = index; i <= size; i += i & -i) {
+            fenwickTree[i] += delta;
+        }
+    }
+
+    /**
+     * Computes the exact LRU miss ratio curve of a binary trace (see TraceIngester) and prints it as csv
+     * @param args trace path, largest cache size, and optionally the number of requests of a chunk
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.out.println("Usage: java ReuseDistance <trace> <maxCacheSize> [chunkSize]");
+            return;
+        }
+
+        Path trace = Paths.get(args[0]);
+        int maxCacheSize = Integer.parseInt(args[1]);
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 22;
+
+        long start = System.nanoTime();
+        long[] pageFaults = lruPageFaults(trace, maxCacheSize, chunkSize);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("k,missRatio,pageFaults");
+        for (int k = 1; k <= maxCacheSize; k ++) {
+            System.out.println(k + "," + (pageFaults[0] == 0 ? 0 : (double) pageFaults[k] / pageFaults[0]) + "," + pageFaults[k]);
+        }
+        System.err.printf("%d requests in %.2f s%n", pageFaults[0], seconds);
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Estimates the LRU miss ratio curve (miss ratio for every cache size) of a request stream using spatial sampling (SHARDS)
+ * <p>
+ * A page is sampled when the hash of the page is below a threshold, so either every request to a page is sampled or
+ * none is. Reuse distances (number of distinct pages since the last request to the same page) are computed only on the
+ * sampled requests and scaled up by 1 / sampling rate. The number of tracked pages is bounded: when it grows beyond the
+ * limit, the threshold is lowered and the pages with the highest hash are dropped, so the memory stays constant however
+ * long the stream is.
+ * <p>
+ * The curve comes from all sampled pages. For the error estimate, the pages are also split into independent groups
+ * (by other bits of the hash), each group gives its own estimate of the curve and the standard error comes from the
+ * spread between them.
+ */
+final class ShardsEstimator {
+
+    // hash values are in [0, HASH_MODULUS)
+    private static final int HASH_BITS = 24;
+    private static final long HASH_MODULUS = 1L << HASH_BITS;
+
+    private final int maxCacheSize;
+    private final long seed;
+    private final Group allPages;
+    private final Group[] groups;
+    private long requests;
+
+    /**
+     * @param samplingRate fraction of the pages to sample at the start, in (0, 1]
+     * @param maxCacheSize the curve is computed for cache sizes 0, 1, ..., maxCacheSize
+     * @param maxTrackedPages most distinct sampled pages kept in memory at a time for the curve (the groups keep as many in total)
+     * @param numOfGroups number of independent groups used to estimate the error (less than 2 gives no error estimate)
+     * @param seed seed of the hash function
+     */
+    ShardsEstimator(double samplingRate, int maxCacheSize, int maxTrackedPages, int numOfGroups, long seed) {
+
+        if (samplingRate <= 0 || samplingRate > 1) {
+            throw new IllegalArgumentException("Sampling rate should be in (0, 1]");
+        }
+        this.maxCacheSize = maxCacheSize;
+        this.seed = seed;
+
+        long threshold = Math.max(1, Math.round(samplingRate * HASH_MODULUS));
+        allPages = new Group(threshold, 1, maxTrackedPages);
+        groups = new Group[numOfGroups < 2 ? 0 : numOfGroups];
+        for (int g = 0; g < groups.length; g ++) {
+            groups[g] = new Group(threshold, numOfGroups, Math.max(1, maxTrackedPages / numOfGroups));
+        }
+    }
+
+    /**
+     * Processes the next request of the stream
+     * @param page the page requested
+     */
+    void offer(int page) {
+
+        requests ++;
+
+        long hash = SplitMix.mix(page + seed);
+        long hashValue = hash & (HASH_MODULUS - 1);
+        if (hashValue < allPages.threshold) {
+            allPages.offer(page, hashValue);
+        }
+        if (groups.length > 0) {
+            Group group = groups[(int) Long.remainderUnsigned(hash >>> 32, groups.length)];
+            if (hashValue < group.threshold) {
+                group.offer(page, hashValue);
+            }
+        }
+    }
+
+    /**
+     * Processes a part of a request sequence
+     * @param requestSequence sequence of page requests
+     * @param offset index of the first request to process
+     * @param len number of requests to process
+     */
+    void offer(int[] requestSequence, int offset, int len) {
+        for (int i = offset; i < offset + len; i ++) {
+            offer(requestSequence[i]);
+        }
+    }
+
+    /**
+     * @return number of requests processed
+     */
+    long requests() {
+        return requests;
+    }
+
+    /**
+     * @return the estimated miss ratio for each cache size, index c is the miss ratio of an LRU cache of size c
+     */
+    double[] missRatioCurve() {
+        return allPages.missRatioCurve(requests);
+    }
+
+    /**
+     * @return the standard error of the miss ratio for each cache size, 0 when there are less than 2 groups
+     */
+    double[] standardErrors() {
+
+        double[] errors = new double[maxCacheSize + 1];
+        if (groups.length < 2) {
+            return errors;
+        }
+
+        // every group is scaled up to the whole stream, so each one is an estimate of the curve on its own
+        double[][] groupCurves = new double[groups.length][];
+        double[] mean = new double[maxCacheSize + 1];
+        for (int g = 0; g < groups.length; g ++) {
+            groupCurves[g] = groups[g].missRatioCurve(requests);
+            for (int c = 0; c <= maxCacheSize; c ++) {
+                mean[c] += groupCurves[g][c] / groups.length;
+            }
+        }
+        for (double[] groupCurve : groupCurves) {
+            for (int c = 0; c <= maxCacheSize; c ++) {
+                double deviation = groupCurve[c] - mean[c];
+                errors[c] += deviation * deviation;
+            }
+        }
+        for (int c = 0; c <= maxCacheSize; c ++) {
+            errors[c] = Math.sqrt(errors[c] / (groups.length - 1) / groups.length);
+        }
+        return errors;
+    }
+
+    /**
+     * @return the sampling rate used for the curve at the end of the stream
+     */
+    double samplingRate() {
+        return (double) allPages.threshold / HASH_MODULUS;
+    }
+
+    /**
+     * One spatial sample: the pages whose hash value is below the threshold (and that fall into this group)
+     */
+    private final class Group {
+
+        // a page is sampled if its hash value is below threshold
+        private long threshold;
+        // the group holds 1 / numOfGroups of the pages
+        private final int numOfGroups;
+        private final int maxTrackedPages;
+
+        // last access time of every tracked page (times start from 1, so 0 is a page that is not tracked), and the
+        // tracked pages in a max-heap by hash value, every entry is the hash value in the high 32 bits and the page in the low ones
+        private final TraceIngester.LongToIntMap lastAccessTime;
+        private final long[] trackedPagesByHash;
+        private int numOfTrackedPages;
+
+        // Fenwick tree over access times, with a 1 at the last access time of every tracked page
+        // times are given out in increasing order, and renumbered when they reach the end of the tree
+        private final int[] fenwickTree;
+        private int nextTime = 1;
+
+        // histogram[d] is the estimated number of requests with (scaled) reuse distance d, the last bucket holds
+        // the larger distances and the first requests to pages
+        private final double[] histogram = new double[maxCacheSize + 2];
+        private double estimatedRequests;
+
+        Group(long threshold, int numOfGroups, int maxTrackedPages) {
+            this.threshold = threshold;
+            this.numOfGroups = numOfGroups;
+            this.maxTrackedPages = maxTrackedPages;
+            this.lastAccessTime = new TraceIngester.LongToIntMap(2 * maxTrackedPages);
+            this.trackedPagesByHash = new long[maxTrackedPages + 1];
+            this.fenwickTree = new int[4 * maxTrackedPages + 2];
+        }
+
+        void offer(int page, long hashValue) {
+
+            // every sampled request stands for HASH_MODULUS / threshold requests of the stream (times the number of groups,
+            // as the group only sees 1 / numOfGroups of the pages)
+            double scale = (double) HASH_MODULUS * numOfGroups / threshold;
+            estimatedRequests += scale;
+
+            int previousTime = lastAccessTime.get(page);
+            if (previousTime == 0) {
+                histogram[maxCacheSize + 1] += scale;
+                addTrackedPage(hashValue << 32 | (page & 0xFFFFFFFFL));
+            } else {
+                long distance = (long) (countAfter(previousTime) * scale);
+                histogram[(int) Math.min(distance, maxCacheSize + 1)] += scale;
+                update(previousTime, -1);
+                lastAccessTime.remove(page);
+            }
+
+            if (nextTime == fenwickTree.length) {
+                renumberTimes();
+            }
+            lastAccessTime.put(page, nextTime);
+            update(nextTime ++, 1);
+
+            // too many tracked pages, so the threshold is lowered to the highest hash value and every page with that hash value is dropped
+            while (lastAccessTime.size() > maxTrackedPages) {
+                threshold = trackedPagesByHash[0] >>> 32;
+                while (numOfTrackedPages > 0 && trackedPagesByHash[0] >>> 32 >= threshold) {
+                    int droppedPage = (int) removeHighestTrackedPage();
+                    update(lastAccessTime.remove(droppedPage), -1);
+                }
+            }
+        }
+
+        private void addTrackedPage(long hashAndPage) {
+
+            int position = numOfTrackedPages ++;
+            while (position > 0 && trackedPagesByHash[(position - 1) >>> 1] < hashAndPage) {
+                trackedPagesByHash[position] = trackedPagesByHash[(position - 1) >>> 1];
+                position = (position - 1) >>> 1;
+            }
+            trackedPagesByHash[position] = hashAndPage;
+        }
+
+        private long removeHighestTrackedPage() {
+
+            long highest = trackedPagesByHash[0];
+            long last = trackedPagesByHash[-- numOfTrackedPages];
+            int position = 0;
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= numOfTrackedPages) {
+                    break;
+                }
+                if (child + 1 < numOfTrackedPages && trackedPagesByHash[child + 1] > trackedPagesByHash[child]) {
+                    child ++;
+                }
+                if (trackedPagesByHash[child] <= last) {
+                    break;
+                }
+                trackedPagesByHash[position] = trackedPagesByHash[child];
+                position = child;
+            }
+            trackedPagesByHash[position] = last;
+            return highest;
+        }
+
+        /**
+         * @param requests number of requests this sample stands for
+         * @return the estimated miss ratio for each cache size
+         */
+        double[] missRatioCurve(long requests) {
+
+            double[] curve = new double[maxCacheSize + 1];
+            if (estimatedRequests == 0) {
+                return curve;
+            }
+
+            // the sample may hold more or fewer requests than expected, the difference is put into distance 0
+            // (a hit for every cache size) so that the curve is scaled to the real number of requests
+            double hits = requests - estimatedRequests;
+            curve[0] = 1;
+            for (int c = 1; c <= maxCacheSize; c ++) {
+                hits += histogram[c - 1];
+                // a request is a hit in an LRU cache of size c if its reuse distance is less than c
+                curve[c] = Math.min(1, Math.max(0, 1 - hits / requests));
+            }
+            return curve;
+        }
+
+        /**
+         * @param time an access time
+         * @return number of tracked pages whose last access time is after the given time
+         */
+        private int countAfter(int time) {
+            return lastAccessTime.size() - prefixSum(time);
+        }
+
+        private int prefixSum(int time) {
+            int sum = 0;
+            for (int i = time; i > 0; i -= i & -i) {
+                sum += fenwickTree[i];
+            }
+            return sum;
+        }
+
+        private void update(int time, int delta) {
+            for (int i = time; i < fenwickTree.length; i += i & -i) {
+                fenwickTree[i] += delta;
+            }
+        }
+
+        /**
+         * Gives the tracked pages the times 1, 2, 3, ... in the same order, so that new times fit in the tree again
+         */
+        private void renumberTimes() {
+
+            // the time in the high 32 bits and the page in the low ones, so they sort by time
+            long[] timesAndPages = new long[lastAccessTime.size()];
+            int[] numOfPages = {0};
+            lastAccessTime.forEach((page, time) -> timesAndPages[numOfPages[0] ++] = (long) time << 32 | (page & 0xFFFFFFFFL));
+            Arrays.sort(timesAndPages);
+
+            Arrays.fill(fenwickTree, 0);
+            nextTime = 1;
+            for (long timeAndPage : timesAndPages) {
+                lastAccessTime.put((int) timeAndPage, nextTime);
+                update(nextTime ++, 1);
+            }
+        }
+    }
+
+    /**
+     * Estimates the miss ratio curve of a binary trace (see TraceIngester) and prints it as csv
+     * @param args trace path, sampling rate, largest cache size, and optionally the most tracked pages and the number of groups
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 3) {
+            System.out.println("Usage: java ShardsEstimator <trace> <samplingRate> <maxCacheSize> [maxTrackedPages] [groups]");
+            return;
+        }
+
+        Path trace = Paths.get(args[0]);
+        double samplingRate = Double.parseDouble(args[1]);
+        int maxCacheSize = Integer.parseInt(args[2]);
+        int maxTrackedPages = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 16;
+        int numOfGroups = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+
+        long start = System.nanoTime();
+        ShardsEstimator estimator = new ShardsEstimator(samplingRate, maxCacheSize, maxTrackedPages, numOfGroups, 0);
+        TraceIngester.streamTrace(trace, estimator::offer);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double[] curve = estimator.missRatioCurve();
+        double[] errors = estimator.standardErrors();
+        System.out.println("k,missRatio,standardError,estimatedPageFaults");
+        for (int c = 1; c <= maxCacheSize; c ++) {
+            System.out.println(c + "," + curve[c] + "," + errors[c] + "," + Math.round(curve[c] * estimator.requests()));
+        }
+        System.err.printf("%d requests in %.2f s, final sampling rate %f%n", estimator.requests(), seconds, estimator.samplingRate());
+    }
+}
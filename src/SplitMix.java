@@ -0,0 +1,22 @@
+/**
+ * The splitmix64 finalizer, shared by the classes that hash pages or spread out seeds
+ * <p>
+ * It spreads the bits of a value over the whole 64-bit hash, so neighbouring pages or seeds give unrelated hashes.
+ * CacheCluster places the nodes and the pages on its ring with it, ShardsEstimator samples the pages by it,
+ * ConcurrentLoadDriver picks the stripe of a page, and WorkloadGenerator and TrialCache seed their random numbers.
+ */
+final class SplitMix {
+
+    private SplitMix() {
+    }
+
+    /**
+     * @param x a value
+     * @return the hash of the value
+     */
+    static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -0,0 +1,591 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Converts text access logs into binary traces of dense page ids that the algorithms in Paging can run on
+ * <p>
+ * The input has one request per line, either the whole line or one column of a delimited (csv) line.
+ * A key is read as a decimal number, as a hexadecimal number when it starts with 0x, or else it is hashed.
+ * Every distinct key gets an id in [1, N] in the order in which the keys first appear.
+ * <p>
+ * The binary trace has a header (magic number, number of requests, number of distinct pages) followed by
+ * one little-endian int per request.
+ */
+public class TraceIngester {
+
+    // "PGTR" in ascii, identifies a binary trace
+    static final int TRACE_MAGIC = 0x50475452;
+    // magic (4 bytes) + number of requests (8 bytes) + number of distinct pages (4 bytes)
+    static final int TRACE_HEADER_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 1 << 23;
+
+    // offset basis and prime of the 64-bit FNV-1a hash, used for keys that are not numbers
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Ingests a text access log and writes the binary trace
+     * @param input path to the text log
+     * @param output path to the binary trace to be written
+     * @param column index of the column that has the key (starting from 0), -1 to use the whole line
+     * @param delimiter the byte that separates the columns
+     * @param pageShift number of low bits dropped from numeric keys, so that addresses map to pages (0 keeps the keys as they are)
+     * @param linesToSkip number of lines at the start of the log to ignore (for example a csv header)
+     * @return number of distinct pages, the ids in the trace are in [1, number of distinct pages]
+     * @throws IOException if the log cannot be read or the trace cannot be written
+     */
+    static int ingest(Path input, Path output, int column, byte delimiter, int pageShift, long linesToSkip) throws IOException {
+        return ingestFromLine(input, output, column, delimiter, pageShift, linesToSkip, 0);
+    }
+
+    /**
+     * Ingests a text access log and writes the binary trace, numbering the lines from a given number, so the tests can
+     * check the lines after line 2^31 - 1 without writing a log that long
+     * @param input path to the text log
+     * @param output path to the binary trace to be written
+     * @param column index of the column that has the key (starting from 0), -1 to use the whole line
+     * @param delimiter the byte that separates the columns
+     * @param pageShift number of low bits dropped from numeric keys, so that addresses map to pages (0 keeps the keys as they are)
+     * @param linesToSkip the lines numbered below this are ignored
+     * @param firstLine number of the first line of the log, for a log that goes on from the lines of another one
+     * @return number of distinct pages, the ids in the trace are in [1, number of distinct pages]
+     * @throws IOException if the log cannot be read or the trace cannot be written
+     */
+    static int ingestFromLine(Path input, Path output, int column, byte delimiter, int pageShift, long linesToSkip, long firstLine) throws IOException {
+
+        LongToIntMap denseIds = new LongToIntMap(1 << 16);
+        long numOfRequests = 0;
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // the parser reads the bytes straight from the array behind the buffer
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer inBuffer = ByteBuffer.wrap(bytes);
+            ByteBuffer outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            // the header is written again once the number of requests is known
+            out.position(TRACE_HEADER_SIZE);
+
+            // a line that is split between 2 reads is carried over to the start of the array before the next read
+            // (a long, as a log of a few GB can have more than 2^31 short lines)
+            int carriedBytes = 0;
+            long line = firstLine;
+
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                // one byte is kept free for the newline that ends the last line
+                inBuffer.clear().position(carriedBytes).limit(BUFFER_SIZE - 1);
+                endOfInput = in.read(inBuffer) < 0;
+                int end = inBuffer.position();
+
+                // a missing newline at the end of the log still ends the last line
+                if (endOfInput && end > 0 && bytes[end - 1] != '\n') {
+                    bytes[end ++] = '\n';
+                }
+
+                int lineStart = 0;
+                for (int i = 0; i < end; i ++) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+
+                    if (line >= linesToSkip) {
+                        long keyBounds = findKey(bytes, lineStart, i, column, delimiter);
+                        int keyStart = (int) (keyBounds >>> 32);
+                        int keyEnd = (int) keyBounds;
+                        if (keyStart < keyEnd) {
+                            int id = denseIds.getOrAssign(parseKey(bytes, keyStart, keyEnd, pageShift));
+                            if (outBuffer.remaining() < Integer.BYTES) {
+                                outBuffer.flip();
+                                while (outBuffer.hasRemaining()) {
+                                    out.write(outBuffer);
+                                }
+                                outBuffer.clear();
+                            }
+                            outBuffer.putInt(id);
+                            numOfRequests ++;
+                        }
+                    }
+                    line ++;
+                    lineStart = i + 1;
+                }
+
+                carriedBytes = end - lineStart;
+                if (carriedBytes == BUFFER_SIZE - 1) {
+                    throw new IOException("Line " + (line + 1) + " is longer than " + (BUFFER_SIZE - 1) + " bytes");
+                }
+                System.arraycopy(bytes, lineStart, bytes, 0, carriedBytes);
+            }
+
+            outBuffer.flip();
+            while (outBuffer.hasRemaining()) {
+                out.write(outBuffer);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(TRACE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(TRACE_MAGIC).putLong(numOfRequests).putInt(denseIds.size()).flip();
+            out.write(header, 0);
+        }
+
+        return denseIds.size();
+    }
+
+    /**
+     * Reads a whole binary trace into memory
+     * @param trace path to the binary trace
+     * @return the request sequence
+     * @throws IOException if the trace cannot be read, is not a binary trace or does not fit in an array
+     */
+    static int[] readTrace(Path trace) throws IOException {
+
+        try (FileChannel in = FileChannel.open(trace, StandardOpenOption.READ)) {
+            long numOfRequests = readHeader(in)[0];
+            if (numOfRequests > Integer.MAX_VALUE - 8) {
+                throw new IOException("Trace is too large to be read into an array, stream it instead: " + trace);
+            }
+
+            int[] requestSequence = new int[(int) numOfRequests];
+            int[] next = new int[] {0};
+            forEachBlock(in, block -> {
+                int remaining = block.remaining() / Integer.BYTES;
+                block.asIntBuffer().get(requestSequence, next[0], remaining);
+                next[0] += remaining;
+            });
+            return requestSequence;
+        }
+    }
+
+    /**
+     * Streams the requests of a binary trace one by one, without keeping the trace in memory
+     * @param trace path to the binary trace
+     * @param consumer called with every page request, in order
+     * @return number of requests in the trace
+     * @throws IOException if the trace cannot be read or is not a binary trace
+     */
+    static long streamTrace(Path trace, IntConsumer consumer) throws IOException {
+
+        try (FileChannel in = FileChannel.open(trace, StandardOpenOption.READ)) {
+            long numOfRequests = readHeader(in)[0];
+            forEachBlock(in, block -> {
+                while (block.hasRemaining()) {
+                    consumer.accept(block.getInt());
+                }
+            });
+            return numOfRequests;
+        }
+    }
+
+    /**
+     * Reads a binary trace with every run of back-to-back requests to the same page collapsed into one request
+     * (see CollapsedTrace), streaming the trace so that only the collapsed sequence is kept in memory
+     * @param trace path to the binary trace
+     * @return the collapsed request sequence, with the number of requests of every run
+     * @throws IOException if the trace cannot be read or is not a binary trace
+     */
+    static CollapsedTrace readCollapsedTrace(Path trace) throws IOException {
+        return CollapsedTrace.collapse(PipelinedSimulation.RequestSource.ofTrace(trace));
+    }
+
+    /**
+     * Reads the requests of a binary trace that start at a position, so that parts of a trace can be read in parallel
+     * @param trace path to the binary trace
+     * @param firstRequest index of the first request to read
+     * @param out array to put the requests in, as many are read as fit
+     * @return number of requests read, less than the length of out at the end of the trace
+     * @throws IOException if the trace cannot be read or is not a binary trace
+     */
+    static int readRequests(Path trace, long firstRequest, int[] out) throws IOException {
+
+        try (FileChannel in = FileChannel.open(trace, StandardOpenOption.READ)) {
+            long numOfRequests = readHeader(in)[0];
+            int count = (int) Math.max(0, Math.min(out.length, numOfRequests - firstRequest));
+            ByteBuffer buffer = ByteBuffer.allocate(count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = TRACE_HEADER_SIZE + firstRequest * Integer.BYTES;
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Trace is shorter than its header says: " + trace);
+                }
+            }
+            buffer.flip();
+            buffer.asIntBuffer().get(out, 0, count);
+            return count;
+        }
+    }
+
+    /**
+     * Reads the number of requests of a binary trace from its header
+     * @param trace path to the binary trace
+     * @return the number of requests
+     * @throws IOException if the trace cannot be read or is not a binary trace
+     */
+    static long readNumOfRequests(Path trace) throws IOException {
+
+        try (FileChannel in = FileChannel.open(trace, StandardOpenOption.READ)) {
+            return readHeader(in)[0];
+        }
+    }
+
+    /**
+     * Reads the number of distinct pages of a binary trace from its header
+     * @param trace path to the binary trace
+     * @return the number of distinct pages, every page in the trace is in [1, that number]
+     * @throws IOException if the trace cannot be read or is not a binary trace
+     */
+    static int readNumOfDistinctPages(Path trace) throws IOException {
+
+        try (FileChannel in = FileChannel.open(trace, StandardOpenOption.READ)) {
+            return (int) readHeader(in)[1];
+        }
+    }
+
+    /**
+     * Reads and checks the header, and leaves the channel at the first request
+     * @param in channel of the binary trace
+     * @return number of requests and number of distinct pages
+     * @throws IOException if the channel cannot be read or does not start with the header of a binary trace
+     */
+    private static long[] readHeader(FileChannel in) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(TRACE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && in.read(header) >= 0) {
+            // keeps reading until the header is complete
+        }
+        header.flip();
+        if (header.remaining() < TRACE_HEADER_SIZE || header.getInt() != TRACE_MAGIC) {
+            throw new IOException("Not a binary trace");
+        }
+        return new long[] {header.getLong(), header.getInt()};
+    }
+
+    /**
+     * Reads the requests of a binary trace in large blocks
+     * @param in channel of the binary trace, positioned at the first request
+     * @param blockConsumer called with each block, every block contains a whole number of requests
+     * @throws IOException if the channel cannot be read
+     */
+    private static void forEachBlock(FileChannel in, Consumer<ByteBuffer> blockConsumer) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (in.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            int wholeRequests = buffer.remaining() / Integer.BYTES * Integer.BYTES;
+            if (wholeRequests == 0) {
+                break;
+            }
+            ByteBuffer block = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            block.limit(wholeRequests);
+            blockConsumer.accept(block);
+            buffer.position(wholeRequests);
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Finds the key in a line, without the surrounding spaces, tabs and carriage return
+     * @param bytes the bytes read from the log
+     * @param lineStart index of the first byte of the line
+     * @param lineEnd index of the newline that ends the line
+     * @param column index of the column that has the key, -1 to use the whole line
+     * @param delimiter the byte that separates the columns
+     * @return start of the key in the upper 32 bits and end of the key (exclusive) in the lower 32 bits
+     */
+    private static long findKey(byte[] bytes, int lineStart, int lineEnd, int column, byte delimiter) {
+
+        int start = lineStart;
+        int end = lineEnd;
+        if (column >= 0) {
+            for (int field = 0; field < column && start < lineEnd; start ++) {
+                if (bytes[start] == delimiter) {
+                    field ++;
+                }
+            }
+            end = start;
+            while (end < lineEnd && bytes[end] != delimiter) {
+                end ++;
+            }
+        }
+
+        while (start < end && isWhitespace(bytes[start])) {
+            start ++;
+        }
+        while (end > start && isWhitespace(bytes[end - 1])) {
+            end --;
+        }
+        return ((long) start << 32) | end;
+    }
+
+    /**
+     * Converts the bytes of a key into a long, without creating a String
+     * @param bytes the bytes read from the log
+     * @param start index of the first byte of the key
+     * @param end index after the last byte of the key
+     * @param pageShift number of low bits dropped from numeric keys
+     * @return the number (shifted by pageShift) if the key is a decimal or hexadecimal number that fits in a long, else the hash of the key
+     */
+    private static long parseKey(byte[] bytes, int start, int end, int pageShift) {
+
+        int length = end - start;
+
+        // at most 16 hexadecimal digits after 0x fit in a long
+        if (length > 2 && length <= 18 && bytes[start] == '0' && (bytes[start + 1] == 'x' || bytes[start + 1] == 'X')) {
+            long value = 0;
+            int i = start + 2;
+            for (; i < end; i ++) {
+                int digit = hexDigit(bytes[i]);
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+            }
+            if (i == end) {
+                return value >>> pageShift;
+            }
+        } else if (length <= 18) {
+            // at most 18 decimal digits always fit in a long
+            long value = 0;
+            int i = start;
+            for (; i < end; i ++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+            }
+            if (i == end) {
+                return value >>> pageShift;
+            }
+        }
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = start; i < end; i ++) {
+            hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Converts an ascii hexadecimal digit to its value
+     * @param b the ascii byte
+     * @return value of the digit, or -1 if the byte is not a hexadecimal digit
+     */
+    private static int hexDigit(byte b) {
+
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Open addressing hash table from long keys to dense int ids, without boxing
+     * <p>
+     * The key and the id of a slot are next to each other in one array, so a lookup usually touches a single cache line.
+     * It can also be used as a map from long keys to non-zero int values with get, put and remove (ShardsEstimator
+     * keeps the last access times of its pages in it), but then getOrAssign should not be used, as its ids are the
+     * number of keys.
+     */
+    static class LongToIntMap {
+
+        /**
+         * Takes a key and its value
+         */
+        @FunctionalInterface
+        interface EntryConsumer {
+            void accept(long key, int value);
+        }
+
+        // slots[2 * slot] is the key and slots[2 * slot + 1] is the id, id 0 means the slot is empty
+        private long[] slots;
+        private int size;
+
+        LongToIntMap(int initialCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, initialCapacity) - 1) << 1;
+            slots = new long[2 * capacity];
+        }
+
+        /**
+         * Finds the id of a key, and gives it the next id if it does not have one yet
+         * @param key the key
+         * @return the id of the key, ids start from 1
+         */
+        int getOrAssign(long key) {
+
+            int mask = (slots.length >>> 1) - 1;
+            int slot = mix(key) & mask;
+            long id;
+            while ((id = slots[2 * slot + 1]) != 0) {
+                if (slots[2 * slot] == key) {
+                    return (int) id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            slots[2 * slot] = key;
+            slots[2 * slot + 1] = ++ size;
+            if (size * 4L > slots.length) {
+                grow();
+            }
+            return size;
+        }
+
+        /**
+         * @param key the key
+         * @return the value of the key, or 0 if it is not in the map
+         */
+        int get(long key) {
+
+            int mask = (slots.length >>> 1) - 1;
+            int slot = mix(key) & mask;
+            long value;
+            while ((value = slots[2 * slot + 1]) != 0) {
+                if (slots[2 * slot] == key) {
+                    return (int) value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        /**
+         * Sets the value of a key, adding the key if it is not in the map
+         * @param key the key
+         * @param value the value, not 0
+         */
+        void put(long key, int value) {
+
+            int mask = (slots.length >>> 1) - 1;
+            int slot = mix(key) & mask;
+            while (slots[2 * slot + 1] != 0) {
+                if (slots[2 * slot] == key) {
+                    slots[2 * slot + 1] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            slots[2 * slot] = key;
+            slots[2 * slot + 1] = value;
+            size ++;
+            if (size * 4L > slots.length) {
+                grow();
+            }
+        }
+
+        /**
+         * Removes a key, and moves back the keys after it that could not take its slot, so a lookup still stops at
+         * the first empty slot
+         * @param key the key
+         * @return the value the key had, or 0 if it was not in the map
+         */
+        int remove(long key) {
+
+            int mask = (slots.length >>> 1) - 1;
+            int slot = mix(key) & mask;
+            while (slots[2 * slot] != key || slots[2 * slot + 1] == 0) {
+                if (slots[2 * slot + 1] == 0) {
+                    return 0;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int value = (int) slots[2 * slot + 1];
+            size --;
+
+            int empty = slot;
+            for (int next = (empty + 1) & mask; slots[2 * next + 1] != 0; next = (next + 1) & mask) {
+                // the key at next can move to the empty slot if its own slot is not between the empty slot and next
+                int home = mix(slots[2 * next]) & mask;
+                if (((next - home) & mask) >= ((next - empty) & mask)) {
+                    slots[2 * empty] = slots[2 * next];
+                    slots[2 * empty + 1] = slots[2 * next + 1];
+                    empty = next;
+                }
+            }
+            slots[2 * empty] = 0;
+            slots[2 * empty + 1] = 0;
+            return value;
+        }
+
+        /**
+         * Gives every key and its value to an action, in no particular order
+         * @param action takes every key and its value, it should not change the map
+         */
+        void forEach(EntryConsumer action) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (slots[i + 1] != 0) {
+                    action.accept(slots[i], (int) slots[i + 1]);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+
+            long[] oldSlots = slots;
+            slots = new long[oldSlots.length * 2];
+            int mask = (slots.length >>> 1) - 1;
+            for (int i = 0; i < oldSlots.length; i += 2) {
+                if (oldSlots[i + 1] != 0) {
+                    int slot = mix(oldSlots[i]) & mask;
+                    while (slots[2 * slot + 1] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[2 * slot] = oldSlots[i];
+                    slots[2 * slot + 1] = oldSlots[i + 1];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Ingests a text access log from the command line
+     * @param args input path, output path, and optionally the column (-1 for the whole line), the delimiter, the page shift and the lines to skip
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.out.println("Usage: java TraceIngester <input log> <output trace> [column] [delimiter] [pageShift] [linesToSkip]");
+            return;
+        }
+
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        int column = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+        byte delimiter = args.length > 3 ? (byte) args[3].charAt(0) : (byte) ',';
+        int pageShift = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        long linesToSkip = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        long start = System.nanoTime();
+        int numOfDistinctPages = ingest(input, output, column, delimiter, pageShift, linesToSkip);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long inputBytes = input.toFile().length();
+        System.out.println("Distinct pages: " + numOfDistinctPages);
+        System.out.println("Requests: " + (output.toFile().length() - TRACE_HEADER_SIZE) / Integer.BYTES);
+        System.out.printf("Took %.2f s (%.1f MB/s)%n", seconds, inputBytes / 1e6 / seconds);
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Keeps the parts of a trial that do not depend on the noise, so that sweeps over tow or omega do not recompute them
+ * <p>
+ * A trial is identified by (k, N, n, epsilon, seed, trial): its request sequence is generated with a Random seeded
+ * from seed and trial, so the same key always gives the same sequence. For each trial the cache keeps the request
+ * sequence, the true H sequence, and the page faults of OPT, LRU, ARC and LIRS (the algorithms that do not use
+ * predictions). Only the noise and the algorithms that use predictions have to be run again for every point.
+ * <p>
+ * The trials are kept in least recently used order and the least recently used ones are evicted when the arrays held
+ * take more than the given number of bytes. The cache can be used from many threads at once.
+ */
+final class TrialCache {
+
+    /**
+     * The parts of a trial that do not depend on the noise. The arrays are shared, they must not be changed
+     */
+    static final class Trial {
+
+        final int[] requestSequence;
+        final int[] trueHSequence;
+        final int pageFaultsOfOpt;
+        final int pageFaultsOfLRU;
+        final int pageFaultsOfARC;
+        final int pageFaultsOfLIRS;
+
+        private Trial(Paging paging, int k, int[] requestSequence, ExperimentTelemetry telemetry) {
+
+            int n = requestSequence.length;
+            long start = System.nanoTime();
+            this.requestSequence = requestSequence;
+            this.trueHSequence = paging.generateH(requestSequence);
+            long end = System.nanoTime();
+            record(telemetry, "generateH", n, end - start);
+
+            start = end;
+            this.pageFaultsOfOpt = paging.blindOracle(k, requestSequence, trueHSequence);
+            end = System.nanoTime();
+            record(telemetry, "Opt", n, end - start);
+
+            start = end;
+            this.pageFaultsOfLRU = paging.LRU(k, requestSequence);
+            end = System.nanoTime();
+            record(telemetry, "LRU", n, end - start);
+
+            start = end;
+            this.pageFaultsOfARC = paging.ARC(k, requestSequence);
+            end = System.nanoTime();
+            record(telemetry, "ARC", n, end - start);
+
+            start = end;
+            this.pageFaultsOfLIRS = paging.LIRS(k, requestSequence);
+            end = System.nanoTime();
+            record(telemetry, "LIRS", n, end - start);
+        }
+
+        private static void record(ExperimentTelemetry telemetry, String algorithm, long requests, long nanos) {
+            if (telemetry != null) {
+                telemetry.recordAlgorithm(algorithm, requests, nanos);
+            }
+        }
+
+        private long bytes() {
+            // the 2 arrays, plus a rough size of the objects around them
+            return 4L * (requestSequence.length + trueHSequence.length) + 128;
+        }
+    }
+
+    private final long maxBytes;
+    private final ExperimentTelemetry telemetry;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    // access order, so the first entry is the least recently used
+    private final LinkedHashMap<Key, Trial> trials = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes most bytes of arrays kept in the cache
+     */
+    TrialCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * @param maxBytes most bytes of arrays kept in the cache
+     * @param telemetry records how long generating a trial and running the algorithms without predictions take, can be null
+     */
+    TrialCache(long maxBytes, ExperimentTelemetry telemetry) {
+        this.maxBytes = maxBytes;
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Gives the trial from the cache, or generates it and puts it into the cache
+     * @param paging reference to call the methods in Paging
+     * @param k cache size
+     * @param N every page request belongs to [N]
+     * @param n number of page requests
+     * @param epsilon controls the amount of locality
+     * @param seed seed of the batch of trials
+     * @param trial index of the trial in the batch
+     * @return the trial
+     */
+    Trial get(Paging paging, int k, int N, int n, double epsilon, long seed, int trial) {
+
+        Key key = new Key(k, N, n, epsilon, seed, trial);
+        synchronized (this) {
+            Trial cached = trials.get(key);
+            if (cached != null) {
+                hits ++;
+                return cached;
+            }
+            misses ++;
+        }
+
+        // generated outside the lock so that other threads can go on, 2 threads asking for the same missing trial
+        // both generate it, and get the same values as the sequence only depends on the key
+        long start = System.nanoTime();
+        int[] requestSequence = paging.generateRandomSequence(k, N, n, epsilon, new Random(trialSeed(seed, trial)));
+        Trial.record(telemetry, "generateRandomSequence", n, System.nanoTime() - start);
+        Trial generated = new Trial(paging, k, requestSequence, telemetry);
+        synchronized (this) {
+            Trial previous = trials.put(key, generated);
+            if (previous != null) {
+                bytes -= previous.bytes();
+            }
+            bytes += generated.bytes();
+
+            Iterator<Trial> leastRecentlyUsed = trials.values().iterator();
+            while (bytes > maxBytes && leastRecentlyUsed.hasNext()) {
+                Trial evicted = leastRecentlyUsed.next();
+                if (evicted != generated) {
+                    bytes -= evicted.bytes();
+                    leastRecentlyUsed.remove();
+                }
+            }
+        }
+        return generated;
+    }
+
+    /**
+     * @return number of trials found in the cache
+     */
+    synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return number of trials that had to be generated
+     */
+    synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return number of trials in the cache
+     */
+    synchronized int size() {
+        return trials.size();
+    }
+
+    /**
+     * Seeds of the trials of a batch, spread out so that the random number generators of 2 trials are not correlated
+     */
+    private static long trialSeed(long seed, int trial) {
+        return SplitMix.mix(seed + (trial + 1) * 0x9e3779b97f4a7c15L);
+    }
+
+    private static final class Key {
+
+        private final int k;
+        private final int N;
+        private final int n;
+        private final double epsilon;
+        private final long seed;
+        private final int trial;
+
+        Key(int k, int N, int n, double epsilon, long seed, int trial) {
+            this.k = k;
+            this.N = N;
+            this.n = n;
+            this.epsilon = epsilon;
+            this.seed = seed;
+            this.trial = trial;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return k == other.k && N == other.N && n == other.n && Double.compare(epsilon, other.epsilon) == 0
+                    && seed == other.seed && trial == other.trial;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(k, N, n, epsilon, seed, trial);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * Buffers and caches that a thread reuses for all the trails it runs, so that running a trail does not allocate
+ * <p>
+ * Every thread has its own context (see current), holding the array for the H predictions and one instance of each
+ * CachePolicy that uses predictions. The caches are reset before every trail and only created again when the cache
+ * size or the threshold changes.
+ */
+final class TrialContext {
+
+    private static final ThreadLocal<TrialContext> CONTEXTS = ThreadLocal.withInitial(TrialContext::new);
+
+    private int[] hPredictions = new int[0];
+
+    private int k = -1;
+    private double threshold = Double.NaN;
+    private BlindOracleCache blindOracleCache;
+    private CombinedCache combinedCache;
+    private MarkerCache predictiveMarkerCache;
+    private MarkerCache lMarkerCache;
+
+    private TrialContext() {
+    }
+
+    /**
+     * @return the context of the current thread
+     */
+    static TrialContext current() {
+        return CONTEXTS.get();
+    }
+
+    /**
+     * Gets the caches ready for a new trail: empty caches of size k
+     * @param k cache size
+     * @param threshold determines when a Combined algorithm can switch between LRU and BlindOracle
+     */
+    void prepare(int k, double threshold) {
+
+        if (k != this.k) {
+            this.k = k;
+            blindOracleCache = new BlindOracleCache(k);
+            predictiveMarkerCache = new MarkerCache(k, true, 16, new Random());
+            lMarkerCache = new MarkerCache(k, false, 16, new Random());
+            combinedCache = new CombinedCache(k, threshold);
+            this.threshold = threshold;
+            return;
+        }
+        if (Double.compare(threshold, this.threshold) != 0) {
+            combinedCache = new CombinedCache(k, threshold);
+            this.threshold = threshold;
+        } else {
+            combinedCache.reset();
+        }
+        blindOracleCache.reset();
+        predictiveMarkerCache.reset();
+        lMarkerCache.reset();
+    }
+
+    /**
+     * @param n number of page requests
+     * @return an array of length n for the H predictions, the same array every time for the same n
+     */
+    int[] hPredictions(int n) {
+        if (hPredictions.length != n) {
+            hPredictions = new int[n];
+        }
+        return hPredictions;
+    }
+
+    BlindOracleCache blindOracleCache() {
+        return blindOracleCache;
+    }
+
+    CombinedCache combinedCache() {
+        return combinedCache;
+    }
+
+    MarkerCache predictiveMarkerCache() {
+        return predictiveMarkerCache;
+    }
+
+    MarkerCache lMarkerCache() {
+        return lMarkerCache;
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates request sequences made of phases, each with its own access pattern: Zipfian popularity, sequential scans,
+ * loops and mixtures of these
+ * <p>
+ * generateRandomSequence in Paging only has the epsilon-locality model. The patterns here are the ones where LRU,
+ * BlindOracle and combinedAlg differ the most: a loop over more than k pages makes LRU miss on every request, a scan
+ * pushes every useful page out of an LRU cache, and a Zipfian popularity rewards keeping the popular pages.
+ * <p>
+ * The sequence is cut into chunks of CHUNK_SIZE requests, and every chunk draws from its own random number generator
+ * seeded from the seed and the number of the chunk. So the chunks can be generated in parallel, or one after another
+ * as a stream, and the same seed always gives the same sequence. A request only depends on its position in its phase
+ * and on the random numbers of its chunk, and a random draw takes O(1) time (Zipf and mixtures use alias tables).
+ */
+final class WorkloadGenerator {
+
+    /**
+     * Number of requests generated with one random number generator
+     */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private final Phase[] phases;
+    // position of the first request of every phase, and the length of the whole sequence at the end
+    private final long[] phaseStarts;
+    private final long seed;
+
+    /**
+     * Gives the page of a request
+     */
+    @FunctionalInterface
+    interface Pattern {
+
+        /**
+         * @param position position of the request in its phase (0-based)
+         * @param random random number generator of the chunk of the request
+         * @return the page requested
+         */
+        int page(long position, SplittableRandom random);
+    }
+
+    /**
+     * A number of requests that follow the same pattern
+     */
+    static final class Phase {
+
+        final Pattern pattern;
+        final long length;
+
+        /**
+         * @param pattern pattern of the requests
+         * @param length number of requests
+         */
+        Phase(Pattern pattern, long length) {
+            this.pattern = pattern;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Table to draw one of n outcomes with given probabilities in O(1) time (Vose's alias method)
+     * <p>
+     * Outcome i keeps probability[i] of its column and gives the rest of it to alias[i]. A draw picks a column
+     * uniformly and then the column or its alias.
+     */
+    static final class AliasTable {
+
+        private final double[] probability;
+        private final int[] alias;
+
+        /**
+         * @param weights non-negative weights of the outcomes, not all 0
+         */
+        AliasTable(double[] weights) {
+
+            int n = weights.length;
+            double total = Arrays.stream(weights).sum();
+            probability = new double[n];
+            alias = new int[n];
+
+            // scaled so that the average column is 1, columns below 1 get filled from columns above 1
+            double[] scaled = new double[n];
+            ArrayDeque<Integer> small = new ArrayDeque<>();
+            ArrayDeque<Integer> large = new ArrayDeque<>();
+            for (int i = 0; i < n; i ++) {
+                scaled[i] = weights[i] * n / total;
+                (scaled[i] < 1 ? small : large).add(i);
+            }
+            while (!small.isEmpty() && !large.isEmpty()) {
+                int less = small.poll();
+                int more = large.poll();
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                (scaled[more] < 1 ? small : large).add(more);
+            }
+            // what is left is 1 up to rounding errors
+            for (int i : large) {
+                probability[i] = 1;
+            }
+            for (int i : small) {
+                probability[i] = 1;
+            }
+        }
+
+        /**
+         * @param random random number generator
+         * @return an outcome in [0, n), drawn with the probabilities of the weights
+         */
+        int sample(SplittableRandom random) {
+            int column = random.nextInt(probability.length);
+            return random.nextDouble() < probability[column] ? column : alias[column];
+        }
+
+        /**
+         * @param i an outcome
+         * @return the probability of drawing the outcome
+         */
+        double probabilityOf(int i) {
+            double p = probability[i];
+            for (int column = 0; column < alias.length; column ++) {
+                if (alias[column] == i && probability[column] < 1) {
+                    p += 1 - probability[column];
+                }
+            }
+            return p / probability.length;
+        }
+    }
+
+    /**
+     * @param phases phases of the sequence, in order
+     * @param seed seed of the random number generators, the same seed gives the same sequence
+     */
+    WorkloadGenerator(List<Phase> phases, long seed) {
+
+        this.phases = phases.toArray(new Phase[0]);
+        this.phaseStarts = new long[this.phases.length + 1];
+        for (int p = 0; p < this.phases.length; p ++) {
+            phaseStarts[p + 1] = phaseStarts[p] + this.phases[p].length;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * Requests to numOfPages pages where the page of rank r (from 0) is requested with probability proportional to 1 / (r + 1)^skew
+     * @param firstPage the most popular page, the page of rank r is firstPage + r
+     * @param numOfPages number of pages
+     * @param skew 0 for uniform popularity, around 1 for typical web and storage workloads
+     * @return the pattern
+     */
+    static Pattern zipf(int firstPage, int numOfPages, double skew) {
+
+        double[] weights = new double[numOfPages];
+        for (int rank = 0; rank < numOfPages; rank ++) {
+            weights[rank] = 1 / Math.pow(rank + 1, skew);
+        }
+        AliasTable ranks = new AliasTable(weights);
+        return (position, random) -> firstPage + ranks.sample(random);
+    }
+
+    /**
+     * A sequential scan, every request is to a new page: firstPage, firstPage + 1, ...
+     * @param firstPage the first page of the scan
+     * @return the pattern
+     */
+    static Pattern scan(int firstPage) {
+        return (position, random) -> (int) (firstPage + position);
+    }
+
+    /**
+     * A loop over the same pages in the same order: firstPage, ..., firstPage + numOfPages - 1, firstPage, ...
+     * @param firstPage the first page of the loop
+     * @param numOfPages number of pages in the loop, more than k makes LRU miss on every request
+     * @return the pattern
+     */
+    static Pattern loop(int firstPage, int numOfPages) {
+        return (position, random) -> (int) (firstPage + position % numOfPages);
+    }
+
+    /**
+     * Every request follows one of the patterns, drawn with the given weights. A pattern gets the position of the
+     * request in the phase, so a scan or loop in a mixture skips the pages of the requests that went to other patterns.
+     * @param patterns the patterns
+     * @param weights weight of every pattern
+     * @return the pattern
+     */
+    static Pattern mixture(Pattern[] patterns, double[] weights) {
+        Pattern[] copyOfPatterns = patterns.clone();
+        AliasTable choice = new AliasTable(weights);
+        return (position, random) -> copyOfPatterns[choice.sample(random)].page(position, random);
+    }
+
+    /**
+     * @return number of requests of the whole sequence
+     */
+    long length() {
+        return phaseStarts[phases.length];
+    }
+
+    /**
+     * Generates the whole sequence, the chunks in parallel
+     * @return the request sequence
+     */
+    int[] generate() {
+
+        if (length() > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Sequence of " + length() + " requests does not fit in an array, use generateChunk");
+        }
+        int[] requestSequence = new int[(int) length()];
+        int numOfChunks = (int) ((length() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        IntStream.range(0, numOfChunks).parallel().forEach(chunk -> generateChunk(chunk, requestSequence, chunk * CHUNK_SIZE));
+        return requestSequence;
+    }
+
+    /**
+     * Generates the requests of a chunk, which is the same whichever thread generates it and in whatever order
+     * @param chunk number of the chunk, its requests are at positions [chunk * CHUNK_SIZE, (chunk + 1) * CHUNK_SIZE)
+     * @param out array to put the requests in
+     * @param offset index in out of the first request of the chunk
+     * @return number of requests in the chunk, less than CHUNK_SIZE for the last chunk
+     */
+    int generateChunk(long chunk, int[] out, int offset) {
+
+        long from = chunk * CHUNK_SIZE;
+        long to = Math.min(length(), from + CHUNK_SIZE);
+        SplittableRandom random = new SplittableRandom(SplitMix.mix(seed + SplitMix.mix(chunk)));
+
+        // the phase of the first request of the chunk
+        int phase = Arrays.binarySearch(phaseStarts, from);
+        phase = phase >= 0 ? phase : -phase - 2;
+        for (long position = from; position < to; position ++) {
+            while (position >= phaseStarts[phase + 1]) {
+                phase ++;
+            }
+            out[offset + (int) (position - from)] = phases[phase].pattern.page(position - phaseStarts[phase], random);
+        }
+        return (int) Math.max(0, to - from);
+    }
+
+    /**
+     * @return a source that generates the sequence one chunk at a time, for sequences too long to keep in memory
+     */
+    PipelinedSimulation.RequestSource source() {
+        return consumer -> {
+            int[] chunk = new int[CHUNK_SIZE];
+            for (long c = 0; c * CHUNK_SIZE < length(); c ++) {
+                int size = generateChunk(c, chunk, 0);
+                for (int j = 0; j < size; j ++) {
+                    consumer.accept(chunk[j]);
+                }
+            }
+        };
+    }
+}
@@ -9,6 +9,10 @@ plt.plot(df['k'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['k'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['k'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['k'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['k'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['k'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['k'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['k'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying cache size -- Regime 1")
 plt.xlabel("cache size")
@@ -25,6 +29,10 @@ plt.plot(df['k'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['k'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['k'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['k'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['k'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['k'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['k'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['k'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying cache size -- Regime 2")
 plt.xlabel("cache size")
@@ -41,6 +49,10 @@ plt.plot(df['omega'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['omega'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['omega'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['omega'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['omega'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['omega'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['omega'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['omega'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying omega -- Regime 1")
 plt.xlabel("omega")
@@ -57,6 +69,10 @@ plt.plot(df['omega'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['omega'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['omega'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['omega'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['omega'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['omega'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['omega'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['omega'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying omega -- Regime 2")
 plt.xlabel("omega")
@@ -73,6 +89,10 @@ plt.plot(df['epsilon'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['epsilon'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['epsilon'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['epsilon'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['epsilon'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['epsilon'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['epsilon'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['epsilon'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying epsilon -- Regime 1")
 plt.xlabel("epsilon")
@@ -89,6 +109,10 @@ plt.plot(df['epsilon'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['epsilon'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['epsilon'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['epsilon'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['epsilon'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['epsilon'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['epsilon'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['epsilon'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying epsilon -- Regime 2")
 plt.xlabel("epsilon")
@@ -105,6 +129,10 @@ plt.plot(df['tow'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['tow'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['tow'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['tow'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['tow'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['tow'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['tow'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['tow'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying tow -- Regime 1")
 plt.xlabel("tow")
@@ -121,6 +149,10 @@ plt.plot(df['tow'], df['pageFaultsOfOpt'], label = "pageFaultsOfOpt")
 plt.plot(df['tow'], df['pageFaultsOfBlindOracle'], label = "pageFaultsOfBlindOracle")
 plt.plot(df['tow'], df['pageFaultsOfLRU'], label = "pageFaultsOfLRU")
 plt.plot(df['tow'], df['pageFaultsOfCombined'], label = "pageFaultsOfCombined")
+plt.plot(df['tow'], df['pageFaultsOfARC'], label = "pageFaultsOfARC")
+plt.plot(df['tow'], df['pageFaultsOfLIRS'], label = "pageFaultsOfLIRS")
+plt.plot(df['tow'], df['pageFaultsOfPredictiveMarker'], label = "pageFaultsOfPredictiveMarker")
+plt.plot(df['tow'], df['pageFaultsOfLMarker'], label = "pageFaultsOfLMarker")
 
 plt.title("Page faults of algorithms over varying tow -- Regime 2")
 plt.xlabel("tow")